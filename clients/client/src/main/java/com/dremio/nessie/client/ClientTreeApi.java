@@ -27,6 +27,7 @@ import com.dremio.nessie.api.TreeApi;
 import com.dremio.nessie.error.NessieConflictException;
 import com.dremio.nessie.error.NessieNotFoundException;
 import com.dremio.nessie.model.Branch;
+import com.dremio.nessie.model.DiffResponse;
 import com.dremio.nessie.model.EntriesResponse;
 import com.dremio.nessie.model.LogResponse;
 import com.dremio.nessie.model.Merge;
@@ -115,8 +116,12 @@ class ClientTreeApi implements TreeApi {
   }
 
   @Override
-  public LogResponse getCommitLog(@NotNull String ref) throws NessieNotFoundException {
+  public LogResponse getCommitLog(@NotNull String ref, String key, Integer maxRecords, String pageToken)
+      throws NessieNotFoundException {
     return target.path("trees").path("tree").path(ref).path("log")
+                 .queryParam("key", key)
+                 .queryParam("max", maxRecords)
+                 .queryParam("pageToken", pageToken)
                  .request()
                  .accept(MediaType.APPLICATION_JSON_TYPE)
                  .get()
@@ -131,7 +136,7 @@ class ClientTreeApi implements TreeApi {
           .queryParam("expectedHash", expectedHash)
           .queryParam("message", message)
           .request()
-          .put(Entity.entity(transplant, MediaType.APPLICATION_JSON_TYPE));
+          .post(Entity.entity(transplant, MediaType.APPLICATION_JSON_TYPE));
   }
 
   @Override
@@ -141,18 +146,35 @@ class ClientTreeApi implements TreeApi {
           .resolveTemplate("branchName", branchName)
           .queryParam("expectedHash", expectedHash)
           .request()
-          .put(Entity.entity(merge, MediaType.APPLICATION_JSON_TYPE));
+          .post(Entity.entity(merge, MediaType.APPLICATION_JSON_TYPE));
   }
 
   @Override
-  public EntriesResponse getEntries(@NotNull String refName) throws NessieNotFoundException {
+  public EntriesResponse getEntries(@NotNull String refName, Integer maxEntries, String pageToken, String namespace)
+      throws NessieNotFoundException {
     return target.path("trees").path("tree").path(refName).path("entries")
+                 .queryParam("max", maxEntries)
+                 .queryParam("pageToken", pageToken)
+                 .queryParam("namespace", namespace)
                  .request()
                  .accept(MediaType.APPLICATION_JSON_TYPE)
                  .get()
                  .readEntity(EntriesResponse.class);
   }
 
+  @Override
+  public DiffResponse getDiff(@NotNull String fromRef, @NotNull String toRef, Integer maxRecords, String pageToken, Boolean keysOnly)
+      throws NessieNotFoundException {
+    return target.path("trees").path("tree").path(fromRef).path("diff").path(toRef)
+                 .queryParam("max", maxRecords)
+                 .queryParam("pageToken", pageToken)
+                 .queryParam("keysOnly", keysOnly)
+                 .request()
+                 .accept(MediaType.APPLICATION_JSON_TYPE)
+                 .get()
+                 .readEntity(DiffResponse.class);
+  }
+
   @Override
   public void commitMultipleOperations(String branch, @NotNull String expectedHash, String message,
                                        @NotNull Operations operations) throws NessieNotFoundException, NessieConflictException {
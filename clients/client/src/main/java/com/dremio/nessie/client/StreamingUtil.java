@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.client;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.dremio.nessie.api.TreeApi;
+import com.dremio.nessie.error.NessieNotFoundException;
+import com.dremio.nessie.model.CommitMeta;
+import com.dremio.nessie.model.LogResponse;
+
+/**
+ * Helpers that page through paginated responses as streams.
+ */
+public final class StreamingUtil {
+
+  private StreamingUtil() {
+  }
+
+  /**
+   * Stream the commit log of a reference, retrieving one page at a time as the stream is consumed.
+   *
+   * @param tree The api to retrieve pages from.
+   * @param ref The reference to show the log from.
+   * @param key If not null, only commits that changed the contents of this key (as a path string) are returned.
+   * @param pageSize The maximum number of commits retrieved per request.
+   * @return The commits of the log, newest first.
+   * @throws NessieNotFoundException if the reference does not exist
+   */
+  public static Stream<CommitMeta> getCommitLogStream(TreeApi tree, String ref, String key, int pageSize)
+      throws NessieNotFoundException {
+    // retrieve the first page eagerly so an unknown reference is reported to the caller.
+    final LogResponse first = tree.getCommitLog(ref, key, pageSize, null);
+    return StreamSupport.stream(new Spliterators.AbstractSpliterator<CommitMeta>(Long.MAX_VALUE, Spliterator.ORDERED) {
+      private LogResponse page = first;
+      private Iterator<CommitMeta> commits = first.getOperations().iterator();
+
+      @Override
+      public boolean tryAdvance(Consumer<? super CommitMeta> action) {
+        while (!commits.hasNext()) {
+          if (!page.hasMore()) {
+            return false;
+          }
+          try {
+            page = tree.getCommitLog(ref, key, pageSize, page.getToken());
+          } catch (NessieNotFoundException e) {
+            throw new IllegalStateException("Unable to retrieve the next page of the commit log.", e);
+          }
+          commits = page.getOperations().iterator();
+        }
+        action.accept(commits.next());
+        return true;
+      }
+    }, false);
+  }
+}
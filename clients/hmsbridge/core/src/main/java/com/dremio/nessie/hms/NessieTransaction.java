@@ -137,7 +137,7 @@ class NessieTransaction {
 
   Stream<ContentsKey> getTables(String database) {
     try {
-      return store.getEntriesForDefaultRef()
+      return store.getEntriesForDefaultRef(ContentsKey.of(database))
           .map(EntriesResponse.Entry::getName)
           .filter(k -> k.getElements().size() != 1)
           .filter(k -> k.getElements().get(0).equalsIgnoreCase(database));
@@ -157,7 +157,7 @@ class NessieTransaction {
 
   public Stream<String> getDatabases() {
     try {
-      return store.getEntriesForDefaultRef()
+      return store.getEntriesForDefaultRef(null)
           .map(EntriesResponse.Entry::getName)
           .filter(k -> k.getElements().size() == 1)
           .map(k -> k.getElements().get(0));
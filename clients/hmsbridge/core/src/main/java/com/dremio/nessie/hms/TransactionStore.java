@@ -117,8 +117,14 @@ class TransactionStore {
     return tree.getAllReferences();
   }
 
-  public Stream<Entry> getEntriesForDefaultRef() throws NessieNotFoundException {
-    List<Entry> entries = tree.getEntries(reference.getHash()).getEntries();
+  /**
+   * Get the entries of the default ref, including those changed within this transaction.
+   * @param namespace If not null, the server only returns entries within this namespace. Entries changed within this
+   *        transaction are returned regardless of their namespace.
+   */
+  public Stream<Entry> getEntriesForDefaultRef(ContentsKey namespace) throws NessieNotFoundException {
+    String encoded = namespace == null ? null : namespace.toPathString();
+    List<Entry> entries = tree.getEntries(reference.getHash(), null, null, encoded).getEntries();
     Supplier<Stream<RefKey>> defaultRefKeys = () -> cachedItems.keySet().stream().filter(k -> k.getRef().equals(reference.getHash()));
     Set<ContentsKey> toRemove = defaultRefKeys.get().map(RefKey::getKey).collect(Collectors.toSet());
     return Stream.concat(entries.stream().filter(k -> !toRemove.contains(k.getName())),
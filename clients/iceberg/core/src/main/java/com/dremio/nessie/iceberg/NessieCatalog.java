@@ -184,7 +184,8 @@ public class NessieCatalog extends BaseMetastoreCatalog implements AutoCloseable
   public List<TableIdentifier> listTables(Namespace namespace) {
     try {
       return client.getTreeApi()
-          .getEntries(reference.getHash())
+          .getEntries(reference.getHash(), null, null, namespace == null || namespace.isEmpty() ? null :
+              ContentsKey.of(namespace.levels()).toPathString())
           .getEntries()
           .stream()
           .filter(namespacePredicate(namespace))
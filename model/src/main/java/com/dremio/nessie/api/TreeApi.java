@@ -38,6 +38,7 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import com.dremio.nessie.error.NessieConflictException;
 import com.dremio.nessie.error.NessieNotFoundException;
 import com.dremio.nessie.model.Branch;
+import com.dremio.nessie.model.DiffResponse;
 import com.dremio.nessie.model.EntriesResponse;
 import com.dremio.nessie.model.LogResponse;
 import com.dremio.nessie.model.Merge;
@@ -101,6 +102,10 @@ public interface TreeApi {
 
   /**
    * get all objects for a ref.
+   *
+   * <p>Entries are returned in a stable order. If a maximum number of entries is given, the response holds at most that
+   * many entries and, if there are more, a token that returns the following entries when passed as {@code pageToken}.
+   * If a namespace is given, only the entries within that namespace are returned.
    */
   @GET
   @Produces(MediaType.APPLICATION_JSON)
@@ -109,14 +114,51 @@ public interface TreeApi {
   @APIResponses({
       @APIResponse(description = "all objects for a reference"),
       @APIResponse(responseCode = "200", description = "Returned successfully."),
+      @APIResponse(responseCode = "400", description = "Invalid page size"),
       @APIResponse(responseCode = "404", description = "Ref not found")}
   )
   public EntriesResponse getEntries(
-      @NotNull @Parameter(description = "name of ref to fetch from") @PathParam("ref") String refName)
+      @NotNull @Parameter(description = "name of ref to fetch from") @PathParam("ref") String refName,
+      @Parameter(description = "maximum number of entries to return, all entries are returned if not provided")
+          @QueryParam("max") Integer maxEntries,
+      @Parameter(description = "token of the page to return, as returned by the previous call")
+          @QueryParam("pageToken") String pageToken,
+      @Parameter(description = "namespace to list, as dot separated elements, all entries are returned if not provided")
+          @QueryParam("namespace") String namespace)
+          throws NessieNotFoundException;
+
+  /**
+   * differences between two refs.
+   *
+   * <p>Differences are returned in a stable order. If a maximum number of differences is given, the response holds at
+   * most that many and, if there are more, a token that returns the following differences when passed as
+   * {@code pageToken}. If only the keys are requested, the contents of the keys are not retrieved.
+   */
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  @Path("tree/{fromRef}/diff/{toRef}")
+  @Operation(summary = "Get the differences between two references")
+  @APIResponses({
+      @APIResponse(responseCode = "200", description = "Returned differences."),
+      @APIResponse(responseCode = "400", description = "Invalid page size"),
+      @APIResponse(responseCode = "404", description = "One or more references don't exist")})
+  DiffResponse getDiff(
+      @NotNull @Parameter(description = "ref to compare from") @PathParam("fromRef") String fromRef,
+      @NotNull @Parameter(description = "ref to compare to") @PathParam("toRef") String toRef,
+      @Parameter(description = "maximum number of differences to return, all differences are returned if not provided")
+          @QueryParam("max") Integer maxRecords,
+      @Parameter(description = "token of the page to return, as returned by the previous call")
+          @QueryParam("pageToken") String pageToken,
+      @Parameter(description = "whether to only return the keys that differ, without their contents")
+          @QueryParam("keysOnly") Boolean keysOnly)
           throws NessieNotFoundException;
 
   /**
    * commit log for a ref.
+   *
+   * <p>If a key is given, only the commits that changed the contents of that key are returned. If a maximum number of
+   * records is given, the response holds at most that many commits and, if there are more, a token that returns the
+   * following commits when passed as {@code pageToken}.
    */
   @GET
   @Produces(MediaType.APPLICATION_JSON)
@@ -124,8 +166,16 @@ public interface TreeApi {
   @Operation(summary = "Get commit log for a reference")
   @APIResponses({
       @APIResponse(responseCode = "200", description = "Returned commits."),
+      @APIResponse(responseCode = "400", description = "Invalid page size or page token"),
       @APIResponse(responseCode = "404", description = "Ref doesn't exists")})
-  LogResponse getCommitLog(@NotNull @Parameter(description = "ref to show log from") @PathParam("ref") String ref)
+  LogResponse getCommitLog(
+      @NotNull @Parameter(description = "ref to show log from") @PathParam("ref") String ref,
+      @Parameter(description = "key whose changes are shown, as dot separated elements, all commits are shown if not provided")
+          @QueryParam("key") String key,
+      @Parameter(description = "maximum number of commits to return, all commits are returned if not provided")
+          @QueryParam("max") Integer maxRecords,
+      @Parameter(description = "token of the page to return, as returned by the previous call")
+          @QueryParam("pageToken") String pageToken)
           throws NessieNotFoundException;
 
   /**
@@ -214,7 +264,7 @@ public interface TreeApi {
           throws NessieNotFoundException, NessieConflictException;
 
   /**
-   * merge mergeRef onto ref.
+   * merge mergeRef onto ref, as a single commit if the merge asks to squash the commits.
    */
   @POST
   @Path("branch/{branchName}/merge")
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.model;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.immutables.value.Value;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+@Value.Immutable(prehash = true)
+@JsonSerialize(as = ImmutableDiffResponse.class)
+@JsonDeserialize(as = ImmutableDiffResponse.class)
+public interface DiffResponse extends PaginatedResponse {
+
+  static ImmutableDiffResponse.Builder builder() {
+    return ImmutableDiffResponse.builder();
+  }
+
+  List<DiffEntry> getDiffs();
+
+  /**
+   * A key whose contents differ between two references. The contents are absent when the key does not exist on that
+   * side or when only the keys were requested.
+   */
+  @Value.Immutable(prehash = true)
+  @JsonSerialize(as = ImmutableDiffEntry.class)
+  @JsonDeserialize(as = ImmutableDiffEntry.class)
+  interface DiffEntry {
+
+    static ImmutableDiffEntry.Builder builder() {
+      return ImmutableDiffEntry.builder();
+    }
+
+    ContentsKey getKey();
+
+    @Nullable
+    Contents getFromContents();
+
+    @Nullable
+    Contents getToContents();
+  }
+}
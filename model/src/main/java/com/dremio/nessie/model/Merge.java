@@ -32,4 +32,13 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 public interface Merge {
 
   String getFromHash();
+
+  /**
+   * Whether a single commit holding all of the changes since the common ancestor is added to the branch, rather than each
+   * of the commits.
+   */
+  @Value.Default
+  default boolean squash() {
+    return false;
+  }
 }
@@ -152,15 +152,20 @@ def list_tables(base_url: str, ref: str, ssl_verify: bool = True) -> list:
     return cast(list, _get(base_url + "/trees/tree/{}/entries".format(ref), ssl_verify=ssl_verify))
 
 
-def list_logs(base_url: str, ref: str, ssl_verify: bool = True) -> dict:
-    """Fetch a list of all logs from a known starting reference.
+def list_logs(
+    base_url: str, ref: str, ssl_verify: bool = True, max_records: Optional[int] = None, page_token: Optional[str] = None
+) -> dict:
+    """Fetch a page of logs from a known starting reference.
 
     :param base_url: base Nessie url
     :param ref: starting reference
     :param ssl_verify: ignore ssl errors if False
+    :param max_records: maximum number of logs in the page, all logs are returned if None
+    :param page_token: token of the page to fetch, as returned with the previous page
     :return: json dict of Nessie logs
     """
-    return cast(dict, _get(base_url + "/trees/tree/{}/log".format(ref), ssl_verify=ssl_verify))
+    params = {"max": max_records, "pageToken": page_token}
+    return cast(dict, _get(base_url + "/trees/tree/{}/log".format(ref), ssl_verify=ssl_verify, params=params))
 
 
 def get_table(base_url: str, ref: str, table: str, ssl_verify: bool = True) -> dict:
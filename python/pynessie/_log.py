@@ -10,6 +10,9 @@ from dateutil.parser import parse
 from pynessie import NessieClient
 from pynessie.model import CommitMeta
 
+# number of logs fetched per request, the next page is only fetched once the previous one has been shown.
+LOG_PAGE_SIZE = 250
+
 
 def show_log(
     nessie: NessieClient,
@@ -26,7 +29,7 @@ def show_log(
     Note:
         limiting by path is not yet supported.
     """
-    raw_log = nessie.get_log(start)
+    raw_log = nessie.get_log(start, max_records=LOG_PAGE_SIZE)
 
     def generator() -> Generator[CommitMeta, Any, None]:
         for i in raw_log:
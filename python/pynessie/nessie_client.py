@@ -172,18 +172,18 @@ class NessieClient(object):
         transplant_json = TransplantSchema().dump(Transplant(list(hashes)))
         cherry_pick(self._base_url, branch, transplant_json, old_hash, self._ssl_verify)
 
-    def get_log(self: "NessieClient", start_ref: str) -> Generator[CommitMeta, Any, None]:
+    def get_log(self: "NessieClient", start_ref: str, max_records: Optional[int] = None) -> Generator[CommitMeta, Any, None]:
         """Fetch all logs starting at start_ref.
 
         start_ref can be any ref.
 
         Note:
-            this will load the log into local memory and filter at the client. Currently there are no
-            primitives in the REST api to limit logs or perform paging. TODO
+            if max_records is given the log is fetched in pages of at most max_records logs. The next page is only
+            fetched once the logs of the previous page have been consumed.
         """
 
-        def fetch_logs() -> LogResponse:
-            fetched_logs = list_logs(self._base_url, start_ref, self._ssl_verify)
+        def fetch_logs(page_token: Optional[str] = None) -> LogResponse:
+            fetched_logs = list_logs(self._base_url, start_ref, self._ssl_verify, max_records, page_token)
             log_schema = LogResponseSchema().load(fetched_logs)
             return log_schema
 
@@ -194,7 +194,7 @@ class NessieClient(object):
                 for i in log_schema.operations:
                     yield i
                 if log_schema.has_more:
-                    log_schema = fetch_logs()
+                    log_schema = fetch_logs(log_schema.token)
                 else:
                     break
 
@@ -39,6 +39,7 @@ public class ApplicationConfig {
   private final VersionStoreConfig versionStoreConfig;
   private final VersionStoreJGitConfig versionStoreJGitConfig;
   private final VersionStoreDynamoConfig versionStoreDynamoConfig;
+  private final VersionStoreLocalConfig versionStoreLocalConfig;
 
   /**
    * inject all configs form config providers.
@@ -47,12 +48,14 @@ public class ApplicationConfig {
   public ApplicationConfig(BackendsConfig backendsConfig,
                            VersionStoreConfig versionStoreConfig,
                            VersionStoreJGitConfig versionStoreJGitConfig,
-                           VersionStoreDynamoConfig versionStoreDynamoConfig) {
+                           VersionStoreDynamoConfig versionStoreDynamoConfig,
+                           VersionStoreLocalConfig versionStoreLocalConfig) {
 
     this.backendsConfig = backendsConfig;
     this.versionStoreConfig = versionStoreConfig;
     this.versionStoreJGitConfig = versionStoreJGitConfig;
     this.versionStoreDynamoConfig = versionStoreDynamoConfig;
+    this.versionStoreLocalConfig = versionStoreLocalConfig;
   }
 
 
@@ -72,6 +75,10 @@ public class ApplicationConfig {
     return versionStoreDynamoConfig;
   }
 
+  public VersionStoreLocalConfig getVersionStoreLocalConfig() {
+    return versionStoreLocalConfig;
+  }
+
   @ConfigProperties(prefix = "nessie.server")
   public interface ServerConfigImpl extends ServerConfig {
 
@@ -125,5 +132,21 @@ public class ApplicationConfig {
 
     @ConfigProperty(name = "valueTableName", defaultValue = "nessie_objects")
     String getValueTableName();
+
+    @ConfigProperty(name = "cacheSize", defaultValue = "67108864")
+    long getCacheSize();
+
+    @ConfigProperty(name = "historyReadAhead", defaultValue = "1")
+    int getHistoryReadAhead();
+  }
+
+  @ConfigProperties(prefix = "nessie.version.store.local")
+  public interface VersionStoreLocalConfig {
+
+    @ConfigProperty(name = "directory")
+    Optional<String> getLocalDirectory();
+
+    @ConfigProperty(name = "segmentSize", defaultValue = "67108864")
+    long getSegmentSize();
   }
 }
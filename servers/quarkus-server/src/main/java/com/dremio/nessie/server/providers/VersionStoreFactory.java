@@ -15,12 +15,16 @@
  */
 package com.dremio.nessie.server.providers;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Paths;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
+import javax.enterprise.inject.Disposes;
 import javax.enterprise.inject.Produces;
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -44,12 +48,17 @@ import com.dremio.nessie.versioned.ReferenceAlreadyExistsException;
 import com.dremio.nessie.versioned.ReferenceNotFoundException;
 import com.dremio.nessie.versioned.StoreWorker;
 import com.dremio.nessie.versioned.VersionStore;
+import com.dremio.nessie.versioned.impl.CollapseScheduler;
 import com.dremio.nessie.versioned.impl.DynamoStoreConfig;
 import com.dremio.nessie.versioned.impl.JGitVersionStore;
 import com.dremio.nessie.versioned.impl.TieredVersionStore;
 import com.dremio.nessie.versioned.memory.InMemoryVersionStore;
+import com.dremio.nessie.versioned.store.CachingStore;
+import com.dremio.nessie.versioned.store.Store;
 import com.dremio.nessie.versioned.store.dynamo.DynamoStore;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import software.amazon.awssdk.regions.Region;
 
 @Singleton
@@ -58,10 +67,12 @@ public class VersionStoreFactory {
   private static final Logger LOGGER = LoggerFactory.getLogger(VersionStoreFactory.class);
 
   private final ApplicationConfig config;
+  private final MeterRegistry registry;
 
   @Inject
-  public VersionStoreFactory(ApplicationConfig config) {
+  public VersionStoreFactory(ApplicationConfig config, MeterRegistry registry) {
     this.config = config;
+    this.registry = registry;
   }
 
   @ConfigProperty(name = "quarkus.dynamodb.aws.region")
@@ -95,11 +106,23 @@ public class VersionStoreFactory {
     return store;
   }
 
+  /**
+   * release what the version store holds on shutdown, e.g. the watches of a jgit store or the files of a local store.
+   */
+  public void close(@Disposes VersionStore<Contents, CommitMeta> store) throws IOException {
+    if (store instanceof Closeable) {
+      ((Closeable) store).close();
+    }
+  }
+
   private VersionStore<Contents, CommitMeta> getVersionStore(TableCommitMetaStoreWorker storeWorker, Repository repository) {
     switch (config.getVersionStoreConfig().getVersionStoreType()) {
       case DYNAMO:
         LOGGER.info("Using Dyanmo Version store");
-        return new TieredVersionStore<>(storeWorker, createDynamoConnection(), false);
+        TieredVersionStore<Contents, CommitMeta> tiered = new TieredVersionStore<>(storeWorker, createDynamoConnection(), false,
+            config.getVersionStoreDynamoConfig().getHistoryReadAhead());
+        registerCollapseMetrics(tiered.getCollapseScheduler());
+        return tiered;
       case JGIT:
         LOGGER.info("Using JGit Version Store");
         return new JGitVersionStore<>(repository, storeWorker);
@@ -109,15 +132,42 @@ public class VersionStoreFactory {
             .metadataSerializer(storeWorker.getMetadataSerializer())
             .valueSerializer(storeWorker.getValueSerializer())
             .build();
+      case LOCAL:
+        LOGGER.info("Using Local version store");
+        String directory = config.getVersionStoreLocalConfig().getLocalDirectory()
+            .orElseThrow(() -> new RuntimeException("Please set nessie.version.store.local.directory"));
+        LOGGER.info("Local version store is at {}", directory);
+        return InMemoryVersionStore.<Contents, CommitMeta>builder()
+            .metadataSerializer(storeWorker.getMetadataSerializer())
+            .valueSerializer(storeWorker.getValueSerializer())
+            .directory(Paths.get(directory))
+            .segmentSize(config.getVersionStoreLocalConfig().getSegmentSize())
+            .build();
       default:
         throw new RuntimeException(String.format("unknown jgit repo type %s", config.getVersionStoreConfig().getVersionStoreType()));
     }
   }
 
   /**
-   * create a dynamo store based on config.
+   * expose the state of the intention logs of the dynamo version store.
    */
-  private DynamoStore createDynamoConnection() {
+  private void registerCollapseMetrics(CollapseScheduler collapses) {
+    Gauge.builder("nessie.versionstore.collapse.branches", collapses, CollapseScheduler::getBranchCount)
+         .description("Number of branches waiting for their intention log to be collapsed")
+         .register(registry);
+    Gauge.builder("nessie.versionstore.collapse.log.length", collapses, CollapseScheduler::getMaxLogLength)
+         .description("Length of the longest intention log waiting to be collapsed")
+         .register(registry);
+    Gauge.builder("nessie.versionstore.collapse.oldest.unsaved", collapses, c -> c.getOldestUnsavedAge(TimeUnit.MILLISECONDS))
+         .description("Time since the oldest commit waiting for its intention log to be collapsed was first seen")
+         .baseUnit("milliseconds")
+         .register(registry);
+  }
+
+  /**
+   * create a dynamo store based on config, fronted by a cache of immutable objects if configured.
+   */
+  private Store createDynamoConnection() {
     if (!config.getVersionStoreConfig().getVersionStoreType().equals(VersionStoreType.DYNAMO)) {
       return null;
     }
@@ -137,7 +187,12 @@ public class VersionStoreFactory {
                                             .valueTableName(config.getVersionStoreDynamoConfig().getValueTableName())
                                             .build());
     dynamo.start();
-    return dynamo;
+
+    long cacheSize = config.getVersionStoreDynamoConfig().getCacheSize();
+    if (cacheSize <= 0) {
+      return dynamo;
+    }
+    return new CachingStore(dynamo, cacheSize);
   }
 
   /**
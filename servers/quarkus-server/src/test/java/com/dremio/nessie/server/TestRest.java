@@ -18,10 +18,15 @@ package com.dremio.nessie.server;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeEach;
@@ -31,11 +36,18 @@ import com.dremio.nessie.api.ContentsApi;
 import com.dremio.nessie.api.TreeApi;
 import com.dremio.nessie.client.NessieClient;
 import com.dremio.nessie.client.NessieClient.AuthType;
+import com.dremio.nessie.client.StreamingUtil;
+import com.dremio.nessie.client.rest.NessieBadRequestException;
 import com.dremio.nessie.error.NessieConflictException;
 import com.dremio.nessie.error.NessieNotFoundException;
 import com.dremio.nessie.model.Branch;
+import com.dremio.nessie.model.CommitMeta;
 import com.dremio.nessie.model.ContentsKey;
+import com.dremio.nessie.model.DiffResponse;
+import com.dremio.nessie.model.EntriesResponse;
 import com.dremio.nessie.model.IcebergTable;
+import com.dremio.nessie.model.ImmutableMerge;
+import com.dremio.nessie.model.LogResponse;
 import com.dremio.nessie.model.MultiGetContentsRequest;
 import com.dremio.nessie.model.MultiGetContentsResponse.ContentsWithKey;
 import com.dremio.nessie.model.Reference;
@@ -75,6 +87,152 @@ class TestRest {
     tree.deleteBranch(branch, tree.getReferenceByName(branch).getHash());
   }
 
+  @Test
+  void pageEntries() throws NessieNotFoundException, NessieConflictException {
+    final String branch = "paged";
+    tree.createReference(Branch.of(branch, null));
+    List<ContentsKey> keys = Arrays.asList(ContentsKey.of("a", "b.c"), ContentsKey.of("b"), ContentsKey.of("c"), ContentsKey.of("d"));
+    for (ContentsKey key : keys) {
+      contents.setContents(key, branch, tree.getReferenceByName(branch).getHash(), "commit", IcebergTable.of("path"));
+    }
+
+    List<ContentsKey> received = new ArrayList<>();
+    String token = null;
+    int pages = 0;
+    do {
+      EntriesResponse response = tree.getEntries(branch, 3, token, null);
+      response.getEntries().forEach(e -> received.add(e.getName()));
+      token = response.getToken();
+      pages++;
+    } while (token != null);
+    assertEquals(2, pages);
+    assertEquals(keys, received);
+
+    List<EntriesResponse.Entry> namespace = tree.getEntries(branch, null, null, "a").getEntries();
+    assertEquals(1, namespace.size());
+    assertEquals(keys.get(0), namespace.get(0).getName());
+
+    assertThrows(NessieBadRequestException.class, () -> tree.getEntries(branch, 0, null, null));
+    assertThrows(NessieBadRequestException.class, () -> tree.getEntries(branch, -1, null, null));
+    tree.deleteBranch(branch, tree.getReferenceByName(branch).getHash());
+  }
+
+  @Test
+  void commitLogForKey() throws NessieNotFoundException, NessieConflictException {
+    final String branch = "keylog";
+    tree.createReference(Branch.of(branch, null));
+    ContentsKey a = ContentsKey.of("a", "t");
+    ContentsKey b = ContentsKey.of("b");
+    contents.setContents(a, branch, tree.getReferenceByName(branch).getHash(), "add a", IcebergTable.of("path1"));
+    contents.setContents(b, branch, tree.getReferenceByName(branch).getHash(), "add b", IcebergTable.of("path2"));
+    contents.setContents(a, branch, tree.getReferenceByName(branch).getHash(), "change a", IcebergTable.of("path3"));
+
+    assertEquals(3, tree.getCommitLog(branch, null, null, null).getOperations().size());
+    assertEquals(Arrays.asList("change a", "add a"), tree.getCommitLog(branch, a.toPathString(), null, null).getOperations().stream()
+        .map(CommitMeta::getMessage).collect(Collectors.toList()));
+    tree.deleteBranch(branch, tree.getReferenceByName(branch).getHash());
+  }
+
+  @Test
+  void pageCommitLog() throws NessieNotFoundException, NessieConflictException {
+    final String branch = "pagedlog";
+    tree.createReference(Branch.of(branch, null));
+    List<String> messages = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      messages.add(0, "commit " + i);
+      contents.setContents(ContentsKey.of("t" + i), branch, tree.getReferenceByName(branch).getHash(), "commit " + i,
+          IcebergTable.of("path" + i));
+    }
+
+    LogResponse page = tree.getCommitLog(branch, null, 2, null);
+    assertEquals(messages.subList(0, 2), page.getOperations().stream().map(CommitMeta::getMessage).collect(Collectors.toList()));
+    assertTrue(page.hasMore());
+    page = tree.getCommitLog(branch, null, 2, page.getToken());
+    assertEquals(messages.subList(2, 4), page.getOperations().stream().map(CommitMeta::getMessage).collect(Collectors.toList()));
+    page = tree.getCommitLog(branch, null, 2, page.getToken());
+    assertEquals(messages.subList(4, 5), page.getOperations().stream().map(CommitMeta::getMessage).collect(Collectors.toList()));
+    assertFalse(page.hasMore());
+    assertNull(page.getToken());
+
+    assertEquals(messages, StreamingUtil.getCommitLogStream(tree, branch, null, 2).map(CommitMeta::getMessage)
+        .collect(Collectors.toList()));
+
+    assertThrows(NessieBadRequestException.class, () -> tree.getCommitLog(branch, null, 0, null));
+    assertThrows(NessieBadRequestException.class, () -> tree.getCommitLog(branch, null, -1, null));
+    assertThrows(NessieBadRequestException.class, () -> tree.getCommitLog(branch, null, 2, "not a hash"));
+    tree.deleteBranch(branch, tree.getReferenceByName(branch).getHash());
+  }
+
+  @Test
+  void pageDiff() throws NessieNotFoundException, NessieConflictException {
+    final String branch = "pageddiff";
+    tree.createReference(Branch.of(branch, null));
+    final String initial = tree.getReferenceByName(branch).getHash();
+    for (int i = 0; i < 5; i++) {
+      contents.setContents(ContentsKey.of("t" + i), branch, tree.getReferenceByName(branch).getHash(), "commit " + i,
+          IcebergTable.of("path" + i));
+    }
+
+    List<DiffResponse.DiffEntry> all = tree.getDiff(initial, branch, null, null, null).getDiffs();
+    assertEquals(5, all.size());
+    for (DiffResponse.DiffEntry entry : all) {
+      assertNull(entry.getFromContents());
+      assertEquals(contents.getContents(entry.getKey(), branch), entry.getToContents());
+    }
+
+    List<DiffResponse.DiffEntry> paged = new ArrayList<>();
+    DiffResponse page = tree.getDiff(initial, branch, 2, null, null);
+    paged.addAll(page.getDiffs());
+    while (page.hasMore()) {
+      assertEquals(2, page.getDiffs().size());
+      page = tree.getDiff(initial, branch, 2, page.getToken(), null);
+      paged.addAll(page.getDiffs());
+    }
+    assertNull(page.getToken());
+    assertEquals(all, paged);
+
+    DiffResponse keys = tree.getDiff(initial, branch, null, null, true);
+    assertEquals(all.stream().map(DiffResponse.DiffEntry::getKey).collect(Collectors.toList()),
+        keys.getDiffs().stream().map(DiffResponse.DiffEntry::getKey).collect(Collectors.toList()));
+    assertTrue(keys.getDiffs().stream().allMatch(e -> e.getFromContents() == null && e.getToContents() == null));
+
+    assertThrows(NessieBadRequestException.class, () -> tree.getDiff(initial, branch, 0, null, null));
+    assertThrows(NessieBadRequestException.class, () -> tree.getDiff(initial, branch, -1, null, null));
+    tree.deleteBranch(branch, tree.getReferenceByName(branch).getHash());
+  }
+
+  @Test
+  void merge() throws NessieNotFoundException, NessieConflictException {
+    final String base = "mergebase";
+    final String feature = "mergefeature";
+    final String squashed = "mergesquashed";
+    tree.createReference(Branch.of(base, null));
+    contents.setContents(ContentsKey.of("a"), base, tree.getReferenceByName(base).getHash(), "add a", IcebergTable.of("path1"));
+    tree.createReference(Branch.of(feature, tree.getReferenceByName(base).getHash()));
+    tree.createReference(Branch.of(squashed, tree.getReferenceByName(base).getHash()));
+    contents.setContents(ContentsKey.of("b"), feature, tree.getReferenceByName(feature).getHash(), "add b", IcebergTable.of("path2"));
+    contents.setContents(ContentsKey.of("c"), feature, tree.getReferenceByName(feature).getHash(), "add c", IcebergTable.of("path3"));
+    final String head = tree.getReferenceByName(feature).getHash();
+
+    // by default each commit is merged.
+    tree.mergeRefIntoBranch(base, tree.getReferenceByName(base).getHash(), ImmutableMerge.builder().fromHash(head).build());
+    assertEquals(Arrays.asList("add c", "add b", "add a"), tree.getCommitLog(base, null, null, null).getOperations().stream()
+        .map(CommitMeta::getMessage).collect(Collectors.toList()));
+
+    tree.mergeRefIntoBranch(squashed, tree.getReferenceByName(squashed).getHash(),
+        ImmutableMerge.builder().fromHash(head).squash(true).build());
+    List<String> messages = tree.getCommitLog(squashed, null, null, null).getOperations().stream()
+        .map(CommitMeta::getMessage).collect(Collectors.toList());
+    assertEquals(2, messages.size());
+    assertEquals("add a", messages.get(1));
+    assertEquals(IcebergTable.of("path2"), contents.getContents(ContentsKey.of("b"), squashed));
+    assertEquals(IcebergTable.of("path3"), contents.getContents(ContentsKey.of("c"), squashed));
+
+    for (String branch : Arrays.asList(base, feature, squashed)) {
+      tree.deleteBranch(branch, tree.getReferenceByName(branch).getHash());
+    }
+  }
+
   @Test
   void checkSpecialCharacterRoundTrip() throws NessieNotFoundException, NessieConflictException {
     final String branch = "specialchar";
@@ -72,6 +72,13 @@ abstract class BaseResource {
     return store;
   }
 
+  /**
+   * The metadata of a commit made by the current user.
+   */
+  protected CommitMeta commitMeta(String message) {
+    return meta(principal, message);
+  }
+
   protected void doOps(String branch, String hash, String message, List<com.dremio.nessie.versioned.Operation<Contents>> operations)
       throws NessieConflictException, NessieNotFoundException {
     try {
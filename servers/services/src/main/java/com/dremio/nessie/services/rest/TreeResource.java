@@ -20,9 +20,11 @@ import java.security.Principal;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
+import javax.ws.rs.BadRequestException;
 
 import com.dremio.nessie.api.TreeApi;
 import com.dremio.nessie.error.NessieConflictException;
@@ -32,6 +34,7 @@ import com.dremio.nessie.model.CommitMeta;
 import com.dremio.nessie.model.Contents;
 import com.dremio.nessie.model.Contents.Type;
 import com.dremio.nessie.model.ContentsKey;
+import com.dremio.nessie.model.DiffResponse;
 import com.dremio.nessie.model.EntriesResponse;
 import com.dremio.nessie.model.ImmutableBranch;
 import com.dremio.nessie.model.ImmutableHash;
@@ -47,6 +50,7 @@ import com.dremio.nessie.model.Transplant;
 import com.dremio.nessie.services.config.ServerConfig;
 import com.dremio.nessie.versioned.BranchName;
 import com.dremio.nessie.versioned.Delete;
+import com.dremio.nessie.versioned.Diff;
 import com.dremio.nessie.versioned.Hash;
 import com.dremio.nessie.versioned.Key;
 import com.dremio.nessie.versioned.NamedRef;
@@ -143,13 +147,44 @@ public class TreeResource extends BaseResource implements TreeApi {
   }
 
   @Override
-  public LogResponse getCommitLog(String ref) throws NessieNotFoundException {
-    // TODO: pagination.
-    Hash hash = getHashOrThrow(ref);
+  public LogResponse getCommitLog(String ref, String key, Integer maxRecords, String pageToken) throws NessieNotFoundException {
+    checkPageSize(maxRecords);
+    // the token is the hash of the last commit of the previous page, the history is continued from that commit.
+    final Hash hash;
+    if (pageToken == null) {
+      hash = getHashOrThrow(ref);
+    } else {
+      try {
+        hash = Hash.of(pageToken);
+      } catch (IllegalArgumentException e) {
+        throw new BadRequestException(String.format("Invalid page token [%s].", pageToken), e);
+      }
+    }
+
     try {
-      List<CommitMeta> items = getStore().getCommits(hash)
+      Stream<WithHash<CommitMeta>> commits = key == null
+          ? getStore().getCommits(hash)
+          : getStore().getCommits(hash, toKey(ContentsKey.fromEncoded(key)));
+      if (pageToken != null) {
+        // the commit of the token was returned on the previous page.
+        commits = commits.skip(1);
+      }
+      if (maxRecords != null) {
+        // retrieve one more commit than requested to know whether there are more.
+        commits = commits.limit(maxRecords + 1L);
+      }
+
+      List<CommitMeta> items = commits
           .map(cwh -> cwh.getValue().toBuilder().hash(cwh.getHash().asString()).build()).collect(Collectors.toList());
-      return ImmutableLogResponse.builder().addAllOperations(items).build();
+      boolean hasMore = maxRecords != null && items.size() > maxRecords;
+      if (hasMore) {
+        items = items.subList(0, maxRecords);
+      }
+      return ImmutableLogResponse.builder()
+          .addAllOperations(items)
+          .hasMore(hasMore)
+          .token(hasMore ? items.get(items.size() - 1).getHash() : null)
+          .build();
     } catch (ReferenceNotFoundException e) {
       throw new NessieNotFoundException(String.format("Unable to find the requested ref [%s].", ref), e);
     }
@@ -174,7 +209,14 @@ public class TreeResource extends BaseResource implements TreeApi {
   @Override
   public void mergeRefIntoBranch(String branchName, String hash, Merge merge) throws NessieNotFoundException, NessieConflictException {
     try {
-      getStore().merge(toHash(merge.getFromHash(), true).get(), BranchName.of(branchName), toHash(hash, true));
+      final Hash fromHash = toHash(merge.getFromHash(), true).get();
+      if (merge.squash()) {
+        // a single commit, whose cost doesn't depend on the number of commits merged.
+        getStore().squash(fromHash, BranchName.of(branchName), toHash(hash, true),
+            commitMeta(String.format("Merge %s into %s", fromHash.asString(), branchName)));
+      } else {
+        getStore().merge(fromHash, BranchName.of(branchName), toHash(hash, true));
+      }
     } catch (ReferenceNotFoundException e) {
       throw new NessieNotFoundException(String.format("At least one of the references provided does not exist."), e);
     } catch (ReferenceConflictException e) {
@@ -184,18 +226,80 @@ public class TreeResource extends BaseResource implements TreeApi {
   }
 
   @Override
-  public EntriesResponse getEntries(String refName) throws NessieNotFoundException {
+  public EntriesResponse getEntries(String refName, Integer maxEntries, String pageToken, String namespace)
+      throws NessieNotFoundException {
+    checkPageSize(maxEntries);
     final Hash hash = getHashOrThrow(refName);
     try {
-      List<EntriesResponse.Entry> entries = getStore().getKeys(hash)
+      // the token is the last key of the previous page.
+      Optional<Key> startAfter = Optional.ofNullable(pageToken).map(t -> toKey(ContentsKey.fromEncoded(t)));
+      Stream<Key> keys = namespace == null
+          ? getStore().getKeys(hash, startAfter)
+          : getStore().getKeys(hash, toKey(ContentsKey.fromEncoded(namespace)), startAfter);
+      if (maxEntries != null) {
+        // retrieve one more key than requested to know whether there are more.
+        keys = keys.limit(maxEntries + 1L);
+      }
+
+      List<Key> page = keys.collect(Collectors.toList());
+      boolean hasMore = maxEntries != null && page.size() > maxEntries;
+      if (hasMore) {
+        page = page.subList(0, maxEntries);
+      }
+
+      List<EntriesResponse.Entry> entries = page.stream()
           .map(key -> EntriesResponse.Entry.builder().name(fromKey(key)).type(Type.UNKNOWN).build())
           .collect(ImmutableList.toImmutableList());
-      return EntriesResponse.builder().addAllEntries(entries).build();
+      return EntriesResponse.builder()
+          .addAllEntries(entries)
+          .hasMore(hasMore)
+          .token(hasMore ? fromKey(page.get(page.size() - 1)).toPathString() : null)
+          .build();
     } catch (ReferenceNotFoundException e) {
       throw new NessieNotFoundException(String.format("Unable to find the reference [%s].", refName), e);
     }
   }
 
+  @Override
+  public DiffResponse getDiff(String fromRef, String toRef, Integer maxRecords, String pageToken, Boolean keysOnly)
+      throws NessieNotFoundException {
+    checkPageSize(maxRecords);
+    final Hash from = getHashOrThrow(fromRef);
+    final Hash to = getHashOrThrow(toRef);
+    try {
+      // the token is the last key of the previous page.
+      Optional<Key> startAfter = Optional.ofNullable(pageToken).map(t -> toKey(ContentsKey.fromEncoded(t)));
+      Stream<Diff<Contents>> diffs = Boolean.TRUE.equals(keysOnly)
+          ? getStore().getDiffKeys(from, to, startAfter).map(key -> Diff.of(key, Optional.empty(), Optional.empty()))
+          : getStore().getDiffs(from, to, startAfter);
+      if (maxRecords != null) {
+        // retrieve one more difference than requested to know whether there are more.
+        diffs = diffs.limit(maxRecords + 1L);
+      }
+
+      List<Diff<Contents>> page = diffs.collect(Collectors.toList());
+      boolean hasMore = maxRecords != null && page.size() > maxRecords;
+      if (hasMore) {
+        page = page.subList(0, maxRecords);
+      }
+
+      List<DiffResponse.DiffEntry> entries = page.stream()
+          .map(diff -> DiffResponse.DiffEntry.builder()
+              .key(fromKey(diff.getKey()))
+              .fromContents(diff.getFromValue().orElse(null))
+              .toContents(diff.getToValue().orElse(null))
+              .build())
+          .collect(ImmutableList.toImmutableList());
+      return DiffResponse.builder()
+          .addAllDiffs(entries)
+          .hasMore(hasMore)
+          .token(hasMore ? fromKey(page.get(page.size() - 1).getKey()).toPathString() : null)
+          .build();
+    } catch (ReferenceNotFoundException e) {
+      throw new NessieNotFoundException(String.format("Unable to find the references [%s] and [%s].", fromRef, toRef), e);
+    }
+  }
+
   @Override
   public void commitMultipleOperations(String branch, String hash, String message, Operations operations)
       throws NessieNotFoundException, NessieConflictException {
@@ -206,6 +310,15 @@ public class TreeResource extends BaseResource implements TreeApi {
     doOps(branch, hash, message, ops);
   }
 
+  /**
+   * Reject a page size which isn't positive, as a bad request.
+   */
+  private static void checkPageSize(Integer maxRecords) {
+    if (maxRecords != null && maxRecords < 1) {
+      throw new BadRequestException(String.format("Invalid page size [%d], it must be at least 1.", maxRecords));
+    }
+  }
+
   private static Optional<Hash> toHash(String hash, boolean required) throws NessieConflictException {
     if (hash == null || hash.isEmpty()) {
       if (required) {
@@ -248,6 +361,10 @@ public class TreeResource extends BaseResource implements TreeApi {
     }
   }
 
+  private static Key toKey(ContentsKey key) {
+    return Key.of(key.getElements().toArray(new String[0]));
+  }
+
   private static ContentsKey fromKey(Key key) {
     return new ContentsKey(key.getElements());
   }
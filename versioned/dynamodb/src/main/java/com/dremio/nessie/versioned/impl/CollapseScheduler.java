@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dremio.nessie.versioned.impl.InternalBranch.UpdateState;
+import com.dremio.nessie.versioned.store.Id;
+import com.dremio.nessie.versioned.store.Store;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Schedules the collapse of branch intention logs.
+ *
+ * <p>At most one collapse is in flight for any branch. Requests for a branch that arrive while a collapse of that branch
+ * is queued are merged into the queued collapse. Requests that arrive while a collapse is running result in a single
+ * follow up collapse once the running one completes. Collapses run on a bounded number of threads with a bounded queue.
+ * Once the queue is full, the requesting thread runs the collapse itself, which slows down committers during commit storms.
+ *
+ * <p>Also tracks the length of the intention logs of branches waiting for a collapse and the age of the oldest unsaved
+ * commit, as observed by this process.
+ */
+public class CollapseScheduler implements AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CollapseScheduler.class);
+
+  private static final int DEFAULT_THREADS = 4;
+  private static final int DEFAULT_MAX_QUEUED = 1000;
+
+  private final Store store;
+  private final int attempts;
+  private final Ticker ticker;
+  private final ThreadPoolExecutor executor;
+  private final ConcurrentMap<Id, BranchCollapse> branches = new ConcurrentHashMap<>();
+
+  CollapseScheduler(Store store, int attempts) {
+    this(store, attempts, DEFAULT_THREADS, DEFAULT_MAX_QUEUED, Ticker.systemTicker());
+  }
+
+  CollapseScheduler(Store store, int attempts, int threads, int maxQueued, Ticker ticker) {
+    this.store = store;
+    this.attempts = attempts;
+    this.ticker = ticker;
+    this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(maxQueued),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("nessie-collapse-%d").build(),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Request a collapse of the intention log of a branch. The L1s of the branch's unsaved commits will be saved first.
+   *
+   * @param branch The branch state that should be collapsed.
+   * @return A future that completes once a collapse that started after this request has finished.
+   */
+  CompletableFuture<InternalBranch> collapse(InternalBranch branch) {
+    return request(branch, null);
+  }
+
+  /**
+   * Request a collapse of the intention log of a branch whose L1s have already been saved.
+   *
+   * @param state The saved state of the branch that should be collapsed.
+   * @return A future that completes once a collapse that started after this request has finished.
+   */
+  CompletableFuture<InternalBranch> collapse(UpdateState state) {
+    return request(state.getBranch(), state);
+  }
+
+  /**
+   * Whether the queue of collapses is full, in which case new collapses would run on the requesting thread.
+   */
+  boolean isSaturated() {
+    return executor.getQueue().remainingCapacity() == 0;
+  }
+
+  private CompletableFuture<InternalBranch> request(InternalBranch branch, UpdateState state) {
+    final long now = ticker.read();
+    final AtomicBoolean submit = new AtomicBoolean();
+    final AtomicReference<CompletableFuture<InternalBranch>> result = new AtomicReference<>();
+    branches.compute(branch.getId(), (id, existing) -> {
+      BranchCollapse c = existing == null ? new BranchCollapse(now) : existing;
+      c.logLength = branch.getCommitLogLength();
+      if (c.pending == null) {
+        c.pending = new CompletableFuture<>();
+        // if a collapse is running, it will resubmit once done.
+        submit.set(!c.running);
+      }
+      c.branch = branch;
+      c.state = state;
+      result.set(c.pending);
+      return c;
+    });
+
+    if (submit.get()) {
+      executor.execute(() -> run(branch.getId()));
+    }
+    return result.get();
+  }
+
+  private void run(Id branchId) {
+    final AtomicReference<InternalBranch> branch = new AtomicReference<>();
+    final AtomicReference<UpdateState> state = new AtomicReference<>();
+    final AtomicReference<CompletableFuture<InternalBranch>> result = new AtomicReference<>();
+    branches.computeIfPresent(branchId, (id, c) -> {
+      branch.set(c.branch);
+      state.set(c.state);
+      result.set(c.pending);
+      c.pending = null;
+      c.running = true;
+      return c;
+    });
+
+    if (result.get() == null) {
+      return;
+    }
+
+    InternalBranch collapsed = null;
+    try {
+      UpdateState toCollapse = state.get() != null ? state.get() : branch.get().getUpdateState(store);
+      collapsed = toCollapse.collapse(store, attempts);
+      result.get().complete(collapsed);
+    } catch (Exception ex) {
+      LOGGER.debug("Failure while collapsing intention log of branch {}.", branch.get().getName(), ex);
+      result.get().completeExceptionally(ex);
+    }
+
+    final boolean clean = collapsed != null && collapsed.getCommitLogLength() == 1;
+    final AtomicBoolean resubmit = new AtomicBoolean();
+    branches.computeIfPresent(branchId, (id, c) -> {
+      c.running = false;
+      if (c.pending != null) {
+        resubmit.set(true);
+        return c;
+      }
+      // only forget the branch once it has been cleaned up so the age of unsaved commits is retained.
+      return clean ? null : c;
+    });
+
+    if (resubmit.get()) {
+      executor.execute(() -> run(branchId));
+    }
+  }
+
+  /**
+   * The number of branches with a queued or running collapse, or whose last collapse failed.
+   */
+  public int getBranchCount() {
+    return branches.size();
+  }
+
+  /**
+   * The length of the longest intention log among the branches tracked by this scheduler, or 0 if there are none.
+   */
+  public int getMaxLogLength() {
+    return branches.values().stream().mapToInt(c -> c.logLength).max().orElse(0);
+  }
+
+  /**
+   * The time since this process first saw the oldest commit that is still waiting for its intention log to be collapsed.
+   * @param unit The unit of the returned age.
+   * @return The age, or 0 if no collapse is outstanding.
+   */
+  public long getOldestUnsavedAge(TimeUnit unit) {
+    final long now = ticker.read();
+    return unit.convert(branches.values().stream().mapToLong(c -> now - c.firstSeen).max().orElse(0), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void close() {
+    executor.shutdown();
+  }
+
+  /**
+   * The collapse state of a single branch. Only modified within {@link ConcurrentMap#compute} of the branches map.
+   */
+  private static class BranchCollapse {
+    private final long firstSeen;
+    private InternalBranch branch;
+    private UpdateState state;
+    private CompletableFuture<InternalBranch> pending;
+    private boolean running;
+    private int logLength;
+
+    BranchCollapse(long firstSeen) {
+      this.firstSeen = firstSeen;
+    }
+  }
+}
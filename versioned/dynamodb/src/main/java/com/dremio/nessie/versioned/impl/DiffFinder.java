@@ -17,9 +17,13 @@ package com.dremio.nessie.versioned.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import com.dremio.nessie.versioned.ReferenceNotFoundException;
@@ -29,6 +33,7 @@ import com.dremio.nessie.versioned.store.LoadStep;
 import com.dremio.nessie.versioned.store.Store;
 import com.dremio.nessie.versioned.store.ValueType;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.MapDifference.ValueDifference;
 
 /**
@@ -36,6 +41,10 @@ import com.google.common.collect.MapDifference.ValueDifference;
  */
 class DiffFinder {
 
+  private static final Comparator<InternalKey> ORDER = Comparator.comparingInt(InternalKey::getL1Position)
+      .thenComparingInt(InternalKey::getL2Position)
+      .thenComparing(Comparator.naturalOrder());
+
   private final List<L3Diff> l3Diffs = new ArrayList<>();
   private final L1Diff l1Diff;
 
@@ -59,6 +68,43 @@ class DiffFinder {
     return l3Diffs.stream().flatMap(l3 -> l3.getKeyDiffs());
   }
 
+  /**
+   * Stream the key differences one L1 position at a time. The L2s and L3s of a position are only loaded once the consumer
+   * reaches it, so no more than the differences of one position are held in memory.
+   *
+   * <p>Differences are ordered by the L1 position, the L2 position and the key, so the key of a difference identifies
+   * where the stream can be resumed.
+   *
+   * @param store The store to load the L2s and L3s from.
+   * @param startAfter If present, only differences of keys that are ordered after this key are returned.
+   * @return The stream of key differences.
+   */
+  public Stream<KeyDiff> streamKeyDiffs(Store store, Optional<InternalKey> startAfter) {
+    final L1 from = l1Diff.from;
+    final L1 to = l1Diff.to;
+    Stream<KeyDiff> diffs = IntStream.range(startAfter.map(InternalKey::getL1Position).orElse(0), L1.SIZE)
+        .filter(position -> !from.isSameId(position, to))
+        .mapToObj(position -> loadPosition(store, position))
+        .flatMap(List::stream);
+    return startAfter.map(after -> diffs.filter(d -> ORDER.compare(d.getKey(), after) > 0)).orElse(diffs);
+  }
+
+  private List<KeyDiff> loadPosition(Store store, int position) {
+    L2Diff l2Diff = new L2Diff();
+    List<L3Diff> diffs = new ArrayList<>();
+    LoadStep load = new LoadStep(
+        ImmutableList.of(
+            new LoadOp<L2>(ValueType.L2, l1Diff.from.getId(position), l2Diff::from),
+            new LoadOp<L2>(ValueType.L2, l1Diff.to.getId(position), l2Diff::to)),
+        () -> L2Diff.loadStep(Collections.singletonList(l2Diff), diffs));
+    try {
+      store.load(load);
+    } catch (ReferenceNotFoundException e) {
+      throw new IllegalStateException("Unable to load the tree of a commit.", e);
+    }
+    return diffs.stream().flatMap(L3Diff::getKeyDiffs).sorted(Comparator.comparing(KeyDiff::getKey, ORDER)).collect(Collectors.toList());
+  }
+
   private static class L1Diff {
     private L1 from;
     private L1 to;
@@ -73,13 +119,11 @@ class DiffFinder {
       List<L2Diff> l2Diffs = new ArrayList<>();
       List<LoadOp<?>> loadOps = new ArrayList<>();
       for (int i = 0; i < L1.SIZE; i++) {
-        Id a = from.getId(i);
-        Id b = to.getId(i);
-        if (!a.equals(b)) {
+        if (!from.isSameId(i, to)) {
           L2Diff d = new L2Diff();
           l2Diffs.add(d);
-          loadOps.add(new LoadOp<L2>(ValueType.L2, a, d::from));
-          loadOps.add(new LoadOp<L2>(ValueType.L2, b, d::to));
+          loadOps.add(new LoadOp<L2>(ValueType.L2, from.getId(i), d::from));
+          loadOps.add(new LoadOp<L2>(ValueType.L2, to.getId(i), d::to));
         }
       }
 
@@ -106,13 +150,11 @@ class DiffFinder {
         L2 from = diff.from;
         L2 to = diff.to;
         for (int i = 0; i < L2.SIZE; i++) {
-          Id a = from.getId(i);
-          Id b = to.getId(i);
-          if (!a.equals(b)) {
+          if (!from.isSameId(i, to)) {
             L3Diff d = new L3Diff();
             l3DiffsOutput.add(d);
-            loadOps.add(new LoadOp<L3>(ValueType.L3, a, d::from));
-            loadOps.add(new LoadOp<L3>(ValueType.L3, b, d::to));
+            loadOps.add(new LoadOp<L3>(ValueType.L3, from.getId(i), d::from));
+            loadOps.add(new LoadOp<L3>(ValueType.L3, to.getId(i), d::to));
           }
         }
       }
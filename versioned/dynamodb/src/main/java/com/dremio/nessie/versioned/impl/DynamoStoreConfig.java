@@ -58,6 +58,14 @@ public abstract class DynamoStoreConfig {
     return true;
   }
 
+  /**
+   * The number of segments the ref table is split into when listing refs. Segments are scanned in parallel.
+   */
+  @Default
+  public int getRefScanSegments() {
+    return 4;
+  }
+
 
   public abstract Optional<Region> getRegion();
 
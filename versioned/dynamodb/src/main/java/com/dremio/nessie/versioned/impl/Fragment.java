@@ -63,6 +63,11 @@ public class Fragment extends MemoizedId {
           .build();
     }
 
+    @Override
+    public long estimateSize(Fragment item) {
+      return Id.LENGTH + item.getKeys().stream().mapToLong(InternalKey::estimateSize).sum();
+    }
+
   };
 
 }
@@ -15,16 +15,24 @@
  */
 package com.dremio.nessie.versioned.impl;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -34,24 +42,45 @@ import com.dremio.nessie.versioned.store.LoadOp;
 import com.dremio.nessie.versioned.store.LoadStep;
 import com.dremio.nessie.versioned.store.Store;
 import com.dremio.nessie.versioned.store.ValueType;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Enables retrieval of L1 history.
  */
 class HistoryRetriever {
 
+  static final int DEFAULT_READ_AHEAD = 1;
+  private static final int READ_AHEAD_THREADS = 4;
+  private static final int READ_AHEAD_MAX_QUEUED = 1000;
+
+  private static final ThreadPoolExecutor READ_AHEAD_EXECUTOR = readAheadExecutor();
+
   private final boolean retrieveL1;
   private final boolean retrieveCommit;
   private final boolean includeEndEmpty;
   private final Store store;
   private final L1 start;
   private final Id end;
+  private final Map<Id, L1> unsavedL1s;
+  private int readAhead = DEFAULT_READ_AHEAD;
 
   public HistoryRetriever(Store store, L1 start, Id end, boolean retrieveL1, boolean retrieveCommit, boolean includeEndEmpty) {
+    this(store, start, end, retrieveL1, retrieveCommit, includeEndEmpty, Collections.emptyMap());
+  }
+
+  /**
+   * Create a history retriever for an L1 whose recent ancestors may not yet be saved.
+   * @param unsavedL1s L1s (keyed by id) that are used instead of loading them from the store.
+   */
+  public HistoryRetriever(Store store, L1 start, Id end, boolean retrieveL1, boolean retrieveCommit, boolean includeEndEmpty,
+      Map<Id, L1> unsavedL1s) {
     super();
     this.store = store;
+    this.unsavedL1s = unsavedL1s;
     this.start = start;
     this.end = end;
     this.retrieveL1 = retrieveL1;
@@ -59,6 +88,16 @@ class HistoryRetriever {
     this.includeEndEmpty = includeEndEmpty;
   }
 
+  private static ThreadPoolExecutor readAheadExecutor() {
+    // loads that don't fit the queue are run by the thread that requested them.
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(READ_AHEAD_THREADS, READ_AHEAD_THREADS, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(READ_AHEAD_MAX_QUEUED),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("nessie-history-%d").build(),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   class HistoryItem {
 
     private Id id;
@@ -88,53 +127,129 @@ class HistoryRetriever {
 
   }
 
+  /**
+   * Set the number of pages of history that are loaded ahead of the page being consumed.
+   *
+   * <p>Each page holds the ancestors referenced by one {@link ParentList}. Pages (and their commit metadata, if
+   * retrieved) are loaded in the background while the previous ones are consumed, so a consumer that walks a long
+   * history doesn't wait for a round trip per page. At most this many pages beyond the current one are held in memory.
+   * Zero loads each page only once the previous one has been consumed.
+   *
+   * @param pages The number of pages to load ahead.
+   * @return This retriever.
+   */
+  HistoryRetriever withReadAhead(int pages) {
+    Preconditions.checkArgument(pages >= 0, "Read ahead must not be negative.");
+    this.readAhead = pages;
+    return this;
+  }
+
   Stream<HistoryItem> getStream() {
     return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new HistoryIterator(), 0), false);
   }
 
+  /**
+   * The items of one parent list, in history order.
+   */
+  private static final class Page {
+
+    private static final Page END = new Page(Collections.emptyList(), true);
+
+    private final List<HistoryItem> items;
+    private final boolean isLast;
+
+    private Page(List<HistoryItem> items, boolean isLast) {
+      this.items = items;
+      this.isLast = isLast;
+    }
+
+    /**
+     * Whether there is a page after this one. The parents of the last item are only known if its L1 was loaded.
+     */
+    boolean hasNext() {
+      return !isLast && !items.isEmpty() && items.get(items.size() - 1).getL1() != null;
+    }
+
+    ParentList getNextParents() {
+      return items.get(items.size() - 1).getL1().getParentList();
+    }
+  }
+
   private class HistoryIterator extends AbstractIterator<HistoryItem> {
 
-    private Iterator<HistoryItem> currentIterator;
-    private boolean isLast = false;
-    private HistoryItem previous;
+    // pages that are loading or loaded but not yet consumed, in history order.
+    private final Deque<CompletableFuture<Page>> pending = new ArrayDeque<>();
+    private Iterator<HistoryItem> currentIterator = Collections.emptyIterator();
+    private Page current;
 
     public HistoryIterator() {
-      this.previous = null;
-
       if (start.getId().equals(L1.EMPTY_ID) && !includeEndEmpty) {
-        this.currentIterator = Collections.emptyIterator();
-        this.isLast = true;
+        current = Page.END;
       } else {
         HistoryItem item = new HistoryItem(start.getId());
         item.l1 = start;
         if (retrieveCommit && !start.getMetadataId().isEmpty()) {
           item.commitMetadata = store.loadSingle(ValueType.COMMIT_METADATA, start.getMetadataId());
         }
-        this.currentIterator = Collections.singleton(item).iterator();
+        current = new Page(Collections.singletonList(item), false);
+        currentIterator = current.items.iterator();
+        readAhead();
       }
     }
 
     @Override
     protected HistoryItem computeNext() {
-      while (!currentIterator.hasNext() && !isLast && previous.getL1() != null) {
-        try {
-          calculateNextList(previous.getL1().getParentList());
-        } catch (ReferenceNotFoundException e) {
-          throw new RuntimeException(e);
+      while (!currentIterator.hasNext()) {
+        if (pending.isEmpty()) {
+          if (!current.hasNext()) {
+            return endOfData();
+          }
+          pending.add(CompletableFuture.completedFuture(loadNext(current)));
         }
+
+        current = join(pending.poll());
+        currentIterator = current.items.iterator();
+        readAhead();
       }
 
-      if (!currentIterator.hasNext()) {
-        endOfData();
-        return null;
+      return currentIterator.next();
+    }
+
+    /**
+     * Start loading pages after the last pending one until the read ahead is reached.
+     */
+    private void readAhead() {
+      CompletableFuture<Page> last = pending.isEmpty() ? CompletableFuture.completedFuture(current) : pending.peekLast();
+      while (pending.size() < readAhead && !(last.isDone() && !join(last).hasNext())) {
+        last = last.thenApplyAsync(this::loadNext, READ_AHEAD_EXECUTOR);
+        pending.add(last);
       }
+    }
 
-      previous = currentIterator.next();
-      return previous;
+    private Page loadNext(Page page) {
+      if (!page.hasNext()) {
+        return Page.END;
+      }
+
+      try {
+        return loadPage(page.getNextParents());
+      } catch (ReferenceNotFoundException e) {
+        throw new RuntimeException(e);
+      }
     }
 
-    private void calculateNextList(ParentList list) throws ReferenceNotFoundException {
+    private Page join(CompletableFuture<Page> page) {
+      try {
+        return page.join();
+      } catch (CompletionException e) {
+        Throwables.throwIfUnchecked(e.getCause());
+        throw e;
+      }
+    }
+
+    private Page loadPage(ParentList list) throws ReferenceNotFoundException {
       int max = list.getParents().size();
+      boolean isLast = false;
       final List<HistoryItem> items = new ArrayList<>();
       final List<LoadOp<?>> loadOps = new ArrayList<>();
       final List<Supplier<LoadOp<?>>> secondOps = new ArrayList<>();
@@ -154,7 +269,10 @@ class HistoryRetriever {
 
         final HistoryItem item = new HistoryItem(parent);
         items.add(item);
-        if (retrieveL1 || retrieveCommit || lastInList) {
+        final L1 unsaved = unsavedL1s.get(parent);
+        if (unsaved != null) {
+          item.l1 = unsaved;
+        } else if (retrieveL1 || retrieveCommit || lastInList) {
           loadOps.add(new LoadOp<L1>(ValueType.L1, parent, l1 -> item.l1 = l1));
         }
 
@@ -170,9 +288,7 @@ class HistoryRetriever {
       }
 
       if (items.isEmpty()) {
-        currentIterator = Collections.emptyIterator();
-        isLast = true;
-        return;
+        return Page.END;
       }
 
       store.load(new LoadStep(loadOps, () -> {
@@ -182,41 +298,162 @@ class HistoryRetriever {
 
         return Optional.of(new LoadStep(secondOps.stream().map(Supplier::get).collect(ImmutableList.toImmutableList())));
       }));
-      currentIterator = items.iterator();
+      return new Page(items, isLast);
     }
 
   }
 
-  public static Id findCommonParent(Store store, L1 head1, L1 head2, int maxDepth) {
-    Iterator<Id> r1 = new HistoryRetriever(store, head1, Id.EMPTY, false, false, true).getStream().map(HistoryItem::getId).iterator();
-    Iterator<Id> r2 = new HistoryRetriever(store, head2, Id.EMPTY, false, false, true).getStream().map(HistoryItem::getId).iterator();
-    Set<Id> r1Set = new LinkedHashSet<>();
-    Set<Id> r2Set = new LinkedHashSet<>();
-    int remainingDepth = maxDepth;
-    while (remainingDepth > 0) {
-      int page = Math.min(remainingDepth, ParentList.MAX_PARENT_LIST_SIZE);
-      addNextPage(r1, r1Set, page);
-      addNextPage(r2, r2Set, page);
-      remainingDepth -= page;
-      Optional<Id> id = r1Set.stream().filter(r2Set::contains).findFirst();
-      if (id.isPresent()) {
-        return id.get();
+  /**
+   * Find the most recent common ancestor of two L1s.
+   *
+   * <p>If the generations of both L1s are known, the later one is first moved back to the generation of the other one
+   * using its skip list. Both are then moved back together by the largest skip whose targets still differ, until their
+   * parent lists, which are aligned as both are of the same generation, share an entry. This needs a number of loads
+   * that is logarithmic in the distance to the common ancestor. The ancestors of the first commits written on top of a
+   * legacy head have no skip list, those are moved back by a whole parent list at a time. L1s of unknown generation are
+   * walked back one by one until the histories meet.
+   */
+  public static Id findCommonParent(Store store, L1 head1, L1 head2) throws ReferenceNotFoundException {
+    if (!head1.getSkipList().isKnown() || !head2.getSkipList().isKnown()) {
+      return walkToCommonParent(store, head1, head2);
+    }
+
+    final long generation = Math.min(head1.getSkipList().getGeneration(), head2.getSkipList().getGeneration());
+    L1 l1 = moveBackTo(store, head1, generation);
+    L1 l2 = moveBackTo(store, head2, generation);
+    while (!l1.getId().equals(l2.getId())) {
+      List<Id> parents1 = l1.getParentList().getParents();
+      List<Id> parents2 = l2.getParentList().getParents();
+      Optional<Id> shared = findSharedParent(parents1, parents2);
+      if (shared.isPresent()) {
+        return shared.get();
+      }
+
+      SkipList skips1 = l1.getSkipList();
+      SkipList skips2 = l2.getSkipList();
+      int level = Math.min(skips1.getMaxLevel(), skips2.getMaxLevel());
+      while (level > 0 && skips1.getPointer(level).equals(skips2.getPointer(level))) {
+        level--;
       }
 
-      if (!r1.hasNext() && !r2.hasNext()) {
-        break;
+      Pointer<L1> next1 = new Pointer<>();
+      Pointer<L1> next2 = new Pointer<>();
+      List<LoadOp<?>> loadOps = new ArrayList<>();
+      if (level > 0) {
+        addLoad(loadOps, skips1.getPointer(level), next1);
+        addLoad(loadOps, skips2.getPointer(level), next2);
+      } else {
+        // none of the aligned parents are shared, so move both back to the oldest of them.
+        int distance = alignedParents(parents1, parents2);
+        addLoad(loadOps, parents1.get(distance - 1), next1);
+        addLoad(loadOps, parents2.get(distance - 1), next2);
+      }
+      store.load(new LoadStep(loadOps));
+      l1 = next1.get();
+      l2 = next2.get();
+    }
+    return l1.getId();
+  }
+
+  /**
+   * Move an L1 of known generation back to one of its ancestors.
+   */
+  private static L1 moveBackTo(Store store, L1 l1, long generation) {
+    long current = l1.getSkipList().getGeneration();
+    while (current > generation) {
+      final SkipList skips = l1.getSkipList();
+      final List<Id> parents = l1.getParentList().getParents();
+      final long distance = current - generation;
+      final Id next;
+      if (distance <= parents.size()) {
+        next = parents.get((int) distance - 1);
+        current = generation;
+      } else if (skips.isKnown() && skips.getPointerGeneration(1) >= generation) {
+        int level = skips.getMaxLevel();
+        while (level > 1 && skips.getPointerGeneration(level) < generation) {
+          level--;
+        }
+        next = skips.getPointer(level);
+        current = skips.getPointerGeneration(level);
+      } else {
+        // the L1s written before skip lists were introduced are only linked by their parent lists.
+        next = parents.get(parents.size() - 1);
+        current -= parents.size();
+      }
+      l1 = next.equals(L1.EMPTY_ID) ? L1.EMPTY : store.loadSingle(ValueType.L1, next);
+    }
+    return l1;
+  }
+
+  private static void addLoad(List<LoadOp<?>> loadOps, Id id, Pointer<L1> pointer) {
+    if (id.equals(L1.EMPTY_ID)) {
+      pointer.set(L1.EMPTY);
+    } else {
+      loadOps.add(new LoadOp<L1>(ValueType.L1, id, pointer::set));
+    }
+  }
+
+  /**
+   * Find the first entry shared by the parent lists of two L1s of the same generation.
+   */
+  private static Optional<Id> findSharedParent(List<Id> parents1, List<Id> parents2) {
+    for (int i = 0; i < alignedParents(parents1, parents2); i++) {
+      Id parent = parents1.get(i);
+      if (parent.equals(parents2.get(i))) {
+        return Optional.of(parent);
       }
     }
+    return Optional.empty();
+  }
+
+  /**
+   * The number of entries of the parent lists of two L1s of the same generation that refer to ancestors.
+   */
+  private static int alignedParents(List<Id> parents1, List<Id> parents2) {
+    int size = Math.min(parents1.size(), parents2.size());
+    while (size > 0 && parents1.get(size - 1).isEmpty()) {
+      size--;
+    }
+    return size;
+  }
 
-    throw new IllegalStateException(
-        String.format("Unable to find common parent within specified history depth. "
-            + "The maximum number of items allowed is %d.", maxDepth));
+  /**
+   * Derive the skip list of an L1 of unknown generation. This walks the whole history of the L1, so it is only done once
+   * per legacy head: the commits added on top of it inherit the derived skip list.
+   */
+  static SkipList deriveSkipList(Store store, L1 l1) {
+    return SkipList.fromHistory(new HistoryRetriever(store, l1, Id.EMPTY, false, false, true).getStream()
+        .map(HistoryItem::getId)
+        .collect(Collectors.toList()));
   }
 
-  private static <T> void addNextPage(Iterator<T> input, Collection<T> consumer, int count) {
-    while (input.hasNext() && count > 0) {
-      consumer.add(input.next());
-      count--;
+  /**
+   * Walk both histories in lockstep until an L1 is reached from both. As the walks pass the common ancestor before any
+   * of its parents, the first L1 reached from both is the most recent common ancestor.
+   */
+  private static Id walkToCommonParent(Store store, L1 head1, L1 head2) {
+    Iterator<Id> r1 = new HistoryRetriever(store, head1, Id.EMPTY, false, false, true).getStream().map(HistoryItem::getId).iterator();
+    Iterator<Id> r2 = new HistoryRetriever(store, head2, Id.EMPTY, false, false, true).getStream().map(HistoryItem::getId).iterator();
+    Set<Id> r1Set = new HashSet<>();
+    Set<Id> r2Set = new HashSet<>();
+    while (r1.hasNext() || r2.hasNext()) {
+      if (r1.hasNext()) {
+        Id id = r1.next();
+        if (r2Set.contains(id)) {
+          return id;
+        }
+        r1Set.add(id);
+      }
+
+      if (r2.hasNext()) {
+        Id id = r2.next();
+        if (r1Set.contains(id)) {
+          return id;
+        }
+        r2Set.add(id);
+      }
     }
+
+    throw new IllegalStateException("Unable to find common parent, the histories are unrelated.");
   }
 }
@@ -15,27 +15,53 @@
  */
 package com.dremio.nessie.versioned.impl;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import com.dremio.nessie.versioned.store.Entity;
+import com.dremio.nessie.versioned.store.Entity.EntityType;
 import com.dremio.nessie.versioned.store.Id;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterators;
+import com.google.common.hash.Hasher;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 
 /**
  * Maintains a map of positions to ids. The map is immutable. Each operation, generates a new map. All maps keep track
  * of their original state so one can see what items changed over time.
+ *
+ * <p>The original and current ids are kept in flat byte arrays, {@link Id#LENGTH} bytes per position, along with a set
+ * of the positions whose id differs from the original one. Arrays are never modified once a map has been created, so
+ * maps share them freely. Ids are decoded from the arrays on access, which doesn't copy any byte buffers.
+ *
+ * <p>Maps can be serialized in two formats. The list format stores each id as a separate binary value and must be used
+ * where individual positions are updated in place by the store (the tree of a branch). The packed format stores all ids
+ * in a single binary value, preceded by a format version byte.
  */
 class IdMap implements Iterable<Id> {
 
-  private final PositionDelta[] deltas;
+  private static final byte PACKED_FORMAT_VERSION = 1;
 
-  private IdMap(PositionDelta[] deltas) {
-    this.deltas = deltas;
+  private final int size;
+  private final byte[] oldIds;
+  private final byte[] newIds;
+  private final BitSet dirty;
+
+  private IdMap(int size, byte[] oldIds, byte[] newIds, BitSet dirty) {
+    this.size = size;
+    this.oldIds = oldIds;
+    this.newIds = newIds;
+    this.dirty = dirty;
+  }
+
+  private IdMap(byte[] ids) {
+    this(ids.length / Id.LENGTH, ids, ids, new BitSet());
   }
 
   IdMap(int size) {
@@ -43,19 +69,46 @@ class IdMap implements Iterable<Id> {
   }
 
   IdMap(int size, Id fill) {
-    deltas = new PositionDelta[size];
+    this(filled(size, fill));
+  }
+
+  private static byte[] filled(int size, Id fill) {
+    byte[] ids = new byte[size * Id.LENGTH];
     for (int i = 0; i < size; i++) {
-      deltas[i] = PositionDelta.builder().oldId(fill).newId(fill).position(i).build();
+      fill.copyTo(ids, i * Id.LENGTH);
     }
+    return ids;
   }
 
   public Id getId(int position) {
     check(position);
-    return deltas[position].getNewId();
+    return Id.of(newIds, position * Id.LENGTH);
+  }
+
+  /**
+   * Whether this map and another map hold the same id at a position. Unlike comparing the results of
+   * {@link #getId(int)}, this doesn't allocate.
+   */
+  boolean isSameId(int position, IdMap other) {
+    check(position);
+    other.check(position);
+    return regionEquals(newIds, other.newIds, position * Id.LENGTH);
+  }
+
+  private static boolean regionEquals(byte[] a, byte[] b, int offset) {
+    if (a == b) {
+      return true;
+    }
+    for (int i = offset; i < offset + Id.LENGTH; i++) {
+      if (a[i] != b[i]) {
+        return false;
+      }
+    }
+    return true;
   }
 
   private void check(int position) {
-    Preconditions.checkPositionIndex(position, deltas.length);
+    Preconditions.checkElementIndex(position, size);
   }
 
   /**
@@ -66,19 +119,34 @@ class IdMap implements Iterable<Id> {
    */
   public IdMap withId(int position, Id newId) {
     check(position);
-    PositionDelta[] newDeltas = new PositionDelta[deltas.length];
-    System.arraycopy(deltas, 0, newDeltas, 0, deltas.length);
-    newDeltas[position] = PositionDelta.builder().from(newDeltas[position]).newId(newId).build();
-    return new IdMap(newDeltas);
+    if (newId.equalsBytes(newIds, position * Id.LENGTH)) {
+      return this;
+    }
+    return edit().set(position, newId).build();
+  }
+
+  /**
+   * Start a batch of updates. Updates are applied to a single copy of this map's ids, which is cheaper than creating an
+   * intermediate map per update.
+   */
+  Editor edit() {
+    return new Editor(this);
   }
 
   public int size() {
-    return deltas.length;
+    return size;
   }
 
   @Override
   public Iterator<Id> iterator() {
-    return Iterators.unmodifiableIterator(Arrays.stream(deltas).map(PositionDelta::getNewId).iterator());
+    return IntStream.range(0, size).mapToObj(this::getId).iterator();
+  }
+
+  /**
+   * Feed the ids of this map into a hasher, in position order.
+   */
+  void addToHash(Hasher hasher) {
+    hasher.putBytes(newIds);
   }
 
   /**
@@ -86,36 +154,82 @@ class IdMap implements Iterable<Id> {
    * @return A list of positions that have been mutated from the base tree.
    */
   List<PositionDelta> getChanges() {
-    return Arrays.stream(deltas).filter(PositionDelta::isDirty).collect(Collectors.toList());
+    if (dirty.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    List<PositionDelta> changes = new ArrayList<>(dirty.cardinality());
+    for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+      changes.add(PositionDelta.builder()
+          .position(i)
+          .oldId(Id.of(oldIds, i * Id.LENGTH))
+          .newId(getId(i))
+          .build());
+    }
+    return changes;
   }
 
+  /**
+   * Serialize this map as a list with one binary value per position.
+   */
   Entity toEntity() {
-    return Entity.ofList(Arrays.stream(deltas).map(p -> p.getNewId().toEntity()).collect(ImmutableList.toImmutableList()));
+    return Entity.ofList(IntStream.range(0, size).mapToObj(i -> getId(i).toEntity()).collect(ImmutableList.toImmutableList()));
   }
 
   /**
-   * Deserialize a map from a given input value.
+   * Serialize this map as a single binary value.
+   */
+  Entity toPackedEntity() {
+    return Entity.ofBinary(toPacked());
+  }
+
+  ByteString toPacked() {
+    byte[] bytes = new byte[1 + newIds.length];
+    bytes[0] = PACKED_FORMAT_VERSION;
+    System.arraycopy(newIds, 0, bytes, 1, newIds.length);
+    return UnsafeByteOperations.unsafeWrap(bytes);
+  }
+
+  /**
+   * Deserialize a map from a given input value. Both the list and the packed format are accepted.
    * @param value The value to deserialize.
    * @param size The expected size of the map to be loaded.
    * @return The deserialized map.
    */
   public static IdMap fromEntity(Entity value, int size) {
-    PositionDelta[] deltas = new PositionDelta[size];
+    if (value.getType() == EntityType.BINARY) {
+      return fromPacked(value.getBinary(), size);
+    }
+
     List<Entity> items = value.getList();
     Preconditions.checkArgument(items.size() == size, "Expected size %s but actual size was %s.", size, items.size());
 
+    byte[] ids = new byte[size * Id.LENGTH];
     int i = 0;
     for (Entity v : items) {
-      deltas[i] = PositionDelta.of(i, Id.fromEntity(v));
+      Id.fromEntity(v).copyTo(ids, i * Id.LENGTH);
       i++;
     }
 
-    return new IdMap(deltas);
+    return new IdMap(ids);
   }
 
+  private static IdMap fromPacked(ByteString bytes, int size) {
+    Preconditions.checkArgument(!bytes.isEmpty() && bytes.byteAt(0) == PACKED_FORMAT_VERSION,
+        "Unsupported id map format.");
+    int actual = (bytes.size() - 1) / Id.LENGTH;
+    Preconditions.checkArgument(actual == size && (bytes.size() - 1) % Id.LENGTH == 0,
+        "Expected size %s but actual size was %s.", size, actual);
+    return new IdMap(bytes.substring(1).toByteArray());
+  }
+
+  /**
+   * Maps are equal when they hold the same ids. As with the old id of a {@link PositionDelta}, which is auxiliary, the
+   * ids a map started from are not part of its identity, so a modified map equals the map it is stored and reloaded as.
+   */
   @Override
   public int hashCode() {
-    return Arrays.hashCode(deltas);
+    return Arrays.hashCode(newIds);
   }
 
   @Override
@@ -127,7 +241,36 @@ class IdMap implements Iterable<Id> {
       return false;
     }
     IdMap other = (IdMap) obj;
-    return Arrays.equals(deltas, other.deltas);
+    return Arrays.equals(newIds, other.newIds);
   }
 
+  /**
+   * A batch of updates to a map. The updates are applied to a private copy of the ids until {@link #build()} is called.
+   */
+  static class Editor {
+    private final IdMap base;
+    private final byte[] newIds;
+    private final BitSet dirty;
+    private boolean built;
+
+    private Editor(IdMap base) {
+      this.base = base;
+      this.newIds = base.newIds.clone();
+      this.dirty = (BitSet) base.dirty.clone();
+    }
+
+    Editor set(int position, Id id) {
+      Preconditions.checkState(!built, "Editor has already been built.");
+      base.check(position);
+      int offset = position * Id.LENGTH;
+      id.copyTo(newIds, offset);
+      dirty.set(position, !regionEquals(base.oldIds, newIds, offset));
+      return this;
+    }
+
+    IdMap build() {
+      built = true;
+      return new IdMap(base.size, base.oldIds, newIds, dirty);
+    }
+  }
 }
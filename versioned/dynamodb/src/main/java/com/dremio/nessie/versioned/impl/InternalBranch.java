@@ -20,10 +20,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionException;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -44,7 +40,6 @@ import com.dremio.nessie.versioned.store.SimpleSchema;
 import com.dremio.nessie.versioned.store.Store;
 import com.dremio.nessie.versioned.store.ValueType;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
@@ -155,6 +150,22 @@ class InternalBranch extends MemoizedId implements InternalRef {
     return name;
   }
 
+  /**
+   * The number of entries in the commit log, including the last saved commit.
+   */
+  int getCommitLogLength() {
+    return commits.size();
+  }
+
+  /**
+   * The id of the L1 this branch points to, if it is known without building the branch's state. This is the case when
+   * the last commit in the log has been saved.
+   */
+  Optional<Id> getSavedHead() {
+    Commit last = commits.get(commits.size() - 1);
+    return last.saved ? Optional.of(last.id) : Optional.empty();
+  }
+
   public static final class Commit {
 
     static final String ID = "id";
@@ -162,6 +173,7 @@ class InternalBranch extends MemoizedId implements InternalRef {
     static final String DELTAS = "deltas";
     static final String PARENT = "parent";
     static final String KEY_MUTATIONS = "keys";
+    static final String CHANGED_KEYS = "changed";
 
     private final Boolean saved;
     private final Id id;
@@ -169,6 +181,7 @@ class InternalBranch extends MemoizedId implements InternalRef {
     private final Id parent;
     private final List<UnsavedDelta> deltas;
     private final KeyMutationList keyMutationList;
+    private final KeyFilter changedKeys;
 
     public Commit(Id id, Id commit, Id parent) {
       this.id = id;
@@ -177,18 +190,32 @@ class InternalBranch extends MemoizedId implements InternalRef {
       this.saved = true;
       this.deltas = Collections.emptyList();
       this.keyMutationList = null;
+      this.changedKeys = null;
     }
 
-    public Commit(Id unsavedId, Id commit, List<UnsavedDelta> deltas, KeyMutationList keyMutationList) {
+    /**
+     * Create an unsaved commit.
+     * @param unsavedId The random id of the commit within the commit log.
+     * @param commit The id of the commit metadata.
+     * @param deltas The changes to the tree.
+     * @param keyMutationList The keys that were added or removed.
+     * @param changedKeys A filter of the keys whose values were changed, including added and removed keys.
+     */
+    public Commit(Id unsavedId, Id commit, List<UnsavedDelta> deltas, KeyMutationList keyMutationList, KeyFilter changedKeys) {
       super();
       this.saved = false;
       this.deltas = ImmutableList.copyOf(Preconditions.checkNotNull(deltas));
       this.commit = Preconditions.checkNotNull(commit);
       this.parent = null;
       this.keyMutationList = Preconditions.checkNotNull(keyMutationList);
+      this.changedKeys = Preconditions.checkNotNull(changedKeys);
       this.id = Preconditions.checkNotNull(unsavedId);
     }
 
+    List<UnsavedDelta> getDeltas() {
+      return deltas;
+    }
+
     Id getParent() {
       Preconditions.checkArgument(saved, "Can only retrieve parent on saved commits.");
       return parent;
@@ -224,7 +251,8 @@ class InternalBranch extends MemoizedId implements InternalRef {
             Id.fromEntity(map.get(ID)),
             Id.fromEntity(map.get(COMMIT)),
             deltas,
-            KeyMutationList.fromEntity(map.get(KEY_MUTATIONS))
+            KeyMutationList.fromEntity(map.get(KEY_MUTATIONS)),
+            map.containsKey(CHANGED_KEYS) ? KeyFilter.fromEntity(map.get(CHANGED_KEYS)) : KeyFilter.ALL
             );
 
       }
@@ -246,6 +274,9 @@ class InternalBranch extends MemoizedId implements InternalRef {
                   ).collect(Collectors.toList()));
           builder.put(DELTAS, deltas);
           builder.put(KEY_MUTATIONS, item.keyMutationList.toEntity());
+          if (!item.changedKeys.isAll()) {
+            builder.put(CHANGED_KEYS, item.changedKeys.toEntity());
+          }
         }
         return builder.build();
       }
@@ -257,6 +288,22 @@ class InternalBranch extends MemoizedId implements InternalRef {
    * @return
    */
   public UpdateState getUpdateState(Store store)  {
+    return buildState(store, false);
+  }
+
+  /**
+   * Build the current state of this branch in memory for readers.
+   *
+   * <p>Unlike {@link #getUpdateState(Store)}, this never writes to the store: no key list checkpoints are generated (they
+   * don't affect L1 ids) and the returned state can't be used to save the pending L1s. Persisting the pending L1s and
+   * collapsing the commit log is left to writers.
+   * @return The read only state of the branch.
+   */
+  UpdateState getReadState(Store store) {
+    return buildState(store, true);
+  }
+
+  private UpdateState buildState(Store store, boolean readOnly) {
     // generate sublist of important commits.
     List<Commit> unsavedCommits = new ArrayList<>();
     Commit lastSavedCommit = null;
@@ -291,15 +338,22 @@ class InternalBranch extends MemoizedId implements InternalRef {
     L1 lastSavedL1 = lastSavedCommit.id.isEmpty() ? L1.EMPTY : store.loadSingle(ValueType.L1, lastSavedCommit.id);
 
     if (unsavedCommits.isEmpty()) {
-      return new UpdateState(Collections.emptyList(), deletes, lastSavedL1, 0, lastSavedL1.getId(), this);
+      return new UpdateState(Collections.emptyList(), deletes, lastSavedL1, 0, lastSavedL1.getId(), this, readOnly);
+    }
+
+    if (!readOnly && !lastSavedL1.getSkipList().isKnown()) {
+      // the head was written before skip lists were introduced, derive one so that the new commits get one as well.
+      lastSavedL1 = lastSavedL1.withSkipList(HistoryRetriever.deriveSkipList(store, lastSavedL1));
     }
 
     // first we rewind the tree to the original state
+    IdMap.Editor rewind = tree.edit();
     for (Commit c : Lists.reverse(unsavedCommits)) {
       for (UnsavedDelta delta : c.deltas) {
-        tree = delta.reverse(tree);
+        delta.reverse(rewind);
       }
     }
+    tree = rewind.build();
 
     L1 lastL1 = lastSavedL1;
     int lastPos = unsavedStartOffset;
@@ -307,11 +361,15 @@ class InternalBranch extends MemoizedId implements InternalRef {
     final List<SaveOp<?>> toSave = new ArrayList<>();
 
     for (Commit c : unsavedCommits) {
+      IdMap.Editor replay = tree.edit();
       for (UnsavedDelta delta : c.deltas) {
-        tree = delta.apply(tree);
+        delta.apply(replay);
+      }
+      tree = replay.build();
+      lastL1 = lastL1.getChildWithTree(c.commit, tree, c.keyMutationList, c.changedKeys);
+      if (!readOnly) {
+        lastL1 = lastL1.withCheckpointAsNecessary(store);
       }
-      lastL1 = lastL1.getChildWithTree(c.commit, tree, c.keyMutationList)
-          .withCheckpointAsNecessary(store);
       toSave.add(new SaveOp<L1>(ValueType.L1, lastL1));
       lastId = c.id;
       if (lastUnsaved != c) {
@@ -322,7 +380,7 @@ class InternalBranch extends MemoizedId implements InternalRef {
 
     // now we should have the same tree as we originally did.
     assert tree.equals(this.tree);
-    return new UpdateState(toSave, deletes, lastL1, lastPos, lastId, this);
+    return new UpdateState(toSave, deletes, lastL1, lastPos, lastId, this, readOnly);
   }
 
   static final class UpdateState {
@@ -333,6 +391,7 @@ class InternalBranch extends MemoizedId implements InternalRef {
     private final int finalL1position;
     private final Id finalL1RandomId;
     private final InternalBranch initialBranch;
+    private final boolean readOnly;
 
     private UpdateState(
         List<SaveOp<?>> saves,
@@ -340,8 +399,10 @@ class InternalBranch extends MemoizedId implements InternalRef {
         L1 finalL1,
         int finalL1position,
         Id finalL1RandomId,
-        InternalBranch initialBranch) {
+        InternalBranch initialBranch,
+        boolean readOnly) {
       super();
+      this.readOnly = readOnly;
       this.saves = Preconditions.checkNotNull(saves);
       this.deletes = Preconditions.checkNotNull(deletes);
       this.finalL1 = Preconditions.checkNotNull(finalL1);
@@ -354,48 +415,35 @@ class InternalBranch extends MemoizedId implements InternalRef {
     }
 
     /**
-     * Ensure that all l1s to save are available. Returns once the L1s reference in this object are available for
-     * reference. Before returning, will also submit a separate thread to the provided executor that will attempt to
-     * clean up the existing commit log. Once the log is cleaned up, the returned CompletableFuture will return a cleaned InternalBranch.
+     * Ensure that all l1s to save are available. Returns once the L1s referenced in this object are available for
+     * reference. The commit log is not cleaned up, use {@link #collapse(Store, int)} or a {@link CollapseScheduler} for that.
      *
      * @param store The store to save to.
-     * @param executor The executor to do any necessary clean up of the commit log.
-     * @param attempts The number of times we'll attempt to clean up the commit log.
-     * @param waitOnCollapse Whether or not the operation should wait on the final operation of collapsing the commit log succesfully
-     *        before returning/failing. If false, the final collapse will be done in a separate thread.
-     * @return
      */
-    @SuppressWarnings("unchecked")
-    CompletableFuture<InternalBranch> ensureAvailable(Store store, Executor executor, int attempts, boolean waitOnCollapse) {
-      if (saves.isEmpty()) {
-        saved = true;
-        return CompletableFuture.completedFuture(initialBranch);
+    void ensureSaved(Store store) {
+      Preconditions.checkState(!readOnly, "A read only branch state can't be persisted.");
+      if (!saved && !saves.isEmpty()) {
+        store.save(saves);
       }
-
-      store.save(saves);
       saved = true;
+    }
 
-      CompletableFuture<InternalBranch> future = CompletableFuture.supplyAsync(() -> {
-        try {
-          return collapseIntentionLog(this, store, initialBranch, attempts);
-        } catch (ReferenceNotFoundException | ReferenceConflictException e) {
-          throw new CompletionException(e);
-        }
-      }, executor);
-
-      if (!waitOnCollapse) {
-        return future;
-      }
-
-      try {
-        future.get();
-      } catch (InterruptedException e) {
-        throw new RuntimeException(e);
-      } catch (ExecutionException e) {
-        Throwables.throwIfUnchecked(e.getCause());
-        throw new IllegalStateException(e.getCause());
+    /**
+     * Save the L1s of this state and clean up the commit log of the branch.
+     *
+     * @param store The store to save to.
+     * @param attempts The number of times we'll attempt to clean up the commit log.
+     * @return The cleaned branch.
+     * @throws ReferenceNotFoundException when branch does not exist.
+     * @throws ReferenceConflictException If the log can't be cleaned due to heavy concurrency.
+     */
+    InternalBranch collapse(Store store, int attempts) throws ReferenceNotFoundException, ReferenceConflictException {
+      ensureSaved(store);
+      if (initialBranch.commits.size() == 1 && initialBranch.commits.get(0).saved) {
+        // nothing to clean up.
+        return initialBranch;
       }
-      return future;
+      return collapseIntentionLog(this, store, initialBranch, attempts);
     }
 
     /**
@@ -421,7 +469,8 @@ class InternalBranch extends MemoizedId implements InternalRef {
         for (int attempt = 0; attempt < attempts; attempt++) {
 
           // cleanup pending updates.
-          UpdateState updateState = attempts == 0 ? initialState : branch.getUpdateState(store);
+          UpdateState updateState = attempt == 0 ? initialState : branch.getUpdateState(store);
+          updateState.ensureSaved(store);
 
           // now we need to take the current list and turn it into a list of 1 item that is saved.
           final ExpressionPath commits = ExpressionPath.builder("commits").build();
@@ -467,9 +516,27 @@ class InternalBranch extends MemoizedId implements InternalRef {
       throw new ReferenceConflictException(String.format("Unable to collapse intention log after %d attempts, giving up.", attempts));
     }
 
+    InternalBranch getBranch() {
+      return initialBranch;
+    }
+
+    /**
+     * Whether this state includes L1s that are not yet known to be saved and a commit log that needs collapsing.
+     */
+    boolean hasUnsavedL1s() {
+      return !saves.isEmpty();
+    }
+
+    /**
+     * The L1s that were built from the unsaved commits, keyed by id. For read only states, these may not exist in the store.
+     */
+    Map<Id, L1> getUnsavedL1s() {
+      return saves.stream().map(s -> (L1) s.getValue()).collect(ImmutableMap.toImmutableMap(L1::getId, l1 -> l1, (a, b) -> a));
+    }
+
     public L1 getL1() {
-      Preconditions.checkArgument(saved,
-          "You must call UpdateState.ensureAvailable() before attempting to retrieve the L1 state of this branch.");
+      Preconditions.checkArgument(saved || readOnly,
+          "You must call UpdateState.ensureSaved() before attempting to retrieve the L1 state of this branch.");
       return finalL1;
     }
   }
@@ -502,14 +569,26 @@ class InternalBranch extends MemoizedId implements InternalRef {
       this.newId = newId;
     }
 
+    int getPosition() {
+      return position;
+    }
+
     public IdMap apply(IdMap tree) {
       return tree.withId(position, newId);
     }
 
+    void apply(IdMap.Editor tree) {
+      tree.set(position, newId);
+    }
+
     public IdMap reverse(IdMap tree) {
       return tree.withId(position,  oldId);
     }
 
+    void reverse(IdMap.Editor tree) {
+      tree.set(position, oldId);
+    }
+
     static final SimpleSchema<UnsavedDelta> SCHEMA = new SimpleSchema<UnsavedDelta>(UnsavedDelta.class) {
 
       @Override
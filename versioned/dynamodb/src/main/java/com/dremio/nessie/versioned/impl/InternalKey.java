@@ -16,7 +16,9 @@
 package com.dremio.nessie.versioned.impl;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -33,25 +35,108 @@ import com.google.common.primitives.Ints;
 
 /**
  * A version of key that memoizes the id of the key according to sha256 hashing.
+ *
+ * <p>Keys are case insensitive. On construction, the elements of the key are lower cased and encoded as UTF-8 into a
+ * single array (the normalized form). Equality, hashing and ordering all work on the normalized form: equal keys have
+ * equal normalized forms, and keys are ordered by comparing their elements byte by byte.
  */
 class InternalKey implements Comparable<InternalKey>, HasId {
 
   private final Key delegate;
+  // the lower cased elements encoded as UTF-8, without separators.
+  private final byte[] normalized;
+  // the offset in normalized at which each element ends.
+  private final int[] ends;
+  private final long hash;
   private final Supplier<Id> idMemo = Suppliers.memoize(() -> Id.build(h -> addToHasher(this, h)));
   private final Supplier<Position> positionMemo = Suppliers.memoize(() -> new Position(idMemo));
 
   public InternalKey(Key delegate) {
     super();
     this.delegate = delegate;
+
+    List<String> elements = delegate.getElements();
+    byte[][] encoded = new byte[elements.size()][];
+    int length = 0;
+    for (int i = 0; i < encoded.length; i++) {
+      encoded[i] = elements.get(i).toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+      length += encoded[i].length;
+    }
+
+    this.normalized = new byte[length];
+    this.ends = new int[encoded.length];
+    int offset = 0;
+    for (int i = 0; i < encoded.length; i++) {
+      System.arraycopy(encoded[i], 0, normalized, offset, encoded[i].length);
+      offset += encoded[i].length;
+      ends[i] = offset;
+    }
+
+    Hasher hasher = Hashing.murmur3_128().newHasher().putBytes(normalized);
+    for (int end : ends) {
+      hasher.putInt(end);
+    }
+    this.hash = hasher.hash().asLong();
   }
 
   public InternalKey(List<String> elements) {
-    this.delegate = ImmutableKey.builder().addAllElements(elements).build();
+    this(ImmutableKey.builder().addAllElements(elements).build());
   }
 
   @Override
   public int compareTo(InternalKey o) {
-    return delegate.compareTo(o.delegate);
+    int start = 0;
+    int otherStart = 0;
+    int max = Math.min(ends.length, o.ends.length);
+    for (int i = 0; i < max; i++) {
+      int cmp = compareUnsigned(normalized, start, ends[i], o.normalized, otherStart, o.ends[i]);
+      if (cmp != 0) {
+        return cmp;
+      }
+      start = ends[i];
+      otherStart = o.ends[i];
+    }
+    return ends.length - o.ends.length;
+  }
+
+  /**
+   * Estimate the size of this key once serialized, in bytes.
+   */
+  int estimateSize() {
+    return normalized.length + ends.length;
+  }
+
+  /**
+   * Whether this key lies within a namespace, that is whether the namespace's elements are equal to the leading elements
+   * of this key. A key does not lie within itself.
+   */
+  boolean isWithin(InternalKey namespace) {
+    if (ends.length <= namespace.ends.length) {
+      return false;
+    }
+    for (int i = 0; i < namespace.ends.length; i++) {
+      if (ends[i] != namespace.ends[i]) {
+        return false;
+      }
+    }
+    // all element boundaries match, so the elements are equal if the leading bytes are.
+    for (int i = 0; i < namespace.normalized.length; i++) {
+      if (normalized[i] != namespace.normalized[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int compareUnsigned(byte[] left, int leftFrom, int leftTo, byte[] right, int rightFrom, int rightTo) {
+    int length = Math.min(leftTo - leftFrom, rightTo - rightFrom);
+    for (int i = 0; i < length; i++) {
+      int cmp = Integer.compare(left[leftFrom + i] & 0xff, right[rightFrom + i] & 0xff);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return (leftTo - leftFrom) - (rightTo - rightFrom);
   }
 
   @Override
@@ -89,28 +174,36 @@ class InternalKey implements Comparable<InternalKey>, HasId {
     return delegate;
   }
 
+  /**
+   * The 64 bit hash of the normalized form. This hash is persisted (see {@link KeyFilter}) so it must not change.
+   */
+  long getHash() {
+    return hash;
+  }
+
   @Override
   public int hashCode() {
-    return addToHasher(this, Hashing.murmur3_32().newHasher()).hash().asInt();
+    return (int) (hash ^ (hash >>> 32));
   }
 
   @Override
   public boolean equals(Object obj) {
-    if (obj == null) {
-      return false;
+    if (this == obj) {
+      return true;
     }
     if (!(obj instanceof InternalKey)) {
       return false;
     }
     InternalKey other = (InternalKey) obj;
-    List<String> thisLower = delegate.getElements().stream().map(String::toLowerCase).collect(Collectors.toList());
-    List<String> otherLower = other.getElements().stream().map(String::toLowerCase).collect(Collectors.toList());
-    return thisLower.equals(otherLower);
+    return hash == other.hash && Arrays.equals(ends, other.ends) && Arrays.equals(normalized, other.normalized);
   }
 
+  /**
+   * Add the normalized elements of a key to a hasher. The elements are added without separators, as this is how key
+   * ids have always been computed.
+   */
   public static Hasher addToHasher(InternalKey key, Hasher hasher) {
-    key.delegate.getElements().forEach(s -> hasher.putString(s.toLowerCase(), StandardCharsets.UTF_8));
-    return hasher;
+    return hasher.putBytes(key.normalized);
   }
 
   @Override
@@ -128,8 +221,12 @@ class InternalKey implements Comparable<InternalKey>, HasId {
     private final int l2;
 
     private Position(Supplier<Id> idMemo) {
-      this(Integer.remainderUnsigned(Ints.fromByteArray(idMemo.get().getValue().substring(0, 4).toByteArray()), L1.SIZE),
-          Integer.remainderUnsigned(Ints.fromByteArray(idMemo.get().getValue().substring(4, 8).toByteArray()), L2.SIZE));
+      this(idMemo.get().toBytes());
+    }
+
+    private Position(byte[] id) {
+      this(Integer.remainderUnsigned(Ints.fromBytes(id[0], id[1], id[2], id[3]), L1.SIZE),
+          Integer.remainderUnsigned(Ints.fromBytes(id[4], id[5], id[6], id[7]), L2.SIZE));
     }
 
     public Position(int l1, int l2) {
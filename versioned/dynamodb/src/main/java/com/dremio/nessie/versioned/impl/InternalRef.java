@@ -32,6 +32,7 @@ import com.google.common.collect.Maps;
 public interface InternalRef extends HasId {
 
   static final String TYPE = "type";
+  static final String NAME = "name";
 
   public static enum Type {
     BRANCH("b"),
@@ -87,6 +88,10 @@ public interface InternalRef extends HasId {
     throw new IllegalArgumentException(String.format("%s cannot be treated as a tag.", this.getClass().getName()));
   }
 
+  default String getName() {
+    throw new IllegalArgumentException(String.format("%s does not have a name.", this.getClass().getName()));
+  }
+
   default Id getHash() {
     throw new IllegalArgumentException(String.format("%s cannot be treated as a hash.", this.getClass().getName()));
   }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.impl;
+
+import java.util.Collection;
+
+import com.dremio.nessie.versioned.store.Entity;
+import com.google.protobuf.ByteString;
+
+/**
+ * A bloom filter of the keys whose values were changed by a commit.
+ *
+ * <p>The filter never misses a changed key but may report keys that were not changed, so it can only be used to rule
+ * out commits. Commits that change too many keys for a small filter, as well as commits written before filters were
+ * introduced, have no filter and might contain any key.
+ */
+final class KeyFilter {
+
+  private static final int BITS_PER_KEY = 10;
+  private static final int HASH_FUNCTIONS = 4;
+  private static final int MIN_BYTES = 8;
+  private static final int MAX_BYTES = 512;
+
+  static final KeyFilter ALL = new KeyFilter(null);
+
+  // null if the filter contains all keys.
+  private final byte[] bits;
+
+  private KeyFilter(byte[] bits) {
+    this.bits = bits;
+  }
+
+  /**
+   * Create a filter of the provided keys.
+   * @param keys The keys that were changed.
+   * @return The filter, which is {@link #ALL} if there are too many keys for a small filter.
+   */
+  static KeyFilter of(Collection<InternalKey> keys) {
+    long size = Math.max(MIN_BYTES, ((long) keys.size() * BITS_PER_KEY + Byte.SIZE - 1) / Byte.SIZE);
+    if (size > MAX_BYTES) {
+      return ALL;
+    }
+
+    byte[] bits = new byte[(int) size];
+    for (InternalKey key : keys) {
+      long hash = key.getHash();
+      for (int i = 0; i < HASH_FUNCTIONS; i++) {
+        int bit = bit(hash, i, bits.length);
+        bits[bit / Byte.SIZE] |= 1 << (bit % Byte.SIZE);
+      }
+    }
+    return new KeyFilter(bits);
+  }
+
+  boolean isAll() {
+    return bits == null;
+  }
+
+  /**
+   * Whether the key might have been changed.
+   * @param key The key to check.
+   * @return false if the key was definitely not changed.
+   */
+  boolean mightContain(InternalKey key) {
+    if (bits == null) {
+      return true;
+    }
+
+    long hash = key.getHash();
+    for (int i = 0; i < HASH_FUNCTIONS; i++) {
+      int bit = bit(hash, i, bits.length);
+      if ((bits[bit / Byte.SIZE] & (1 << (bit % Byte.SIZE))) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Derive the i-th bit of a key from the two halves of its hash (double hashing).
+   */
+  private static int bit(long hash, int i, int length) {
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    return Math.floorMod(h1 + i * h2, length * Byte.SIZE);
+  }
+
+  int estimateSize() {
+    return bits == null ? 0 : bits.length;
+  }
+
+  ByteString toBytes() {
+    return ByteString.copyFrom(bits);
+  }
+
+  static KeyFilter fromBytes(ByteString bytes) {
+    return new KeyFilter(bytes.toByteArray());
+  }
+
+  Entity toEntity() {
+    return Entity.ofBinary(toBytes());
+  }
+
+  static KeyFilter fromEntity(Entity value) {
+    return fromBytes(value.getBinary());
+  }
+
+}
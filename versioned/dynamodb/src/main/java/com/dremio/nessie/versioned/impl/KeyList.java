@@ -17,7 +17,9 @@ package com.dremio.nessie.versioned.impl;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -38,7 +40,9 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Streams;
 import com.google.common.primitives.Ints;
 
 /**
@@ -48,7 +52,7 @@ abstract class KeyList {
 
   private static final String IS_CHECKPOINT = "chk";
 
-  public static final KeyList EMPTY = new CompleteList(Collections.emptyList(), ImmutableList.of());
+  public static final KeyList EMPTY = new CompleteList(Collections.emptyList(), ImmutableList.of(), Collections.emptyList());
 
   static enum Type {
     INCREMENTAL,
@@ -73,11 +77,29 @@ abstract class KeyList {
 
   abstract Stream<InternalKey> getKeys(L1 startingPoint, Store store);
 
+  /**
+   * Get the keys in sorted order, optionally starting after a given key.
+   *
+   * <p>Only the fragments that hold keys after the given key are loaded, and only once the returned stream reaches them.
+   *
+   * @param startingPoint The L1 this key list belongs to.
+   * @param store The store to load fragments and previous L1s from.
+   * @param startAfter If present, only keys that sort after this key are returned.
+   * @return The sorted stream of keys.
+   */
+  abstract Stream<InternalKey> getSortedKeys(L1 startingPoint, Store store, Optional<InternalKey> startAfter);
 
   abstract List<KeyMutation> getMutations();
 
   abstract Entity toEntity();
 
+  /**
+   * Estimate the size of this list once serialized, in bytes.
+   */
+  long estimateSize() {
+    return getMutations().stream().mapToLong(m -> 1 + m.getKey().estimateSize()).sum();
+  }
+
   static KeyList fromEntity(Entity value) {
     if (value.getMap().get(IS_CHECKPOINT).getBoolean()) {
       return CompleteList.fromEntity(value.getMap());
@@ -130,29 +152,51 @@ abstract class KeyList {
 
     @Override
     Stream<InternalKey> getKeys(L1 startingPoint, Store store) {
-      IterResult keys = getKeysIter(startingPoint, store);
-      if (keys.isChanged()) {
-        return keys.keyList;
+      Changes changes = getChanges(startingPoint, store);
+      if (!changes.isChanged()) {
+        return changes.complete.getKeys(startingPoint, store);
       }
 
-      return keys.list.getKeys(startingPoint, store);
+      return Stream.concat(
+          changes.complete.getKeys(startingPoint, store).filter(k -> !changes.removals.contains(k)),
+          changes.adds.stream());
     }
 
-    private CompleteList generateNewCheckpoint(L1 startingPoint, Store store) {
+    @Override
+    Stream<InternalKey> getSortedKeys(L1 startingPoint, Store store, Optional<InternalKey> startAfter) {
+      Changes changes = getChanges(startingPoint, store);
+      Stream<InternalKey> keys = changes.complete.getSortedKeys(startingPoint, store, startAfter);
+      if (!changes.isChanged()) {
+        return keys;
+      }
 
-      IterResult result = getKeysIter(startingPoint, store);
-      if (!result.isChanged()) {
-        return result.list;
+      List<InternalKey> adds = changes.adds.stream()
+          .filter(k -> !startAfter.isPresent() || k.compareTo(startAfter.get()) > 0)
+          .sorted()
+          .collect(Collectors.toList());
+      Iterator<InternalKey> merged = Iterators.mergeSorted(
+          ImmutableList.of(keys.filter(k -> !changes.removals.contains(k)).iterator(), adds.iterator()),
+          Comparator.naturalOrder());
+      return Streams.stream(merged);
+    }
+
+    private CompleteList generateNewCheckpoint(L1 startingPoint, Store store) {
+      Changes changes = getChanges(startingPoint, store);
+      if (!changes.isChanged() && changes.complete.isSorted()) {
+        return changes.complete;
       }
 
-      final KeyAccumulator accum = new KeyAccumulator(store, result.previousFragmentIds);
-      result.keyList.forEach(accum::addKey);
+      final KeyAccumulator accum = new KeyAccumulator(store, ImmutableSet.copyOf(changes.complete.fragmentIds));
+      getSortedKeys(startingPoint, store, Optional.empty()).forEach(accum::addKey);
       accum.close();
 
       return accum.getCompleteList(getMutations());
     }
 
-    private IterResult getKeysIter(L1 startingPoint, Store store) {
+    /**
+     * Load the last checkpoint and the additions and removals of keys since.
+     */
+    private Changes getChanges(L1 startingPoint, Store store) {
       HistoryRetriever retriever = new HistoryRetriever(store, startingPoint, getPreviousCheckpoint(), true, false, true);
       final CompleteList complete;
       // incrementals, from oldest to newest.
@@ -200,15 +244,7 @@ abstract class KeyList {
       }
 
 
-      if (removals.isEmpty() && adds.isEmpty()) {
-        return IterResult.unchanged(complete);
-      }
-
-      return IterResult.changed(
-          complete.fragmentIds.stream().collect(ImmutableSet.toImmutableSet()),
-          Stream.concat(
-              complete.getKeys(startingPoint, store).filter(k -> !removals.contains(k)),
-              adds.stream()));
+      return new Changes(complete, adds, removals);
     }
 
     @Override
@@ -234,28 +270,19 @@ abstract class KeyList {
           .build();
     }
 
-    private static class IterResult {
-      private final CompleteList list;
-      private final Stream<InternalKey> keyList;
-      private final Set<Id> previousFragmentIds;
+    private static class Changes {
+      private final CompleteList complete;
+      private final Set<InternalKey> adds;
+      private final Set<InternalKey> removals;
 
-      private IterResult(CompleteList list, Stream<InternalKey> keyList, Set<Id> previousFragmentIds) {
-        super();
-        this.list = list;
-        this.keyList = keyList;
-        this.previousFragmentIds = previousFragmentIds;
-      }
-
-      public static IterResult unchanged(CompleteList list) {
-        return new IterResult(list, null, null);
-      }
-
-      public static IterResult changed(Set<Id> previousFragmentIds, Stream<InternalKey> keys) {
-        return new IterResult(null, keys, previousFragmentIds);
+      private Changes(CompleteList complete, Set<InternalKey> adds, Set<InternalKey> removals) {
+        this.complete = complete;
+        this.adds = adds;
+        this.removals = removals;
       }
 
       public boolean isChanged() {
-        return keyList != null;
+        return !adds.isEmpty() || !removals.isEmpty();
       }
 
     }
@@ -267,20 +294,36 @@ abstract class KeyList {
    * A complete list is composed as one or more fragments. Each fragment's id is generated by the hashed value of its
    * contents.
    *
-   * <p>Fragments lists are designed to minimize Dynamo record churn. Early fragment lists have the oldest entries.
-   * Whenever a key is added, it is added to the last fragment (or a new fragment if the last fragment is oversized).
-   * As such, over time the early fragments rarely if ever get restated.
+   * <p>Keys are sorted across fragments, so each fragment holds a range of keys. The last key of each fragment is
+   * retained in the list so that a listing can start at any key by only loading the fragments from that key onwards.
+   * Fragment boundaries are chosen based on the keys' hashes rather than on position, so adding or removing a key
+   * usually only restates the fragment holding it rather than all the following ones.
+   *
+   * <p>Lists written before keys were sorted don't have the last keys. Their keys are sorted in memory when needed.
    */
   static class CompleteList extends KeyList {
     private static final String FRAGMENTS = "fragments";
     private static final String MUTATIONS = "mutations";
+    private static final String LAST_KEYS = "last";
 
     private final List<Id> fragmentIds;
     private final List<KeyMutation> mutations;
+    private final List<InternalKey> lastKeys;
 
     public CompleteList(List<Id> fragmentIds, List<KeyMutation> mutations) {
+      this(fragmentIds, mutations, null);
+    }
+
+    CompleteList(List<Id> fragmentIds, List<KeyMutation> mutations, List<InternalKey> lastKeys) {
       this.fragmentIds = Preconditions.checkNotNull(fragmentIds);
       this.mutations = ImmutableList.copyOf(mutations);
+      Preconditions.checkArgument(lastKeys == null || lastKeys.size() == fragmentIds.size(),
+          "Expected one last key per fragment.");
+      this.lastKeys = lastKeys == null ? null : ImmutableList.copyOf(lastKeys);
+    }
+
+    boolean isSorted() {
+      return lastKeys != null;
     }
 
     @Override
@@ -305,20 +348,23 @@ abstract class KeyList {
 
     @Override
     public Entity toEntity() {
-      return Entity.ofMap(ImmutableMap.<String, Entity>of(
-            IS_CHECKPOINT,
-            Entity.ofBoolean(true),
-            FRAGMENTS,
-            Entity.ofList(fragmentIds.stream().map(Id::toEntity).collect(ImmutableList.toImmutableList())),
-            MUTATIONS,
-            Entity.ofList(mutations.stream().map(KeyMutation::toEntity))
-            ));
+      ImmutableMap.Builder<String, Entity> builder = ImmutableMap.<String, Entity>builder()
+          .put(IS_CHECKPOINT, Entity.ofBoolean(true))
+          .put(FRAGMENTS, Entity.ofList(fragmentIds.stream().map(Id::toEntity).collect(ImmutableList.toImmutableList())))
+          .put(MUTATIONS, Entity.ofList(mutations.stream().map(KeyMutation::toEntity)));
+      if (lastKeys != null) {
+        builder.put(LAST_KEYS, Entity.ofList(lastKeys.stream().map(InternalKey::toEntity)));
+      }
+      return Entity.ofMap(builder.build());
     }
 
     static KeyList fromEntity(Map<String, Entity> value) {
       return new CompleteList(
           value.get(FRAGMENTS).getList().stream().map(Id::fromEntity).collect(ImmutableList.toImmutableList()),
-          value.get(MUTATIONS).getList().stream().map(KeyMutation::fromEntity).collect(ImmutableList.toImmutableList()));
+          value.get(MUTATIONS).getList().stream().map(KeyMutation::fromEntity).collect(ImmutableList.toImmutableList()),
+          value.containsKey(LAST_KEYS)
+              ? value.get(LAST_KEYS).getList().stream().map(InternalKey::fromEntity).collect(ImmutableList.toImmutableList())
+              : null);
     }
 
     @Override
@@ -329,15 +375,49 @@ abstract class KeyList {
       });
     }
 
+    @Override
+    Stream<InternalKey> getSortedKeys(L1 startingPoint, Store store, Optional<InternalKey> startAfter) {
+      if (!isSorted()) {
+        Stream<InternalKey> keys = getKeys(startingPoint, store).sorted();
+        return startAfter.map(after -> keys.filter(k -> k.compareTo(after) > 0)).orElse(keys);
+      }
+
+      // the first fragment whose last key is after the requested key holds the first key to return.
+      int first = 0;
+      if (startAfter.isPresent()) {
+        int pos = Collections.binarySearch(lastKeys, startAfter.get());
+        first = pos >= 0 ? pos + 1 : -pos - 1;
+      }
+
+      // load fragments lazily, as the stream is consumed.
+      Iterator<InternalKey> keys = Iterators.concat(Iterators.transform(fragmentIds.subList(first, fragmentIds.size()).iterator(),
+          f -> store.<Fragment>loadSingle(ValueType.KEY_FRAGMENT, f).getKeys().iterator()));
+      Stream<InternalKey> sorted = Streams.stream(keys);
+      return startAfter.map(after -> sorted.filter(k -> k.compareTo(after) > 0)).orElse(sorted);
+    }
+
     @Override
     List<KeyMutation> getMutations() {
       return mutations;
     }
+
+    @Override
+    long estimateSize() {
+      long size = super.estimateSize() + (long) fragmentIds.size() * Id.LENGTH;
+      if (lastKeys != null) {
+        size += lastKeys.stream().mapToLong(InternalKey::estimateSize).sum();
+      }
+      return size;
+    }
   }
 
 
   /**
-   * Accumulates keys until we have enough to fill the ~max DynamoDB record size.
+   * Accumulates sorted keys into fragments.
+   *
+   * <p>A fragment ends after a key whose hash matches {@link #BOUNDARY_MASK} once the fragment holds at least
+   * {@link #MIN_SIZE} bytes of keys, or once it has enough keys to fill the ~max DynamoDB record size. As boundaries
+   * depend on the keys rather than on their position, fragments before and after a changed key are left unchanged.
    *
    * <p>TODO: consider moving this data to S3.
    *
@@ -345,10 +425,14 @@ abstract class KeyList {
    */
   static class KeyAccumulator {
     private static final int MAX_SIZE = 400_000 - 8096;
+    private static final int MIN_SIZE = 16_384;
+    private static final int BOUNDARY_MASK = 0x3FF;
     private Store store;
     private Set<Id> presaved;
     private List<InternalKey> currentList = new ArrayList<>();
     private List<Id> fragmentIds = new ArrayList<>();
+    private List<InternalKey> lastKeys = new ArrayList<>();
+    private InternalKey lastKey;
     private int currentListSize;
 
     public KeyAccumulator(Store store, Set<Id> presaved) {
@@ -357,27 +441,44 @@ abstract class KeyList {
       this.presaved = presaved;
     }
 
+    /**
+     * Add the next key. Keys must be added in sorted order.
+     * @param key The key to add.
+     */
     public void addKey(InternalKey key) {
+      if (lastKey != null) {
+        int cmp = lastKey.compareTo(key);
+        Preconditions.checkArgument(cmp <= 0, "Keys must be added in sorted order.");
+        if (cmp == 0) {
+          return;
+        }
+      }
+      lastKey = key;
       currentList.add(key);
       currentListSize += key.estimatedSize();
 
-      rotate(false);
+      rotate(isBoundary(key));
     }
 
     private void rotate(boolean always) {
       if (!currentList.isEmpty() && (always || aboveThreshold())) {
         Fragment fragment = new Fragment(currentList);
+        lastKeys.add(currentList.get(currentList.size() - 1));
         currentList.clear();
         currentListSize = 0;
         if (!presaved.contains(fragment.getId())) {
           // only save if we didn't save on the last checkpoint. This could still be a dupe of an older list but since the object
           // is hashed, the value will be a simple overwrite of the same data.
           store.save(Collections.singletonList(new SaveOp<HasId>(ValueType.KEY_FRAGMENT, fragment)));
-          fragmentIds.add(fragment.getId());
         }
+        fragmentIds.add(fragment.getId());
       }
     }
 
+    private boolean isBoundary(InternalKey key) {
+      return currentListSize >= MIN_SIZE && (key.hashCode() & BOUNDARY_MASK) == 0;
+    }
+
     private boolean aboveThreshold() {
       if (currentListSize > MAX_SIZE) {
         return true;
@@ -392,7 +493,7 @@ abstract class KeyList {
 
     public CompleteList getCompleteList(List<KeyMutation> mutations) {
       Preconditions.checkArgument(currentList.isEmpty());
-      return new CompleteList(fragmentIds, mutations);
+      return new CompleteList(fragmentIds, mutations, lastKeys);
     }
   }
 
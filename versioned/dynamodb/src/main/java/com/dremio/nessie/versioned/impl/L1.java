@@ -17,8 +17,11 @@ package com.dremio.nessie.versioned.impl;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Stream;
 
+import com.dremio.nessie.versioned.store.AttributeReader;
+import com.dremio.nessie.versioned.store.AttributeWriter;
 import com.dremio.nessie.versioned.store.Entity;
 import com.dremio.nessie.versioned.store.Id;
 import com.dremio.nessie.versioned.store.SimpleSchema;
@@ -30,7 +33,8 @@ public class L1 extends MemoizedId {
   private static final long HASH_SEED = 3506039963025592061L;
 
   public static final int SIZE = 151;
-  public static L1 EMPTY = new L1(Id.EMPTY, new IdMap(SIZE, L2.EMPTY_ID), null, KeyList.EMPTY, ParentList.EMPTY);
+  public static L1 EMPTY = new L1(Id.EMPTY, new IdMap(SIZE, L2.EMPTY_ID), null, KeyList.EMPTY, ParentList.EMPTY, SkipList.EMPTY,
+      KeyFilter.ALL);
   public static Id EMPTY_ID = EMPTY.getId();
 
   private final IdMap tree;
@@ -38,11 +42,15 @@ public class L1 extends MemoizedId {
   private final Id metadataId;
   private final KeyList keyList;
   private final ParentList parentList;
+  private final SkipList skipList;
+  private final KeyFilter changedKeys;
 
-  private L1(Id commitId, IdMap tree, Id id, KeyList keyList, ParentList parentList) {
+  private L1(Id commitId, IdMap tree, Id id, KeyList keyList, ParentList parentList, SkipList skipList, KeyFilter changedKeys) {
     super(id);
     this.metadataId = commitId;
     this.parentList = parentList;
+    this.skipList = skipList;
+    this.changedKeys = changedKeys;
     this.keyList = keyList;
     this.tree = tree;
 
@@ -50,20 +58,36 @@ public class L1 extends MemoizedId {
     assert id == null || id.equals(generateId());
   }
 
-  L1 getChildWithTree(Id metadataId, IdMap tree, KeyMutationList mutations) {
+  L1 getChildWithTree(Id metadataId, IdMap tree, KeyMutationList mutations, KeyFilter changedKeys) {
     KeyList keyList = this.keyList.plus(getId(), mutations.getMutations());
     ParentList parents = this.parentList.cloneWithAdditional(getId());
-    return new L1(metadataId, tree, null, keyList, parents);
+    return new L1(metadataId, tree, null, keyList, parents, skipList.child(getId()), changedKeys);
   }
 
+  /**
+   * Get this L1 with a new key list checkpoint, if the key list has accumulated enough changes to require one.
+   */
   public L1 withCheckpointAsNecessary(Store store) {
-    return keyList.createCheckpointIfNeeded(this, store).map(keylist -> new L1(metadataId, tree, null, keylist, parentList)).orElse(this);
+    return keyList.createCheckpointIfNeeded(this, store)
+        .map(keylist -> new L1(metadataId, tree, null, keylist, parentList, skipList, changedKeys))
+        .orElse(this);
+  }
+
+  /**
+   * Get this L1 with the skip list derived for it, for L1s written before skip lists were introduced.
+   */
+  L1 withSkipList(SkipList skipList) {
+    return new L1(metadataId, tree, null, keyList, parentList, skipList, changedKeys);
   }
 
   Id getId(int position) {
     return tree.getId(position);
   }
 
+  boolean isSameId(int position, L1 other) {
+    return tree.isSameId(position, other.tree);
+  }
+
   Id getMetadataId() {
     return metadataId;
   }
@@ -76,17 +100,34 @@ public class L1 extends MemoizedId {
     return parentList.getParent();
   }
 
+  SkipList getSkipList() {
+    return skipList;
+  }
+
+  /**
+   * The keys whose values were changed by the commit that created this L1 from its parent.
+   */
+  KeyFilter getChangedKeys() {
+    return changedKeys;
+  }
+
   L1 set(int position, Id l2Id) {
-    return new L1(metadataId, tree.withId(position, l2Id), null, keyList, parentList);
+    return new L1(metadataId, tree.withId(position, l2Id), null, keyList, parentList, skipList, changedKeys);
+  }
+
+  L1 set(Map<Integer, Id> l2Ids) {
+    IdMap.Editor editor = tree.edit();
+    l2Ids.forEach(editor::set);
+    return new L1(metadataId, editor.build(), null, keyList, parentList, skipList, changedKeys);
   }
 
   @Override
   Id generateId() {
     return Id.build(h -> {
-      h.putLong(HASH_SEED)
-        .putBytes(metadataId.getValue().asReadOnlyByteBuffer())
-          .putBytes(parentList.getParent().getValue().asReadOnlyByteBuffer());
-      tree.forEach(id -> h.putBytes(id.getValue().asReadOnlyByteBuffer()));
+      h.putLong(HASH_SEED);
+      metadataId.addToHash(h);
+      parentList.getParent().addToHash(h);
+      tree.addToHash(h);
     });
   }
 
@@ -94,6 +135,10 @@ public class L1 extends MemoizedId {
     return keyList.getKeys(this, store);
   }
 
+  Stream<InternalKey> getSortedKeys(Store store, Optional<InternalKey> startAfter) {
+    return keyList.getSortedKeys(this, store, startAfter);
+  }
+
   IdMap getMap() {
     return tree;
   }
@@ -109,6 +154,9 @@ public class L1 extends MemoizedId {
     private static final String METADATA = "metadata";
     private static final String PARENTS = "parents";
     private static final String KEY_LIST = "keys";
+    private static final String GENERATION = "gen";
+    private static final String SKIPS = "skips";
+    private static final String CHANGED_KEYS = "changed";
 
     @Override
     public L1 deserialize(Map<String, Entity> attributeMap) {
@@ -117,19 +165,67 @@ public class L1 extends MemoizedId {
           IdMap.fromEntity(attributeMap.get(TREE), SIZE),
           Id.fromEntity(attributeMap.get(ID)),
           KeyList.fromEntity(attributeMap.get(KEY_LIST)),
-          ParentList.fromEntity(attributeMap.get(PARENTS))
+          ParentList.fromEntity(attributeMap.get(PARENTS)),
+          attributeMap.containsKey(GENERATION)
+              ? SkipList.fromEntity(attributeMap.get(GENERATION).getNumber(), attributeMap.get(SKIPS))
+              : SkipList.UNKNOWN,
+          attributeMap.containsKey(CHANGED_KEYS) ? KeyFilter.fromEntity(attributeMap.get(CHANGED_KEYS)) : KeyFilter.ALL
       );
     }
 
     @Override
     public Map<String, Entity> itemToMap(L1 item, boolean ignoreNulls) {
-      return ImmutableMap.<String, Entity>builder()
+      ImmutableMap.Builder<String, Entity> builder = ImmutableMap.<String, Entity>builder()
           .put(METADATA, item.metadataId.toEntity())
-          .put(TREE, item.tree.toEntity())
+          .put(TREE, item.tree.toPackedEntity())
           .put(ID, item.getId().toEntity())
           .put(KEY_LIST, item.keyList.toEntity())
-          .put(PARENTS, item.parentList.toEntity())
-          .build();
+          .put(PARENTS, item.parentList.toEntity());
+      if (item.skipList.isKnown()) {
+        builder.put(GENERATION, Entity.ofNumber(item.skipList.getGeneration()))
+            .put(SKIPS, item.skipList.toEntity());
+      }
+      if (!item.changedKeys.isAll()) {
+        builder.put(CHANGED_KEYS, item.changedKeys.toEntity());
+      }
+      return builder.build();
+    }
+
+    @Override
+    public void write(L1 item, AttributeWriter writer) {
+      writer.writeId(METADATA, item.metadataId);
+      writer.writeBinary(TREE, item.tree.toPacked());
+      writer.writeId(ID, item.getId());
+      writer.writeEntity(KEY_LIST, item.keyList.toEntity());
+      writer.writeEntity(PARENTS, item.parentList.toEntity());
+      if (item.skipList.isKnown()) {
+        writer.writeEntity(GENERATION, Entity.ofNumber(item.skipList.getGeneration()));
+        writer.writeEntity(SKIPS, item.skipList.toEntity());
+      }
+      if (!item.changedKeys.isAll()) {
+        writer.writeBinary(CHANGED_KEYS, item.changedKeys.toBytes());
+      }
+    }
+
+    @Override
+    public L1 read(AttributeReader reader) {
+      return new L1(
+          reader.readId(METADATA),
+          IdMap.fromEntity(reader.readEntity(TREE), SIZE),
+          reader.readId(ID),
+          KeyList.fromEntity(reader.readEntity(KEY_LIST)),
+          ParentList.fromEntity(reader.readEntity(PARENTS)),
+          reader.contains(GENERATION)
+              ? SkipList.fromEntity(reader.readEntity(GENERATION).getNumber(), reader.readEntity(SKIPS))
+              : SkipList.UNKNOWN,
+          reader.contains(CHANGED_KEYS) ? KeyFilter.fromBytes(reader.readBinary(CHANGED_KEYS)) : KeyFilter.ALL
+      );
+    }
+
+    @Override
+    public long estimateSize(L1 item) {
+      int ids = SIZE + 2 + item.parentList.getParents().size() + item.skipList.getMaxLevel();
+      return (long) ids * Id.LENGTH + item.keyList.estimateSize() + item.changedKeys.estimateSize();
     }
 
   };
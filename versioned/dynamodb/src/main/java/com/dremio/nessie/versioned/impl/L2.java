@@ -17,6 +17,8 @@ package com.dremio.nessie.versioned.impl;
 
 import java.util.Map;
 
+import com.dremio.nessie.versioned.store.AttributeReader;
+import com.dremio.nessie.versioned.store.AttributeWriter;
 import com.dremio.nessie.versioned.store.Entity;
 import com.dremio.nessie.versioned.store.Id;
 import com.dremio.nessie.versioned.store.SimpleSchema;
@@ -47,15 +49,25 @@ public class L2 extends MemoizedId {
     return map.getId(position);
   }
 
+  boolean isSameId(int position, L2 other) {
+    return map.isSameId(position, other.map);
+  }
+
   L2 set(int position, Id l2Id) {
     return new L2(map.withId(position, l2Id));
   }
 
+  L2 set(Map<Integer, Id> l3Ids) {
+    IdMap.Editor editor = map.edit();
+    l3Ids.forEach(editor::set);
+    return new L2(editor.build());
+  }
+
   @Override
   Id generateId() {
     return Id.build(h -> {
       h.putLong(HASH_SEED);
-      map.forEach(id -> h.putBytes(id.getValue().asReadOnlyByteBuffer()));
+      map.addToHash(h);
     });
   }
 
@@ -75,11 +87,28 @@ public class L2 extends MemoizedId {
     @Override
     public Map<String, Entity> itemToMap(L2 item, boolean ignoreNulls) {
       return ImmutableMap.<String, Entity>builder()
-          .put(TREE, item.map.toEntity())
+          .put(TREE, item.map.toPackedEntity())
           .put(ID, item.getId().toEntity())
           .build();
     }
 
+    @Override
+    public void write(L2 item, AttributeWriter writer) {
+      writer.writeBinary(TREE, item.map.toPacked());
+      writer.writeId(ID, item.getId());
+    }
+
+    @Override
+    public L2 read(AttributeReader reader) {
+      // the tree is read as an entity as it may still be in the list format.
+      return new L2(reader.readId(ID), IdMap.fromEntity(reader.readEntity(TREE), SIZE));
+    }
+
+    @Override
+    public long estimateSize(L2 item) {
+      return (long) (SIZE + 1) * Id.LENGTH;
+    }
+
   };
 
   /**
@@ -15,6 +15,8 @@
  */
 package com.dremio.nessie.versioned.impl;
 
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -25,6 +27,8 @@ import java.util.stream.Stream;
 import com.dremio.nessie.versioned.impl.DiffFinder.KeyDiff;
 import com.dremio.nessie.versioned.impl.KeyMutation.KeyAddition;
 import com.dremio.nessie.versioned.impl.KeyMutation.KeyRemoval;
+import com.dremio.nessie.versioned.store.AttributeReader;
+import com.dremio.nessie.versioned.store.AttributeWriter;
 import com.dremio.nessie.versioned.store.Entity;
 import com.dremio.nessie.versioned.store.Id;
 import com.dremio.nessie.versioned.store.SimpleSchema;
@@ -35,6 +39,8 @@ import com.google.common.collect.Maps;
 public class L3 extends MemoizedId {
 
   private static final long HASH_SEED = 4604180344422375655L;
+  private static final Comparator<InternalKey> ID_ORDER = Comparator.comparing(InternalKey::toKey)
+      .thenComparing(Comparator.naturalOrder());
 
   private final TreeMap<InternalKey, PositionDelta> map;
 
@@ -72,39 +78,58 @@ public class L3 extends MemoizedId {
     return Optional.of(id);
   }
 
-  @SuppressWarnings("unchecked")
   L3 set(InternalKey key, Id valueId) {
+    return set(Collections.singletonMap(key, valueId));
+  }
+
+  /**
+   * Set the value ids of a batch of keys.
+   *
+   * <p>The map of this L3 is copied once for the whole batch so applying all the changes of a commit to an L3 is linear
+   * in the number of changes rather than quadratic.
+   *
+   * @param valueIds The new value ids by key. {@link Id#EMPTY} removes the key.
+   * @return The updated L3.
+   */
+  @SuppressWarnings("unchecked")
+  L3 set(Map<InternalKey, Id> valueIds) {
     TreeMap<InternalKey, PositionDelta> newMap = (TreeMap<InternalKey, PositionDelta>) map.clone();
-    PositionDelta newDelta = newMap.get(key);
-    if (newDelta == null) {
-      newDelta = PositionDelta.EMPTY_ZERO;
-    }
+    valueIds.forEach((key, valueId) -> {
+      PositionDelta newDelta = newMap.get(key);
+      if (newDelta == null) {
+        newDelta = PositionDelta.EMPTY_ZERO;
+      }
 
-    newDelta = ImmutablePositionDelta.builder().from(newDelta).newId(valueId).build();
-    if (!newDelta.isDirty()) {
-      // this turned into a no-op delta, remove it entirely from the map.
-      newMap.remove(key);
-    } else {
-      newMap.put(key, newDelta);
-    }
+      newDelta = ImmutablePositionDelta.builder().from(newDelta).newId(valueId).build();
+      if (newDelta.isEmpty()) {
+        // this turned into a no-op delta of an absent key, remove it entirely from the map. A present key that is set to
+        // its current value must be kept.
+        newMap.remove(key);
+      } else {
+        newMap.put(key, newDelta);
+      }
+    });
     return new L3(newMap);
   }
 
   /**
    * An Id constructed of the key + id in sorted order.
+   *
+   * <p>The entries are hashed in the collation order of {@link com.dremio.nessie.versioned.Key}, which L3s used to be
+   * sorted by, rather than in the order of the map, so that the ids of stored L3s don't change. Keys that the collation
+   * considers equal couldn't be held by the same L3 then, their ties are broken by the order of the map.
    */
   @Override
   Id generateId() {
     return Id.build(hasher -> {
       hasher.putLong(HASH_SEED);
-      map.forEach((key, delta) -> {
-        if (delta.getNewId().isEmpty()) {
-          return;
-        }
-
-        InternalKey.addToHasher(key, hasher);
-        hasher.putBytes(delta.getNewId().getValue().asReadOnlyByteBuffer());
-      });
+      map.entrySet().stream()
+          .filter(e -> !e.getValue().getNewId().isEmpty())
+          .sorted(Map.Entry.comparingByKey(ID_ORDER))
+          .forEach(e -> {
+            InternalKey.addToHasher(e.getKey(), hasher);
+            e.getValue().getNewId().addToHash(hasher);
+          });
     });
   }
 
@@ -150,6 +175,39 @@ public class L3 extends MemoizedId {
           .build();
     }
 
+    @Override
+    public void write(L3 item, AttributeWriter writer) {
+      List<Map.Entry<InternalKey, PositionDelta>> values = item.map.entrySet().stream()
+          .filter(e -> !e.getValue().getNewId().isEmpty())
+          .collect(Collectors.toList());
+      writer.writeMapList(TREE, values, (e, w) -> {
+        w.writeStringList(TREE_KEY, e.getKey().getElements());
+        w.writeId(TREE_ID, e.getValue().getNewId());
+      });
+      writer.writeId(ID, item.getId());
+    }
+
+    @Override
+    public L3 read(AttributeReader reader) {
+      TreeMap<InternalKey, PositionDelta> tree = reader.readMapList(TREE).collect(Collectors.toMap(
+          r -> new InternalKey(r.readStringList(TREE_KEY)),
+          r -> PositionDelta.of(0, r.readId(TREE_ID)),
+          (a,b) -> {
+            throw new UnsupportedOperationException();
+          },
+          TreeMap::new));
+      return new L3(reader.readId(ID), tree);
+    }
+
+    @Override
+    public long estimateSize(L3 item) {
+      long size = Id.LENGTH;
+      for (InternalKey key : item.map.keySet()) {
+        size += key.estimateSize() + Id.LENGTH;
+      }
+      return size;
+    }
+
   };
 
   Stream<KeyMutation> getMutations() {
@@ -166,6 +224,10 @@ public class L3 extends MemoizedId {
         });
   }
 
+  Stream<InternalKey> getChangedKeys() {
+    return map.entrySet().stream().filter(e -> e.getValue().isDirty()).map(Map.Entry::getKey);
+  }
+
   Stream<InternalKey> getKeys() {
     return map.keySet().stream();
   }
@@ -72,14 +72,20 @@ class PartialTree<V> {
   private final Map<Integer, Pointer<L2>> l2s = new HashMap<>();
   private final Map<Position, Pointer<L3>> l3s = new HashMap<>();
   private final Map<InternalKey, ValueHolder<V>> values = new HashMap<>();
+  // value ids set since the tree was last updated, grouped by L3. Applied in bulk so that each node is copied and
+  // hashed once per batch of changes rather than once per changed key.
+  private final Map<Position, Map<InternalKey, Id>> pendingValueIds = new HashMap<>();
   private final Collection<InternalKey> keys;
+  // the unmodified L2s and L3s as loaded from the store, retained so a retry doesn't have to load them again.
+  private final Map<Id, L2> loadedL2s;
+  private final Map<Id, L3> loadedL3s;
 
   static <V> PartialTree<V> of(Serializer<V> serializer, InternalRefId id, List<InternalKey> keys) {
-    return new PartialTree<V>(serializer, id, keys);
+    return new PartialTree<V>(serializer, id, keys, new HashMap<>(), new HashMap<>());
   }
 
   static <V> PartialTree<V> of(Serializer<V> serializer, InternalRef.Type refType, L1 l1, Collection<InternalKey> keys) {
-    PartialTree<V> tree = new PartialTree<V>(serializer, InternalRefId.ofHash(l1.getId()), keys);
+    PartialTree<V> tree = new PartialTree<V>(serializer, InternalRefId.ofHash(l1.getId()), keys, new HashMap<>(), new HashMap<>());
     tree.l1 = new Pointer<L1>(l1);
     tree.refType = refType;
     return tree;
@@ -90,11 +96,27 @@ class PartialTree<V> {
         "You can only mutate a partial tree that references a branch. This is type %s.", refType.name());
   }
 
-  private PartialTree(Serializer<V> serializer, InternalRefId refId, Collection<InternalKey> keys) {
+  private PartialTree(Serializer<V> serializer, InternalRefId refId, Collection<InternalKey> keys,
+      Map<Id, L2> loadedL2s, Map<Id, L3> loadedL3s) {
     super();
     this.refId = refId;
     this.serializer = serializer;
     this.keys = keys;
+    this.loadedL2s = loadedL2s;
+    this.loadedL3s = loadedL3s;
+  }
+
+  /**
+   * Create an unloaded tree for the same ref that reuses the L2s and L3s already loaded by this tree.
+   *
+   * <p>This is used to retry a commit after a conflicting update of a branch. When loading the new tree, only the L2s
+   * and L3s that changed since this tree was loaded are retrieved from the store.
+   *
+   * @param keys The keys the new tree should hold.
+   * @return The new tree.
+   */
+  PartialTree<V> reloadWith(Collection<InternalKey> keys) {
+    return new PartialTree<V>(serializer, refId, keys, loadedL2s, loadedL3s);
   }
 
   public LoadStep getLoadChain(Function<InternalBranch, L1> l1Converter, LoadType loadType) {
@@ -124,6 +146,7 @@ class PartialTree<V> {
   }
 
   public L1 getCurrentL1() {
+    applyPendingValueIds();
     return l1.get();
   }
 
@@ -133,6 +156,7 @@ class PartialTree<V> {
    */
   public Stream<SaveOp<?>> getMostSaveOps() {
     checkMutable();
+    applyPendingValueIds();
     return Streams.<SaveOp<?>>concat(
         l2s.values().stream().filter(Pointer::isDirty).map(l2p -> new SaveOp<L2>(ValueType.L2, l2p.get())).distinct(),
         l3s.values().stream().filter(Pointer::isDirty).map(l3p -> new SaveOp<L3>(ValueType.L3, l3p.get())).distinct(),
@@ -143,12 +167,15 @@ class PartialTree<V> {
   /**
    * Gets L1 mutations required to save tree.
    *
+   * @param checkedPositions L1 positions whose current ids the update is conditioned on even if they are not changed, such
+   *     as the positions of unchanged operations.
    * @return
    */
-  public CommitOp getCommitOp(Id metadataId, Collection<InternalKey> unchangedKeys,
+  public CommitOp getCommitOp(Id metadataId, Collection<Integer> checkedPositions,
       boolean includeTreeUpdates,
       boolean includeCommitUpdates) {
     checkMutable();
+    applyPendingValueIds();
 
     UpdateExpression treeUpdate = UpdateExpression.initial();
 
@@ -172,8 +199,7 @@ class PartialTree<V> {
       deltas.add(pm.toUnsavedDelta());
     }
 
-    for (InternalKey unchanged : unchangedKeys) {
-      int position = unchanged.getL1Position();
+    for (int position : checkedPositions) {
       if (includeTreeUpdates && conditionPositions.add(position)) {
         // this doesn't already have a condition. Add one.
         ExpressionPath p = ExpressionPath.builder(InternalBranch.TREE).position(position).build();
@@ -185,7 +211,8 @@ class PartialTree<V> {
     if (includeCommitUpdates) {
       // Add the new commit
       commitIntention = new Commit(Id.generateRandom(), metadataId, deltas,
-          KeyMutationList.of(l3s.values().stream().map(Pointer::get).flatMap(L3::getMutations).collect(Collectors.toList())));
+          KeyMutationList.of(l3s.values().stream().map(Pointer::get).flatMap(L3::getMutations).collect(Collectors.toList())),
+          KeyFilter.of(l3s.values().stream().map(Pointer::get).flatMap(L3::getChangedKeys).collect(Collectors.toList())));
     }
 
     return new CommitOp(
@@ -246,10 +273,17 @@ class PartialTree<V> {
     Collection<LoadOp<?>> loads = keys.stream()
         .map(id -> {
           Id l2Id = l1.get().getId(id.getL1Position());
+          L2 loaded = loadedL2s.get(l2Id);
+          if (loaded != null) {
+            l2s.putIfAbsent(id.getL1Position(), new Pointer<L2>(loaded));
+            return null;
+          }
           return new LoadOp<L2>(ValueType.L2, l2Id, l -> {
+            loadedL2s.put(l2Id, l);
             l2s.putIfAbsent(id.getL1Position(), new Pointer<L2>(l));
           });
         })
+        .filter(n -> n != null)
         .collect(Collectors.toList());
 
     return Optional.of(new LoadStep(loads, (Supplier<Optional<LoadStep>>) (() -> getLoadStep3(includeValues))));
@@ -259,8 +293,17 @@ class PartialTree<V> {
     Collection<LoadOp<?>> loads = keys.stream().map(keyId -> {
       L2 l2 = l2s.get(keyId.getL1Position()).get();
       Id l3Id = l2.getId(keyId.getL2Position());
-      return new LoadOp<L3>(ValueType.L3, l3Id, l -> l3s.putIfAbsent(keyId.getPosition(), new Pointer<L3>(l)));
-    }).collect(Collectors.toList());
+      L3 loaded = loadedL3s.get(l3Id);
+      if (loaded != null) {
+        l3s.putIfAbsent(keyId.getPosition(), new Pointer<L3>(loaded));
+        return null;
+      }
+      return new LoadOp<L3>(ValueType.L3, l3Id, l -> {
+        loadedL3s.put(l3Id, l);
+        l3s.putIfAbsent(keyId.getPosition(), new Pointer<L3>(l));
+      });
+    }).filter(n -> n != null)
+        .collect(Collectors.toList());
     return Optional.of(new LoadStep(loads, () -> getLoadStep4(includeValues)));
   }
 
@@ -286,6 +329,7 @@ class PartialTree<V> {
   }
 
   public Optional<Id> getValueIdForKey(InternalKey key) {
+    applyPendingValueIds();
     return l3s.get(key.getPosition()).get().getPossibleId(key);
   }
 
@@ -309,11 +353,8 @@ class PartialTree<V> {
    */
   public void setValueIdForKey(InternalKey key, Optional<Id> id) {
     checkMutable();
-    final Pointer<L1> l1 = this.l1;
-    final Pointer<L2> l2 = l2s.get(key.getL1Position());
-    final Pointer<L3> l3 = l3s.get(key.getPosition());
+    Preconditions.checkArgument(l3s.containsKey(key.getPosition()), "Key %s was not loaded in this tree.", key);
 
-    // now we'll do the save.
     Id valueId;
     if (id.isPresent()) {
       valueId = id.get();
@@ -322,18 +363,13 @@ class PartialTree<V> {
       valueId = Id.EMPTY;
     }
 
-    final Id newL3Id = l3.apply(l -> l.set(key, valueId));
-    final Id newL2Id = l2.apply(l -> l.set(key.getL2Position(), newL3Id));
-    l1.apply(l -> l.set(key.getL1Position(), newL2Id));
+    pendingValueIds.computeIfAbsent(key.getPosition(), p -> new HashMap<>()).put(key, valueId);
   }
 
   public void setValueForKey(InternalKey key, Optional<V> value) {
     checkMutable();
-    final Pointer<L1> l1 = this.l1;
-    final Pointer<L2> l2 = l2s.get(key.getL1Position());
-    final Pointer<L3> l3 = l3s.get(key.getPosition());
+    Preconditions.checkArgument(l3s.containsKey(key.getPosition()), "Key %s was not loaded in this tree.", key);
 
-    // now we'll do the save.
     Id valueId;
     if (value.isPresent()) {
       ValueHolder<V> holder = ValueHolder.of(serializer,  value.get());
@@ -344,12 +380,32 @@ class PartialTree<V> {
       valueId = Id.EMPTY;
     }
 
-    final Id newL3Id = l3.apply(l -> l.set(key, valueId));
-    final Id newL2Id = l2.apply(l -> l.set(key.getL2Position(), newL3Id));
-    l1.apply(l -> l.set(key.getL1Position(), newL2Id));
+    pendingValueIds.computeIfAbsent(key.getPosition(), p -> new HashMap<>()).put(key, valueId);
+  }
+
+  /**
+   * Apply the value ids set since the last call to the L3s, then the new L3 ids to the L2s and finally the new L2 ids
+   * to the L1. Each modified node is updated and hashed once.
+   */
+  private void applyPendingValueIds() {
+    if (pendingValueIds.isEmpty()) {
+      return;
+    }
+
+    final Map<Integer, Map<Integer, Id>> l3Ids = new HashMap<>();
+    pendingValueIds.forEach((position, valueIds) -> {
+      Id newL3Id = l3s.get(position).apply(l -> l.set(valueIds));
+      l3Ids.computeIfAbsent(position.getL1(), p -> new HashMap<>()).put(position.getL2(), newL3Id);
+    });
+    pendingValueIds.clear();
+
+    final Map<Integer, Id> l2Ids = new HashMap<>();
+    l3Ids.forEach((l1Position, ids) -> l2Ids.put(l1Position, l2s.get(l1Position).apply(l -> l.set(ids))));
+    l1.apply(l -> l.set(l2Ids));
   }
 
   public Stream<InternalKey> getRetrievedKeys() {
+    applyPendingValueIds();
     return l3s.values().stream().flatMap(p -> p.get().getKeys());
   }
 
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.impl;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.dremio.nessie.versioned.store.Entity;
+import com.dremio.nessie.versioned.store.Id;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The generation of an L1 and exponentially spaced pointers to its ancestors.
+ *
+ * <p>The generation is the distance of an L1 from the empty L1, which has generation 0. The pointer at level {@code j}
+ * refers to the most recent strict ancestor whose generation is a multiple of {@code 2^j}. Level 0 is the parent, which
+ * is held by the {@link ParentList}, so only levels 1 and up are stored, and only while they refer to a commit other
+ * than the empty L1. As the pointers are aligned to generations, two L1s of the same generation have pointers to the
+ * same generations, and the pointers of a child are derived from its parent without loading any other L1.
+ *
+ * <p>L1s written before generations were introduced have an unknown generation. A skip list is derived from the history
+ * of such an L1 when a commit is added on top of it, so that the new commit and its descendants have one.
+ */
+final class SkipList {
+
+  private static final long UNKNOWN_GENERATION = -1;
+
+  static final SkipList EMPTY = new SkipList(0, ImmutableList.of());
+  static final SkipList UNKNOWN = new SkipList(UNKNOWN_GENERATION, ImmutableList.of());
+
+  private final long generation;
+  private final List<Id> pointers;
+
+  private SkipList(long generation, List<Id> pointers) {
+    this.generation = generation;
+    this.pointers = pointers;
+  }
+
+  /**
+   * Get the skip list of a child.
+   * @param id The id of the L1 this skip list belongs to, which becomes the parent.
+   * @return The skip list of the child.
+   */
+  SkipList child(Id id) {
+    if (!isKnown()) {
+      return UNKNOWN;
+    }
+
+    ImmutableList.Builder<Id> childPointers = ImmutableList.builder();
+    // the child's pointer at level j refers to the latest multiple of 2^j that is not after this generation.
+    for (int level = 1; level < Long.SIZE - 1 && (1L << level) <= generation; level++) {
+      childPointers.add(generation % (1L << level) == 0 ? id : getPointer(level));
+    }
+    return new SkipList(generation + 1, childPointers.build());
+  }
+
+  boolean isKnown() {
+    return generation != UNKNOWN_GENERATION;
+  }
+
+  long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * The highest level whose pointer refers to a commit other than the empty L1, or 0 if there is none.
+   */
+  int getMaxLevel() {
+    return pointers.size();
+  }
+
+  /**
+   * Get the pointer for a level of one or more.
+   * @param level The level of the pointer.
+   * @return The id of the ancestor at {@link #getPointerGeneration(int)}.
+   */
+  Id getPointer(int level) {
+    return level - 1 < pointers.size() ? pointers.get(level - 1) : L1.EMPTY_ID;
+  }
+
+  /**
+   * Get the generation of the ancestor a level points to.
+   */
+  long getPointerGeneration(int level) {
+    return ((generation - 1) >> level) << level;
+  }
+
+  Entity toEntity() {
+    return Entity.ofList(pointers.stream().map(Id::toEntity));
+  }
+
+  /**
+   * Derive the skip list of an L1 from its history.
+   * @param history The ids of the L1 and all of its ancestors, most recent first, ending with the empty L1.
+   * @return The skip list of the L1.
+   */
+  static SkipList fromHistory(List<Id> history) {
+    Preconditions.checkArgument(!history.isEmpty() && history.get(history.size() - 1).equals(L1.EMPTY_ID),
+        "The history must end with the empty L1.");
+    final long generation = history.size() - 1;
+    ImmutableList.Builder<Id> pointers = ImmutableList.builder();
+    for (int level = 1; (1L << level) < generation; level++) {
+      long target = ((generation - 1) >> level) << level;
+      pointers.add(history.get((int) (generation - target)));
+    }
+    return new SkipList(generation, pointers.build());
+  }
+
+  static SkipList fromEntity(long generation, Entity pointers) {
+    return new SkipList(generation, pointers.getList().stream().map(Id::fromEntity).collect(Collectors.toList()));
+  }
+
+}
@@ -18,14 +18,21 @@ package com.dremio.nessie.versioned.impl;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
 import java.util.Spliterator;
 import java.util.Spliterators.AbstractSpliterator;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -57,8 +64,11 @@ import com.dremio.nessie.versioned.WithHash;
 import com.dremio.nessie.versioned.impl.DiffFinder.KeyDiff;
 import com.dremio.nessie.versioned.impl.HistoryRetriever.HistoryItem;
 import com.dremio.nessie.versioned.impl.InternalBranch.Commit;
+import com.dremio.nessie.versioned.impl.InternalBranch.UnsavedDelta;
 import com.dremio.nessie.versioned.impl.InternalBranch.UpdateState;
 import com.dremio.nessie.versioned.impl.InternalRef.Type;
+import com.dremio.nessie.versioned.impl.KeyMutation.KeyAddition;
+import com.dremio.nessie.versioned.impl.KeyMutation.KeyRemoval;
 import com.dremio.nessie.versioned.impl.PartialTree.CommitOp;
 import com.dremio.nessie.versioned.impl.PartialTree.LoadType;
 import com.dremio.nessie.versioned.impl.condition.ConditionExpression;
@@ -73,8 +83,15 @@ import com.dremio.nessie.versioned.store.SaveOp;
 import com.dremio.nessie.versioned.store.Store;
 import com.dremio.nessie.versioned.store.ValueType;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.PeekingIterator;
 import com.google.common.collect.Streams;
 
 import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
@@ -87,27 +104,43 @@ public class TieredVersionStore<DATA, METADATA> implements VersionStore<DATA, ME
 
   private static final Logger LOGGER = LoggerFactory.getLogger(TieredVersionStore.class);
 
-  private static final int MAX_MERGE_DEPTH = 200;
+  private static final int MAX_GROUP_COMMIT_SIZE = 20;
+  private static final int DIFF_VALUE_BATCH_SIZE = 100;
 
   private final Serializer<DATA> serializer;
   private final Serializer<METADATA> metadataSerializer;
   private final StoreWorker<DATA,METADATA> storeWorker;
-  private final ExecutorService executor;
+  private final CollapseScheduler collapses;
   private Store store;
   private final int commitRetryCount = 5;
   private final int p2commitRetry = 5;
   private final boolean waitOnCollapse;
+  private final int historyReadAhead;
+  private final LoadingCache<Id, CommitPipeline> pipelines = CacheBuilder.newBuilder()
+      .weakValues()
+      .build(CacheLoader.from(() -> new CommitPipeline()));
 
   /**
    * Construct a Dynamo VersionStore.
    */
   public TieredVersionStore(StoreWorker<DATA,METADATA> storeWorker, Store store, boolean waitOnCollapse) {
+    this(storeWorker, store, waitOnCollapse, HistoryRetriever.DEFAULT_READ_AHEAD);
+  }
+
+  /**
+   * Construct a Dynamo VersionStore.
+   * @param historyReadAhead the number of pages of history loaded ahead of the page being consumed, see
+   *     {@link HistoryRetriever#withReadAhead(int)}
+   */
+  public TieredVersionStore(StoreWorker<DATA,METADATA> storeWorker, Store store, boolean waitOnCollapse, int historyReadAhead) {
+    Preconditions.checkArgument(historyReadAhead >= 0, "Read ahead must not be negative.");
     this.serializer = storeWorker.getValueSerializer();
     this.metadataSerializer = storeWorker.getMetadataSerializer();
     this.store = store;
     this.storeWorker = storeWorker;
-    this.executor = Executors.newCachedThreadPool();
+    this.collapses = new CollapseScheduler(store, p2commitRetry);
     this.waitOnCollapse = waitOnCollapse;
+    this.historyReadAhead = historyReadAhead;
   }
 
   @Override
@@ -147,7 +180,7 @@ public class TieredVersionStore<DATA, METADATA> implements VersionStore<DATA, ME
         return WithHash.of(ref.getTag().getCommit().toHash(), TagName.of(ref.getTag().getName()));
       }
 
-      Id id = ensureValidL1(ref.getBranch()).getId();
+      Id id = resolveL1(ref.getBranch()).getId();
       return WithHash.of(id.toHash(), BranchName.of(ref.getBranch().getName()));
     } catch (ResourceNotFoundException ex) {
       // ignore. could be a hash.
@@ -213,78 +246,306 @@ public class TieredVersionStore<DATA, METADATA> implements VersionStore<DATA, ME
 
   }
 
+  /**
+   * Commit to a branch.
+   *
+   * <p>Concurrent commits to the same branch within this process are grouped. Each commit is added to the branch's
+   * {@link CommitPipeline}. Whichever committer holds the pipeline's lock applies all the commits waiting at that point
+   * as one conditional update of the branch. Each commit is verified as if the commits were applied one after the other
+   * and a commit that fails verification doesn't affect the others.
+   */
   @Override
   public void commit(BranchName branchName, Optional<Hash> expectedHash, METADATA incomingCommit, List<Operation<DATA>> ops)
       throws ReferenceConflictException, ReferenceNotFoundException {
-    final InternalCommitMetadata metadata = InternalCommitMetadata.of(metadataSerializer.toBytes(incomingCommit));
-    final List<InternalKey> keys = ops.stream().map(op -> new InternalKey(op.getKey())).collect(Collectors.toList());
-    int loop = 0;
-    InternalRefId ref = InternalRefId.ofBranch(branchName.getName());
-    InternalBranch updatedBranch = null;
-    while (true) {
-
-      final PartialTree<DATA> current = PartialTree.of(serializer, ref, keys);
-      final PartialTree<DATA> expected = expectedHash.isPresent()
-          ? PartialTree.of(serializer, InternalRefId.ofHash(expectedHash.get()), keys) : current;
-
-      // load both trees (excluding values)
-      store.load(current.getLoadChain(this::ensureValidL1, LoadType.NO_VALUES)
-          .combine(expected.getLoadChain(this::ensureValidL1, LoadType.NO_VALUES)));
-
-      List<OperationHolder> holders = ops.stream().map(o -> new OperationHolder(current, expected, o)).collect(Collectors.toList());
-      List<InconsistentValue> mismatches = holders.stream()
-          .map(OperationHolder::verify)
-          .filter(Optional::isPresent)
-          .map(Optional::get)
-          .collect(Collectors.toList());
-      if (!mismatches.isEmpty()) {
-        throw new InconsistentValue.InconsistentValueException(mismatches);
+    final InternalRefId ref = InternalRefId.ofBranch(branchName.getName());
+    final PendingCommit pending = new PendingCommit(
+        expectedHash.isPresent() ? Optional.of(InternalRefId.ofHash(expectedHash.get())) : Optional.empty(),
+        InternalCommitMetadata.of(metadataSerializer.toBytes(incomingCommit)),
+        ops);
+
+    final CommitPipeline pipeline = pipelines.getUnchecked(ref.getId());
+    pipeline.queue.add(pending);
+    pipeline.lock.lock();
+    try {
+      // a group is limited in size, so this commit may be behind several groups of commits queued before it.
+      while (!pending.result.isDone()) {
+        List<PendingCommit> group = pipeline.drain();
+        if (group.isEmpty()) {
+          // the commit was drained by a committer that released the lock without completing it.
+          pending.result.completeExceptionally(new IllegalStateException("The commit was dropped from the commit pipeline."));
+          break;
+        }
+        commitGroup(ref, group);
       }
+    } finally {
+      pipeline.lock.unlock();
+    }
+    pending.get();
+  }
 
-      // do updates.
-      holders.forEach(o -> o.apply());
-
-      // save all but l1 and branch.
-      store.save(
-          Streams.concat(
-              current.getMostSaveOps(),
-              Stream.of(new SaveOp<WrappedValueBean>(ValueType.COMMIT_METADATA, metadata))
-          ).collect(Collectors.toList()));
-
-      CommitOp commitOp = current.getCommitOp(
-          metadata.getId(),
-          holders.stream().filter(OperationHolder::isUnchangedOperation).map(OperationHolder::getKey).collect(Collectors.toList()),
-          true,
-          true);
-
-      Optional<InternalRef> updated = store.update(ValueType.REF, ref.getId(),
-          commitOp.getUpdateWithCommit(), Optional.of(commitOp.getTreeCondition()));
-      if (!updated.isPresent()) {
-        if (loop++ < commitRetryCount) {
+  /**
+   * Apply a group of commits to a branch in a single conditional update, retrying on conflicting updates.
+   */
+  private void commitGroup(InternalRefId ref, List<PendingCommit> group) {
+    List<PendingCommit> remaining = group;
+    try {
+      int loop = 0;
+      // the tree of the last attempt, if it failed due to a conflicting update of the branch.
+      PartialTree<DATA> previous = null;
+      final Set<SaveOp<?>> alreadySaved = new HashSet<>();
+      while (true) {
+        final List<InternalKey> keys = remaining.stream().flatMap(c -> c.keys.stream()).distinct().collect(Collectors.toList());
+        final PartialTree<DATA> current = previous == null ? PartialTree.of(serializer, ref, keys) : previous.reloadWith(keys);
+
+        // load the branch and all expected trees (excluding values). Expected trees refer to immutable commits, so on a
+        // retry they are still valid and only the parts of the branch that changed are loaded.
+        LoadStep load = current.getLoadChain(this::ensureValidL1, LoadType.NO_VALUES);
+        for (PendingCommit c : remaining) {
+          if (!c.expectedRef.isPresent()) {
+            c.expected = current;
+          } else if (previous == null) {
+            c.expected = PartialTree.of(serializer, c.expectedRef.get(), c.keys);
+            load = load.combine(c.expected.getLoadChain(this::ensureValidL1, LoadType.NO_VALUES));
+          }
+        }
+        try {
+          store.load(load);
+        } catch (ReferenceNotFoundException ex) {
+          remaining = withoutUnknownExpectedRefs(remaining, ex);
+          previous = null;
           continue;
         }
-        throw new ReferenceConflictException(
-            String.format("Unable to complete commit due to conflicting events. Retried %d times before failing.", commitRetryCount));
+
+        final List<PendingCommit> applied = new ArrayList<>();
+        final List<Commit> intentions = new ArrayList<>();
+        final Set<SaveOp<?>> saves = new LinkedHashSet<>();
+        final List<InternalKey> unchangedKeys = new ArrayList<>();
+        for (PendingCommit c : remaining) {
+          List<OperationHolder> holders = c.ops.stream().map(o -> new OperationHolder(current, c.expected, o)).collect(Collectors.toList());
+          List<InconsistentValue> mismatches = holders.stream()
+              .map(OperationHolder::verify)
+              .filter(Optional::isPresent)
+              .map(Optional::get)
+              .collect(Collectors.toList());
+          if (!mismatches.isEmpty()) {
+            c.result.completeExceptionally(new InconsistentValue.InconsistentValueException(mismatches));
+            continue;
+          }
+
+          // do updates, recording the changes of this commit alone so it gets its own intention.
+          final L1 before = current.getCurrentL1();
+          final Map<InternalKey, Optional<Id>> valuesBefore = c.keys.stream().distinct()
+              .collect(Collectors.toMap(k -> k, current::getValueIdForKey));
+          holders.forEach(OperationHolder::apply);
+          intentions.add(c.toIntention(before, current, valuesBefore));
+
+          // intermediate L2s and L3s are needed to build this commit's L1 so save the state as of each commit.
+          current.getMostSaveOps().forEach(saves::add);
+          saves.add(new SaveOp<WrappedValueBean>(ValueType.COMMIT_METADATA, c.metadata));
+          holders.stream().filter(OperationHolder::isUnchangedOperation).map(OperationHolder::getKey).forEach(unchangedKeys::add);
+          applied.add(c);
+        }
+
+        if (applied.isEmpty()) {
+          return;
+        }
+
+        // save all but l1 and branch. Values and metadata saved by a previous attempt don't need to be saved again.
+        saves.removeAll(alreadySaved);
+        store.save(new ArrayList<>(saves));
+        alreadySaved.addAll(saves);
+
+        // a position that one commit of the group changed and a later one reverted is not changed by the update, but the
+        // intentions hold its deltas, so the update must still check that the position is unchanged.
+        final Set<Integer> checkedPositions = unchangedKeys.stream().map(InternalKey::getL1Position).collect(Collectors.toSet());
+        intentions.stream().flatMap(i -> i.getDeltas().stream()).map(UnsavedDelta::getPosition).forEach(checkedPositions::add);
+        CommitOp treeOp = current.getCommitOp(Id.EMPTY, checkedPositions, true, false);
+        Optional<InternalRef> updated = store.update(ValueType.REF, ref.getId(),
+            treeOp.getTreeUpdate().and(CommitOp.getCommitSet(intentions)), Optional.of(treeOp.getTreeCondition()));
+        if (!updated.isPresent()) {
+          // the branch changed. Rather than failing, the commits are re-verified against the new head using only the keys
+          // they touch, so commits that touch keys in the same L1 position as a concurrent commit are simply rebased.
+          remaining = applied;
+          previous = current;
+          if (loop++ < commitRetryCount) {
+            continue;
+          }
+          ReferenceConflictException ex = new ReferenceConflictException(
+              String.format("Unable to complete commit due to conflicting events. Retried %d times before failing.", commitRetryCount));
+          applied.forEach(c -> c.result.completeExceptionally(ex));
+          return;
+        }
+
+        applied.forEach(c -> c.result.complete(null));
+
+        // Now we'll try to collapse the intention log. Note that this is done post official commit so we need to return
+        // successfully even if this fails.
+        try {
+          ensureValidL1(updated.get().getBranch());
+        } catch (Exception ex) {
+          LOGGER.info("Failure while collapsing intention log after commit.", ex);
+        }
+        return;
       }
+    } catch (Throwable ex) {
+      // errors are reported to every committer of the group, or those waiting for the lock would never be released.
+      group.forEach(c -> c.result.completeExceptionally(ex));
+    }
+  }
 
-      updatedBranch = updated.get().getBranch();
-      break;
+  /**
+   * Fail the commits whose expected hash doesn't exist. If there are none, the branch itself doesn't exist.
+   * @return The commits that can still be applied.
+   */
+  private List<PendingCommit> withoutUnknownExpectedRefs(List<PendingCommit> group, ReferenceNotFoundException ex)
+      throws ReferenceNotFoundException {
+    List<PendingCommit> found = new ArrayList<>();
+    for (PendingCommit c : group) {
+      if (c.expectedRef.isPresent()) {
+        try {
+          store.load(PartialTree.<DATA>of(serializer, c.expectedRef.get(), Collections.emptyList())
+              .getLoadChain(this::ensureValidL1, LoadType.NO_VALUES));
+        } catch (ReferenceNotFoundException e) {
+          c.result.completeExceptionally(e);
+          continue;
+        }
+      }
+      found.add(c);
     }
 
-    // Now we'll try to collapse the intention log. Note that this is done post official commit so we need to return
-    // successfully even if this fails.
-    try {
-      updatedBranch.getUpdateState(store).ensureAvailable(store, executor, p2commitRetry, waitOnCollapse);
-    } catch (Exception ex) {
-      LOGGER.info("Failure while collapsing intention log after commit.", ex);
+    if (found.size() == group.size()) {
+      throw ex;
+    }
+    return found;
+  }
+
+  /**
+   * The commits to a single branch that are waiting to be applied.
+   */
+  private class CommitPipeline {
+    private final Lock lock = new ReentrantLock();
+    private final Queue<PendingCommit> queue = new ConcurrentLinkedQueue<>();
+
+    private List<PendingCommit> drain() {
+      List<PendingCommit> group = new ArrayList<>();
+      PendingCommit c;
+      while (group.size() < MAX_GROUP_COMMIT_SIZE && (c = queue.poll()) != null) {
+        group.add(c);
+      }
+      return group;
+    }
+  }
+
+  /**
+   * A single call to {@link #commit(BranchName, Optional, Object, List)} waiting to be applied.
+   */
+  private class PendingCommit {
+    private final Optional<InternalRefId> expectedRef;
+    private final InternalCommitMetadata metadata;
+    private final List<Operation<DATA>> ops;
+    private final List<InternalKey> keys;
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+    private PartialTree<DATA> expected;
+
+    PendingCommit(Optional<InternalRefId> expectedRef, InternalCommitMetadata metadata, List<Operation<DATA>> ops) {
+      this.expectedRef = expectedRef;
+      this.metadata = metadata;
+      this.ops = ops;
+      this.keys = ops.stream().map(op -> new InternalKey(op.getKey())).collect(Collectors.toList());
+    }
+
+    /**
+     * Build the commit intention for the changes this commit made to the tree.
+     */
+    Commit toIntention(L1 before, PartialTree<DATA> tree, Map<InternalKey, Optional<Id>> valuesBefore) {
+      final L1 after = tree.getCurrentL1();
+      List<UnsavedDelta> deltas = keys.stream()
+          .map(InternalKey::getL1Position)
+          .distinct()
+          .filter(position -> !before.isSameId(position, after))
+          .map(position -> new UnsavedDelta(position, before.getId(position), after.getId(position)))
+          .collect(Collectors.toList());
+      List<InternalKey> changed = valuesBefore.entrySet().stream()
+          .filter(e -> !e.getValue().equals(tree.getValueIdForKey(e.getKey())))
+          .map(Map.Entry::getKey)
+          .collect(Collectors.toList());
+      List<KeyMutation> mutations = changed.stream()
+          .filter(k -> valuesBefore.get(k).isPresent() != tree.getValueIdForKey(k).isPresent())
+          .map(k -> valuesBefore.get(k).isPresent() ? KeyRemoval.of(k) : KeyAddition.of(k))
+          .collect(Collectors.toList());
+      return new Commit(Id.generateRandom(), metadata.getId(), deltas, KeyMutationList.of(mutations), KeyFilter.of(changed));
+    }
+
+    void get() throws ReferenceConflictException, ReferenceNotFoundException {
+      try {
+        result.get();
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+        Throwables.propagateIfPossible(e.getCause(), ReferenceConflictException.class, ReferenceNotFoundException.class);
+        throw new IllegalStateException(e.getCause());
+      }
     }
   }
 
   @Override
   public Stream<WithHash<METADATA>> getCommits(Ref ref) throws ReferenceNotFoundException {
+    HistoryRetriever hr = getHistory(ref, false, true);
+    return hr.getStream().map(hi -> WithHash.of(hi.getId().toHash(), metadataSerializer.fromBytes(hi.getMetadata().getBytes())));
+  }
+
+  /**
+   * Get the commits that changed the value of a key.
+   *
+   * <p>Each L1 holds a filter of the keys changed by its commit, so most commits are ruled out without loading anything
+   * but the L1s. For the remaining candidates, the L2 ids at the key's position are compared first and only if those
+   * differ are the values of the key before and after the commit looked up.
+   */
+  @Override
+  public Stream<WithHash<METADATA>> getCommits(Ref ref, Key key) throws ReferenceNotFoundException {
+    final InternalKey internalKey = new InternalKey(key);
+    final PeekingIterator<L1> history = Iterators.peekingIterator(
+        getHistory(ref, true, false).getStream().map(HistoryItem::getL1).iterator());
+    final Iterator<L1> changes = new AbstractIterator<L1>() {
+      @Override
+      protected L1 computeNext() {
+        while (history.hasNext()) {
+          L1 l1 = history.next();
+          L1 parent = history.hasNext() ? history.peek() : L1.EMPTY;
+          if (isChanged(internalKey, l1, parent)) {
+            return l1;
+          }
+        }
+        return endOfData();
+      }
+    };
+    return Streams.stream(changes).map(l1 -> {
+      InternalCommitMetadata metadata = store.loadSingle(ValueType.COMMIT_METADATA, l1.getMetadataId());
+      return WithHash.of(l1.getId().toHash(), metadataSerializer.fromBytes(metadata.getBytes()));
+    });
+  }
+
+  private boolean isChanged(InternalKey key, L1 l1, L1 parent) {
+    if (!l1.getChangedKeys().mightContain(key) || l1.isSameId(key.getL1Position(), parent)) {
+      return false;
+    }
+
+    PartialTree<DATA> before = PartialTree.of(serializer, Type.HASH, parent, Collections.singletonList(key));
+    PartialTree<DATA> after = PartialTree.of(serializer, Type.HASH, l1, Collections.singletonList(key));
+    try {
+      store.load(before.getLoadChain(this::ensureValidL1, LoadType.NO_VALUES)
+          .combine(after.getLoadChain(this::ensureValidL1, LoadType.NO_VALUES)));
+    } catch (ReferenceNotFoundException e) {
+      throw new IllegalStateException("Unable to load the tree of a commit.", e);
+    }
+    return !before.getValueIdForKey(key).equals(after.getValueIdForKey(key));
+  }
+
+  private HistoryRetriever getHistory(Ref ref, boolean retrieveL1, boolean retrieveCommit) throws ReferenceNotFoundException {
     try {
       InternalRefId id = InternalRefId.of(ref);
       final L1 startingL1;
+      Map<Id, L1> unsavedL1s = Collections.emptyMap();
       if (id.getType() == Type.HASH) {
         // points to L1.
         startingL1 = store.loadSingle(ValueType.L1, id.getId());
@@ -293,13 +554,14 @@ public class TieredVersionStore<DATA, METADATA> implements VersionStore<DATA, ME
         if (iref.getType() == Type.TAG) {
           startingL1 = store.loadSingle(ValueType.L1, iref.getTag().getCommit());
         } else {
-          startingL1 = ensureValidL1(iref.getBranch());
+          UpdateState state = readState(iref.getBranch());
+          startingL1 = state.getL1();
+          unsavedL1s = state.getUnsavedL1s();
         }
       }
 
-      HistoryRetriever hr = new HistoryRetriever(store, startingL1, Id.EMPTY, false, true, false);
-      return hr.getStream().map(hi -> WithHash.of(hi.getId().toHash(), metadataSerializer.fromBytes(hi.getMetadata().getBytes())));
-
+      return new HistoryRetriever(store, startingL1, Id.EMPTY, retrieveL1, retrieveCommit, false, unsavedL1s)
+          .withReadAhead(historyReadAhead);
     } catch (ResourceNotFoundException ex) {
       throw new ReferenceNotFoundException("Unable to find request reference.", ex);
     }
@@ -308,16 +570,27 @@ public class TieredVersionStore<DATA, METADATA> implements VersionStore<DATA, ME
 
   @Override
   public Stream<WithHash<NamedRef>> getNamedRefs() {
-    return store.getRefs()
-        .map(ir -> {
-          if (ir.getType() == Type.TAG) {
-            return WithHash.<NamedRef>of(ir.getTag().getCommit().toHash(), ImmutableTagName.builder().name(ir.getTag().getName()).build());
-          }
+    return store.getRefs().map(this::toNamedRef);
+  }
 
-          InternalBranch branch = ir.getBranch();
-          L1 l1 = ensureValidL1(branch);
-          return WithHash.<NamedRef>of(l1.getId().toHash(), ImmutableBranchName.builder().name(ir.getBranch().getName()).build());
-        });
+  /**
+   * List the named refs whose name starts with a prefix. The filter is applied by the underlying store.
+   * @param prefix The prefix of the names of the refs to return.
+   * @return The matching refs and their associated hashes.
+   */
+  public Stream<WithHash<NamedRef>> getNamedRefs(String prefix) {
+    return store.getRefs(prefix).map(this::toNamedRef);
+  }
+
+  private WithHash<NamedRef> toNamedRef(InternalRef ir) {
+    if (ir.getType() == Type.TAG) {
+      return WithHash.<NamedRef>of(ir.getTag().getCommit().toHash(), ImmutableTagName.builder().name(ir.getTag().getName()).build());
+    }
+
+    // most branches have no pending commits, so their hash can be taken from the commit log without loading their L1.
+    InternalBranch branch = ir.getBranch();
+    Id head = branch.getSavedHead().orElseGet(() -> resolveL1(branch).getId());
+    return WithHash.<NamedRef>of(head.toHash(), ImmutableBranchName.builder().name(branch.getName()).build());
   }
 
   /**
@@ -327,16 +600,57 @@ public class TieredVersionStore<DATA, METADATA> implements VersionStore<DATA, ME
    */
   private L1 ensureValidL1(InternalBranch branch) {
     UpdateState updateState = branch.getUpdateState(store);
-    updateState.ensureAvailable(store, executor, p2commitRetry, waitOnCollapse);
+    updateState.ensureSaved(store);
+    if (updateState.hasUnsavedL1s()) {
+      CompletableFuture<InternalBranch> collapse = collapses.collapse(updateState);
+      if (waitOnCollapse) {
+        try {
+          collapse.get();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+          Throwables.throwIfUnchecked(e.getCause());
+          throw new IllegalStateException(e.getCause());
+        }
+      }
+    }
     return updateState.getL1();
   }
 
+  /**
+   * Resolve the current head of a branch for a read operation without writing to the store.
+   * @param branch The branch that may have unsaved deltas.
+   * @return The head L1 of the branch. It may not yet be addressable in the store.
+   */
+  private L1 resolveL1(InternalBranch branch) {
+    return readState(branch).getL1();
+  }
+
+  /**
+   * Build the read only state of a branch. If the branch has unsaved commits (e.g. because the committer died before
+   * finishing), the work of persisting them is handed off to the collapse scheduler, unless it is already saturated.
+   */
+  private UpdateState readState(InternalBranch branch) {
+    UpdateState state = branch.getReadState(store);
+    if (state.hasUnsavedL1s() && !collapses.isSaturated()) {
+      collapses.collapse(branch);
+    }
+    return state;
+  }
+
+  /**
+   * The scheduler that cleans up the intention logs of branches, e.g. to monitor the state of the intention logs.
+   */
+  public CollapseScheduler getCollapseScheduler() {
+    return collapses;
+  }
+
   @Override
   public Hash toHash(NamedRef ref) throws ReferenceNotFoundException {
     try {
       InternalRef iref = store.loadSingle(ValueType.REF, InternalRefId.ofUnknownName(ref.getName()).getId());
       if (iref.getType() == Type.BRANCH) {
-        return ensureValidL1(iref.getBranch()).getId().toHash();
+        return resolveL1(iref.getBranch()).getId().toHash();
       } else {
         return iref.getTag().getCommit().toHash();
       }
@@ -418,35 +732,73 @@ public class TieredVersionStore<DATA, METADATA> implements VersionStore<DATA, ME
 
   @Override
   public Stream<Key> getKeys(Ref ref) throws ReferenceNotFoundException {
-    // naive implementation.
+    return loadL1(ref).getKeys(store).map(InternalKey::toKey);
+  }
+
+  /**
+   * Get the keys of a ref in the order of {@link InternalKey}, loading only the key fragments that are reached.
+   */
+  @Override
+  public Stream<Key> getKeys(Ref ref, Optional<Key> startAfter) throws ReferenceNotFoundException {
+    return loadL1(ref).getSortedKeys(store, startAfter.map(InternalKey::new)).map(InternalKey::toKey);
+  }
+
+  /**
+   * Get the keys of a namespace. As keys are ordered element by element, the keys of a namespace directly follow the
+   * namespace itself in the sorted key list, so only the key fragments that overlap the namespace are loaded.
+   */
+  @Override
+  public Stream<Key> getKeys(Ref ref, Key namespace, Optional<Key> startAfter) throws ReferenceNotFoundException {
+    final InternalKey prefix = new InternalKey(namespace);
+    final InternalKey start = startAfter.map(InternalKey::new).filter(k -> k.compareTo(prefix) > 0).orElse(prefix);
+    return takeWithin(loadL1(ref).getSortedKeys(store, Optional.of(start)), prefix).map(InternalKey::toKey);
+  }
+
+  private static Stream<InternalKey> takeWithin(Stream<InternalKey> stream, InternalKey namespace) {
+    Spliterator<InternalKey> iter = stream.spliterator();
+
+    return StreamSupport.stream(new AbstractSpliterator<InternalKey>(iter.estimateSize(), Spliterator.ORDERED) {
+      boolean done = false;
+      @Override
+      public boolean tryAdvance(Consumer<? super InternalKey> consumer) {
+        if (done) {
+          return false;
+        }
+        boolean hasNext = iter.tryAdvance(key -> {
+          done = !key.isWithin(namespace);
+          if (!done) {
+            consumer.accept(key);
+          }
+        });
+        return hasNext && !done;
+      }
+    }, false);
+  }
+
+  private L1 loadL1(Ref ref) throws ReferenceNotFoundException {
     InternalRefId refId = InternalRefId.of(ref);
-    final L1 start;
 
     switch (refId.getType()) {
       case BRANCH:
         InternalRef branchRef = store.loadSingle(ValueType.REF, refId.getId());
-        start = ensureValidL1(branchRef.getBranch());
-        break;
+        return resolveL1(branchRef.getBranch());
       case TAG:
         InternalRef tagRef = store.loadSingle(ValueType.REF, refId.getId());
-        start = store.loadSingle(ValueType.L1, tagRef.getTag().getCommit());
-        break;
+        return store.loadSingle(ValueType.L1, tagRef.getTag().getCommit());
       case HASH:
-        start = store.loadSingle(ValueType.L1, refId.getId());
-        break;
+        return store.loadSingle(ValueType.L1, refId.getId());
       case UNKNOWN:
       default:
         throw new UnsupportedOperationException();
     }
-
-    return start.getKeys(store).map(InternalKey::toKey);
   }
 
+
   @Override
   public DATA getValue(Ref ref, Key key) throws ReferenceNotFoundException {
     InternalKey ikey = new InternalKey(key);
     PartialTree<DATA> tree = PartialTree.of(serializer, InternalRefId.of(ref), Collections.singletonList(ikey));
-    store.load(tree.getLoadChain(this::ensureValidL1, LoadType.SELECT_VALUES));
+    store.load(tree.getLoadChain(this::resolveL1, LoadType.SELECT_VALUES));
     return tree.getValueForKey(ikey).orElse(null);
   }
 
@@ -454,7 +806,7 @@ public class TieredVersionStore<DATA, METADATA> implements VersionStore<DATA, ME
   public List<Optional<DATA>> getValues(Ref ref, List<Key> key) throws ReferenceNotFoundException {
     List<InternalKey> keys = key.stream().map(InternalKey::new).collect(Collectors.toList());
     PartialTree<DATA> tree = PartialTree.of(serializer, InternalRefId.of(ref), keys);
-    store.load(tree.getLoadChain(this::ensureValidL1, LoadType.SELECT_VALUES));
+    store.load(tree.getLoadChain(this::resolveL1, LoadType.SELECT_VALUES));
     return keys.stream().map(tree::getValueForKey).collect(Collectors.toList());
   }
 
@@ -472,7 +824,8 @@ public class TieredVersionStore<DATA, METADATA> implements VersionStore<DATA, ME
         true,
         (from, commonParent) -> {
           // first we need to validate that the actual history matches the provided sequence.
-          Stream<L1> historyStream = new HistoryRetriever(store, from, null, true, false, true).getStream().map(HistoryItem::getL1);
+          Stream<L1> historyStream = new HistoryRetriever(store, from, null, true, false, true).withReadAhead(historyReadAhead)
+              .getStream().map(HistoryItem::getL1);
           List<L1> l1s = Lists.reverse(takeUntilNext(historyStream, endTarget).collect(ImmutableList.toImmutableList()));
           List<Hash> hashes = l1s.stream().map(L1::getId).map(Id::toHash).skip(1).collect(Collectors.toList());
           if (!hashes.equals(sequenceToTransplant)) {
@@ -506,11 +859,98 @@ public class TieredVersionStore<DATA, METADATA> implements VersionStore<DATA, ME
       throws ReferenceNotFoundException, ReferenceConflictException {
 
     internalTransplant(fromHash, toBranch, expectedBranchHash, false, (from, commonParent) -> {
-      return Lists.reverse(new HistoryRetriever(store, from, commonParent, true, false, true)
+      return Lists.reverse(new HistoryRetriever(store, from, commonParent, true, false, true).withReadAhead(historyReadAhead)
           .getStream().map(HistoryItem::getL1).collect(ImmutableList.toImmutableList()));
     });
   }
 
+  /**
+   * Merge the changes of a hash into a branch as a single commit.
+   *
+   * <p>Rather than replaying each commit since the common ancestor, a single diff from the common ancestor to the hash is
+   * computed and applied to the branch, so the cost of the merge does not depend on the number of commits merged. Only
+   * the final tree is written. Use {@link #merge(Hash, BranchName, Optional)} to keep the individual commits.
+   */
+  @Override
+  public void squash(Hash fromHash, BranchName toBranch, Optional<Hash> expectedBranchHash, METADATA metadata)
+      throws ReferenceNotFoundException, ReferenceConflictException {
+    final InternalRefId branchId = InternalRefId.ofBranch(toBranch.getName());
+    Pointer<L1> fromPtr = new Pointer<>();
+    Pointer<L1> toPtr = new Pointer<>();
+    loadTransplantHeads(fromHash, branchId, expectedBranchHash, fromPtr, toPtr);
+
+    final L1 from = fromPtr.get();
+    final L1 to = toPtr.get();
+    final Id commonParent = HistoryRetriever.findCommonParent(store, from, to);
+    if (from.getId().equals(commonParent)) {
+      // everything in from is already part of the branch.
+      return;
+    }
+
+    final L1 base = commonParent.equals(L1.EMPTY_ID) ? L1.EMPTY : store.loadSingle(ValueType.L1, commonParent);
+    final DiffFinder fromDiff = new DiffFinder(base, from);
+    store.load(fromDiff.getLoad());
+    final List<KeyDiff> fromChanges = fromDiff.getKeyDiffs().collect(Collectors.toList());
+    if (fromChanges.isEmpty()) {
+      return;
+    }
+
+    final List<InternalKey> fromKeys = fromChanges.stream().map(KeyDiff::getKey).collect(Collectors.toList());
+    if (!to.getId().equals(commonParent)) {
+      checkMergeConflicts(to, commonParent, fromKeys);
+    }
+
+    PartialTree<DATA> tree = PartialTree.of(serializer, InternalRef.Type.BRANCH, to, fromKeys);
+    store.load(tree.getLoadChain(this::ensureValidL1, LoadType.NO_VALUES));
+    fromChanges.forEach(kd -> tree.setValueIdForKey(kd.getKey(), Optional.ofNullable(kd.getTo()).filter(i -> !i.isEmpty())));
+
+    // the values are already stored, only the tree and the metadata of the commit are saved.
+    InternalCommitMetadata commitMetadata = InternalCommitMetadata.of(metadataSerializer.toBytes(metadata));
+    List<SaveOp<?>> saves = tree.getMostSaveOps().collect(Collectors.toList());
+    saves.add(new SaveOp<WrappedValueBean>(ValueType.COMMIT_METADATA, commitMetadata));
+    store.save(saves);
+
+    CommitOp commitOp = tree.getCommitOp(commitMetadata.getId(), Collections.emptyList(), true, true);
+    Optional<InternalRef> updated = store.update(ValueType.REF, branchId.getId(), commitOp.getUpdateWithCommit(),
+        Optional.of(commitOp.getTreeCondition()));
+    if (!updated.isPresent()) {
+      throw new ReferenceConflictException("Unable to complete commit.");
+    }
+  }
+
+  /**
+   * Fail if any of the keys were changed by a commit of the target branch since the common parent. The changed keys filter
+   * of each commit is checked first so that only the trees of commits that may have changed one of the keys are loaded.
+   */
+  private void checkMergeConflicts(L1 to, Id commonParent, List<InternalKey> fromKeys) throws ReferenceConflictException {
+    List<L1> toL1s = Lists.reverse(new HistoryRetriever(store, to, commonParent, true, false, true).withReadAhead(historyReadAhead)
+        .getStream().map(HistoryItem::getL1).collect(ImmutableList.toImmutableList()));
+    List<DiffFinder> toDiffs = new ArrayList<>();
+    for (int i = 1; i < toL1s.size(); i++) {
+      KeyFilter changed = toL1s.get(i).getChangedKeys();
+      if (fromKeys.stream().anyMatch(changed::mightContain)) {
+        toDiffs.add(new DiffFinder(toL1s.get(i - 1), toL1s.get(i)));
+      }
+    }
+    if (toDiffs.isEmpty()) {
+      return;
+    }
+
+    try {
+      store.load(toDiffs.stream().map(DiffFinder::getLoad).collect(LoadStep.toLoadStep()));
+    } catch (ReferenceNotFoundException e) {
+      throw new IllegalStateException("Unable to load the tree of a commit.", e);
+    }
+    Set<InternalKey> toKeyChanges = toDiffs.stream().flatMap(DiffFinder::getKeyDiffs).map(KeyDiff::getKey).collect(Collectors.toSet());
+    List<InternalKey> conflictKeys = fromKeys.stream().filter(toKeyChanges::contains).collect(ImmutableList.toImmutableList());
+    if (!conflictKeys.isEmpty()) {
+      throw new ReferenceConflictException(
+          String.format(
+              "The following keys have been changed in conflict: %s.",
+              conflictKeys.stream().map(InternalKey::toString).collect(Collectors.joining(", "))));
+    }
+  }
+
   private interface HistoryHelper {
     List<L1> getFromL1s(L1 headL1, Id commonParent);
   }
@@ -526,36 +966,13 @@ public class TieredVersionStore<DATA, METADATA> implements VersionStore<DATA, ME
     final InternalRefId branchId = InternalRefId.ofBranch(toBranch.getName());
     Pointer<L1> fromPtr = new Pointer<>();
     Pointer<L1> toPtr = new Pointer<>();
-    Pointer<InternalRef> branch = new Pointer<>();
-
-    {
-      // load the related assets.
-      List<LoadOp<?>> loadOps = new ArrayList<>();
-
-      // always load the l1 we're merging from.
-      loadOps.add(new LoadOp<L1>(ValueType.L1, Id.of(fromHash), l -> fromPtr.set(l)));
-      if (expectedBranchHash.isPresent()) {
-        // if an expected branch hash is provided, use that l1 as the basic. Still load the branch to make sure it exists.
-        loadOps.add(new LoadOp<L1>(ValueType.L1, Id.of(expectedBranchHash.get()), l1 -> toPtr.set(l1)));
-        loadOps.add(new LoadOp<InternalRef>(ValueType.REF, branchId.getId(), r -> branch.set(r)));
-      } else {
-
-        // if no expected branch hash is provided, use the head of the branch as the basis for the rebase.
-        loadOps.add(new LoadOp<InternalRef>(ValueType.REF, branchId.getId(), r -> toPtr.set(ensureValidL1(r.getBranch()))));
-      }
-      store.load(new LoadStep(loadOps));
-
-      if (expectedBranchHash.isPresent() && branch.get().getType() != Type.BRANCH) {
-        // since we're doing a InternalRef load, we could get a tag value back (instead of branch). Throw if this happens.
-        throw new ReferenceConflictException("The requested branch is now a tag.");
-      }
-    }
+    loadTransplantHeads(fromHash, branchId, expectedBranchHash, fromPtr, toPtr);
 
     final L1 from = fromPtr.get();
     final L1 to = toPtr.get();
 
     // let's find a common parent.
-    Id commonParent = HistoryRetriever.findCommonParent(store, from, to, MAX_MERGE_DEPTH);
+    Id commonParent = HistoryRetriever.findCommonParent(store, from, to);
 
     List<L1> fromL1s = historyHelper.getFromL1s(from, commonParent);
     if (fromL1s.size() == 1) {
@@ -583,7 +1000,7 @@ public class TieredVersionStore<DATA, METADATA> implements VersionStore<DATA, ME
       // more accurately represents a "rebase" operation where the new commits have to be replayed individually across the
       // new target branch as opposed to only the head of that branch.
 
-      List<L1> toL1s =  Lists.reverse(new HistoryRetriever(store, to, commonParent, true, false, true)
+      List<L1> toL1s =  Lists.reverse(new HistoryRetriever(store, to, commonParent, true, false, true).withReadAhead(historyReadAhead)
           .getStream().map(HistoryItem::getL1).collect(ImmutableList.toImmutableList()));
 
       if (toL1s.size() == 1) {
@@ -627,28 +1044,60 @@ public class TieredVersionStore<DATA, METADATA> implements VersionStore<DATA, ME
     // which will be applied to the Branch IdMap. The second is distinct operations that will be added to the the commit
     // intention log of the Branch object.
     PartialTree<DATA> headToRebaseOn = PartialTree.of(serializer, InternalRef.Type.BRANCH, to, fromKeyChanges);
-    List<DiffManager> creators = fromDiffs.stream().map(DiffManager::new).collect(Collectors.toList());
-    store.load(creators.stream().map(DiffManager::getLoad)
-        .collect(LoadStep.toLoadStep())
-        .combine(headToRebaseOn.getLoadChain(this::ensureValidL1, LoadType.NO_VALUES)));
-
-    // Now that we have all the items loaded, let's apply the changeset to both the sequential DiffManagers and the composite PartialTree.
-    creators.forEach(pt -> pt.apply(headToRebaseOn));
+    store.load(headToRebaseOn.getLoadChain(this::ensureValidL1, LoadType.NO_VALUES));
+
+    // Apply the commits one by one to the composite tree. The intention of each commit holds the changes between the
+    // states of the composite tree before and after the commit, so that replaying the intentions on top of the target
+    // branch yields the composite tree.
+    List<Commit> intentions = new ArrayList<>();
+    List<SaveOp<?>> saves = new ArrayList<>();
+    L1 previous = headToRebaseOn.getCurrentL1();
+    for (DiffFinder diff : fromDiffs) {
+      List<KeyDiff> keyDiffs = diff.getKeyDiffs().collect(Collectors.toList());
+      List<KeyMutation> mutations = new ArrayList<>();
+      List<InternalKey> changed = new ArrayList<>();
+      for (KeyDiff kd : keyDiffs) {
+        Optional<Id> existing = headToRebaseOn.getValueIdForKey(kd.getKey());
+        Optional<Id> updated = Optional.ofNullable(kd.getTo()).filter(i -> !i.isEmpty());
+        if (!existing.equals(updated)) {
+          changed.add(kd.getKey());
+        }
+        if (!existing.isPresent() && updated.isPresent()) {
+          mutations.add(KeyAddition.of(kd.getKey()));
+        } else if (existing.isPresent() && !updated.isPresent()) {
+          mutations.add(KeyRemoval.of(kd.getKey()));
+        }
+      }
+      keyDiffs.forEach(kd -> headToRebaseOn.setValueIdForKey(kd.getKey(), Optional.ofNullable(kd.getTo()).filter(i -> !i.isEmpty())));
+
+      // save the L2s and L3s of each intermediate state as they are referenced by the L1s of the replayed commits.
+      headToRebaseOn.getMostSaveOps().forEach(saves::add);
+      final L1 before = previous;
+      final L1 current = headToRebaseOn.getCurrentL1();
+      List<UnsavedDelta> deltas = keyDiffs.stream()
+          .map(kd -> kd.getKey().getL1Position())
+          .distinct()
+          .filter(position -> !before.isSameId(position, current))
+          .map(position -> new UnsavedDelta(position, before.getId(position), current.getId(position)))
+          .collect(Collectors.toList());
+      intentions.add(new Commit(Id.generateRandom(), diff.getTo().getMetadataId(), deltas, KeyMutationList.of(mutations),
+          KeyFilter.of(changed)));
+      previous = current;
+    }
 
     // Save L2s and L3s. Note we don't need to do any value saves here as we know that the values are already stored.
-    store.save(
-        Stream.concat(
-            creators.stream().flatMap(c -> c.tree.getMostSaveOps()),
-            headToRebaseOn.getMostSaveOps())
-        .distinct()
-        .collect(Collectors.toList()));
+    store.save(saves.stream().distinct().collect(Collectors.toList()));
 
     // get a list of all the intentions as a SetClause
-    List<Commit> intentions = creators.stream().map(pt -> pt.getCommit()).collect(Collectors.toList());
     SetClause commitUpdate = CommitOp.getCommitSet(intentions);
 
-    // Get the composite commit operation, but exclude any Commit intentions.
-    CommitOp headCommit = headToRebaseOn.getCommitOp(to.getMetadataId(), Collections.emptyList(), true, false);
+    // Get the composite commit operation, but exclude any Commit intentions. Positions that the replayed commits changed
+    // and reverted are checked as well, as their deltas are part of the intentions.
+    Set<Integer> checkedPositions = intentions.stream()
+        .flatMap(i -> i.getDeltas().stream())
+        .map(UnsavedDelta::getPosition)
+        .collect(Collectors.toSet());
+    CommitOp headCommit = headToRebaseOn.getCommitOp(to.getMetadataId(), checkedPositions, true, false);
 
     // Do a conditional update that combines the commit intentions with the composite tree updates,
     // based on the composite tree conditions.
@@ -663,74 +1112,83 @@ public class TieredVersionStore<DATA, METADATA> implements VersionStore<DATA, ME
   }
 
   /**
-   * Class used to manage the tree mutations required to move between two L1s.
+   * Load the L1 to transplant from and the L1 of the target branch, which is the expected hash if one is provided.
    */
-  private class DiffManager {
-    private PartialTree<DATA> tree;
-    private Id metadataId;
-    private DiffFinder finder;
-
-    DiffManager(DiffFinder finder) {
-      this.finder = finder;
-      metadataId = finder.getTo().getMetadataId();
-      tree = PartialTree.of(serializer, InternalRef.Type.BRANCH, finder.getFrom(),
-          finder.getKeyDiffs().map(KeyDiff::getKey).collect(Collectors.toList()));
-    }
+  private void loadTransplantHeads(Hash fromHash, InternalRefId branchId, Optional<Hash> expectedBranchHash,
+      Pointer<L1> fromPtr, Pointer<L1> toPtr) throws ReferenceNotFoundException, ReferenceConflictException {
+    Pointer<InternalRef> branch = new Pointer<>();
+    // load the related assets.
+    List<LoadOp<?>> loadOps = new ArrayList<>();
+
+    // always load the l1 we're merging from.
+    loadOps.add(new LoadOp<L1>(ValueType.L1, Id.of(fromHash), l -> fromPtr.set(l)));
+    if (expectedBranchHash.isPresent()) {
+      // if an expected branch hash is provided, use that l1 as the basic. Still load the branch to make sure it exists.
+      loadOps.add(new LoadOp<L1>(ValueType.L1, Id.of(expectedBranchHash.get()), l1 -> toPtr.set(l1)));
+      loadOps.add(new LoadOp<InternalRef>(ValueType.REF, branchId.getId(), r -> branch.set(r)));
+    } else {
 
-    /**
-     * Generate the commit intention operation associated with this set of diffs.
-     *
-     * @return The Commit Intention record.
-     */
-    public Commit getCommit() {
-      return tree.getCommitOp(metadataId, Collections.emptyList(), false, true).getCommitIntention();
+      // if no expected branch hash is provided, use the head of the branch as the basis for the rebase.
+      loadOps.add(new LoadOp<InternalRef>(ValueType.REF, branchId.getId(), r -> toPtr.set(ensureValidL1(r.getBranch()))));
     }
+    store.load(new LoadStep(loadOps));
 
-    public LoadStep getLoad() {
-      return tree.getLoadChain(TieredVersionStore.this::ensureValidL1, LoadType.NO_VALUES);
+    if (expectedBranchHash.isPresent() && branch.get().getType() != Type.BRANCH) {
+      // since we're doing a InternalRef load, we could get a tag value back (instead of branch). Throw if this happens.
+      throw new ReferenceConflictException("The requested branch is now a tag.");
     }
+  }
 
-    /**
-     * Apply the diff associated with the set of ops this tree is managing.
-     * @param secondTree The compound tree that will receive all diffs.
-     */
-    public void apply(PartialTree<DATA> secondTree) {
-      finder.getKeyDiffs().forEach(kd -> {
-        Optional<Id> valueToSet = Optional.ofNullable(kd.getTo()).filter(i -> !i.isEmpty());
-        tree.setValueIdForKey(kd.getKey(), valueToSet);
-        secondTree.setValueIdForKey(kd.getKey(), valueToSet);
-      });
-    }
+  @Override
+  public Stream<Diff<DATA>> getDiffs(Ref from, Ref to) throws ReferenceNotFoundException {
+    return getDiffs(from, to, Optional.empty());
+  }
 
+  /**
+   * Get the diffs between two refs, one L1 position at a time.
+   *
+   * <p>Diffs are ordered by the tree position of their key and then by key. Values are loaded in batches as the stream is
+   * consumed, so only the differences of one L1 position and one batch of values are held in memory.
+   */
+  @Override
+  public Stream<Diff<DATA>> getDiffs(Ref from, Ref to, Optional<Key> startAfter) throws ReferenceNotFoundException {
+    Iterator<List<KeyDiff>> batches = Iterators.partition(getKeyDiffs(from, to, startAfter).iterator(), DIFF_VALUE_BATCH_SIZE);
+    return Streams.stream(batches).flatMap(batch -> {
+      Map<Id, InternalValue> values = new HashMap<>();
+      List<LoadOp<?>> loads = batch.stream()
+          .flatMap(k -> Stream.of(k.getFrom(), k.getTo()))
+          .filter(id -> !id.isEmpty())
+          .distinct()
+          .map(id -> new LoadOp<InternalValue>(ValueType.VALUE, id, val -> values.put(id, val)))
+          .collect(Collectors.toList());
+      if (!loads.isEmpty()) {
+        try {
+          store.load(new LoadStep(loads));
+        } catch (ReferenceNotFoundException e) {
+          throw new IllegalStateException("Unable to load the values of a diff.", e);
+        }
+      }
 
+      return batch.stream().map(kd -> Diff.of(
+          kd.getKey().toKey(),
+          Optional.ofNullable(values.get(kd.getFrom())).map(v -> serializer.fromBytes(v.getBytes())),
+          Optional.ofNullable(values.get(kd.getTo())).map(v -> serializer.fromBytes(v.getBytes()))
+      ));
+    });
   }
 
   @Override
-  public Stream<Diff<DATA>> getDiffs(Ref from, Ref to) throws ReferenceNotFoundException {
+  public Stream<Key> getDiffKeys(Ref from, Ref to, Optional<Key> startAfter) throws ReferenceNotFoundException {
+    return getKeyDiffs(from, to, startAfter).map(kd -> kd.getKey().toKey());
+  }
+
+  private Stream<KeyDiff> getKeyDiffs(Ref from, Ref to, Optional<Key> startAfter) throws ReferenceNotFoundException {
     PartialTree<DATA> fromTree = PartialTree.of(serializer, InternalRefId.of(from), Collections.emptyList());
     PartialTree<DATA> toTree = PartialTree.of(serializer, InternalRefId.of(to), Collections.emptyList());
-    store.load(fromTree.getLoadChain(this::ensureValidL1, LoadType.NO_VALUES)
-        .combine(toTree.getLoadChain(this::ensureValidL1, LoadType.NO_VALUES)));
-
-    DiffFinder finder = new DiffFinder(fromTree.getCurrentL1(), toTree.getCurrentL1());
-    store.load(finder.getLoad());
-
-    // For now, we'll load all the values at once. In the future, we should paginate diffs.
-    Map<Id, InternalValue> values = new HashMap<>();
-    List<LoadOp<InternalValue>> loads = finder.getKeyDiffs()
-        .flatMap(k -> Stream.of(k.getFrom(), k.getTo()))
-        .distinct()
-        .filter(id -> !id.isEmpty())
-        .map(id -> new LoadOp<InternalValue>(ValueType.VALUE, id, val -> values.put(id, val)))
-        .collect(Collectors.toList());
-    store.load(LoadStep.of(loads.toArray(new LoadOp[loads.size()])));
-
-    return finder.getKeyDiffs().map(kd -> Diff.of(
-        kd.getKey().toKey(),
-        Optional.ofNullable(kd.getFrom()).map(id -> values.get(id)).map(v -> serializer.fromBytes(v.getBytes())),
-        Optional.ofNullable(kd.getTo()).map(id -> values.get(id)).map(v -> serializer.fromBytes(v.getBytes()))
-      )
-    );
+    store.load(fromTree.getLoadChain(this::resolveL1, LoadType.NO_VALUES)
+        .combine(toTree.getLoadChain(this::resolveL1, LoadType.NO_VALUES)));
+
+    return new DiffFinder(fromTree.getCurrentL1(), toTree.getCurrentL1()).streamKeyDiffs(store, startAfter.map(InternalKey::new));
   }
 
   class OperationHolder {
@@ -19,6 +19,8 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.function.BiFunction;
 
+import com.dremio.nessie.versioned.store.AttributeReader;
+import com.dremio.nessie.versioned.store.AttributeWriter;
 import com.dremio.nessie.versioned.store.Entity;
 import com.dremio.nessie.versioned.store.Id;
 import com.dremio.nessie.versioned.store.SimpleSchema;
@@ -101,5 +103,21 @@ abstract class WrappedValueBean extends MemoizedId {
           .put(VALUE, Entity.ofBinary(item.getBytes()))
           .build();
     }
+
+    @Override
+    public void write(T item, AttributeWriter writer) {
+      writer.writeId(ID, item.getId());
+      writer.writeBinary(VALUE, item.getBytes());
+    }
+
+    @Override
+    public T read(AttributeReader reader) {
+      return deserializer.apply(reader.readId(ID), reader.readBinary(VALUE));
+    }
+
+    @Override
+    public long estimateSize(T item) {
+      return Id.LENGTH + item.getBytes().size();
+    }
   }
 }
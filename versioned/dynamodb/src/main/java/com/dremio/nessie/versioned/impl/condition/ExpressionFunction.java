@@ -33,7 +33,7 @@ public class ExpressionFunction implements Value {
     ATTRIBUTE_NOT_EXISTS("attribute_not_exists", 1),
     SIZE("size", 1),
     //  ATTRIBUTE_TYPE("attribute_type", 1),
-    //  BEGINS_WITH("begins_with", 2),
+    BEGINS_WITH("begins_with", 2),
     //  CONTAINS("contains", 2),
     //    GT(">"),
     //    LT("<"),
@@ -90,6 +90,10 @@ public class ExpressionFunction implements Value {
   }
 
 
+  public static ExpressionFunction beginsWith(ExpressionPath path, Entity prefix) {
+    return new ExpressionFunction(FunctionName.BEGINS_WITH, ImmutableList.of(path, Value.of(prefix)));
+  }
+
   public static ExpressionFunction ifNotExists(ExpressionPath path, Entity value) {
     return new ExpressionFunction(FunctionName.IF_NOT_EXISTS, ImmutableList.of(path, Value.of(value)));
   }
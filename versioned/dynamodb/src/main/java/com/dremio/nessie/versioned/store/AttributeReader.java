@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.store;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Reads the attributes of an item directly from a backend's native representation.
+ *
+ * <p>The counterpart of {@link AttributeWriter}. All read methods throw a {@link NullPointerException} if the
+ * attribute is missing.
+ */
+public interface AttributeReader {
+
+  boolean contains(String name);
+
+  Id readId(String name);
+
+  ByteString readBinary(String name);
+
+  String readString(String name);
+
+  List<String> readStringList(String name);
+
+  /**
+   * Read a list of values that are each represented as a map of attributes.
+   * @param name The name of the attribute.
+   * @return A reader for each map in the list.
+   */
+  Stream<AttributeReader> readMapList(String name);
+
+  Entity readEntity(String name);
+
+  /**
+   * Convert all the attributes of the item to entities. Used for schemas that don't read directly.
+   * @return The attributes of the item.
+   */
+  Map<String, Entity> toEntityMap();
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.store;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Writes the attributes of an item directly to a backend's native representation.
+ *
+ * <p>Schemas of frequently stored values write their attributes through this interface to avoid building an
+ * intermediate {@link Entity} tree. Attributes that don't have a direct representation are written as entities.
+ */
+public interface AttributeWriter {
+
+  void writeId(String name, Id id);
+
+  void writeBinary(String name, ByteString value);
+
+  void writeString(String name, String value);
+
+  void writeStringList(String name, List<String> values);
+
+  /**
+   * Write a list of values that are each represented as a map of attributes.
+   * @param name The name of the attribute.
+   * @param values The values to write.
+   * @param writer Writes the attributes of a single value to the writer for its map.
+   */
+  <E> void writeMapList(String name, Collection<E> values, BiConsumer<E, AttributeWriter> writer);
+
+  void writeEntity(String name, Entity value);
+}
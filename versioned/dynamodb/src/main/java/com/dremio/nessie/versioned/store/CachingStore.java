@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import com.dremio.nessie.versioned.ReferenceNotFoundException;
+import com.dremio.nessie.versioned.impl.InternalRef;
+import com.dremio.nessie.versioned.impl.condition.ConditionExpression;
+import com.dremio.nessie.versioned.impl.condition.UpdateExpression;
+import com.dremio.nessie.versioned.store.LoadOp.LoadOpKey;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.primitives.Ints;
+
+/**
+ * A Store that keeps recently used immutable values in memory in front of another Store.
+ *
+ * <p>All values whose {@link ValueType#isImmutable()} is true are addressed by a hash of their content, so once
+ * a value has been loaded or saved it can never change. Those values are held in a cache bounded by the estimated
+ * serialized size of the values. Loads for values found in the cache are completed locally and are never sent to the
+ * underlying store. Mutable values (refs) always go to the underlying store.
+ */
+public class CachingStore implements Store {
+
+  private final Store delegate;
+  private final Cache<LoadOpKey, HasId> cache;
+
+  /**
+   * Create a caching store.
+   * @param delegate The store to cache values for.
+   * @param maxWeight The maximum total estimated size (in bytes) of the values held in the cache.
+   */
+  public CachingStore(Store delegate, long maxWeight) {
+    Preconditions.checkArgument(maxWeight > 0, "Cache size must be positive but was %s.", maxWeight);
+    this.delegate = Preconditions.checkNotNull(delegate);
+    this.cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxWeight)
+        .<LoadOpKey, HasId>weigher((key, value) -> weigh(key.getType(), value))
+        .recordStats()
+        .build();
+  }
+
+  @Override
+  public void start() {
+    delegate.start();
+  }
+
+  @Override
+  public void close() {
+    cache.invalidateAll();
+    delegate.close();
+  }
+
+  @Override
+  public void load(LoadStep loadstep) throws ReferenceNotFoundException {
+    delegate.load(withoutCachedOps(loadstep));
+  }
+
+  /**
+   * Complete all ops in this step that can be served from the cache and return a step containing the remaining ops.
+   *
+   * <p>The step's successors are filtered lazily as they are only known once this step's values have been consumed.
+   */
+  private LoadStep withoutCachedOps(LoadStep step) {
+    List<LoadOp<?>> remaining = new ArrayList<>();
+    step.getOps().forEach(op -> {
+      if (!op.getValueType().isImmutable()) {
+        remaining.add(op);
+        return;
+      }
+
+      HasId cached = cache.getIfPresent(op.toKey());
+      if (cached != null) {
+        loaded(op, cached);
+      } else {
+        remaining.add(cachingOp(op));
+      }
+    });
+    return new LoadStep(remaining, () -> step.getNext().map(this::withoutCachedOps));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <V extends HasId> void loaded(LoadOp<V> op, HasId value) {
+    op.loaded((V) value);
+  }
+
+  private <V extends HasId> LoadOp<V> cachingOp(LoadOp<V> op) {
+    final LoadOpKey key = op.toKey();
+    return new LoadOp<V>(op.getValueType(), op.getId(), value -> {
+      cache.put(key, value);
+      op.loaded(value);
+    });
+  }
+
+  @Override
+  public <V> boolean putIfAbsent(ValueType type, V value) {
+    boolean added = delegate.putIfAbsent(type, value);
+    cacheIfImmutable(type, value);
+    return added;
+  }
+
+  @Override
+  public <V> void put(ValueType type, V value, Optional<ConditionExpression> conditionUnAliased) {
+    delegate.put(type, value, conditionUnAliased);
+    cacheIfImmutable(type, value);
+  }
+
+  @Override
+  public boolean delete(ValueType type, Id id, Optional<ConditionExpression> condition) {
+    cache.invalidate(new LoadOpKey(type, id));
+    return delegate.delete(type, id, condition);
+  }
+
+  @Override
+  public void save(List<SaveOp<?>> ops) {
+    delegate.save(ops);
+    ops.forEach(op -> cacheIfImmutable(op.getType(), op.getValue()));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <V> V loadSingle(ValueType valueType, Id id) {
+    if (!valueType.isImmutable()) {
+      return delegate.loadSingle(valueType, id);
+    }
+
+    final LoadOpKey key = new LoadOpKey(valueType, id);
+    HasId cached = cache.getIfPresent(key);
+    if (cached != null) {
+      return (V) cached;
+    }
+
+    V value = delegate.loadSingle(valueType, id);
+    cache.put(key, (HasId) value);
+    return value;
+  }
+
+  @Override
+  public <V> Optional<V> update(ValueType type, Id id, UpdateExpression update, Optional<ConditionExpression> condition)
+      throws ReferenceNotFoundException {
+    return delegate.update(type, id, update, condition);
+  }
+
+  @Override
+  public Stream<InternalRef> getRefs() {
+    return delegate.getRefs();
+  }
+
+  @Override
+  public Stream<InternalRef> getRefs(String prefix) {
+    return delegate.getRefs(prefix);
+  }
+
+  @VisibleForTesting
+  CacheStats getStats() {
+    return cache.stats();
+  }
+
+  private <V> void cacheIfImmutable(ValueType type, V value) {
+    if (type.isImmutable()) {
+      HasId hasId = (HasId) value;
+      cache.put(new LoadOpKey(type, hasId.getId()), hasId);
+    }
+  }
+
+  private static int weigh(ValueType type, HasId value) {
+    SimpleSchema<HasId> schema = type.getSchema();
+    return Ints.saturatedCast(schema.estimateSize(value));
+  }
+}
@@ -15,12 +15,10 @@
  */
 package com.dremio.nessie.versioned.store;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Objects;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Consumer;
 
@@ -30,39 +28,80 @@ import com.dremio.nessie.versioned.impl.InternalRef;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.hash.Hasher;
-import com.google.common.hash.Hashing;
-import com.google.protobuf.ByteOutput;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.UnsafeByteOperations;
 
+/**
+ * A 20 byte identifier.
+ *
+ * <p>The bytes are held as primitive fields so ids can be compared and hashed without touching memory outside of the
+ * object. A {@link ByteString} of the id is only created when the id is serialized.
+ */
 public final class Id implements InternalRef {
 
   public static final int LENGTH = 20;
-  public static final Id EMPTY = new Id(ByteString.copyFrom(new byte[LENGTH]));
-
-  private final ByteString value;
-
-  private Id(ByteString value) {
-    Preconditions.checkNotNull(value);
-    Preconditions.checkArgument(value.size() == LENGTH, "Invalid key for this version store. Expected a binary value of "
-        + "length %s but value was actually %s bytes long.", LENGTH, value.size());
-    this.value = value;
+  public static final Id EMPTY = new Id(0, 0, 0);
+
+  // the bytes of the id in big endian order: 0-7, 8-15 and 16-19.
+  private final long high;
+  private final long middle;
+  private final int low;
+  private final int hash;
+
+  private Id(long high, long middle, int low) {
+    this.high = high;
+    this.middle = middle;
+    this.low = low;
+    // the ids are hashes themselves, so some of their bits are a good enough hash.
+    this.hash = (int) high ^ (int) (middle >>> 32) ^ low;
   }
 
+  /**
+   * The bytes of this id. This allocates a new ByteString, prefer {@link #copyTo(byte[], int)} or
+   * {@link #addToHash(Hasher)} where possible.
+   */
   public ByteString getValue() {
-    return value;
+    return UnsafeByteOperations.unsafeWrap(toBytes());
   }
 
   public static Id of(byte[] bytes) {
-    return of(ByteString.copyFrom(bytes));
+    checkLength(bytes.length);
+    return of(bytes, 0);
+  }
+
+  /**
+   * Create an id from {@link #LENGTH} bytes of an array.
+   * @param bytes The array holding the id.
+   * @param offset The position of the first byte of the id in the array.
+   * @return The id.
+   */
+  public static Id of(byte[] bytes, int offset) {
+    Preconditions.checkPositionIndexes(offset, offset + LENGTH, bytes.length);
+    return new Id(
+        Longs.fromBytes(bytes[offset], bytes[offset + 1], bytes[offset + 2], bytes[offset + 3],
+            bytes[offset + 4], bytes[offset + 5], bytes[offset + 6], bytes[offset + 7]),
+        Longs.fromBytes(bytes[offset + 8], bytes[offset + 9], bytes[offset + 10], bytes[offset + 11],
+            bytes[offset + 12], bytes[offset + 13], bytes[offset + 14], bytes[offset + 15]),
+        Ints.fromBytes(bytes[offset + 16], bytes[offset + 17], bytes[offset + 18], bytes[offset + 19]));
   }
 
+  /**
+   * Create an id from the remaining bytes of a buffer.
+   * @param bytes The buffer, which is consumed.
+   * @return The id.
+   */
   public static Id of(ByteBuffer bytes) {
-    return of(ByteString.copyFrom(bytes));
+    checkLength(bytes.remaining());
+    ByteBuffer b = bytes.slice();
+    bytes.position(bytes.limit());
+    return new Id(b.getLong(), b.getLong(), b.getInt());
   }
 
   public static Id of(ByteString bytes) {
-    return new Id(bytes);
+    checkLength(bytes.size());
+    return of(bytes.asReadOnlyByteBuffer());
   }
 
   /**
@@ -102,7 +141,7 @@ public final class Id implements InternalRef {
   }
 
   public static Id build(ByteString bytes) {
-    return build(hasher -> hashByteString(bytes, hasher));
+    return build(hasher -> hasher.putBytes(bytes.asReadOnlyByteBuffer()));
   }
 
   /**
@@ -111,10 +150,14 @@ public final class Id implements InternalRef {
    * @return The generated Id.
    */
   public static Id build(Consumer<Hasher> consumer) {
-    Hasher hasher = Hashing.sha256().newHasher();
-    consumer.accept(hasher);
-    byte[] outputBytes = hasher.hash().asBytes();
-    return new Id(UnsafeByteOperations.unsafeWrap(outputBytes, 0, 20));
+    Sha256Hasher hasher = Sha256Hasher.acquire();
+    byte[] digest;
+    try {
+      consumer.accept(hasher);
+    } finally {
+      digest = hasher.finish();
+    }
+    return of(digest, 0);
   }
 
   @Override
@@ -123,12 +166,12 @@ public final class Id implements InternalRef {
   }
 
   public boolean isEmpty() {
-    return this.equals(Id.EMPTY);
+    return (high | middle | low) == 0;
   }
 
   @Override
   public int hashCode() {
-    return getValue().hashCode();
+    return hash;
   }
 
   @Override
@@ -140,7 +183,22 @@ public final class Id implements InternalRef {
       return false;
     }
     Id other = (Id) obj;
-    return Objects.equals(getValue(), other.getValue());
+    return ((high ^ other.high) | (middle ^ other.middle) | (low ^ other.low)) == 0;
+  }
+
+  /**
+   * Whether this id is equal to the id held by {@link #LENGTH} bytes of an array.
+   * @param bytes The array holding the other id.
+   * @param offset The position of the first byte of the other id in the array.
+   * @return True if the ids are equal.
+   */
+  public boolean equalsBytes(byte[] bytes, int offset) {
+    Preconditions.checkPositionIndexes(offset, offset + LENGTH, bytes.length);
+    return ((high ^ Longs.fromBytes(bytes[offset], bytes[offset + 1], bytes[offset + 2], bytes[offset + 3],
+            bytes[offset + 4], bytes[offset + 5], bytes[offset + 6], bytes[offset + 7]))
+        | (middle ^ Longs.fromBytes(bytes[offset + 8], bytes[offset + 9], bytes[offset + 10], bytes[offset + 11],
+            bytes[offset + 12], bytes[offset + 13], bytes[offset + 14], bytes[offset + 15]))
+        | (low ^ Ints.fromBytes(bytes[offset + 16], bytes[offset + 17], bytes[offset + 18], bytes[offset + 19]))) == 0;
   }
 
   /**
@@ -148,46 +206,32 @@ public final class Id implements InternalRef {
    * @return The generated Id.
    */
   public static Id generateRandom() {
-    byte[] bytes = new byte[LENGTH];
-    ThreadLocalRandom.current().nextBytes(bytes);
-    return Id.of(bytes);
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    return new Id(random.nextLong(), random.nextLong(), random.nextInt());
   }
 
+  /**
+   * The bytes of this id, in a new array.
+   */
   public byte[] toBytes() {
-    return getValue().toByteArray();
+    byte[] bytes = new byte[LENGTH];
+    copyTo(bytes, 0);
+    return bytes;
   }
 
-  private static void hashByteString(ByteString bytes, Hasher hasher) {
-    try {
-      UnsafeByteOperations.unsafeWriteTo(bytes, new ByteOutput() {
-
-        @Override
-        public void write(byte value) throws IOException {
-          hasher.putByte(value);
-        }
-
-        @Override
-        public void write(byte[] value, int offset, int length) throws IOException {
-          hasher.putBytes(value, offset, length);
-        }
-
-        @Override
-        public void write(ByteBuffer value) throws IOException {
-          hasher.putBytes(value);
-        }
-
-        @Override
-        public void writeLazy(byte[] value, int offset, int length) throws IOException {
-          write(value, offset, length);
-        }
-
-        @Override
-        public void writeLazy(ByteBuffer value) throws IOException {
-          write(value);
-        }
-      });
-    } catch (IOException e) {
-      throw new RuntimeException(e); // can't happen.
+  /**
+   * Write the bytes of this id to an array.
+   * @param target The array to write to.
+   * @param offset The position in the array to write the first byte of the id to.
+   */
+  public void copyTo(byte[] target, int offset) {
+    Preconditions.checkPositionIndexes(offset, offset + LENGTH, target.length);
+    for (int i = 0; i < Long.BYTES; i++) {
+      target[offset + i] = (byte) (high >>> (56 - 8 * i));
+      target[offset + Long.BYTES + i] = (byte) (middle >>> (56 - 8 * i));
+    }
+    for (int i = 0; i < Integer.BYTES; i++) {
+      target[offset + 2 * Long.BYTES + i] = (byte) (low >>> (24 - 8 * i));
     }
   }
 
@@ -195,14 +239,23 @@ public final class Id implements InternalRef {
     return Entity.ofBinary(getValue());
   }
 
+  /**
+   * Add the bytes of this id to a hasher.
+   */
   public void addToHash(Hasher hasher) {
-    hashByteString(getValue(), hasher);
+    // hashers take primitives in little endian order while ids are big endian.
+    hasher.putLong(Long.reverseBytes(high)).putLong(Long.reverseBytes(middle)).putInt(Integer.reverseBytes(low));
   }
 
   public Hash toHash() {
     return Hash.of(getValue());
   }
 
+  private static void checkLength(int length) {
+    Preconditions.checkArgument(length == LENGTH, "Invalid key for this version store. Expected a binary value of "
+        + "length %s but value was actually %s bytes long.", LENGTH, length);
+  }
+
   public Map<String, Entity> toKeyMap() {
     return ImmutableMap.of(Store.KEY_NAME, this.toEntity());
   }
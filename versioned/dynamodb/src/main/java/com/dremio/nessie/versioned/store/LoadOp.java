@@ -46,6 +46,18 @@ public class LoadOp<V extends HasId> {
     consumer.accept(schema.mapToItem(type.checkType(load)));
   }
 
+  public void loaded(AttributeReader reader) {
+    consumer.accept(type.read(reader));
+  }
+
+  /**
+   * Inform the consumer of an already deserialized value (e.g. one retrieved from a cache).
+   * @param value The value that was loaded.
+   */
+  public void loaded(V value) {
+    consumer.accept(value);
+  }
+
   public Id getId() {
     return id;
   }
@@ -134,6 +146,10 @@ public class LoadOp<V extends HasId> {
       this.id = id;
     }
 
+    ValueType getType() {
+      return type;
+    }
+
     @Override
     public int hashCode() {
       return Objects.hash(id, type);
@@ -40,6 +40,10 @@ public class SaveOp<V extends HasId> {
     return type.addType(schema.itemToMap(value, true));
   }
 
+  public void write(AttributeWriter writer) {
+    type.write(value, writer);
+  }
+
   @Override
   public String toString() {
     return "SaveOp [type=" + type + ", id=" + value.getId() + "]";
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+
+/**
+ * A SHA-256 {@link Hasher} that can be reset and reused, unlike the hashers created by Guava's hash functions.
+ *
+ * <p>Primitives are fed to the digest in little endian order and strings as their encoded bytes, matching the hashers
+ * returned by {@code Hashing.sha256()} so that both produce the same hashes for the same calls.
+ */
+final class Sha256Hasher implements Hasher {
+
+  private static final ThreadLocal<Sha256Hasher> POOL = ThreadLocal.withInitial(Sha256Hasher::new);
+
+  private final MessageDigest digest;
+  private final ByteBuffer scratch = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+  private final byte[] output = new byte[32];
+  private boolean inUse;
+
+  private Sha256Hasher() {
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Get this thread's hasher, or a new one if this thread's hasher is in use (e.g. when hashes are computed while
+   * computing another hash).
+   */
+  static Sha256Hasher acquire() {
+    Sha256Hasher hasher = POOL.get();
+    if (hasher.inUse) {
+      hasher = new Sha256Hasher();
+    }
+    hasher.inUse = true;
+    return hasher;
+  }
+
+  /**
+   * Complete the hash and make this hasher available for reuse.
+   * @return A buffer holding the digest. Only valid until this hasher is acquired again.
+   */
+  byte[] finish() {
+    try {
+      digest.digest(output, 0, output.length);
+    } catch (DigestException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      digest.reset();
+      inUse = false;
+    }
+    return output;
+  }
+
+  private Hasher putScratch(int length) {
+    digest.update(scratch.array(), 0, length);
+    scratch.clear();
+    return this;
+  }
+
+  @Override
+  public Hasher putByte(byte b) {
+    digest.update(b);
+    return this;
+  }
+
+  @Override
+  public Hasher putBytes(byte[] bytes) {
+    digest.update(bytes);
+    return this;
+  }
+
+  @Override
+  public Hasher putBytes(byte[] bytes, int off, int len) {
+    Preconditions.checkPositionIndexes(off, off + len, bytes.length);
+    digest.update(bytes, off, len);
+    return this;
+  }
+
+  @Override
+  public Hasher putBytes(ByteBuffer bytes) {
+    digest.update(bytes);
+    return this;
+  }
+
+  @Override
+  public Hasher putShort(short s) {
+    scratch.putShort(s);
+    return putScratch(Short.BYTES);
+  }
+
+  @Override
+  public Hasher putInt(int i) {
+    scratch.putInt(i);
+    return putScratch(Integer.BYTES);
+  }
+
+  @Override
+  public Hasher putLong(long l) {
+    scratch.putLong(l);
+    return putScratch(Long.BYTES);
+  }
+
+  @Override
+  public Hasher putFloat(float f) {
+    return putInt(Float.floatToRawIntBits(f));
+  }
+
+  @Override
+  public Hasher putDouble(double d) {
+    return putLong(Double.doubleToRawLongBits(d));
+  }
+
+  @Override
+  public Hasher putBoolean(boolean b) {
+    return putByte(b ? (byte) 1 : (byte) 0);
+  }
+
+  @Override
+  public Hasher putChar(char c) {
+    scratch.putChar(c);
+    return putScratch(Character.BYTES);
+  }
+
+  @Override
+  public Hasher putUnencodedChars(CharSequence charSequence) {
+    for (int i = 0; i < charSequence.length(); i++) {
+      putChar(charSequence.charAt(i));
+    }
+    return this;
+  }
+
+  @Override
+  public Hasher putString(CharSequence charSequence, Charset charset) {
+    return putBytes(charSequence.toString().getBytes(charset));
+  }
+
+  @Override
+  public <T> Hasher putObject(T instance, Funnel<? super T> funnel) {
+    funnel.funnel(instance, this);
+    return this;
+  }
+
+  @Override
+  public HashCode hash() {
+    return HashCode.fromBytes(finish().clone());
+  }
+
+  @Override
+  @Deprecated
+  public int hashCode() {
+    return super.hashCode();
+  }
+}
@@ -46,6 +46,71 @@ public abstract class SimpleSchema<T> {
 
   protected abstract T deserialize(Map<String, Entity> attributeMap);
 
+  /**
+   * Write an item directly to a backend's representation.
+   *
+   * <p>The default implementation writes the attributes produced by {@link #itemToMap(Object, boolean)}. Schemas of
+   * frequently stored values override this together with {@link #read(AttributeReader)}.
+   *
+   * @param item The item to write.
+   * @param writer The writer for the attributes of the item.
+   */
+  public void write(T item, AttributeWriter writer) {
+    itemToMap(item, true).forEach(writer::writeEntity);
+  }
+
+  /**
+   * Read an item directly from a backend's representation.
+   * @param reader The reader for the attributes of the item.
+   * @return The item.
+   */
+  public T read(AttributeReader reader) {
+    return mapToItem(reader.toEntityMap());
+  }
+
+  /**
+   * Estimate the size of an item once serialized, in bytes. This is similar to how DynamoDB determines item size.
+   *
+   * <p>The default implementation measures the attributes produced by {@link #itemToMap(Object, boolean)}. Schemas of
+   * frequently cached values override this with an estimate derived from the item without serializing it.
+   *
+   * @param item The item to estimate the size of.
+   * @return The estimated size.
+   */
+  public long estimateSize(T item) {
+    return estimateSize(itemToMap(item, true));
+  }
+
+  private static long estimateSize(Map<String, Entity> map) {
+    long size = 0;
+    for (Map.Entry<String, Entity> e : map.entrySet()) {
+      size += e.getKey().length() + estimateSize(e.getValue());
+    }
+    return size;
+  }
+
+  private static long estimateSize(Entity entity) {
+    switch (entity.getType()) {
+      case BINARY:
+        return entity.getBinary().size();
+      case BOOLEAN:
+        return 1;
+      case NUMBER:
+        return Long.BYTES;
+      case STRING:
+        return entity.getString().length();
+      case LIST:
+        long listSize = 3;
+        for (Entity e : entity.getList()) {
+          listSize += 1 + estimateSize(e);
+        }
+        return listSize;
+      case MAP:
+        return 3 + estimateSize(entity.getMap());
+      default:
+        throw new UnsupportedOperationException("Unable to estimate size of type " + entity.getType());
+    }
+  }
 
   public Entity entity(T item, String key) {
     return itemToMap(item, true).get(key);
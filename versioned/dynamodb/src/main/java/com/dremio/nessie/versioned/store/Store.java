@@ -67,4 +67,16 @@ public interface Store extends AutoCloseable {
       throws ReferenceNotFoundException;
 
   Stream<InternalRef> getRefs();
+
+  /**
+   * Retrieve the refs whose name starts with the provided prefix.
+   *
+   * <p>Stores that can't filter refs on the server side may rely on this default, which filters all refs locally.
+   *
+   * @param prefix The prefix of the ref names to return.
+   * @return The matching refs.
+   */
+  default Stream<InternalRef> getRefs(String prefix) {
+    return getRefs().filter(r -> r.getName().startsWith(prefix));
+  }
 }
@@ -88,6 +88,30 @@ public enum ValueType {
     return map;
   }
 
+  /**
+   * Write a value of this type, including the type tag, directly to a backend's representation.
+   * @param value The value to write.
+   * @param writer The writer for the attributes of the value.
+   */
+  public <V> void write(V value, AttributeWriter writer) {
+    this.<V>getSchema().write(value, writer);
+    writer.writeString(SCHEMA_TYPE, type.getString());
+  }
+
+  /**
+   * Validate the type tag of an item and read it directly from a backend's representation.
+   * @param reader The reader for the attributes of the item.
+   * @return The value read.
+   */
+  public <V> V read(AttributeReader reader) {
+    Id id = reader.readId(Store.KEY_NAME);
+    Preconditions.checkArgument(reader.contains(SCHEMA_TYPE), "Missing type tag for schema for id %s.", id.getHash());
+    String loadedType = reader.readString(SCHEMA_TYPE);
+    Preconditions.checkArgument(type.getString().equals(loadedType),
+        "Expected schema for id %s to be of type '%s' but is actually '%s'.", id.getHash(), type.getString(), loadedType);
+    return this.<V>getSchema().read(reader);
+  }
+
   public ConditionExpression addTypeCheck(Optional<ConditionExpression> possibleExpression) {
     final ExpressionFunction checkType = ExpressionFunction.equals(ExpressionPath.builder(SCHEMA_TYPE).build(), type);
     return possibleExpression.map(ce -> ce.and(checkType)).orElse(ConditionExpression.of(checkType));
@@ -28,6 +28,7 @@ import com.google.common.collect.ImmutableSet;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
 import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
 
 /**
@@ -112,6 +113,22 @@ public class AliasCollectorImpl implements AliasCollector {
     return builder;
   }
 
+  /**
+   * Apply these aliases to the attached builder.
+   * @param builder Builder to supplement
+   * @return The updated builder.
+   */
+  public ScanRequest.Builder apply(ScanRequest.Builder builder) {
+    if (!attributeValues.isEmpty()) {
+      builder.expressionAttributeValues(Collections.unmodifiableMap(attributeValues));
+    }
+
+    if (!attributeNames.isEmpty()) {
+      builder.expressionAttributeNames(Collections.unmodifiableMap(attributeNames));
+    }
+    return builder;
+  }
+
   /**
    * Apply these aliases to the attached builder.
    * @param builder Builder to supplement
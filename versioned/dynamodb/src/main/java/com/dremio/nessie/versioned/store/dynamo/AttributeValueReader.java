@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.store.dynamo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.dremio.nessie.versioned.store.AttributeReader;
+import com.dremio.nessie.versioned.store.Entity;
+import com.dremio.nessie.versioned.store.Id;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * Reads the attributes of an item straight from DynamoDB attribute values.
+ */
+public class AttributeValueReader implements AttributeReader {
+
+  private final Map<String, AttributeValue> attributes;
+
+  public AttributeValueReader(Map<String, AttributeValue> attributes) {
+    this.attributes = attributes;
+  }
+
+  private AttributeValue get(String name) {
+    AttributeValue value = attributes.get(name);
+    if (value == null) {
+      throw new NullPointerException(String.format("Unable to find '%s' in: %s.", name, attributes));
+    }
+    return value;
+  }
+
+  @Override
+  public boolean contains(String name) {
+    return attributes.containsKey(name);
+  }
+
+  @Override
+  public Id readId(String name) {
+    return Id.of(get(name).b().asByteArrayUnsafe());
+  }
+
+  @Override
+  public ByteString readBinary(String name) {
+    return UnsafeByteOperations.unsafeWrap(get(name).b().asByteArrayUnsafe());
+  }
+
+  @Override
+  public String readString(String name) {
+    return get(name).s();
+  }
+
+  @Override
+  public List<String> readStringList(String name) {
+    List<AttributeValue> values = get(name).l();
+    List<String> strings = new ArrayList<>(values.size());
+    for (AttributeValue value : values) {
+      strings.add(value.s());
+    }
+    return strings;
+  }
+
+  @Override
+  public Stream<AttributeReader> readMapList(String name) {
+    return get(name).l().stream().map(v -> new AttributeValueReader(v.m()));
+  }
+
+  @Override
+  public Entity readEntity(String name) {
+    return AttributeValueUtil.toEntity(get(name));
+  }
+
+  @Override
+  public Map<String, Entity> toEntityMap() {
+    return AttributeValueUtil.toEntity(attributes);
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.store.dynamo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import com.dremio.nessie.versioned.store.AttributeWriter;
+import com.dremio.nessie.versioned.store.Entity;
+import com.dremio.nessie.versioned.store.Id;
+import com.google.protobuf.ByteString;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * Writes the attributes of an item straight to DynamoDB attribute values.
+ */
+public class AttributeValueWriter implements AttributeWriter {
+
+  private final Map<String, AttributeValue> attributes = new HashMap<>();
+
+  public Map<String, AttributeValue> getAttributes() {
+    return attributes;
+  }
+
+  @Override
+  public void writeId(String name, Id id) {
+    attributes.put(name, id(id));
+  }
+
+  @Override
+  public void writeBinary(String name, ByteString value) {
+    attributes.put(name, AttributeValue.builder().b(SdkBytes.fromByteBuffer(value.asReadOnlyByteBuffer())).build());
+  }
+
+  @Override
+  public void writeString(String name, String value) {
+    attributes.put(name, AttributeValue.builder().s(value).build());
+  }
+
+  @Override
+  public void writeStringList(String name, List<String> values) {
+    List<AttributeValue> list = new ArrayList<>(values.size());
+    for (String value : values) {
+      list.add(AttributeValue.builder().s(value).build());
+    }
+    attributes.put(name, AttributeValue.builder().l(list).build());
+  }
+
+  @Override
+  public <E> void writeMapList(String name, Collection<E> values, BiConsumer<E, AttributeWriter> writer) {
+    List<AttributeValue> list = new ArrayList<>(values.size());
+    for (E value : values) {
+      AttributeValueWriter valueWriter = new AttributeValueWriter();
+      writer.accept(value, valueWriter);
+      list.add(AttributeValue.builder().m(valueWriter.attributes).build());
+    }
+    attributes.put(name, AttributeValue.builder().l(list).build());
+  }
+
+  @Override
+  public void writeEntity(String name, Entity value) {
+    attributes.put(name, AttributeValueUtil.fromEntity(value));
+  }
+
+  public static AttributeValue id(Id id) {
+    return AttributeValue.builder().b(SdkBytes.fromByteArrayUnsafe(id.toBytes())).build();
+  }
+}
@@ -17,13 +17,19 @@ package com.dremio.nessie.versioned.store.dynamo;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.slf4j.Logger;
@@ -39,11 +45,11 @@ import com.dremio.nessie.versioned.impl.condition.ConditionExpression;
 import com.dremio.nessie.versioned.impl.condition.ExpressionFunction;
 import com.dremio.nessie.versioned.impl.condition.ExpressionPath;
 import com.dremio.nessie.versioned.impl.condition.UpdateExpression;
+import com.dremio.nessie.versioned.store.Entity;
 import com.dremio.nessie.versioned.store.Id;
 import com.dremio.nessie.versioned.store.LoadOp;
 import com.dremio.nessie.versioned.store.LoadStep;
 import com.dremio.nessie.versioned.store.SaveOp;
-import com.dremio.nessie.versioned.store.SimpleSchema;
 import com.dremio.nessie.versioned.store.Store;
 import com.dremio.nessie.versioned.store.ValueType;
 import com.google.common.annotations.VisibleForTesting;
@@ -51,8 +57,8 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimaps;
-import com.google.common.collect.Sets;
 
 import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
@@ -93,7 +99,13 @@ public class DynamoStore implements Store {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(DynamoStore.class);
 
+  private static final int MAX_LOAD_ATTEMPTS = 10;
+  private static final long BASE_BACKOFF_MILLIS = 25;
+  private static final long MAX_BACKOFF_MILLIS = 2000;
+
   private final int paginationSize = 100;
+  // dynamo accepts at most 25 items in a single BatchWriteItem call.
+  private final int writePaginationSize = 25;
   private final DynamoStoreConfig config;
 
   private DynamoDbClient client;
@@ -116,6 +128,15 @@ public class DynamoStore implements Store {
         .build();
   }
 
+  /**
+   * Create a DynamoStore that reads through the given client instead of one created on start.
+   */
+  @VisibleForTesting
+  DynamoStore(DynamoStoreConfig config, DynamoDbAsyncClient async) {
+    this(config);
+    this.async = async;
+  }
+
   @Override
   public void start() {
     DynamoDbClientBuilder b1 = DynamoDbClient.builder();
@@ -158,45 +179,46 @@ public class DynamoStore implements Store {
   public void load(LoadStep loadstep) throws ReferenceNotFoundException {
 
     while (true) { // for each load step in the chain.
-      List<ListMultimap<String, LoadOp<?>>> stepPages = paginateLoads(loadstep, paginationSize);
-
-      for (ListMultimap<String, LoadOp<?>> l : stepPages) {
-        Map<String, KeysAndAttributes> loads = l.keySet().stream().collect(Collectors.toMap(Function.identity(), table -> {
-          List<LoadOp<?>> loadList = l.get(table);
-          List<Map<String, AttributeValue>> keys = loadList.stream()
-              .map(load -> ImmutableMap.of(KEY_NAME, AttributeValueUtil.fromEntity(load.getId().toEntity())))
-              .collect(Collectors.toList());
-          return KeysAndAttributes.builder().keys(keys).consistentRead(true).build();
-        }));
-
-        BatchGetItemResponse response = client.batchGetItem(BatchGetItemRequest.builder().requestItems(loads).build());
-        Map<String, List<Map<String, AttributeValue>>> responses = response.responses();
-        Sets.SetView<String> missingElements = Sets.difference(loads.keySet(), responses.keySet());
-        Preconditions.checkArgument(missingElements.isEmpty(), "Did not receive any objects for table(s) %s.", missingElements);
-
-        for (String table : responses.keySet()) {
-          List<LoadOp<?>> loadList = l.get(table);
-          List<Map<String, AttributeValue>> values = responses.get(table);
-          int missingResponses = loadList.size() - values.size();
-          if (missingResponses != 0) {
-            ValueType loadType = loadList.get(0).getValueType();
-            if (loadType == ValueType.REF || loadType == ValueType.L1) {
-              throw new ReferenceNotFoundException("Unable to find requested ref.");
-            }
-
-            throw new DynamoGeneralReadFailure(
-                String.format("[%d] object(s) missing in table read [%s]. \n\nObjects expected: %s\n\nObjects Received: %s",
-                missingResponses, table, loadList, responses));
+      Map<String, Map<Id, LoadOp<?>>> remaining = loadstep.getOps()
+          .collect(Collectors.groupingBy(op -> tableNames.get(op.getValueType()), Collectors.toMap(LoadOp::getId, Function.identity())));
+
+      for (int attempt = 0; !remaining.isEmpty(); attempt++) {
+        if (attempt > 0) {
+          if (attempt == MAX_LOAD_ATTEMPTS) {
+            throw new DynamoGeneralReadFailure(String.format("Unable to load [%d] object(s) after %d attempts, too many keys were "
+                + "left unprocessed.", remaining.values().stream().mapToInt(Map::size).sum(), attempt));
           }
+          backoff(attempt);
+        }
+
+        // all pages of a step are requested concurrently.
+        final Map<String, Map<Id, LoadOp<?>>> requested = remaining;
+        List<CompletableFuture<BatchGetItemResponse>> pages = paginateLoads(requested, paginationSize).stream()
+            .map(loads -> async.batchGetItem(BatchGetItemRequest.builder().requestItems(loads).build()))
+            .collect(Collectors.toList());
+
+        Map<String, Map<Id, LoadOp<?>>> unprocessed = new HashMap<>();
+        for (CompletableFuture<BatchGetItemResponse> page : pages) {
+          BatchGetItemResponse response = await(page);
 
           // unfortunately, responses don't come in the order of the requests so we need to map between ids.
-          Map<Id, LoadOp<?>> opMap = loadList.stream().collect(Collectors.toMap(LoadOp::getId, Function.identity()));
-          for (int i = 0; i < values.size(); i++) {
-            Map<String, AttributeValue> item = values.get(i);
-            opMap.get(Id.fromEntity(AttributeValueUtil.toEntity(item.get(KEY_NAME)))).loaded(AttributeValueUtil.toEntity(item));
-          }
+          response.responses().forEach((table, values) -> values.forEach(item -> {
+            AttributeValueReader reader = new AttributeValueReader(item);
+            LoadOp<?> op = requested.get(table).remove(reader.readId(KEY_NAME));
+            op.loaded(reader);
+          }));
+
+          // under load, dynamo may not return all items requested. These will be retried.
+          response.unprocessedKeys().forEach((table, keys) -> keys.keys().forEach(key -> {
+            Id id = new AttributeValueReader(key).readId(KEY_NAME);
+            unprocessed.computeIfAbsent(table, t -> new HashMap<>()).put(id, requested.get(table).remove(id));
+          }));
         }
+
+        checkNoneMissing(requested);
+        remaining = unprocessed;
       }
+
       Optional<LoadStep> next = loadstep.getNext();
 
       if (!next.isPresent()) {
@@ -206,19 +228,66 @@ public class DynamoStore implements Store {
     }
   }
 
-  private List<ListMultimap<String, LoadOp<?>>> paginateLoads(LoadStep loadStep, int size) {
+  /**
+   * Ensure that all items requested were either returned or left unprocessed.
+   */
+  private static void checkNoneMissing(Map<String, Map<Id, LoadOp<?>>> notReturned) throws ReferenceNotFoundException {
+    for (Map.Entry<String, Map<Id, LoadOp<?>>> table : notReturned.entrySet()) {
+      Collection<LoadOp<?>> missing = table.getValue().values();
+      if (missing.isEmpty()) {
+        continue;
+      }
+
+      if (missing.stream().anyMatch(op -> op.getValueType() == ValueType.REF || op.getValueType() == ValueType.L1)) {
+        throw new ReferenceNotFoundException("Unable to find requested ref.");
+      }
+
+      throw new DynamoGeneralReadFailure(
+          String.format("[%d] object(s) missing in table read [%s]. \n\nObjects missing: %s", missing.size(), table.getKey(), missing));
+    }
+  }
+
+  /**
+   * Wait before retrying unprocessed keys, using exponential backoff with full jitter.
+   */
+  private static void backoff(int attempt) {
+    long maxDelay = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << attempt);
+    try {
+      Thread.sleep(ThreadLocalRandom.current().nextLong(maxDelay + 1));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  private List<Map<String, KeysAndAttributes>> paginateLoads(Map<String, Map<Id, LoadOp<?>>> loads, int size) {
 
-    List<LoadOp<?>> ops = loadStep.getOps().collect(Collectors.toList());
+    List<Map.Entry<String, Id>> keys = loads.entrySet().stream()
+        .flatMap(e -> e.getValue().keySet().stream().map(id -> Maps.immutableEntry(e.getKey(), id)))
+        .collect(Collectors.toList());
 
-    List<ListMultimap<String, LoadOp<?>>> paginated = new ArrayList<>();
-    for (int i = 0; i < ops.size(); i += size) {
-      ListMultimap<String, LoadOp<?>> mm =
-          Multimaps.index(ops.subList(i, Math.min(i + size, ops.size())), l -> tableNames.get(l.getValueType()));
-      paginated.add(mm);
+    List<Map<String, KeysAndAttributes>> paginated = new ArrayList<>();
+    for (int i = 0; i < keys.size(); i += size) {
+      ListMultimap<String, Map<String, AttributeValue>> mm = Multimaps.transformValues(
+          Multimaps.index(keys.subList(i, Math.min(i + size, keys.size())), Map.Entry::getKey),
+          e -> ImmutableMap.of(KEY_NAME, AttributeValueWriter.id(e.getValue())));
+      paginated.add(Maps.transformValues(mm.asMap(),
+          tableKeys -> KeysAndAttributes.builder().keys(tableKeys).consistentRead(true).build()));
     }
     return paginated;
   }
 
+  private static <T> T await(CompletableFuture<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
   @Override
   public <V> boolean putIfAbsent(ValueType type, V value) {
     ConditionExpression condition = ConditionExpression.of(ExpressionFunction.attributeNotExists(ExpressionPath.builder(KEY_NAME).build()));
@@ -246,12 +315,12 @@ public class DynamoStore implements Store {
   }
 
   @Override
-  @SuppressWarnings("unchecked")
   public <V> void put(ValueType type, V value, Optional<ConditionExpression> conditionUnAliased) {
     Preconditions.checkArgument(type.getObjectClass().isAssignableFrom(value.getClass()),
         "ValueType %s doesn't extend expected type %s.", value.getClass().getName(), type.getObjectClass().getName());
-    Map<String, AttributeValue> attributes = AttributeValueUtil.fromEntity(
-        type.addType(((SimpleSchema<V>)type.getSchema()).itemToMap(value, true)));
+    AttributeValueWriter writer = new AttributeValueWriter();
+    type.write(value, writer);
+    Map<String, AttributeValue> attributes = writer.getAttributes();
 
     PutItemRequest.Builder builder = PutItemRequest.builder()
         .tableName(tableNames.get(type))
@@ -268,7 +337,7 @@ public class DynamoStore implements Store {
   @Override
   public boolean delete(ValueType type, Id id, Optional<ConditionExpression> condition) {
     DeleteItemRequest.Builder delete = DeleteItemRequest.builder()
-        .key(AttributeValueUtil.fromEntity(id.toKeyMap()))
+        .key(ImmutableMap.of(KEY_NAME, AttributeValueWriter.id(id)))
         .tableName(tableNames.get(type));
 
     AliasCollectorImpl collector = new AliasCollectorImpl();
@@ -288,43 +357,36 @@ public class DynamoStore implements Store {
   @Override
   public void save(List<SaveOp<?>> ops) {
     List<CompletableFuture<BatchWriteItemResponse>> saves =  new ArrayList<>();
-    for (int i = 0; i < ops.size(); i += paginationSize) {
+    for (int i = 0; i < ops.size(); i += writePaginationSize) {
 
       ListMultimap<String, SaveOp<?>> mm =
-          Multimaps.index(ops.subList(i, Math.min(i + paginationSize, ops.size())), l -> tableNames.get(l.getType()));
+          Multimaps.index(ops.subList(i, Math.min(i + writePaginationSize, ops.size())), l -> tableNames.get(l.getType()));
       ListMultimap<String, WriteRequest> writes = Multimaps.transformValues(mm, save -> {
-        return WriteRequest.builder().putRequest(PutRequest.builder().item(AttributeValueUtil.fromEntity(save.toEntity())).build()).build();
+        AttributeValueWriter writer = new AttributeValueWriter();
+        save.write(writer);
+        return WriteRequest.builder().putRequest(PutRequest.builder().item(writer.getAttributes()).build()).build();
       });
       BatchWriteItemRequest batch = BatchWriteItemRequest.builder().requestItems(writes.asMap()).build();
       saves.add(async.batchWriteItem(batch));
     }
 
-    try {
-      CompletableFuture.allOf(saves.toArray(new CompletableFuture[0])).get();
-    } catch (InterruptedException e) {
-      throw new RuntimeException(e);
-    } catch (ExecutionException e) {
-      Throwables.throwIfUnchecked(e.getCause());
-      throw new RuntimeException(e.getCause());
-    }
+    await(CompletableFuture.allOf(saves.toArray(new CompletableFuture[0])));
   }
 
   @Override
-  @SuppressWarnings("unchecked")
   public <V> V loadSingle(ValueType valueType, Id id) {
     GetItemResponse response = client.getItem(GetItemRequest.builder()
         .tableName(tableNames.get(valueType))
-        .key(ImmutableMap.of(KEY_NAME, AttributeValueUtil.fromEntity(id.toEntity())))
+        .key(ImmutableMap.of(KEY_NAME, AttributeValueWriter.id(id)))
         .consistentRead(true)
         .build());
     if (!response.hasItem()) {
       throw ResourceNotFoundException.builder().message("Unable to load item.").build();
     }
-    return (V) valueType.getSchema().mapToItem(valueType.checkType(AttributeValueUtil.toEntity(response.item())));
+    return valueType.read(new AttributeValueReader(response.item()));
   }
 
   @Override
-  @SuppressWarnings("unchecked")
   public <V> Optional<V> update(ValueType type, Id id, UpdateExpression update, Optional<ConditionExpression> condition)
       throws ReferenceNotFoundException {
     try {
@@ -334,12 +396,12 @@ public class DynamoStore implements Store {
       UpdateItemRequest.Builder updateRequest = collector.apply(UpdateItemRequest.builder())
           .returnValues(ReturnValue.ALL_NEW)
           .tableName(tableNames.get(type))
-          .key(ImmutableMap.of(KEY_NAME, AttributeValueUtil.fromEntity(id.toEntity())))
+          .key(ImmutableMap.of(KEY_NAME, AttributeValueWriter.id(id)))
           .updateExpression(aliased.toUpdateExpressionString());
       aliasedCondition.ifPresent(e -> updateRequest.conditionExpression(e.toConditionExpressionString()));
       UpdateItemRequest builtRequest = updateRequest.build();
       UpdateItemResponse response = client.updateItem(builtRequest);
-      return (Optional<V>) Optional.of(type.getSchema().mapToItem(AttributeValueUtil.toEntity(response.attributes())));
+      return Optional.of(type.<V>getSchema().read(new AttributeValueReader(response.attributes())));
     } catch (ResourceNotFoundException ex) {
       throw new ReferenceNotFoundException("Unable to find value.", ex);
     } catch (ConditionalCheckFailedException checkFailed) {
@@ -362,10 +424,38 @@ public class DynamoStore implements Store {
 
   @Override
   public Stream<InternalRef> getRefs() {
-    return client.scanPaginator(ScanRequest.builder().tableName(tableNames.get(ValueType.REF)).build())
-        .stream()
-        .flatMap(r -> r.items().stream())
-        .map(i -> ValueType.REF.<InternalRef>getSchema().mapToItem(AttributeValueUtil.toEntity(i)));
+    return scanRefs(ScanRequest.builder());
+  }
+
+  @Override
+  public Stream<InternalRef> getRefs(String prefix) {
+    if (prefix.isEmpty()) {
+      return getRefs();
+    }
+
+    AliasCollectorImpl collector = new AliasCollectorImpl();
+    ConditionExpression filter = ConditionExpression.of(
+        ExpressionFunction.beginsWith(ExpressionPath.builder(InternalRef.NAME).build(), Entity.ofString(prefix)))
+        .alias(collector);
+    return scanRefs(collector.apply(ScanRequest.builder()).filterExpression(filter.toConditionExpressionString()));
+  }
+
+  /**
+   * Scan the ref table. The table is split into segments that are all scanned concurrently.
+   */
+  private Stream<InternalRef> scanRefs(ScanRequest.Builder request) {
+    final int segments = config.getRefScanSegments();
+    final ScanRequest base = request.tableName(tableNames.get(ValueType.REF)).build();
+    final Queue<Map<String, AttributeValue>> items = new ConcurrentLinkedQueue<>();
+    CompletableFuture<?>[] scans = IntStream.range(0, segments)
+        .mapToObj(segment -> async.scanPaginator(base.toBuilder()
+            .segment(segment)
+            .totalSegments(segments)
+            .build())
+            .subscribe(page -> items.addAll(page.items())))
+        .toArray(CompletableFuture[]::new);
+    await(CompletableFuture.allOf(scans));
+    return items.stream().map(i -> ValueType.REF.<InternalRef>getSchema().read(new AttributeValueReader(i)));
   }
 
   private final void createIfMissing(String name) {
@@ -37,6 +37,7 @@ import com.dremio.nessie.versioned.StoreWorker;
 import com.dremio.nessie.versioned.StringSerializer;
 import com.dremio.nessie.versioned.VersionStore;
 import com.dremio.nessie.versioned.WithHash;
+import com.dremio.nessie.versioned.store.Store;
 import com.dremio.nessie.versioned.store.dynamo.DynamoStore;
 
 import software.amazon.awssdk.regions.Region;
@@ -84,7 +85,7 @@ public class DynamoStoreFixture implements VersionStore<String, String>, AutoClo
   }
 
   private final DynamoStore store;
-  private final VersionStore<String, String> impl;
+  private final TieredVersionStore<String, String> impl;
 
   /**
    * Create a new fixture.
@@ -99,6 +100,13 @@ public class DynamoStoreFixture implements VersionStore<String, String>, AutoClo
     return store;
   }
 
+  /**
+   * Create another version store on top of a store, such as a wrapper of the store of this fixture.
+   */
+  public TieredVersionStore<String, String> createVersionStore(Store store) {
+    return new TieredVersionStore<>(WORKER, store, true);
+  }
+
   public VersionStore<String, String> getWrapped() {
     return impl;
   }
@@ -128,6 +136,12 @@ public class DynamoStoreFixture implements VersionStore<String, String>, AutoClo
     impl.merge(fromHash, toBranch, expectedHash);
   }
 
+  @Override
+  public void squash(Hash fromHash, BranchName toBranch, Optional<Hash> expectedHash, String metadata)
+      throws ReferenceNotFoundException, ReferenceConflictException {
+    impl.squash(fromHash, toBranch, expectedHash, metadata);
+  }
+
   @Override
   public void assign(NamedRef ref, Optional<Hash> expectedHash, Hash targetHash)
       throws ReferenceNotFoundException, ReferenceConflictException {
@@ -151,16 +165,35 @@ public class DynamoStoreFixture implements VersionStore<String, String>, AutoClo
     return impl.getNamedRefs();
   }
 
+  public Stream<WithHash<NamedRef>> getNamedRefs(String prefix) {
+    return impl.getNamedRefs(prefix);
+  }
+
   @Override
   public Stream<WithHash<String>> getCommits(Ref ref) throws ReferenceNotFoundException {
     return impl.getCommits(ref);
   }
 
+  @Override
+  public Stream<WithHash<String>> getCommits(Ref ref, Key key) throws ReferenceNotFoundException {
+    return impl.getCommits(ref, key);
+  }
+
   @Override
   public Stream<Key> getKeys(Ref ref) throws ReferenceNotFoundException {
     return impl.getKeys(ref);
   }
 
+  @Override
+  public Stream<Key> getKeys(Ref ref, Optional<Key> startAfter) throws ReferenceNotFoundException {
+    return impl.getKeys(ref, startAfter);
+  }
+
+  @Override
+  public Stream<Key> getKeys(Ref ref, Key namespace, Optional<Key> startAfter) throws ReferenceNotFoundException {
+    return impl.getKeys(ref, namespace, startAfter);
+  }
+
   @Override
   public String getValue(Ref ref, Key key) throws ReferenceNotFoundException {
     return impl.getValue(ref, key);
@@ -182,6 +215,16 @@ public class DynamoStoreFixture implements VersionStore<String, String>, AutoClo
     return impl.getDiffs(from, to);
   }
 
+  @Override
+  public Stream<Diff<String>> getDiffs(Ref from, Ref to, Optional<Key> startAfter) throws ReferenceNotFoundException {
+    return impl.getDiffs(from, to, startAfter);
+  }
+
+  @Override
+  public Stream<Key> getDiffKeys(Ref from, Ref to, Optional<Key> startAfter) throws ReferenceNotFoundException {
+    return impl.getDiffKeys(from, to, startAfter);
+  }
+
   @Override
   public Collector collectGarbage() {
     return impl.collectGarbage();
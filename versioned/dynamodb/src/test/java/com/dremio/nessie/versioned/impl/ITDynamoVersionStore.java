@@ -19,15 +19,34 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.AfterEach;
@@ -55,10 +74,15 @@ import com.dremio.nessie.versioned.TagName;
 import com.dremio.nessie.versioned.Unchanged;
 import com.dremio.nessie.versioned.WithHash;
 import com.dremio.nessie.versioned.impl.InconsistentValue.InconsistentValueException;
+import com.dremio.nessie.versioned.impl.InternalBranch.Commit;
+import com.dremio.nessie.versioned.store.Entity;
 import com.dremio.nessie.versioned.store.Id;
+import com.dremio.nessie.versioned.store.SaveOp;
+import com.dremio.nessie.versioned.store.Store;
 import com.dremio.nessie.versioned.store.ValueType;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.protobuf.ByteString;
 
 @ExtendWith(LocalDynamoDB.class)
 class ITDynamoVersionStore {
@@ -121,6 +145,153 @@ class ITDynamoVersionStore {
 
   }
 
+  @Test
+  void mergeSeveralCommits() throws Exception {
+    BranchName branch1 = BranchName.of("b1");
+    BranchName branch2 = BranchName.of("b2");
+    fixture.create(branch1, Optional.empty());
+    fixture.create(branch2, Optional.empty());
+
+    // enough keys on both branches that the commits of the source touch the same L1 positions as the target.
+    List<Operation<String>> ops = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      ops.add(Put.of(Key.of("target" + i), "world1"));
+    }
+    fixture.commit(branch1, Optional.empty(), "metadata", ops);
+    for (int c = 0; c < 3; c++) {
+      ops.clear();
+      for (int i = 0; i < 50; i++) {
+        ops.add(Put.of(Key.of("source" + i), "world" + c));
+      }
+      fixture.commit(branch2, Optional.empty(), "metadata" + c, ops);
+    }
+    fixture.merge(fixture.toHash(branch2), branch1, Optional.of(fixture.toHash(branch1)));
+
+    // the intentions replayed on the target must match its tree, or the next commit fails the branch state check.
+    fixture.commit(branch1, Optional.empty(), "metadata", ImmutableList.of(Put.of(Key.of("target0"), "world3")));
+    assertEquals("world3", fixture.getValue(branch1, Key.of("target0")));
+    assertEquals("world1", fixture.getValue(branch1, Key.of("target299")));
+    assertEquals("world2", fixture.getValue(branch1, Key.of("source49")));
+  }
+
+  @Test
+  void mergeAfterLongDivergence() throws Exception {
+    BranchName branch1 = BranchName.of("long-lived");
+    BranchName branch2 = BranchName.of("release");
+    fixture.create(branch1, Optional.empty());
+    for (int i = 0; i < 5; i++) {
+      fixture.commit(branch1, Optional.empty(), "base " + i, ImmutableList.of(Put.of(Key.of("base" + i), "v")));
+    }
+    Hash fork = fixture.toHash(branch1);
+    fixture.create(branch2, Optional.of(fork));
+
+    // diverge further than the length of a parent list and the former merge depth limit.
+    for (int i = 0; i < 230; i++) {
+      fixture.commit(branch1, Optional.empty(), "main " + i, ImmutableList.of(Put.of(Key.of("main" + i), "v")));
+    }
+    for (int i = 0; i < 3; i++) {
+      fixture.commit(branch2, Optional.empty(), "release " + i, ImmutableList.of(Put.of(Key.of("release" + i), "v")));
+    }
+
+    L1 head1 = fixture.getStore().loadSingle(ValueType.L1, Id.of(fixture.toHash(branch1)));
+    L1 head2 = fixture.getStore().loadSingle(ValueType.L1, Id.of(fixture.toHash(branch2)));
+    assertEquals(235, head1.getSkipList().getGeneration());
+    assertEquals(Id.of(fork), HistoryRetriever.findCommonParent(fixture.getStore(), head1, head2));
+    assertEquals(Id.of(fork), HistoryRetriever.findCommonParent(fixture.getStore(), head2, head1));
+
+    fixture.merge(fixture.toHash(branch2), branch1, Optional.of(fixture.toHash(branch1)));
+    assertEquals("v", fixture.getValue(branch1, Key.of("main229")));
+    assertEquals("v", fixture.getValue(branch1, Key.of("release2")));
+  }
+
+  @Test
+  void historyWithReadAhead() throws Exception {
+    BranchName branch = BranchName.of("read-ahead");
+    fixture.create(branch, Optional.empty());
+    List<String> messages = new ArrayList<>();
+    // span several parent lists.
+    for (int i = 0; i < 120; i++) {
+      fixture.commit(branch, Optional.empty(), "commit " + i, ImmutableList.of(Put.of(Key.of("k" + i), "v")));
+      messages.add(0, "commit " + i);
+    }
+
+    L1 head = fixture.getStore().loadSingle(ValueType.L1, Id.of(fixture.toHash(branch)));
+    for (int readAhead : new int[] {0, 1, 5}) {
+      List<String> history = new HistoryRetriever(fixture.getStore(), head, Id.EMPTY, true, true, false)
+          .withReadAhead(readAhead)
+          .getStream()
+          .map(item -> item.getMetadata().getBytes().toStringUtf8())
+          .collect(Collectors.toList());
+      assertEquals(messages, history, "read ahead " + readAhead);
+    }
+
+    // stopping early leaves pages that were read ahead unconsumed.
+    assertEquals(messages.subList(0, 3), new HistoryRetriever(fixture.getStore(), head, Id.EMPTY, false, true, false)
+        .withReadAhead(5)
+        .getStream()
+        .limit(3)
+        .map(item -> item.getMetadata().getBytes().toStringUtf8())
+        .collect(Collectors.toList()));
+  }
+
+  @Test
+  void generationOfLegacyHistory() throws Exception {
+    // histories written before generations were introduced, longer than a parent list. other forks from history at 20.
+    List<Id> history = legacyHistory(L1.EMPTY.withSkipList(SkipList.UNKNOWN), "legacy", 200);
+    L1 fork = fixture.getStore().loadSingle(ValueType.L1, history.get(180));
+    List<Id> other = legacyHistory(fork, "other", 120);
+
+    BranchName branch1 = BranchName.of("b1");
+    BranchName branch2 = BranchName.of("b2");
+    BranchName branch3 = BranchName.of("b3");
+    fixture.create(branch1, Optional.of(history.get(0).toHash()));
+    fixture.create(branch2, Optional.of(history.get(120).toHash()));
+    fixture.create(branch3, Optional.of(other.get(0).toHash()));
+    fixture.commit(branch1, Optional.empty(), "metadata", ImmutableList.of(Put.of(Key.of("hi"), "world1")));
+    fixture.commit(branch2, Optional.empty(), "metadata", ImmutableList.of(Put.of(Key.of("no"), "world2")));
+    fixture.commit(branch3, Optional.empty(), "metadata", ImmutableList.of(Put.of(Key.of("other"), "world3")));
+
+    // the first commit on top of a legacy head gets a generation, which its descendants inherit.
+    L1 head1 = fixture.getStore().loadSingle(ValueType.L1, Id.of(fixture.toHash(branch1)));
+    L1 head2 = fixture.getStore().loadSingle(ValueType.L1, Id.of(fixture.toHash(branch2)));
+    L1 head3 = fixture.getStore().loadSingle(ValueType.L1, Id.of(fixture.toHash(branch3)));
+    assertEquals(201, head1.getSkipList().getGeneration());
+    assertEquals(81, head2.getSkipList().getGeneration());
+    assertEquals(141, head3.getSkipList().getGeneration());
+    for (int level = 1; level <= head1.getSkipList().getMaxLevel(); level++) {
+      assertEquals(history.get((int) (200 - head1.getSkipList().getPointerGeneration(level))), head1.getSkipList().getPointer(level));
+    }
+    assertEquals(history.get(120), HistoryRetriever.findCommonParent(fixture.getStore(), head1, head2));
+    assertEquals(history.get(180), HistoryRetriever.findCommonParent(fixture.getStore(), head1, head3));
+    assertEquals(history.get(180), HistoryRetriever.findCommonParent(fixture.getStore(), head3, head2));
+
+    fixture.merge(fixture.toHash(branch2), branch1, Optional.of(fixture.toHash(branch1)));
+    assertEquals("world2", fixture.getValue(branch1, Key.of("no")));
+    L1 merged = fixture.getStore().loadSingle(ValueType.L1, Id.of(fixture.toHash(branch1)));
+    assertEquals(202, merged.getSkipList().getGeneration());
+  }
+
+  /**
+   * Save a chain of L1s without generations on top of an L1.
+   * @return The ids of the chain and the ancestors of the L1, most recent first.
+   */
+  private List<Id> legacyHistory(L1 start, String name, int length) {
+    List<Id> history = new ArrayList<>();
+    new HistoryRetriever(fixture.getStore(), start, Id.EMPTY, false, false, true).getStream()
+        .forEach(item -> history.add(item.getId()));
+    L1 legacy = start;
+    List<SaveOp<?>> saves = new ArrayList<>();
+    for (int i = 0; i < length; i++) {
+      legacy = legacy.getChildWithTree(Id.build(name + i), L1.EMPTY.getMap(), KeyMutationList.of(Collections.emptyList()),
+          KeyFilter.ALL);
+      assertFalse(legacy.getSkipList().isKnown());
+      saves.add(new SaveOp<L1>(ValueType.L1, legacy));
+      history.add(0, legacy.getId());
+    }
+    fixture.getStore().save(saves);
+    return history;
+  }
+
   @Test
   void mergeConflict() throws Exception {
     BranchName branch1 = BranchName.of("b1");
@@ -182,6 +353,42 @@ class ITDynamoVersionStore {
     assertThat(keysFromStore, containsInAnyOrder(names.toArray(new Key[0])));
   }
 
+  @Test
+  void sortedKeysCanBePaged() throws Exception {
+    BranchName branch = BranchName.of("sorted-keys");
+    fixture.create(branch, Optional.empty());
+    Hash current = fixture.toHash(branch);
+    Random r = new Random(4321);
+    List<Key> names = new ArrayList<>();
+    // enough commits to generate several checkpoints, interleaving keys that sort before and after existing ones.
+    for (int i = 1; i < 120; i++) {
+      if (i % 7 == 0) {
+        Key removal = names.remove(r.nextInt(names.size()));
+        fixture.commit(branch, Optional.of(current), "commit " + i, Collections.<Operation<String>>singletonList(Delete.of(removal)));
+      } else {
+        Key name = Key.of("k" + r.nextInt(100000), "t" + i);
+        names.add(name);
+        fixture.commit(branch, Optional.of(current), "commit " + i, Collections.<Operation<String>>singletonList(Put.of(name, "bar")));
+      }
+      current = fixture.toHash(branch);
+    }
+    Collections.sort(names);
+
+    assertEquals(names, fixture.getKeys(branch, Optional.empty()).collect(Collectors.toList()));
+
+    List<Key> paged = new ArrayList<>();
+    Optional<Key> startAfter = Optional.empty();
+    while (true) {
+      List<Key> page = fixture.getKeys(branch, startAfter).limit(10).collect(Collectors.toList());
+      if (page.isEmpty()) {
+        break;
+      }
+      paged.addAll(page);
+      startAfter = Optional.of(page.get(page.size() - 1));
+    }
+    assertEquals(names, paged);
+  }
+
   @Test
   void multiload() throws Exception {
     BranchName branch = BranchName.of("my-key-list");
@@ -311,6 +518,25 @@ class ITDynamoVersionStore {
         .map(wh -> wh.getValue().getName()).collect(Collectors.toSet()));
   }
 
+  @Test
+  void checkRefsWithPrefix() throws Exception {
+    BranchName b1 = BranchName.of("job/1");
+    fixture.create(b1, Optional.empty());
+    fixture.create(BranchName.of("job/2"), Optional.empty());
+    fixture.create(BranchName.of("main"), Optional.empty());
+    fixture.create(TagName.of("job-tag"), Optional.of(L1.EMPTY_ID.toHash()));
+    fixture.commit(b1, Optional.empty(), "metadata", ImmutableList.of(Put.of(Key.of("hi"), "world")));
+
+    assertEquals(ImmutableSet.of("job/1", "job/2"), fixture.getNamedRefs("job/")
+        .map(wh -> wh.getValue().getName()).collect(Collectors.toSet()));
+    assertEquals(ImmutableSet.of("job/1", "job/2", "job-tag"), fixture.getNamedRefs("job")
+        .map(wh -> wh.getValue().getName()).collect(Collectors.toSet()));
+    assertEquals(0, fixture.getNamedRefs("nothing").count());
+
+    Hash head = fixture.toHash(b1);
+    assertEquals(head, fixture.getNamedRefs("job/1").findFirst().get().getHash());
+  }
+
   @Test
   void checkCommits() throws Exception {
     BranchName branch = BranchName.of("foo");
@@ -420,6 +646,216 @@ class ITDynamoVersionStore {
     assertEquals(0L, fixture.getCommits(branch).count());
   }
 
+  @Test
+  void concurrentCommits() throws Exception {
+    BranchName branch = BranchName.of("hot");
+    fixture.create(branch, Optional.empty());
+    Hash initial = fixture.toHash(branch);
+    int commits = 30;
+    ExecutorService service = Executors.newFixedThreadPool(commits);
+    try {
+      List<Future<?>> independent = new ArrayList<>();
+      for (int i = 0; i < commits; i++) {
+        final int num = i;
+        independent.add(service.submit(() -> {
+          fixture.commit(branch, Optional.of(initial), "commit " + num, ImmutableList.of(Put.of(Key.of("key" + num), "value" + num)));
+          return null;
+        }));
+      }
+      for (Future<?> f : independent) {
+        f.get();
+      }
+
+      assertEquals(commits, fixture.getCommits(branch).count());
+      assertEquals(commits, fixture.getKeys(branch).count());
+      for (int i = 0; i < commits; i++) {
+        assertEquals("value" + i, fixture.getValue(branch, Key.of("key" + i)));
+      }
+
+      // commits that all expect a key to be missing conflict with each other, only one of them is applied.
+      Hash beforeConflict = fixture.toHash(branch);
+      List<Future<?>> conflicting = new ArrayList<>();
+      for (int i = 0; i < commits; i++) {
+        final int num = i;
+        conflicting.add(service.submit(() -> {
+          fixture.commit(branch, Optional.of(beforeConflict), "conflict " + num, ImmutableList.of(Put.of(Key.of("conflict"), "c" + num)));
+          return null;
+        }));
+      }
+      int failed = 0;
+      for (Future<?> f : conflicting) {
+        try {
+          f.get();
+        } catch (ExecutionException ex) {
+          assertThat(ex.getCause(), Matchers.instanceOf(InconsistentValueException.class));
+          failed++;
+        }
+      }
+      assertEquals(commits - 1, failed);
+      assertEquals(commits + 1, fixture.getCommits(branch).count());
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  @Test
+  void groupedCommitsRevertingPosition() throws Exception {
+    BranchName branch = BranchName.of("grouped");
+    fixture.create(branch, Optional.empty());
+    Key key = Key.of("reverted");
+    // a key of a concurrent writer that shares the L1 position of the reverted key.
+    Key other = IntStream.range(0, 10_000).mapToObj(i -> Key.of("other" + i))
+        .filter(k -> new InternalKey(k).getL1Position() == new InternalKey(key).getL1Position())
+        .findFirst().get();
+    fixture.commit(branch, Optional.empty(), "initial", ImmutableList.of(Put.of(key, "v0")));
+
+    // the first committer holds the commit lock until the next two commits are queued, so they are applied as one group.
+    // Right before the group updates the branch, a concurrent writer changes the position of the reverted key.
+    CountDownLatch queued = new CountDownLatch(1);
+    Set<Thread> blocking = ConcurrentHashMap.newKeySet();
+    Set<Thread> grouped = ConcurrentHashMap.newKeySet();
+    AtomicBoolean released = new AtomicBoolean();
+    AtomicBoolean interfered = new AtomicBoolean();
+    Store store = intercept(fixture.getStore(), (method, args) -> {
+      if (method.getName().equals("update") && args[0] == ValueType.REF) {
+        if (blocking.contains(Thread.currentThread())) {
+          if (released.compareAndSet(false, true)) {
+            queued.await();
+          }
+        } else if (grouped.contains(Thread.currentThread()) && interfered.compareAndSet(false, true)) {
+          fixture.commit(branch, Optional.empty(), "concurrent", ImmutableList.of(Put.of(other, "z")));
+        }
+      }
+    });
+    TieredVersionStore<String, String> grouping = fixture.createVersionStore(store);
+
+    FutureTask<Void> first = commitInThread(grouping, branch, "first", Put.of(Key.of("first"), "v"), blocking);
+    FutureTask<Void> change = commitInThread(grouping, branch, "change", Put.of(key, "a"), grouped);
+    FutureTask<Void> revert = commitInThread(grouping, branch, "revert", Put.of(key, "v0"), grouped);
+    queued.countDown();
+    first.get();
+    change.get();
+    revert.get();
+
+    assertTrue(interfered.get());
+    assertEquals("v0", fixture.getValue(branch, key));
+    assertEquals("z", fixture.getValue(branch, other));
+    fixture.commit(branch, Optional.empty(), "after", ImmutableList.of(Put.of(key, "v1")));
+    assertEquals("v1", fixture.getValue(branch, key));
+    assertEquals("z", fixture.getValue(branch, other));
+    assertEquals(6, fixture.getCommits(branch).count());
+  }
+
+  @Test
+  void errorInGroupedCommit() throws Exception {
+    BranchName branch = BranchName.of("failing");
+    fixture.create(branch, Optional.empty());
+
+    // the first committer holds the commit lock until the next two commits are queued, so they are applied as one group.
+    // Saving the values of the group then fails with an error.
+    CountDownLatch queued = new CountDownLatch(1);
+    Set<Thread> blocking = ConcurrentHashMap.newKeySet();
+    Set<Thread> grouped = ConcurrentHashMap.newKeySet();
+    AtomicBoolean released = new AtomicBoolean();
+    AtomicBoolean failed = new AtomicBoolean();
+    Store store = intercept(fixture.getStore(), (method, args) -> {
+      if (method.getName().equals("update") && blocking.contains(Thread.currentThread()) && released.compareAndSet(false, true)) {
+        queued.await();
+      } else if (method.getName().equals("save") && grouped.contains(Thread.currentThread()) && failed.compareAndSet(false, true)) {
+        throw new AssertionError("Unable to save.");
+      }
+    });
+    TieredVersionStore<String, String> grouping = fixture.createVersionStore(store);
+
+    FutureTask<Void> first = commitInThread(grouping, branch, "first", Put.of(Key.of("first"), "v"), blocking);
+    FutureTask<Void> second = commitInThread(grouping, branch, "second", Put.of(Key.of("second"), "v"), grouped);
+    FutureTask<Void> third = commitInThread(grouping, branch, "third", Put.of(Key.of("third"), "v"), grouped);
+    queued.countDown();
+    first.get();
+    // both commits of the group fail, including the one whose committer didn't apply the group.
+    ExecutionException ex = assertThrows(ExecutionException.class, () -> second.get(30, TimeUnit.SECONDS));
+    assertThat(ex.getCause(), Matchers.instanceOf(AssertionError.class));
+    ex = assertThrows(ExecutionException.class, () -> third.get(30, TimeUnit.SECONDS));
+    assertThat(ex.getCause(), Matchers.instanceOf(AssertionError.class));
+
+    grouping.commit(branch, Optional.empty(), "fourth", ImmutableList.of(Put.of(Key.of("fourth"), "v")));
+    assertEquals(2, fixture.getCommits(branch).count());
+  }
+
+  /**
+   * Called before each call of a store that is wrapped by {@link #intercept(Store, Interceptor)}.
+   */
+  private interface Interceptor {
+    void before(Method method, Object[] args) throws Exception;
+  }
+
+  private static Store intercept(Store delegate, Interceptor interceptor) {
+    return (Store) Proxy.newProxyInstance(Store.class.getClassLoader(), new Class<?>[] {Store.class}, (proxy, method, args) -> {
+      interceptor.before(method, args);
+      try {
+        return method.invoke(delegate, args);
+      } catch (InvocationTargetException ex) {
+        throw ex.getCause();
+      }
+    });
+  }
+
+  /**
+   * Commit in a new thread and wait until the commit is applied or waits for the commit lock of the branch.
+   * @param threads The committing thread is added to these.
+   */
+  private static FutureTask<Void> commitInThread(TieredVersionStore<String, String> store, BranchName branch, String metadata,
+      Operation<String> op, Set<Thread> threads) throws InterruptedException {
+    FutureTask<Void> task = new FutureTask<>(() -> {
+      store.commit(branch, Optional.empty(), metadata, ImmutableList.of(op));
+      return null;
+    });
+    Thread committer = new Thread(task);
+    threads.add(committer);
+    committer.start();
+    while (!task.isDone() && committer.getState() != Thread.State.WAITING) {
+      Thread.sleep(10);
+    }
+    return task;
+  }
+
+  @Test
+  void readUnsavedCommit() throws Exception {
+    BranchName branch = BranchName.of("unsaved");
+    fixture.create(branch, Optional.empty());
+    Hash emptyHash = fixture.toHash(branch);
+
+    // simulate a committer that died after adding its commit to the log but before saving the corresponding L1.
+    InternalCommitMetadata metadata = InternalCommitMetadata.of(ByteString.copyFromUtf8("unsaved commit"));
+    fixture.getStore().save(Collections.singletonList(new SaveOp<>(ValueType.COMMIT_METADATA, metadata)));
+    Id refId = InternalRefId.ofBranch(branch.getName()).getId();
+    InternalRef ref = fixture.getStore().loadSingle(ValueType.REF, refId);
+    Map<String, Entity> map = new HashMap<>(InternalBranch.SCHEMA.itemToMap(ref.getBranch(), true));
+    List<Entity> commits = new ArrayList<>(map.get(InternalBranch.COMMITS).getList());
+    commits.add(new Commit(Id.generateRandom(), metadata.getId(), Collections.emptyList(),
+        KeyMutationList.of(Collections.emptyList()), KeyFilter.of(Collections.emptyList())).toEntity());
+    map.put(InternalBranch.COMMITS, Entity.ofList(commits));
+    fixture.getStore().put(ValueType.REF, InternalBranch.SCHEMA.mapToItem(map), Optional.empty());
+
+    Hash head = fixture.toHash(branch);
+    assertNotEquals(emptyHash, head);
+    assertEquals(head, fixture.toRef(branch.getName()).getHash());
+    assertEquals(ImmutableList.of("unsaved commit"),
+        fixture.getCommits(branch).map(WithHash::getValue).collect(Collectors.toList()));
+
+    // the reads hand off saving the L1 and collapsing the log to a background task.
+    for (int i = 0; i < 100; i++) {
+      InternalRef current = fixture.getStore().loadSingle(ValueType.REF, refId);
+      if (InternalBranch.SCHEMA.itemToMap(current.getBranch(), true).get(InternalBranch.COMMITS).getList().size() == 1) {
+        break;
+      }
+      Thread.sleep(100);
+    }
+    assertEquals(head, fixture.getStore().<L1>loadSingle(ValueType.L1, Id.of(head)).getId().toHash());
+    assertEquals(1, InternalBranch.SCHEMA.itemToMap(fixture.getStore().<InternalRef>loadSingle(ValueType.REF, refId).getBranch(), true)
+        .get(InternalBranch.COMMITS).getList().size());
+  }
+
   @Disabled
   @Test
   void completeFlow() throws Exception {
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.dremio.nessie.versioned.Key;
+import com.dremio.nessie.versioned.store.Entity;
+import com.dremio.nessie.versioned.store.HasId;
+import com.dremio.nessie.versioned.store.Id;
+import com.dremio.nessie.versioned.store.ValueType;
+import com.dremio.nessie.versioned.store.dynamo.AttributeValueReader;
+import com.dremio.nessie.versioned.store.dynamo.AttributeValueUtil;
+import com.dremio.nessie.versioned.store.dynamo.AttributeValueWriter;
+import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.ByteString;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+class TestAttributeValueWriter {
+
+  @Test
+  void l1() {
+    check(ValueType.L1, L1.EMPTY);
+    InternalKey key = new InternalKey(Key.of("a", "b"));
+    check(ValueType.L1, L1.EMPTY.getChildWithTree(Id.build("metadata"), L1.EMPTY.getMap().withId(3, Id.build("l2")),
+        KeyMutationList.of(Collections.singletonList(KeyMutation.KeyAddition.of(key))), KeyFilter.of(Collections.singletonList(key))));
+  }
+
+  @Test
+  void l2() {
+    List<Entity> tree = new ArrayList<>();
+    for (int i = 0; i < L2.SIZE; i++) {
+      tree.add(Id.build("l3-" + i).toEntity());
+    }
+    check(ValueType.L2, L2.SCHEMA.mapToItem(ImmutableMap.of("id", Id.build("l2").toEntity(), "tree", Entity.ofList(tree))));
+  }
+
+  @Test
+  void l3() {
+    Map<InternalKey, Id> values = new HashMap<>();
+    for (int i = 0; i < 10; i++) {
+      values.put(new InternalKey(Key.of("ns", "table" + i)), Id.build("value" + i));
+    }
+    values.put(new InternalKey(Key.of("removed")), Id.EMPTY);
+    check(ValueType.L3, L3.EMPTY.set(values));
+  }
+
+  @Test
+  void values() {
+    check(ValueType.VALUE, InternalValue.of(ByteString.copyFromUtf8("value")));
+    check(ValueType.COMMIT_METADATA, InternalCommitMetadata.of(ByteString.copyFromUtf8("metadata")));
+  }
+
+  /**
+   * Ensure that writing a value directly results in the same item as writing it through entities and that it reads back.
+   */
+  private static <V extends HasId> void check(ValueType type, V value) {
+    AttributeValueWriter writer = new AttributeValueWriter();
+    type.write(value, writer);
+    Map<String, AttributeValue> expected = AttributeValueUtil.fromEntity(type.addType(type.<V>getSchema().itemToMap(value, true)));
+    assertEquals(expected, writer.getAttributes());
+
+    V read = type.read(new AttributeValueReader(writer.getAttributes()));
+    assertEquals(value.getId(), read.getId());
+    assertEquals(type.<V>getSchema().itemToMap(value, true), type.<V>getSchema().itemToMap(read, true));
+  }
+}
@@ -18,11 +18,13 @@ package com.dremio.nessie.versioned.impl;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
 
+import com.dremio.nessie.versioned.store.Entity;
 import com.dremio.nessie.versioned.store.Id;
 
 public class TestIdMap {
@@ -44,6 +46,9 @@ public class TestIdMap {
     IdMap map1 = new IdMap(1);
     assertThrows(IndexOutOfBoundsException.class, () -> map1.getId(1));
     assertThrows(IndexOutOfBoundsException.class, () -> map1.getId(-1));
+    assertThrows(IndexOutOfBoundsException.class, () -> map1.withId(1, id1));
+    assertThrows(IndexOutOfBoundsException.class, () -> map1.isSameId(1, map1));
+    assertThrows(IndexOutOfBoundsException.class, () -> map1.edit().set(1, id1));
   }
 
   @Test
@@ -53,6 +58,19 @@ public class TestIdMap {
     assertNotEquals(map1, id1);
   }
 
+  @Test
+  void equalsIgnoresOriginalIds() {
+    Id id2 = Id.generateRandom();
+    IdMap modified = new IdMap(2).withId(0, id1);
+    IdMap original = new IdMap(2, id1).withId(1, Id.EMPTY);
+    assertEquals(modified, original);
+    assertEquals(modified.hashCode(), original.hashCode());
+    assertNotEquals(modified.getChanges(), original.getChanges());
+
+    assertNotEquals(modified, modified.withId(1, id2));
+    assertNotEquals(new IdMap(2), new IdMap(3));
+  }
+
   @Test
   void iter() {
     IdMap map1 = new IdMap(1);
@@ -101,6 +119,70 @@ public class TestIdMap {
     assertThrows(IllegalArgumentException.class, () -> IdMap.fromEntity(map1.toEntity(), 14));
   }
 
+  @Test
+  void editInBatch() {
+    IdMap map1 = new IdMap(10);
+    Id id2 = Id.generateRandom();
+    IdMap map2 = map1.edit().set(1, id1).set(2, id2).set(1, Id.EMPTY).set(3, id1).build();
+    assertEquals(2, map2.getChanges().size());
+    assertEquals(2, map2.getChanges().get(0).getPosition());
+    assertEquals(id2, map2.getChanges().get(0).getNewId());
+    assertEquals(map1.withId(2, id2).withId(3, id1), map2);
+    assertTrue(map1.getId(2).isEmpty());
+  }
+
+  @Test
+  void sameId() {
+    IdMap map1 = new IdMap(3);
+    IdMap map2 = map1.withId(1, id1);
+    assertTrue(map1.isSameId(0, map2));
+    assertFalse(map1.isSameId(1, map2));
+    assertTrue(map2.isSameId(1, new IdMap(3).withId(1, id1)));
+    assertSame(map2, map2.withId(1, id1));
+  }
+
+  @Test
+  void ensurePackedRoundTrip() {
+    IdMap map1 = new IdMap(15);
+    for (int i = 0; i < map1.size(); i++) {
+      map1 = map1.withId(i, Id.generateRandom());
+    }
+
+    Entity packed = map1.toPackedEntity();
+    assertEquals(Entity.EntityType.BINARY, packed.getType());
+    assertEquals(1 + 15 * Id.LENGTH, packed.getBinary().size());
+
+    IdMap map2 = IdMap.fromEntity(packed, 15);
+    assertEquals(map1, map2);
+    assertEquals(map1.hashCode(), map2.hashCode());
+    assertEquals(0, map2.getChanges().size());
+    for (int i = 0; i < map1.size(); i++) {
+      assertEquals(map1.getId(i), map2.getId(i));
+    }
+
+    // the packed and list formats decode to the same map.
+    assertEquals(map2, IdMap.fromEntity(map1.toEntity(), 15));
+    assertEquals(packed, map2.toPackedEntity());
+  }
+
+  @Test
+  void modifyPackedMap() {
+    IdMap map1 = IdMap.fromEntity(new IdMap(10).toPackedEntity(), 10);
+    IdMap map2 = map1.withId(3, id1);
+    assertEquals(1, map2.getChanges().size());
+    assertEquals(3, map2.getChanges().get(0).getPosition());
+    assertTrue(map2.getChanges().get(0).getOldId().isEmpty());
+    assertTrue(map1.getId(3).isEmpty());
+    assertEquals(id1, IdMap.fromEntity(map2.toPackedEntity(), 10).getId(3));
+  }
+
+  @Test
+  void failOnWrongPackedDeserialization() {
+    IdMap map1 = new IdMap(15);
+    assertThrows(IllegalArgumentException.class, () -> IdMap.fromEntity(map1.toPackedEntity(), 14));
+    assertThrows(IllegalArgumentException.class, () -> IdMap.fromEntity(Entity.ofBinary(new byte[] {2}), 0));
+  }
+
 
 
 }
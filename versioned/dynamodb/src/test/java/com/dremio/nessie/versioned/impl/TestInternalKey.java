@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import com.dremio.nessie.versioned.Key;
+import com.dremio.nessie.versioned.store.Id;
+
+class TestInternalKey {
+
+  @Test
+  void caseInsensitive() {
+    InternalKey a = new InternalKey(Key.of("Foo", "BAR"));
+    InternalKey b = new InternalKey(Key.of("foo", "bar"));
+    assertEquals(a, b);
+    assertEquals(a.hashCode(), b.hashCode());
+    assertEquals(0, a.compareTo(b));
+    assertEquals(a.getId(), b.getId());
+    assertEquals(a.getPosition(), b.getPosition());
+  }
+
+  @Test
+  void elementBoundaries() {
+    InternalKey a = new InternalKey(Key.of("ab", "c"));
+    InternalKey b = new InternalKey(Key.of("a", "bc"));
+    assertNotEquals(a, b);
+    assertTrue(a.compareTo(b) > 0);
+    assertTrue(b.compareTo(a) < 0);
+  }
+
+  @Test
+  void ordering() {
+    List<InternalKey> sorted = Stream.of(
+        Key.of("b"), Key.of("a", "b"), Key.of("A"), Key.of("ab"), Key.of("a", "a", "a"), Key.of("é"), Key.of("z"))
+        .map(InternalKey::new)
+        .sorted()
+        .collect(Collectors.toList());
+    assertEquals(Arrays.asList(Key.of("A"), Key.of("a", "a", "a"), Key.of("a", "b"), Key.of("ab"), Key.of("b"),
+        Key.of("z"), Key.of("é")), sorted.stream().map(InternalKey::toKey).collect(Collectors.toList()));
+  }
+
+  @Test
+  void stableId() {
+    Key key = Key.of("Some", "Table", "Näme");
+    Id expected = Id.build(h -> key.getElements()
+        .forEach(e -> h.putString(e.toLowerCase(Locale.ROOT), StandardCharsets.UTF_8)));
+    assertEquals(expected, new InternalKey(key).getId());
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.impl;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.dremio.nessie.versioned.Key;
+
+class TestKeyFilter {
+
+  @Test
+  void containsAllKeysAfterRoundTrip() {
+    List<InternalKey> keys = keys("changed", 40);
+    KeyFilter filter = KeyFilter.fromEntity(KeyFilter.of(keys).toEntity());
+    keys.forEach(k -> assertTrue(filter.mightContain(k)));
+    // the filter is sized for a false positive rate around 1%.
+    long falsePositives = keys("other", 1000).stream().filter(filter::mightContain).count();
+    assertTrue(falsePositives < 50, "false positives: " + falsePositives);
+  }
+
+  @Test
+  void emptyFilterContainsNothing() {
+    KeyFilter filter = KeyFilter.of(keys("changed", 0));
+    assertFalse(filter.isAll());
+    keys("other", 100).forEach(k -> assertFalse(filter.mightContain(k)));
+  }
+
+  @Test
+  void tooManyKeys() {
+    KeyFilter filter = KeyFilter.of(keys("changed", 1000));
+    assertTrue(filter.isAll());
+    assertTrue(filter.mightContain(new InternalKey(Key.of("other"))));
+  }
+
+  private static List<InternalKey> keys(String prefix, int count) {
+    return IntStream.range(0, count).mapToObj(i -> new InternalKey(Key.of("ns", prefix + i))).collect(Collectors.toList());
+  }
+}
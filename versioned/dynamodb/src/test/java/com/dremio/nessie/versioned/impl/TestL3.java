@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.dremio.nessie.versioned.Key;
+import com.dremio.nessie.versioned.store.Id;
+
+class TestL3 {
+
+  @Test
+  void batchMatchesSingleSets() {
+    Map<InternalKey, Id> batch = new LinkedHashMap<>();
+    L3 sequential = L3.EMPTY;
+    for (int i = 0; i < 100; i++) {
+      InternalKey key = new InternalKey(Key.of("ns", "table" + i));
+      Id id = Id.build("value" + i);
+      batch.put(key, id);
+      sequential = sequential.set(key, id);
+    }
+
+    L3 batched = L3.EMPTY.set(batch);
+    assertEquals(100, batched.size());
+    assertEquals(sequential.getId(), batched.getId());
+    assertEquals(sequential.getMutations().collect(Collectors.toList()), batched.getMutations().collect(Collectors.toList()));
+    batch.forEach((key, id) -> assertEquals(id, batched.getId(key)));
+  }
+
+  @Test
+  void batchRemovesKeys() {
+    InternalKey a = new InternalKey(Key.of("a"));
+    InternalKey b = new InternalKey(Key.of("b"));
+    Map<InternalKey, Id> add = new LinkedHashMap<>();
+    add.put(a, Id.build("a"));
+    add.put(b, Id.build("b"));
+    L3 added = L3.EMPTY.set(add);
+
+    Map<InternalKey, Id> remove = new LinkedHashMap<>();
+    remove.put(a, Id.EMPTY);
+    remove.put(b, Id.EMPTY);
+    L3 removed = added.set(remove);
+    // adding and removing the same keys results in no change.
+    assertEquals(0, removed.size());
+    assertEquals(L3.EMPTY_ID, removed.getId());
+    assertSame(Id.EMPTY, removed.getId(a));
+  }
+
+  @Test
+  void batchKeepsUnchangedKeys() {
+    InternalKey a = new InternalKey(Key.of("a"));
+    InternalKey b = new InternalKey(Key.of("b"));
+    Map<InternalKey, Id> add = new LinkedHashMap<>();
+    add.put(a, Id.build("a"));
+    add.put(b, Id.build("b"));
+    L3 stored = L3.SCHEMA.mapToItem(L3.SCHEMA.itemToMap(L3.EMPTY.set(add), true));
+
+    // setting a key to the value it already holds is no change, the key stays in the tree.
+    L3 unchanged = stored.set(add);
+    assertEquals(2, unchanged.size());
+    assertEquals(stored.getId(), unchanged.getId());
+    assertEquals(Id.build("a"), unchanged.getId(a));
+    assertEquals(0, unchanged.getMutations().count());
+  }
+
+  @Test
+  void idIndependentOfKeyOrder() {
+    // stored L3s were sorted, and hashed, in the collation order of keys.
+    Map<Key, Id> collated = new TreeMap<>();
+    Map<InternalKey, Id> values = new LinkedHashMap<>();
+    for (String name : Arrays.asList("b", "A", "_c", "a.b", "Z1", "ab", "B2", "9")) {
+      collated.put(Key.of("ns", name), Id.build(name));
+      values.put(new InternalKey(Key.of("ns", name)), Id.build(name));
+    }
+    assertEquals(values.size(), collated.size());
+    assertNotEquals(new ArrayList<>(collated.keySet()),
+        values.keySet().stream().sorted().map(InternalKey::toKey).collect(Collectors.toList()));
+
+    Id stored = Id.build(hasher -> {
+      hasher.putLong(4604180344422375655L);
+      collated.forEach((key, id) -> {
+        InternalKey.addToHasher(new InternalKey(key), hasher);
+        id.addToHash(hasher);
+      });
+    });
+    L3 l3 = L3.EMPTY.set(values);
+    assertEquals(stored, l3.getId());
+    assertEquals(stored, L3.SCHEMA.mapToItem(L3.SCHEMA.itemToMap(l3, true)).getId());
+  }
+}
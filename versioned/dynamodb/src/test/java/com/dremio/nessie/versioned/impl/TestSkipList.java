@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.dremio.nessie.versioned.store.Id;
+
+class TestSkipList {
+
+  @Test
+  void pointersAreAlignedToGenerations() {
+    // ids.get(g) is the id of the commit of generation g.
+    List<Id> ids = new ArrayList<>();
+    ids.add(L1.EMPTY_ID);
+    SkipList skips = SkipList.EMPTY;
+    for (int generation = 1; generation < 1100; generation++) {
+      skips = skips.child(ids.get(generation - 1));
+      ids.add(Id.build("commit" + generation));
+
+      assertEquals(generation, skips.getGeneration());
+      assertEquals(generation - 1, skips.getPointerGeneration(0));
+      for (int level = 1; level <= skips.getMaxLevel(); level++) {
+        long target = skips.getPointerGeneration(level);
+        assertEquals(0, target % (1L << level));
+        assertEquals(ids.get((int) target), skips.getPointer(level));
+      }
+      // levels above the maximum refer to the empty commit.
+      assertEquals(0, skips.getPointerGeneration(skips.getMaxLevel() + 1));
+      assertEquals(L1.EMPTY_ID, skips.getPointer(skips.getMaxLevel() + 1));
+    }
+  }
+
+  @Test
+  void derivedFromHistory() {
+    // history is the ids of the last commit and its ancestors, most recent first.
+    List<Id> history = new ArrayList<>();
+    history.add(L1.EMPTY_ID);
+    SkipList skips = SkipList.EMPTY;
+    for (int generation = 1; generation < 600; generation++) {
+      skips = skips.child(history.get(0));
+      history.add(0, Id.build("commit" + generation));
+
+      SkipList derived = SkipList.fromHistory(history);
+      assertEquals(skips.getGeneration(), derived.getGeneration());
+      assertEquals(skips.getMaxLevel(), derived.getMaxLevel());
+      for (int level = 1; level <= skips.getMaxLevel(); level++) {
+        assertEquals(skips.getPointer(level), derived.getPointer(level));
+      }
+    }
+  }
+
+  @Test
+  void unknownStaysUnknown() {
+    assertFalse(SkipList.UNKNOWN.child(Id.build("a")).isKnown());
+  }
+}
@@ -34,7 +34,7 @@ class TestVersionEquality {
     DynamoStore store = Mockito.mock(DynamoStore.class);
     Mockito.when(store.loadSingle(Mockito.any(), Mockito.any())).thenReturn(L1.EMPTY);
     UpdateState us = b.getUpdateState(store);
-    us.ensureAvailable(null, null, 1, true);
+    us.ensureSaved(null);
     assertEquals(L1.EMPTY_ID, us.getL1().getId());
   }
 
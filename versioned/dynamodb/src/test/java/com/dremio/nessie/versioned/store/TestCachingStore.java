@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import com.dremio.nessie.versioned.impl.InternalRef;
+import com.dremio.nessie.versioned.impl.InternalValue;
+import com.dremio.nessie.versioned.impl.L2;
+import com.dremio.nessie.versioned.impl.condition.ConditionExpression;
+import com.dremio.nessie.versioned.impl.condition.UpdateExpression;
+import com.google.protobuf.ByteString;
+
+class TestCachingStore {
+
+  private final InternalValue v1 = InternalValue.of(ByteString.copyFromUtf8("v1"));
+  private final InternalValue v2 = InternalValue.of(ByteString.copyFromUtf8("v2"));
+
+  @Test
+  void loadsAreCached() throws Exception {
+    MapStore backing = new MapStore();
+    backing.save(Collections.singletonList(new SaveOp<>(ValueType.VALUE, v1)));
+    backing.save(Collections.singletonList(new SaveOp<>(ValueType.L2, L2.EMPTY)));
+    CachingStore store = new CachingStore(backing, 1024 * 1024);
+
+    List<HasId> received = new ArrayList<>();
+    store.load(LoadStep.of(
+        new LoadOp<InternalValue>(ValueType.VALUE, v1.getId(), received::add),
+        new LoadOp<L2>(ValueType.L2, L2.EMPTY_ID, received::add)));
+    assertEquals(2, backing.loadedOps);
+
+    store.load(LoadStep.of(
+        new LoadOp<InternalValue>(ValueType.VALUE, v1.getId(), received::add),
+        new LoadOp<L2>(ValueType.L2, L2.EMPTY_ID, received::add)));
+    assertEquals(2, backing.loadedOps);
+    assertEquals(4, received.size());
+    assertSame(received.get(0), received.get(2));
+    assertEquals(2, store.getStats().hitCount());
+
+    assertSame(received.get(1), store.loadSingle(ValueType.L2, L2.EMPTY_ID));
+    assertEquals(0, backing.loadedSingles);
+  }
+
+  @Test
+  void chainedStepsAreFiltered() throws Exception {
+    MapStore backing = new MapStore();
+    backing.save(Collections.singletonList(new SaveOp<>(ValueType.VALUE, v1)));
+    CachingStore store = new CachingStore(backing, 1024 * 1024);
+    store.save(Collections.singletonList(new SaveOp<>(ValueType.VALUE, v2)));
+
+    List<HasId> received = new ArrayList<>();
+    LoadStep second = LoadStep.of(new LoadOp<InternalValue>(ValueType.VALUE, v2.getId(), received::add));
+    store.load(new LoadStep(
+        Collections.singletonList(new LoadOp<InternalValue>(ValueType.VALUE, v1.getId(), received::add)),
+        () -> Optional.of(second)));
+
+    // the first value had to be loaded, the second was saved through the cache.
+    assertEquals(1, backing.loadedOps);
+    assertEquals(2, received.size());
+    assertEquals(v2, received.get(1));
+  }
+
+  @Test
+  void mutableValuesAreNotCached() {
+    MapStore backing = new MapStore();
+    CachingStore store = new CachingStore(backing, 1024 * 1024);
+    Id id = Id.build("branch");
+    assertNull(store.loadSingle(ValueType.REF, id));
+    assertNull(store.loadSingle(ValueType.REF, id));
+    assertEquals(2, backing.loadedSingles);
+  }
+
+  @Test
+  void cacheIsBoundedByWeight() {
+    MapStore backing = new MapStore();
+    // an L2 is a few KB once serialized, more than this cache will retain.
+    CachingStore store = new CachingStore(backing, 5000);
+    store.save(Collections.singletonList(new SaveOp<>(ValueType.L2, L2.EMPTY)));
+    store.save(Collections.singletonList(new SaveOp<>(ValueType.VALUE, v1)));
+    store.save(Collections.singletonList(new SaveOp<>(ValueType.VALUE, v2)));
+    store.loadSingle(ValueType.L2, L2.EMPTY_ID);
+    assertEquals(1, backing.loadedSingles);
+    store.loadSingle(ValueType.VALUE, v1.getId());
+    assertEquals(1, backing.loadedSingles);
+  }
+
+  /**
+   * A trivial store that keeps serialized values in a map and counts the number of reads.
+   */
+  private static class MapStore implements Store {
+
+    private final Map<LoadOp.LoadOpKey, Map<String, Entity>> values = new HashMap<>();
+    private int loadedOps;
+    private int loadedSingles;
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void load(LoadStep loadstep) {
+      Optional<LoadStep> step = Optional.of(loadstep);
+      while (step.isPresent()) {
+        step.get().getOps().forEach(op -> {
+          loadedOps++;
+          op.loaded(values.get(op.toKey()));
+        });
+        step = step.get().getNext();
+      }
+    }
+
+    @Override
+    public <V> boolean putIfAbsent(ValueType type, V value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <V> void put(ValueType type, V value, Optional<ConditionExpression> conditionUnAliased) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean delete(ValueType type, Id id, Optional<ConditionExpression> condition) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void save(List<SaveOp<?>> ops) {
+      ops.forEach(op -> values.put(new LoadOp.LoadOpKey(op.getType(), op.getValue().getId()), op.toEntity()));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V> V loadSingle(ValueType valueType, Id id) {
+      loadedSingles++;
+      Map<String, Entity> value = values.get(new LoadOp.LoadOpKey(valueType, id));
+      return value == null ? null : (V) valueType.getSchema().mapToItem(value);
+    }
+
+    @Override
+    public <V> Optional<V> update(ValueType type, Id id, UpdateExpression update, Optional<ConditionExpression> condition) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Stream<InternalRef> getRefs() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
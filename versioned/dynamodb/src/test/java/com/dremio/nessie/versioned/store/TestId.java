@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.store;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
+
+class TestId {
+
+  @Test
+  void roundTrip() {
+    Id id = Id.generateRandom();
+    byte[] bytes = id.toBytes();
+    assertEquals(id, Id.of(bytes));
+    assertEquals(id, Id.of(ByteString.copyFrom(bytes)));
+    assertEquals(id, Id.of(ByteBuffer.wrap(bytes)));
+    assertEquals(id.hashCode(), Id.of(bytes).hashCode());
+    assertEquals(ByteString.copyFrom(bytes), id.getValue());
+
+    byte[] padded = new byte[Id.LENGTH + 3];
+    id.copyTo(padded, 3);
+    assertEquals(id, Id.of(padded, 3));
+    assertTrue(id.equalsBytes(padded, 3));
+    assertFalse(Id.EMPTY.equalsBytes(padded, 3));
+  }
+
+  @Test
+  void equality() {
+    byte[] bytes = new byte[Id.LENGTH];
+    assertEquals(Id.EMPTY, Id.of(bytes));
+    assertTrue(Id.of(bytes).isEmpty());
+    for (int i = 0; i < Id.LENGTH; i++) {
+      byte[] other = bytes.clone();
+      other[i] = 1;
+      assertNotEquals(Id.EMPTY, Id.of(other));
+      assertFalse(Id.of(other).isEmpty());
+    }
+  }
+
+  @Test
+  void wrongLength() {
+    assertThrows(IllegalArgumentException.class, () -> Id.of(new byte[Id.LENGTH - 1]));
+    assertThrows(IllegalArgumentException.class, () -> Id.of(ByteString.copyFrom(new byte[Id.LENGTH + 1])));
+  }
+
+  @Test
+  void sameHashesAsGuava() {
+    Id id = Id.generateRandom();
+    assertSameHash(h -> h.putLong(42L).putInt(7).putShort((short) 3).putChar('x').putBoolean(true));
+    assertSameHash(h -> h.putString("some string ü", StandardCharsets.UTF_8).putUnencodedChars("chars"));
+    assertSameHash(h -> h.putBytes(new byte[] {1, 2, 3}).putBytes(new byte[] {4, 5, 6}, 1, 2).putByte((byte) 9));
+    assertSameHash(h -> h.putBytes(ByteBuffer.wrap(new byte[] {7, 8})).putFloat(1.5f).putDouble(2.5d));
+    assertSameHash(id::addToHash);
+    assertSameHash(h -> h.putBytes(id.toBytes()));
+    assertEquals(Id.build(id::addToHash), Id.build(h -> h.putBytes(id.toBytes())));
+  }
+
+  @Test
+  void nestedBuilds() {
+    Id inner = Id.build("inner");
+    Id outer = Id.build(h -> {
+      h.putLong(1L);
+      Id.build("inner").addToHash(h);
+      h.putLong(2L);
+    });
+    assertEquals(outer, Id.build(h -> {
+      h.putLong(1L);
+      inner.addToHash(h);
+      h.putLong(2L);
+    }));
+  }
+
+  private static void assertSameHash(Consumer<Hasher> consumer) {
+    Hasher guava = Hashing.sha256().newHasher();
+    consumer.accept(guava);
+    byte[] expected = Arrays.copyOf(guava.hash().asBytes(), Id.LENGTH);
+    assertArrayEquals(expected, Id.build(consumer).toBytes());
+  }
+}
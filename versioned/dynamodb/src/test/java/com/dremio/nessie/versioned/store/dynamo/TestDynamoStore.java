@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.store.dynamo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import com.dremio.nessie.versioned.impl.DynamoStoreConfig;
+import com.dremio.nessie.versioned.impl.L3;
+import com.dremio.nessie.versioned.store.LoadOp;
+import com.dremio.nessie.versioned.store.LoadStep;
+import com.dremio.nessie.versioned.store.ValueType;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+
+class TestDynamoStore {
+
+  private static final String TABLE = DynamoStoreConfig.builder().build().getTreeTableName();
+
+  @Test
+  void loadRetriesUnprocessedKeys() throws Exception {
+    StubClient client = new StubClient(3);
+    AtomicReference<L3> loaded = new AtomicReference<>();
+    new DynamoStore(DynamoStoreConfig.builder().build(), client)
+        .load(LoadStep.of(new LoadOp<L3>(ValueType.L3, L3.EMPTY.getId(), loaded::set)));
+
+    assertEquals(L3.EMPTY.getId(), loaded.get().getId());
+    assertEquals(4, client.requests.size());
+    // every retry asks for the keys left unprocessed, and only for those.
+    List<Map<String, AttributeValue>> keys = client.requests.get(0).requestItems().get(TABLE).keys();
+    client.requests.forEach(r -> assertEquals(keys, r.requestItems().get(TABLE).keys()));
+  }
+
+  @Test
+  void loadGivesUpOnUnprocessedKeys() {
+    StubClient client = new StubClient(Integer.MAX_VALUE);
+    AtomicReference<L3> loaded = new AtomicReference<>();
+    DynamoStore store = new DynamoStore(DynamoStoreConfig.builder().build(), client);
+    DynamoGeneralReadFailure failure = assertThrows(DynamoGeneralReadFailure.class,
+        () -> store.load(LoadStep.of(new LoadOp<L3>(ValueType.L3, L3.EMPTY.getId(), loaded::set))));
+
+    assertTrue(failure.getMessage().contains("after 10 attempts"), failure.getMessage());
+    assertEquals(10, client.requests.size());
+    assertNull(loaded.get());
+  }
+
+  /**
+   * A client that leaves all requested keys unprocessed for a number of calls and returns the empty L3 afterwards.
+   */
+  private static class StubClient implements DynamoDbAsyncClient {
+
+    private final AtomicInteger unprocessedCalls;
+    private final List<BatchGetItemRequest> requests = Collections.synchronizedList(new ArrayList<>());
+
+    StubClient(int unprocessedCalls) {
+      this.unprocessedCalls = new AtomicInteger(unprocessedCalls);
+    }
+
+    @Override
+    public CompletableFuture<BatchGetItemResponse> batchGetItem(BatchGetItemRequest request) {
+      requests.add(request);
+      if (unprocessedCalls.getAndDecrement() > 0) {
+        return CompletableFuture.completedFuture(BatchGetItemResponse.builder().unprocessedKeys(request.requestItems()).build());
+      }
+
+      AttributeValueWriter writer = new AttributeValueWriter();
+      ValueType.L3.write(L3.EMPTY, writer);
+      Map<String, List<Map<String, AttributeValue>>> items = Collections.singletonMap(TABLE,
+          Collections.singletonList(writer.getAttributes()));
+      return CompletableFuture.completedFuture(BatchGetItemResponse.builder()
+          .responses(items)
+          .unprocessedKeys(Collections.<String, KeysAndAttributes>emptyMap())
+          .build());
+    }
+
+    @Override
+    public String serviceName() {
+      return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
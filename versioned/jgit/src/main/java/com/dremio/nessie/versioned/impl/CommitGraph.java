@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.impl;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Generation numbers of the commits of a repository, in the manner of git's commit-graph, along with pointers to the
+ * ancestors 1, 2, 4, 8... generations back. Ancestry checks and merge bases then take a logarithmic number of steps
+ * rather than a walk of the history in between.
+ *
+ * <p>Nessie commits have a single parent. A commit with several parents, and the commits on top of it, are not indexed,
+ * and callers fall back to walking the history.
+ *
+ * <p>The index is kept in memory. A commit is indexed when first needed, walking back to its closest indexed ancestor,
+ * and the heads of the branches are indexed in the background when the store starts.
+ */
+final class CommitGraph {
+  private static final Logger logger = LoggerFactory.getLogger(CommitGraph.class);
+
+  private static final ExecutorService BACKGROUND = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder().setNameFormat("nessie-jgit-commit-graph-%d").setDaemon(true).build());
+
+  // marks the commits which are not indexed.
+  private static final Node NON_LINEAR = new Node(ObjectId.zeroId(), null);
+
+  private final Repository repository;
+  private final Map<ObjectId, Node> nodes = new ConcurrentHashMap<>();
+
+  CommitGraph(Repository repository) {
+    this.repository = repository;
+  }
+
+  /**
+   * Index commits in the background.
+   * @param heads supplies the commits to index, along with their ancestors
+   */
+  void indexInBackground(Callable<Collection<ObjectId>> heads) {
+    BACKGROUND.execute(() -> {
+      try (ObjectReader reader = repository.newObjectReader()) {
+        for (ObjectId head : heads.call()) {
+          node(reader, head);
+        }
+      } catch (Exception e) {
+        // commits are indexed on demand anyway.
+        logger.debug("Unable to index the commits of {}", repository, e);
+      }
+    });
+  }
+
+  /**
+   * Get the node of a commit, indexing it and its ancestors if needed.
+   * @param reader the reader to parse commits with
+   * @param id the id of the commit
+   * @return the node of the commit, or empty if the commit or one of its ancestors has several parents
+   * @throws IOException if a commit cannot be read
+   */
+  Optional<Node> node(ObjectReader reader, AnyObjectId id) throws IOException {
+    final Node known = nodes.get(id);
+    if (known != null) {
+      return known == NON_LINEAR ? Optional.empty() : Optional.of(known);
+    }
+
+    // walk back to the closest indexed ancestor.
+    final Deque<RevCommit> toIndex = new ArrayDeque<>();
+    Node parent = null;
+    try (RevWalk walk = new RevWalk(reader)) {
+      walk.setRetainBody(false);
+      RevCommit commit = walk.parseCommit(id);
+      while (true) {
+        toIndex.push(commit);
+        if (commit.getParentCount() > 1) {
+          parent = NON_LINEAR;
+          break;
+        }
+        if (commit.getParentCount() == 0) {
+          break;
+        }
+        parent = nodes.get(commit.getParent(0));
+        if (parent != null) {
+          break;
+        }
+        commit = walk.parseCommit(commit.getParent(0));
+      }
+    }
+
+    Node node = parent;
+    while (!toIndex.isEmpty()) {
+      final RevCommit commit = toIndex.pop();
+      final Node created = node == NON_LINEAR || commit.getParentCount() > 1 ? NON_LINEAR : new Node(commit.copy(), node);
+      final Node existing = nodes.putIfAbsent(created == NON_LINEAR ? commit.copy() : created.id, created);
+      node = existing == null ? created : existing;
+    }
+    return node == NON_LINEAR ? Optional.empty() : Optional.of(node);
+  }
+
+  /**
+   * An indexed commit.
+   */
+  static final class Node {
+    private final ObjectId id;
+    private final int generation;
+    // ancestors[k] is the ancestor 2^k generations back.
+    private final Node[] ancestors;
+
+    private Node(ObjectId id, Node parent) {
+      this.id = id;
+      if (parent == null) {
+        this.generation = 1;
+        this.ancestors = new Node[0];
+      } else {
+        this.generation = parent.generation + 1;
+        final List<Node> pointers = new ArrayList<>();
+        pointers.add(parent);
+        for (int k = 1; pointers.get(k - 1).ancestors.length >= k; k++) {
+          pointers.add(pointers.get(k - 1).ancestors[k - 1]);
+        }
+        this.ancestors = pointers.toArray(new Node[0]);
+      }
+    }
+
+    ObjectId getId() {
+      return id;
+    }
+
+    /**
+     * The number of commits from the root commit to this one, included.
+     */
+    int getGeneration() {
+      return generation;
+    }
+
+    /**
+     * The parent of this commit, or null for a root commit.
+     */
+    Node getParent() {
+      return ancestors.length == 0 ? null : ancestors[0];
+    }
+
+    private Node ancestorAt(int targetGeneration) {
+      Node node = this;
+      int distance = generation - targetGeneration;
+      for (int k = 0; distance > 0; k++, distance >>= 1) {
+        if ((distance & 1) != 0) {
+          node = node.ancestors[k];
+        }
+      }
+      return node;
+    }
+
+    /**
+     * Whether this commit is an ancestor of another one, or the same commit.
+     */
+    boolean isAncestorOf(Node other) {
+      return generation <= other.generation && other.ancestorAt(generation).id.equals(id);
+    }
+
+    /**
+     * The closest common ancestor of this commit and another one.
+     * @return the merge base, or null if the commits have no common history
+     */
+    Node mergeBase(Node other) {
+      Node a = generation > other.generation ? ancestorAt(other.generation) : this;
+      Node b = other.generation > generation ? other.ancestorAt(generation) : other;
+      if (a.id.equals(b.id)) {
+        return a;
+      }
+      // a and b are on the same generation, so they have as many pointers.
+      for (int k = a.ancestors.length - 1; k >= 0; k--) {
+        if (k < a.ancestors.length && !a.ancestors[k].id.equals(b.ancestors[k].id)) {
+          a = a.ancestors[k];
+          b = b.ancestors[k];
+        }
+      }
+      return a.getParent() != null && a.getParent().id.equals(b.getParent().id) ? a.getParent() : null;
+    }
+  }
+}
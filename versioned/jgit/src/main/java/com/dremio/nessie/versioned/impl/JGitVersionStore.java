@@ -17,6 +17,7 @@ package com.dremio.nessie.versioned.impl;
 
 import static java.lang.String.format;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
@@ -29,10 +30,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.Spliterator;
+import java.util.TreeSet;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -44,15 +48,20 @@ import javax.inject.Inject;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.LogCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
 import org.eclipse.jgit.errors.AmbiguousObjectException;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.InvalidObjectIdException;
 import org.eclipse.jgit.lib.CommitBuilder;
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectInserter;
 import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.RefUpdate.Result;
@@ -60,9 +69,15 @@ import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.TreeFormatter;
 import org.eclipse.jgit.lib.UserConfig;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.eclipse.jgit.util.SystemReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -83,13 +98,15 @@ import com.dremio.nessie.versioned.TagName;
 import com.dremio.nessie.versioned.Unchanged;
 import com.dremio.nessie.versioned.VersionStore;
 import com.dremio.nessie.versioned.WithHash;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Streams;
 import com.google.protobuf.ByteString;
 
 /**
  * VersionStore interface for JGit backend.
  */
-public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, METADATA> {
+public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, METADATA>, Closeable {
 
   private static final Logger logger = LoggerFactory.getLogger(JGitVersionStore.class);
   private static final String SLASH = "/";
@@ -97,6 +114,8 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
   private final Repository repository;
   private final StoreWorker<TABLE, METADATA> storeWorker;
   private final ObjectId emptyObject;
+  private final RefCache refs;
+  private final CommitGraph graph;
 
   /**
    * Construct a JGitVersionStore.
@@ -105,6 +124,9 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
   public JGitVersionStore(Repository repository, StoreWorker<TABLE, METADATA> storeWorker) {
     this.storeWorker = storeWorker;
     this.repository = repository;
+    this.refs = new RefCache(repository);
+    this.graph = new CommitGraph(repository);
+    graph.indexInBackground(() -> refs.getByPrefix(Constants.R_HEADS).values());
     ObjectId objectId;
     try {
       ObjectInserter oi = repository.newObjectInserter();
@@ -121,41 +143,32 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
   @Nonnull
   @Override
   public Hash toHash(@Nonnull NamedRef ref) throws ReferenceNotFoundException {
-    repository.getRefDatabase().refresh();
-    final org.eclipse.jgit.lib.Ref jgitRef;
+    final ObjectId id;
     try {
-      if (ref instanceof BranchName) {
-        jgitRef = repository.findRef(Constants.R_HEADS + ref.getName());
-      } else if (ref instanceof TagName) {
-        jgitRef = repository.findRef(Constants.R_TAGS + ref.getName());
-      } else {
-        throw new IllegalStateException(String.format("ref %s is not in allowed types", ref));
-      }
+      id = refs.get(fullName(ref));
     } catch (IOException e) {
       throw new RuntimeException("Error talking to git repo", e);
     }
-    if (jgitRef == null) {
+    if (id == null) {
       throw new ReferenceNotFoundException(String.format("Ref %s was not found in the git database", ref));
     }
-    return Hash.of(jgitRef.getObjectId().name());
+    return Hash.of(id.name());
   }
 
   @Override
   public WithHash<Ref> toRef(String refOfUnknownType) throws ReferenceNotFoundException {
     try {
-      org.eclipse.jgit.lib.Ref jgitRef;
-
-      jgitRef = repository.findRef(Constants.R_HEADS + refOfUnknownType);
+      ObjectId id = refs.get(Constants.R_HEADS + refOfUnknownType);
 
       // branch first.
-      if (jgitRef != null) {
-        return WithHash.of(Hash.of(jgitRef.getObjectId().name()), BranchName.of(refOfUnknownType));
+      if (id != null) {
+        return WithHash.of(Hash.of(id.name()), BranchName.of(refOfUnknownType));
       }
 
       // then tag.
-      jgitRef = repository.findRef(Constants.R_TAGS + refOfUnknownType);
-      if (jgitRef != null) {
-        return WithHash.of(Hash.of(jgitRef.getObjectId().name()), TagName.of(refOfUnknownType));
+      id = refs.get(Constants.R_TAGS + refOfUnknownType);
+      if (id != null) {
+        return WithHash.of(Hash.of(id.name()), TagName.of(refOfUnknownType));
       }
 
       // hash last.
@@ -173,10 +186,10 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
     }
   }
 
-  private void testExpectedHash(BranchName branch, Optional<Hash> expectedHash) throws ReferenceNotFoundException {
+  private void testExpectedHash(RevWalk walk, Hash head, Optional<Hash> expectedHash) throws ReferenceNotFoundException {
     if (expectedHash.isPresent()) {
       try {
-        testLinearTransplantList(ImmutableList.of(expectedHash.get(), toHash(branch)));
+        testLinearTransplantList(walk, ImmutableList.of(expectedHash.get(), head));
       } catch (IllegalArgumentException e) {
         throw ReferenceNotFoundException.forReference(expectedHash.get());
       }
@@ -186,14 +199,13 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
   @Override
   public void commit(BranchName branch, Optional<Hash> expectedHash, METADATA metadata,
                      List<Operation<TABLE>> operations) throws ReferenceNotFoundException, ReferenceConflictException {
-    toHash(branch);
-    try {
-      testExpectedHash(branch, expectedHash);
+    final Hash head = toHash(branch);
+    // a single reader for all the objects read by the commit.
+    try (RevWalk walk = new RevWalk(repository)) {
+      testExpectedHash(walk, head, expectedHash);
       ObjectId commits = TreeBuilder.commitObjects(operations, repository, storeWorker.getValueSerializer(), emptyObject);
-      ObjectId treeId = repository.resolve(expectedHash.map(Hash::asString).orElse(branch.getName()) + "^{tree}");
-      if (treeId == null) {
-        throw ReferenceNotFoundException.forReference(expectedHash.map(x -> (Ref) x).orElse(branch));
-      }
+      ObjectId currentTreeId = treeOf(walk, head);
+      ObjectId treeId = expectedHash.isPresent() ? treeOf(walk, expectedHash.get()) : currentTreeId;
       ObjectId newTree = TreeBuilder.merge(treeId, commits, repository);
 
       List<String> unchanged = operations.stream()
@@ -201,17 +213,13 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
                                          .map(Operation::getKey)
                                          .map(JGitVersionStore::stringFromKey)
                                          .collect(Collectors.toList());
-      Optional<ObjectId> mergedTree = commitTreeWithTwoWayMerge(branch, expectedHash, newTree, unchanged);
-      ObjectId currentCommitId = repository.resolve(branch.getName() + "^{commit}");
-      ObjectId currentTreeId = repository.resolve(branch.getName() + "^{tree}");
+      Optional<ObjectId> mergedTree = tryTwoWayMerge(currentTreeId, newTree, repository.newObjectInserter(), treeId, unchanged);
       ObjectId mergedHash = mergedTree.orElseThrow(() -> ReferenceConflictException.forReference(branch,
                                                                                                  expectedHash,
-                                                                                                 Optional.of(currentCommitId)
-                                                                                                         .map(ObjectId::name)
-                                                                                                         .map(Hash::of)));
+                                                                                                 Optional.of(head)));
       commitTree(branch,
                  mergedHash,
-                 Optional.of(currentCommitId).map(ObjectId::name).map(Hash::of),
+                 Optional.of(head),
                  metadata,
                  ObjectId.isEqual(currentTreeId, mergedHash),
                  false);
@@ -220,57 +228,84 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
     }
   }
 
-  private Optional<ObjectId> commitTreeWithTwoWayMerge(BranchName branch, Optional<Hash> expectedHash, ObjectId newTree,
-                                                       List<String> unchanged) throws IOException {
-    ObjectId currentTreeId = repository.resolve(branch.getName() + "^{tree}");
-    ObjectId expectedId = repository.resolve(expectedHash.map(Hash::asString).orElse(currentTreeId.name()) + "^{tree}");
-    Optional<ObjectId> mergedTree = tryTwoWayMerge(currentTreeId,
-                                                   newTree,
-                                                   repository.newObjectInserter(),
-                                                   expectedId,
-                                                   unchanged);
+  private void testLinearTransplantList(RevWalk rw, List<Hash> sequenceToTransplant) throws ReferenceNotFoundException {
+    RevCommit start = null;
+    for (Hash hash : sequenceToTransplant) {
+      RevCommit commit = commitOf(rw, hash);
+      if (start == null) {
+        start = commit;
+        continue;
+      }
+      try {
+        if (!isAncestor(rw, start, commit)) {
+          throw new IllegalArgumentException(format("Hash %s is not the ancestor for commit %s", start, hash));
+        } else {
+          start = commit;
+        }
+      } catch (IOException e) {
+        throw new IllegalArgumentException(format("Hash %s is not the ancestor for commit %s", start, hash));
+      }
+    }
+  }
 
-    return mergedTree;
+  /**
+   * Whether a commit is an ancestor of another one, using the commit graph unless their history isn't linear.
+   */
+  private boolean isAncestor(RevWalk walk, RevCommit ancestor, RevCommit commit) throws IOException {
+    Optional<CommitGraph.Node> ancestorNode = graph.node(walk.getObjectReader(), ancestor);
+    Optional<CommitGraph.Node> commitNode = graph.node(walk.getObjectReader(), commit);
+    if (ancestorNode.isPresent() && commitNode.isPresent()) {
+      return ancestorNode.get().isAncestorOf(commitNode.get());
+    }
+    return walk.isMergedInto(ancestor, commit);
   }
 
-  private void testLinearTransplantList(List<Hash> sequenceToTransplant) throws ReferenceNotFoundException {
-    try (RevWalk rw = new RevWalk(repository)) {
-      RevCommit start = null;
-      for (Hash hash : sequenceToTransplant) {
-        RevCommit commit;
-        try {
-          ObjectId obj = repository.resolve(hash.asString() + "^{commit}");
-          commit = rw.parseCommit(obj);
-        } catch (IOException | NullPointerException e) {
-          throw ReferenceNotFoundException.forReference(hash);
-        }
-        if (start == null) {
-          start = commit;
-          continue;
-        }
-        try {
-          if (!rw.isMergedInto(start, commit)) {
-            throw new IllegalArgumentException(format("Hash %s is not the ancestor for commit %s", start, hash));
-          } else {
-            start = commit;
-          }
-        } catch (IOException e) {
-          throw new IllegalArgumentException(format("Hash %s is not the ancestor for commit %s", start, hash));
-        }
+  /**
+   * Parse a commit given by its hash, with the reader of the request.
+   */
+  private RevCommit commitOf(RevWalk walk, Hash hash) throws ReferenceNotFoundException {
+    try {
+      final String name = hash.asString();
+      // a complete id needs no lookup in the repository.
+      final ObjectId id = ObjectId.isId(name) ? ObjectId.fromString(name) : repository.resolve(name + "^{commit}");
+      if (id == null) {
+        throw ReferenceNotFoundException.forReference(hash);
       }
+      return walk.parseCommit(id);
+    } catch (IOException | IllegalArgumentException e) {
+      throw ReferenceNotFoundException.forReference(hash);
     }
   }
 
+  private RevTree treeOf(RevWalk walk, Hash hash) throws ReferenceNotFoundException {
+    return commitOf(walk, hash).getTree();
+  }
+
+  /**
+   * Resolve a branch, tag or hash to its tree, looking named references up in the ref cache.
+   */
+  private RevTree treeOf(RevWalk walk, Ref ref) throws ReferenceNotFoundException, IOException {
+    if (ref instanceof Hash) {
+      return treeOf(walk, (Hash) ref);
+    }
+    final ObjectId id = refs.get(fullName((NamedRef) ref));
+    if (id == null) {
+      throw ReferenceNotFoundException.forReference(ref);
+    }
+    return walk.parseCommit(id).getTree();
+  }
+
   @Override
   public void transplant(BranchName targetBranch, Optional<Hash> expectedHash,
                          List<Hash> sequenceToTransplant) throws ReferenceNotFoundException, ReferenceConflictException {
-    testLinearTransplantList(sequenceToTransplant);
-    try {
-      ObjectId targetTreeId = repository.resolve(targetBranch.getName() + "^{tree}");
-      if (targetTreeId == null) {
+    try (RevWalk walk = new RevWalk(repository)) {
+      testLinearTransplantList(walk, sequenceToTransplant);
+      ObjectId currentCommitId = refs.get(fullName(targetBranch));
+      if (currentCommitId == null) {
         throw ReferenceNotFoundException.forReference(expectedHash.map(x -> (Ref) x).orElse(targetBranch));
       }
-      testExpectedHash(targetBranch, expectedHash);
+      ObjectId currentTreeId = walk.parseCommit(currentCommitId).getTree();
+      testExpectedHash(walk, Hash.of(currentCommitId.name()), expectedHash);
       ObjectId newTree = null;
       for (Hash hash: sequenceToTransplant) {
         ObjectId transplantTree = TreeBuilder.transplant(hash, repository);
@@ -280,9 +315,9 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
           newTree = TreeBuilder.merge(newTree, transplantTree, repository);
         }
       }
-      Optional<ObjectId> mergeTree = commitTreeWithTwoWayMerge(targetBranch, expectedHash, newTree, Collections.emptyList());
-      ObjectId currentCommitId = repository.resolve(targetBranch.getName() + "^{commit}");
-      ObjectId currentTreeId = repository.resolve(targetBranch.getName() + "^{tree}");
+      ObjectId expectedTreeId = expectedHash.isPresent() ? treeOf(walk, expectedHash.get()) : currentTreeId;
+      Optional<ObjectId> mergeTree = tryTwoWayMerge(currentTreeId, newTree, repository.newObjectInserter(), expectedTreeId,
+                                                    Collections.emptyList());
       if (!mergeTree.isPresent()) {
         throw ReferenceConflictException.forReference(targetBranch,
                                                       expectedHash,
@@ -290,14 +325,13 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
       }
       for (Hash hash: sequenceToTransplant) {
         ObjectId transplantTree = TreeBuilder.merge(currentTreeId, TreeBuilder.transplant(hash, repository), repository);
-        commitTree(targetBranch,
-                   transplantTree,
-                   Optional.of(currentCommitId).map(ObjectId::name).map(Hash::of),
-                   getCommit(hash),
-                   false,
-                   false);
-        currentCommitId = repository.resolve(targetBranch.getName() + "^{commit}");
-        currentTreeId = repository.resolve(targetBranch.getName() + "^{tree}");
+        currentCommitId = commitTree(targetBranch,
+                                     transplantTree,
+                                     Optional.of(currentCommitId).map(ObjectId::name).map(Hash::of),
+                                     getCommit(walk, hash),
+                                     false,
+                                     false);
+        currentTreeId = transplantTree;
       }
     } catch (IOException e) {
       throw new RuntimeException("Unknown error", e);
@@ -308,24 +342,19 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
   public void merge(Hash fromHash, BranchName toBranch, Optional<Hash> expectedHash)
       throws ReferenceNotFoundException, ReferenceConflictException {
     try {
-      org.eclipse.jgit.lib.Ref ref = repository.findRef(Constants.R_HEADS + toBranch.getName());
-      if (ref == null) {
+      String headName = fullName(toBranch);
+      ObjectId headId = refs.get(headName);
+      if (headId == null) {
         throw ReferenceNotFoundException.forReference(expectedHash.map(x -> (Ref) x).orElse(toBranch));
       }
-      ObjectId newCommitId = repository.resolve(fromHash.asString() + "^{commit}");
-      if (newCommitId == null) {
-        throw ReferenceNotFoundException.forReference(fromHash);
-      }
-      RevCommit newCommit = RevCommit.parse(repository.getObjectDatabase().open(newCommitId).getBytes());
       try (RevWalk walk = new RevWalk(repository)) {
-        ObjectId headId = ref.getObjectId();
-        String headName = ref.getName();
+        RevCommit newCommit = commitOf(walk, fromHash);
         RevCommit headCommit = walk.lookupCommit(headId);
-        RevCommit upstream = walk.lookupCommit(newCommit.getId());
+        RevCommit upstream = newCommit;
 
-        if (walk.isMergedInto(upstream, headCommit)) {
+        if (isAncestor(walk, upstream, headCommit)) {
           return;
-        } else if (walk.isMergedInto(headCommit, upstream)) {
+        } else if (isAncestor(walk, headCommit, upstream)) {
           RefUpdate rup = repository.updateRef(headName);
           rup.setNewObjectId(newCommit);
           expectedHash.map(Hash::asString).map(ObjectId::fromString).ifPresent(rup::setExpectedOldObjectId);
@@ -334,12 +363,14 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
             case FAST_FORWARD:
             case FORCED:
             case NO_CHANGE:
+              refs.updated(headName, rup.getOldObjectId(), newCommit);
               return;
             default:
+              refs.invalidate(headName);
               throw new IOException("failed update");
           }
         }
-        List<RevCommit> pickList = calculatePickList(newCommit, headCommit);
+        List<RevCommit> pickList = calculatePickList(walk, newCommit, headCommit);
         transplant(toBranch, expectedHash, pickList.stream().map(RevCommit::name).map(Hash::of).collect(Collectors.toList()));
       }
     } catch (IOException e) {
@@ -347,8 +378,134 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
     }
   }
 
-  private List<RevCommit> calculatePickList(RevCommit headCommit, RevCommit upstreamCommit)
+  @Override
+  public void squash(Hash fromHash, BranchName toBranch, Optional<Hash> expectedHash, METADATA metadata)
+      throws ReferenceNotFoundException, ReferenceConflictException {
+    final Hash head = toHash(toBranch);
+    try (RevWalk walk = new RevWalk(repository)) {
+      testExpectedHash(walk, head, expectedHash);
+      RevCommit from = commitOf(walk, fromHash);
+      RevCommit headCommit = commitOf(walk, head);
+      RevCommit base = mergeBase(walk, from, headCommit);
+
+      // the changes to merge are the differences between the trees of the merge base and of the hash.
+      DirCache changes = DirCache.newInCore();
+      DirCacheBuilder builder = changes.builder();
+      List<String> paths = new ArrayList<>();
+      try (TreeWalk treeWalk = new TreeWalk(repository, walk.getObjectReader())) {
+        addTreeOrEmpty(treeWalk, base);
+        treeWalk.addTree(from.getTree());
+        treeWalk.setRecursive(true);
+        treeWalk.setFilter(TreeFilter.ANY_DIFF);
+        while (treeWalk.next()) {
+          DirCacheEntry entry = new DirCacheEntry(treeWalk.getRawPath());
+          if (FileMode.MISSING.equals(treeWalk.getRawMode(1))) {
+            // the sentinel TreeBuilder uses for deleted keys.
+            entry.setObjectId(emptyObject);
+            entry.setFileMode(FileMode.GITLINK);
+          } else {
+            entry.setObjectId(treeWalk.getObjectId(1));
+            entry.setFileMode(treeWalk.getFileMode(1));
+          }
+          builder.add(entry);
+          paths.add(treeWalk.getPathString());
+        }
+      }
+      builder.finish();
+      if (paths.isEmpty()) {
+        return;
+      }
+
+      // the changed keys must not have been changed by any commit of the branch since the merge base.
+      List<String> conflicts = changedSince(walk, headCommit, base, paths);
+      if (!conflicts.isEmpty()) {
+        throw new ReferenceConflictException(format("The following keys have been changed in conflict: %s.",
+            conflicts.stream().map(JGitVersionStore::keyFromUrlString).collect(Collectors.toList())));
+      }
+
+      ObjectId changesTree;
+      try (ObjectInserter inserter = repository.newObjectInserter()) {
+        changesTree = changes.writeTree(inserter);
+        inserter.flush();
+      }
+      ObjectId newTree = TreeBuilder.merge(headCommit.getTree(), changesTree, repository);
+      // merging with the head itself drops the deleted keys from the tree.
+      ObjectId mergedTree = tryTwoWayMerge(headCommit.getTree(), newTree, repository.newObjectInserter(), headCommit.getTree(),
+                                           Collections.emptyList())
+          .orElseThrow(() -> ReferenceConflictException.forReference(toBranch, expectedHash, Optional.of(head)));
+      // the update of the branch fails if it moved since it was read, rather than overwriting the commits added since.
+      commitTree(toBranch, mergedTree, Optional.of(head), metadata, false, false);
+    } catch (IOException e) {
+      throw new RuntimeException("Unknown error", e);
+    }
+  }
+
+  /**
+   * The closest common ancestor of two commits, or null if they have no common history.
+   */
+  private RevCommit mergeBase(RevWalk walk, RevCommit a, RevCommit b) throws IOException {
+    Optional<CommitGraph.Node> nodeA = graph.node(walk.getObjectReader(), a);
+    Optional<CommitGraph.Node> nodeB = graph.node(walk.getObjectReader(), b);
+    if (nodeA.isPresent() && nodeB.isPresent()) {
+      CommitGraph.Node base = nodeA.get().mergeBase(nodeB.get());
+      return base == null ? null : walk.parseCommit(base.getId());
+    }
+    try (RevWalk baseWalk = new RevWalk(walk.getObjectReader())) {
+      baseWalk.setRevFilter(RevFilter.MERGE_BASE);
+      baseWalk.markStart(baseWalk.parseCommit(a));
+      baseWalk.markStart(baseWalk.parseCommit(b));
+      RevCommit base = baseWalk.next();
+      return base == null ? null : walk.parseCommit(base);
+    }
+  }
+
+  /**
+   * The paths among the given ones which were changed by a commit between a commit and one of its ancestors.
+   */
+  private List<String> changedSince(RevWalk walk, RevCommit commit, RevCommit ancestor, List<String> paths) throws IOException {
+    Set<String> changed = new TreeSet<>();
+    try (TreeWalk treeWalk = new TreeWalk(repository, walk.getObjectReader())) {
+      treeWalk.setRecursive(true);
+      treeWalk.setFilter(AndTreeFilter.create(PathFilterGroup.createFromStrings(paths), TreeFilter.ANY_DIFF));
+      for (RevCommit c = commit; c != null && !c.equals(ancestor); ) {
+        RevCommit parent = c.getParentCount() == 0 ? null : walk.parseCommit(c.getParent(0));
+        treeWalk.reset();
+        addTreeOrEmpty(treeWalk, parent);
+        treeWalk.addTree(c.getTree());
+        while (treeWalk.next()) {
+          changed.add(treeWalk.getPathString());
+        }
+        c = parent;
+      }
+    }
+    return new ArrayList<>(changed);
+  }
+
+  private static void addTreeOrEmpty(TreeWalk treeWalk, RevCommit commit) throws IOException {
+    if (commit == null) {
+      treeWalk.addTree(new EmptyTreeIterator());
+    } else {
+      treeWalk.addTree(commit.getTree());
+    }
+  }
+
+  private List<RevCommit> calculatePickList(RevWalk walk, RevCommit headCommit, RevCommit upstreamCommit)
       throws IOException {
+    Optional<CommitGraph.Node> head = graph.node(walk.getObjectReader(), headCommit);
+    Optional<CommitGraph.Node> upstream = graph.node(walk.getObjectReader(), upstreamCommit);
+    if (head.isPresent() && upstream.isPresent()) {
+      // the commits from the head back to the merge base, leaving out the root commit as the log below does.
+      CommitGraph.Node base = head.get().mergeBase(upstream.get());
+      List<RevCommit> cherryPickList = new ArrayList<>();
+      for (CommitGraph.Node node = head.get();
+           node.getParent() != null && (base == null || !node.getId().equals(base.getId()));
+           node = node.getParent()) {
+        cherryPickList.add(walk.parseCommit(node.getId()));
+      }
+      Collections.reverse(cherryPickList);
+      return cherryPickList;
+    }
+
     Iterable<RevCommit> commitsToUse;
     try (Git git = new Git(repository)) {
       LogCommand cmd = git.log().addRange(upstreamCommit, headCommit);
@@ -404,9 +561,14 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
         commitTree((BranchName) ref, newTreeId, Optional.empty(), null, false, true);
       } else {
         ObjectId target = repository.resolve(targetHash.get().asString());
-        RefUpdate createBranch = repository.updateRef((ref instanceof TagName ? Constants.R_TAGS : Constants.R_HEADS) + ref.getName());
+        RefUpdate createBranch = repository.updateRef(fullName(ref));
         createBranch.setNewObjectId(target);
         Result result = createBranch.update();
+        if (result.equals(Result.NEW)) {
+          refs.updated(fullName(ref), createBranch.getOldObjectId(), target);
+        } else {
+          refs.invalidate(fullName(ref));
+        }
         if (result.equals(Result.REJECTED_MISSING_OBJECT)) {
           throw ReferenceNotFoundException.forReference(targetHash.get());
         } else if (!result.equals(Result.NEW)) {
@@ -422,7 +584,7 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
   public void delete(NamedRef ref, Optional<Hash> hash) throws ReferenceNotFoundException, ReferenceConflictException {
     toHash(ref);
     try {
-      RefUpdate update = repository.updateRef((ref instanceof TagName ? Constants.R_TAGS : Constants.R_HEADS) + ref.getName());
+      RefUpdate update = repository.updateRef(fullName(ref));
       Optional<ObjectId> objectId = fromHash(ref, hash);
       if (objectId.isPresent() && !ObjectId.isEqual(update.getRef().getObjectId(), objectId.get())) {
         throw ReferenceConflictException.forReference(ref, hash, Optional.empty());
@@ -430,6 +592,11 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
       update.setForceUpdate(true);
       objectId.ifPresent(update::setExpectedOldObjectId);
       Result deleteResult = update.delete();
+      if (deleteResult.equals(Result.FORCED)) {
+        refs.updated(fullName(ref), update.getOldObjectId(), null);
+      } else {
+        refs.invalidate(fullName(ref));
+      }
       if (deleteResult.equals(Result.REJECTED_MISSING_OBJECT)) {
         throw ReferenceNotFoundException.forReference(hash.get());
       } else if (!deleteResult.equals(Result.FORCED)) {
@@ -443,16 +610,16 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
   @Override
   public Stream<WithHash<NamedRef>> getNamedRefs() {
     try {
-      Stream<WithHash<NamedRef>> branches = repository.getRefDatabase()
-                                                      .getRefsByPrefix(Constants.R_HEADS)
-                                                      .stream()
-                                                      .map(r -> WithHash.of(Hash.of(r.getObjectId().name()),
-                                                                            BranchName.of(r.getName().replace(Constants.R_HEADS, ""))));
-      Stream<WithHash<NamedRef>> tags = repository.getRefDatabase()
-                                                  .getRefsByPrefix(Constants.R_TAGS)
-                                                  .stream()
-                                                  .map(r -> WithHash.of(Hash.of(r.getObjectId().name()),
-                                                                        TagName.of(r.getName().replace(Constants.R_TAGS, ""))));
+      Stream<WithHash<NamedRef>> branches = refs.getByPrefix(Constants.R_HEADS)
+                                                .entrySet()
+                                                .stream()
+                                                .map(r -> WithHash.of(Hash.of(r.getValue().name()),
+                                                                      BranchName.of(r.getKey().replace(Constants.R_HEADS, ""))));
+      Stream<WithHash<NamedRef>> tags = refs.getByPrefix(Constants.R_TAGS)
+                                            .entrySet()
+                                            .stream()
+                                            .map(r -> WithHash.of(Hash.of(r.getValue().name()),
+                                                                  TagName.of(r.getKey().replace(Constants.R_TAGS, ""))));
       return Stream.concat(branches, tags);
     } catch (IOException e) {
       throw new RuntimeException("Unknown error", e);
@@ -461,41 +628,71 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
 
   @Override
   public Stream<WithHash<METADATA>> getCommits(Ref ref) throws ReferenceNotFoundException {
-    final String hashName = refName(ref);
     try {
-      ObjectId objectId = repository.resolve(hashName);
+      RevWalk walk = new RevWalk(repository);
+      ObjectId objectId = ref instanceof Hash ? commitOf(walk, (Hash) ref) : refs.get(fullName((NamedRef) ref));
       if (objectId == null) {
+        walk.close();
         throw new ReferenceNotFoundException(String.format("Ref %s not found", ref));
       }
-      RevWalk walk = new RevWalk(repository);
-      walk.markStart(repository.parseCommit(objectId));
-      Serializer<METADATA> serializer = storeWorker.getMetadataSerializer();
+      Optional<CommitGraph.Node> start = graph.node(walk.getObjectReader(), objectId);
+      if (start.isPresent()) {
+        // follow the parents in the commit graph, which doesn't need to look ahead for the root commit.
+        Iterator<CommitGraph.Node> nodes = new AbstractIterator<CommitGraph.Node>() {
+          private CommitGraph.Node next = start.get();
+
+          @Override
+          protected CommitGraph.Node computeNext() {
+            if (next.getParent() == null) {
+              return endOfData();
+            }
+            CommitGraph.Node current = next;
+            next = next.getParent();
+            return current;
+          }
+        };
+        return Streams.stream(nodes)
+                      .map(node -> {
+                        try {
+                          return toCommitMeta(walk.parseCommit(node.getId()));
+                        } catch (IOException e) {
+                          throw new RuntimeException("Unknown error", e);
+                        }
+                      })
+                      .onClose(walk::close);
+      }
+
+      walk.markStart(walk.parseCommit(objectId));
       //note: skipLastElement doesn't return the absolute base commit. This is because other version stores don't consider that a commit.
       return StreamSupport.stream(skipLastElement(walk.spliterator()), false)
-                          .map(r -> {
-                            Hash hash = Hash.of(r.name());
-                            METADATA metadata = serializer.fromBytes(ByteString.copyFrom(r.getFullMessage(), StandardCharsets.UTF_8));
-                            return WithHash.of(hash, metadata);
-                          });
+                          .map(this::toCommitMeta)
+                          .onClose(walk::close);
     } catch (IOException e) {
       throw new RuntimeException("Unknown error", e);
     }
   }
 
-  private METADATA getCommit(Hash hash) throws IOException {
-    RevCommit r = repository.parseCommit(ObjectId.fromString(hash.asString()));
+  private WithHash<METADATA> toCommitMeta(RevCommit r) {
+    Serializer<METADATA> serializer = storeWorker.getMetadataSerializer();
+    METADATA metadata = serializer.fromBytes(ByteString.copyFrom(r.getFullMessage(), StandardCharsets.UTF_8));
+    return WithHash.of(Hash.of(r.name()), metadata);
+  }
+
+  private METADATA getCommit(RevWalk walk, Hash hash) throws IOException {
+    RevCommit r = walk.parseCommit(ObjectId.fromString(hash.asString()));
     Serializer<METADATA> serializer = storeWorker.getMetadataSerializer();
     METADATA metadata = serializer.fromBytes(ByteString.copyFrom(r.getFullMessage(), StandardCharsets.UTF_8));
     return metadata;
   }
 
   @Override
-  public Stream<Key> getKeys(Ref ref) {
+  public Stream<Key> getKeys(Ref ref) throws ReferenceNotFoundException {
     try {
       List<Key> tables = new ArrayList<>();
-      try (TreeWalk treeWalk = new TreeWalk(repository)) {
-        ObjectId treeId = repository.resolve(refName(ref) + "^{tree}");
-        treeWalk.addTree(treeId);
+      try (ObjectReader reader = repository.newObjectReader();
+           RevWalk walk = new RevWalk(reader);
+           TreeWalk treeWalk = new TreeWalk(repository, reader)) {
+        treeWalk.addTree(treeOf(walk, ref));
         treeWalk.setRecursive(true);
         while (treeWalk.next()) {
           tables.add(keyFromUrlString(treeWalk.getPathString()));
@@ -509,16 +706,16 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
 
   @Override
   public TABLE getValue(Ref ref, Key key) throws ReferenceNotFoundException {
-    final String hashName = refName(ref);
     String table = stringFromKey(key);
     try {
-      try (TreeWalk treeWalk = new TreeWalk(repository)) {
-        ObjectId treeId = repository.resolve(hashName + "^{tree}");
-        treeWalk.addTree(treeId);
+      try (ObjectReader reader = repository.newObjectReader();
+           RevWalk walk = new RevWalk(reader);
+           TreeWalk treeWalk = new TreeWalk(repository, reader)) {
+        treeWalk.addTree(treeOf(walk, ref));
         treeWalk.setRecursive(true);
         treeWalk.setFilter(PathFilter.create(table));
         while (treeWalk.next()) {
-          byte[] bytes = getTable(treeWalk, repository);
+          byte[] bytes = getTable(treeWalk, reader);
           return storeWorker.getValueSerializer().fromBytes(ByteString.copyFrom(bytes));
         }
       }
@@ -529,18 +726,18 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
   }
 
   @Override
-  public List<Optional<TABLE>> getValues(Ref ref, List<Key> key) {
-    final String hashName = refName(ref);
+  public List<Optional<TABLE>> getValues(Ref ref, List<Key> key) throws ReferenceNotFoundException {
     Map<String, Key> keys = key.stream().collect(Collectors.toMap(JGitVersionStore::stringFromKey, k -> k));
     Map<Key, TABLE> tables = new HashMap<>();
     try {
-      try (TreeWalk treeWalk = new TreeWalk(repository)) {
-        ObjectId treeId = repository.resolve(hashName + "^{tree}");
-        treeWalk.addTree(treeId);
+      try (ObjectReader reader = repository.newObjectReader();
+           RevWalk walk = new RevWalk(reader);
+           TreeWalk treeWalk = new TreeWalk(repository, reader)) {
+        treeWalk.addTree(treeOf(walk, ref));
         treeWalk.setRecursive(true);
         while (treeWalk.next()) {
           if (keys.containsKey(treeWalk.getPathString())) {
-            byte[] bytes = getTable(treeWalk, repository);
+            byte[] bytes = getTable(treeWalk, reader);
             tables.put(keys.get(treeWalk.getPathString()), storeWorker.getValueSerializer().fromBytes(ByteString.copyFrom(bytes)));
           }
         }
@@ -556,18 +753,28 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
     throw new IllegalStateException("Not yet implemented.");
   }
 
-  private void commitTree(BranchName branch, ObjectId newTree, Optional<Hash> expectedHash, METADATA metadata, boolean force, boolean empty)
-      throws IOException, ReferenceConflictException {
+  /**
+   * Stop watching the references of the repository. The repository itself is left open.
+   */
+  @Override
+  public void close() {
+    refs.close();
+  }
+
+  private ObjectId commitTree(BranchName branch, ObjectId newTree, Optional<Hash> expectedHash, METADATA metadata, boolean force,
+                              boolean empty) throws IOException, ReferenceConflictException {
     ObjectInserter inserter = repository.newObjectInserter();
     CommitBuilder commitBuilder = fromUser(metadata, empty);
     commitBuilder.setTreeId(newTree);
-    ObjectId parentId = fromHash(branch, expectedHash).orElse(repository.resolve(Constants.R_HEADS + branch.getName()));
+    Optional<ObjectId> expectedId = fromHash(branch, expectedHash);
+    ObjectId parentId = expectedId.isPresent() ? expectedId.get() : refs.get(fullName(branch));
     if (parentId != null) {
       commitBuilder.setParentId(parentId);
     }
     ObjectId newCommitId = inserter.insert(commitBuilder);
     inserter.flush();
     updateRef(branch, newCommitId, expectedHash, force);
+    return newCommitId;
   }
 
   private void updateRef(NamedRef ref, Hash targetHash, Optional<Hash> expectedHash, boolean force)
@@ -581,13 +788,15 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
 
   private void updateRef(NamedRef ref, ObjectId target, Optional<Hash> expectedHash, boolean force)
       throws IOException, ReferenceConflictException {
-    RefUpdate updateBranch = repository.updateRef((ref instanceof TagName ? Constants.R_TAGS : Constants.R_HEADS) + ref.getName());
+    RefUpdate updateBranch = repository.updateRef(fullName(ref));
     updateBranch.setNewObjectId(target);
     fromHash(ref, expectedHash).ifPresent(updateBranch::setExpectedOldObjectId);
     Result result = force ? updateBranch.forceUpdate() : updateBranch.update();
     if (!result.equals(Result.NEW) && !result.equals(Result.FAST_FORWARD) && !result.equals(Result.FORCED)) {
+      refs.invalidate(fullName(ref));
       throw new ReferenceConflictException(String.format("result did not complete for update ref on %s with state %s", ref, result));
     }
+    refs.updated(fullName(ref), updateBranch.getOldObjectId(), target);
   }
 
   private Optional<ObjectId> tryTwoWayMerge(ObjectId treeId, ObjectId newTreeId, ObjectInserter inserter, ObjectId version,
@@ -689,29 +898,22 @@ public class JGitVersionStore<TABLE, METADATA> implements VersionStore<TABLE, ME
   }
 
 
-  private static String refName(Ref ref) {
-    final String hashName;
+  /**
+   * The name of a branch or tag in the git ref database.
+   */
+  private static String fullName(NamedRef ref) {
     if (ref instanceof BranchName) {
-      hashName = ((BranchName) ref).getName();
+      return Constants.R_HEADS + ref.getName();
     } else if (ref instanceof TagName) {
-      hashName = ((TagName) ref).getName();
-    } else if (ref instanceof Hash) {
-      hashName = ((Hash) ref).asString();
-    } else {
-      throw new IllegalStateException(String.format("unknown ref type: %s", ref));
+      return Constants.R_TAGS + ref.getName();
     }
-    return hashName;
-  }
-
-  private static byte[] getTable(TreeWalk treeWalk, Repository repository)
-      throws IOException {
-    return getTable(treeWalk, repository, 0);
+    throw new IllegalStateException(String.format("ref %s is not in allowed types", ref));
   }
 
-  private static byte[] getTable(TreeWalk treeWalk, Repository repository, int id)
+  private static byte[] getTable(TreeWalk treeWalk, ObjectReader reader)
       throws IOException {
-    ObjectId objectId = treeWalk.getObjectId(id);
-    ObjectLoader loader = repository.open(objectId);
+    ObjectId objectId = treeWalk.getObjectId(0);
+    ObjectLoader loader = reader.open(objectId);
     return loader.getBytes();
   }
 
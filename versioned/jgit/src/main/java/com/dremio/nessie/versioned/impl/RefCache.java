@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.impl;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of the branches and tags of a repository, so that looking them up doesn't go through the reference files of an
+ * on-disk repository on each call.
+ *
+ * <p>The store records its own reference updates in the cache. Changes made by others are noticed through a
+ * {@link WatchService} on the reference directories: a changed reference file is read again on its next lookup, and a
+ * change of the packed references reloads all of them. Repositories which are not on disk, or whose directory cannot be
+ * watched, are read directly.
+ *
+ * <p>The directories are watched until the cache is closed, or until it is garbage collected.
+ */
+final class RefCache implements Closeable {
+  private static final Logger logger = LoggerFactory.getLogger(RefCache.class);
+
+  private final Repository repository;
+  private final Path gitDir;
+  private volatile boolean cached;
+
+  // guarded by this. null when all the references must be read again.
+  private Map<String, ObjectId> refs;
+  // guarded by this. references changed on disk since they were read.
+  private final Set<String> changed = new HashSet<>();
+
+  RefCache(Repository repository) {
+    this.repository = repository;
+    final File directory = repository.getDirectory();
+    this.gitDir = directory == null ? null : directory.toPath().toAbsolutePath();
+    this.cached = gitDir != null && Watcher.watch(this);
+  }
+
+  /**
+   * Get the commit a reference points to.
+   * @param name the full name of the reference
+   * @return the commit id, or null if the reference doesn't exist
+   */
+  ObjectId get(String name) throws IOException {
+    if (!cached) {
+      return read(name);
+    }
+    synchronized (this) {
+      load();
+      if (changed.remove(name)) {
+        store(name, read(name));
+      }
+      return refs.get(name);
+    }
+  }
+
+  /**
+   * Get the references starting with a prefix.
+   * @param prefix the prefix of the full names of the references
+   * @return the commit ids of the references, by full name
+   */
+  Map<String, ObjectId> getByPrefix(String prefix) throws IOException {
+    if (!cached) {
+      return repository.getRefDatabase().getRefsByPrefix(prefix).stream()
+          .collect(Collectors.toMap(Ref::getName, Ref::getObjectId, (a, b) -> a, TreeMap::new));
+    }
+    synchronized (this) {
+      load();
+      for (String name : changed) {
+        store(name, read(name));
+      }
+      changed.clear();
+      return refs.entrySet().stream()
+          .filter(e -> e.getKey().startsWith(prefix))
+          .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, TreeMap::new));
+    }
+  }
+
+  /**
+   * Record an update made by the store.
+   *
+   * <p>Updates of a reference made concurrently may be recorded in a different order than they were made. The update is
+   * therefore only recorded if the cache still holds the id the reference had before it, and the reference is read again
+   * otherwise.
+   * @param name the full name of the reference
+   * @param oldId the commit id of the reference before the update, or null if it didn't exist
+   * @param newId the new commit id of the reference, or null if it was deleted
+   */
+  synchronized void updated(String name, ObjectId oldId, ObjectId newId) {
+    if (cached && refs != null) {
+      final ObjectId expected = ObjectId.zeroId().equals(oldId) ? null : oldId;
+      if (!changed.contains(name) && Objects.equals(refs.get(name), expected)) {
+        store(name, newId);
+      } else {
+        changed.add(name);
+      }
+    }
+  }
+
+  /**
+   * Read a reference again on its next lookup, e.g. after an update which may have lost a race.
+   * @param name the full name of the reference
+   */
+  synchronized void invalidate(String name) {
+    changed.add(name);
+  }
+
+  /**
+   * Stop watching the reference directories. References are read directly afterwards.
+   */
+  @Override
+  public void close() {
+    if (cached) {
+      cached = false;
+      Watcher.unwatch(this);
+    }
+  }
+
+  private synchronized void invalidateAll() {
+    refs = null;
+    changed.clear();
+  }
+
+  private void load() throws IOException {
+    if (refs == null) {
+      final Map<String, ObjectId> loaded = new HashMap<>();
+      for (Ref ref : repository.getRefDatabase().getRefsByPrefix(Constants.R_HEADS)) {
+        loaded.put(ref.getName(), ref.getObjectId());
+      }
+      for (Ref ref : repository.getRefDatabase().getRefsByPrefix(Constants.R_TAGS)) {
+        loaded.put(ref.getName(), ref.getObjectId());
+      }
+      refs = loaded;
+      changed.clear();
+    }
+  }
+
+  private void store(String name, ObjectId id) {
+    if (id == null) {
+      refs.remove(name);
+    } else {
+      refs.put(name, id);
+    }
+  }
+
+  private ObjectId read(String name) throws IOException {
+    final Ref ref = repository.exactRef(name);
+    return ref == null ? null : ref.getObjectId();
+  }
+
+  /**
+   * Handle a change in a watched directory, the git directory itself or one of the reference directories.
+   */
+  private void onEvent(Path dir, WatchEvent<?> event) {
+    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+      invalidateAll();
+      return;
+    }
+    final Path child = dir.resolve((Path) event.context());
+    final String fileName = child.getFileName().toString();
+    if (fileName.endsWith(Constants.LOCK_SUFFIX)) {
+      // the reference file is renamed in place once written.
+      return;
+    }
+    if (dir.equals(gitDir)) {
+      if (fileName.equals(Constants.PACKED_REFS)) {
+        invalidateAll();
+      }
+      return;
+    }
+    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+      // a new level of a hierarchical reference name, whose files may have been written before it was watched.
+      Watcher.registerCreated(this, child);
+      invalidateAll();
+      return;
+    }
+    invalidate(gitDir.relativize(child).toString().replace(File.separatorChar, '/'));
+  }
+
+  /**
+   * The watch service shared by all caches, and the thread dispatching its events.
+   */
+  private static final class Watcher implements Runnable {
+    private static Watcher instance;
+    private static boolean unavailable;
+
+    private final WatchService service;
+    // the same directory watched by several caches has a single key.
+    private final Map<WatchKey, List<Watched>> keys = new ConcurrentHashMap<>();
+    // caches which were garbage collected without being closed.
+    private final ReferenceQueue<RefCache> collected = new ReferenceQueue<>();
+
+    private Watcher(WatchService service) {
+      this.service = service;
+    }
+
+    /**
+     * Start watching the directories of a cache.
+     * @return true if the directories are watched
+     */
+    private static synchronized boolean watch(RefCache cache) {
+      if (instance == null && !unavailable) {
+        try {
+          instance = new Watcher(FileSystems.getDefault().newWatchService());
+          final Thread thread = new Thread(instance, "nessie-jgit-ref-watcher");
+          thread.setDaemon(true);
+          thread.start();
+        } catch (IOException | UnsupportedOperationException e) {
+          logger.warn("Unable to watch the git references, they will be read from disk on each lookup.", e);
+          unavailable = true;
+        }
+      }
+      if (instance == null) {
+        return false;
+      }
+
+      final Path refsDir = cache.gitDir.resolve(Constants.R_REFS);
+      try {
+        // watch before the references are first loaded, so that no change is missed.
+        instance.register(cache, cache.gitDir, false);
+        instance.register(cache, refsDir, true);
+        return true;
+      } catch (IOException e) {
+        logger.warn("Unable to watch the git references in {}, they will be read from disk on each lookup.", cache.gitDir, e);
+        unwatch(cache);
+        return false;
+      }
+    }
+
+    private static synchronized void unwatch(RefCache cache) {
+      if (instance != null) {
+        instance.cancel(watched -> watched.get() == cache);
+      }
+    }
+
+    private void cancel(Predicate<Watched> predicate) {
+      keys.entrySet().removeIf(entry -> {
+        entry.getValue().removeIf(predicate);
+        if (entry.getValue().isEmpty()) {
+          entry.getKey().cancel();
+          return true;
+        }
+        return false;
+      });
+    }
+
+    private static synchronized void registerCreated(RefCache cache, Path dir) {
+      if (!cache.cached) {
+        return;
+      }
+      try {
+        instance.register(cache, dir, true);
+      } catch (IOException | UncheckedIOException e) {
+        // the directory may be removed already, or not; the cache is reloaded anyway.
+        logger.debug("Unable to watch {}", dir, e);
+      }
+    }
+
+    private void register(RefCache cache, Path dir, boolean recursive) throws IOException {
+      final List<Path> dirs;
+      if (recursive) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+          dirs = paths.filter(Files::isDirectory).collect(Collectors.toList());
+        }
+      } else {
+        dirs = Collections.singletonList(dir);
+      }
+      for (Path d : dirs) {
+        final WatchKey key = d.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+        final List<Watched> watchers = keys.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>());
+        if (watchers.stream().noneMatch(w -> w.get() == cache)) {
+          watchers.add(new Watched(cache, d, collected));
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        final WatchKey key;
+        try {
+          key = service.poll(1, TimeUnit.SECONDS);
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+          return;
+        }
+        boolean anyCollected = false;
+        while (collected.poll() != null) {
+          anyCollected = true;
+        }
+        if (anyCollected) {
+          synchronized (Watcher.class) {
+            cancel(watched -> watched.get() == null);
+          }
+        }
+        if (key == null) {
+          continue;
+        }
+        final List<Watched> watchers = keys.getOrDefault(key, Collections.emptyList());
+        for (WatchEvent<?> event : key.pollEvents()) {
+          for (Watched watched : watchers) {
+            final RefCache cache = watched.get();
+            if (cache != null) {
+              cache.onEvent(watched.dir, event);
+            }
+          }
+        }
+        if (!key.reset()) {
+          // the directory is gone, e.g. after the last reference it contained was deleted.
+          keys.remove(key);
+        }
+      }
+    }
+  }
+
+  /**
+   * A watched directory. The cache is only weakly referenced, so that a cache which isn't closed doesn't keep its
+   * repository around.
+   */
+  private static final class Watched extends WeakReference<RefCache> {
+    private final Path dir;
+
+    private Watched(RefCache cache, Path dir, ReferenceQueue<RefCache> queue) {
+      super(cache, queue);
+      this.dir = dir;
+    }
+  }
+}
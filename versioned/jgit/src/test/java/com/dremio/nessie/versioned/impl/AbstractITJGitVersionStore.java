@@ -32,7 +32,7 @@ import com.dremio.nessie.versioned.tests.AbstractITVersionStore;
 
 public abstract class AbstractITJGitVersionStore extends AbstractITVersionStore {
   protected Repository repository;
-  protected VersionStore<String, String> store;
+  protected JGitVersionStore<String, String> store;
 
   protected static final StoreWorker<String, String> WORKER = new StoreWorker<String, String>() {
 
@@ -64,8 +64,14 @@ public abstract class AbstractITJGitVersionStore extends AbstractITVersionStore
     super.checkDiff();
   }
 
+  @Disabled("NYI")
+  public void diffsCanBePaged() throws Exception {
+    super.diffsCanBePaged();
+  }
+
   @AfterEach
   void tearDown() {
+    store.close();
     repository.close();
   }
 
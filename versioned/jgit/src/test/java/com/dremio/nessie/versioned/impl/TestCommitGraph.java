@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestCommitGraph {
+  private static final PersonIdent PERSON = new PersonIdent("test", "test@example.com");
+
+  private Repository repository;
+  private ObjectId emptyTree;
+  private int count;
+
+  @BeforeEach
+  void setup() throws IOException {
+    repository = new InMemoryRepository.Builder().setRepositoryDescription(new DfsRepositoryDescription()).build();
+    try (ObjectInserter inserter = repository.newObjectInserter()) {
+      emptyTree = inserter.insert(new TreeFormatter());
+      inserter.flush();
+    }
+  }
+
+  @Test
+  void linearHistory() throws IOException {
+    // main: c0 <- ... <- c99, branch: c40 <- b0 <- ... <- b9
+    List<ObjectId> main = chain(null, 100);
+    List<ObjectId> branch = chain(main.get(40), 10);
+    CommitGraph graph = new CommitGraph(repository);
+    try (ObjectReader reader = repository.newObjectReader()) {
+      CommitGraph.Node head = graph.node(reader, main.get(99)).get();
+      CommitGraph.Node branchHead = graph.node(reader, branch.get(9)).get();
+      Assertions.assertEquals(100, head.getGeneration());
+      Assertions.assertEquals(51, branchHead.getGeneration());
+      Assertions.assertEquals(main.get(98), head.getParent().getId());
+
+      for (int i = 0; i < 100; i++) {
+        CommitGraph.Node node = graph.node(reader, main.get(i)).get();
+        Assertions.assertEquals(i + 1, node.getGeneration());
+        Assertions.assertTrue(node.isAncestorOf(head));
+        Assertions.assertEquals(i <= 40, node.isAncestorOf(branchHead));
+        Assertions.assertEquals(i == 99, head.isAncestorOf(node));
+        Assertions.assertEquals(node.getId(), node.mergeBase(head).getId());
+        Assertions.assertEquals(main.get(Math.min(i, 40)), node.mergeBase(branchHead).getId());
+      }
+      Assertions.assertEquals(main.get(40), head.mergeBase(branchHead).getId());
+      Assertions.assertEquals(main.get(40), branchHead.mergeBase(head).getId());
+    }
+  }
+
+  @Test
+  void unrelatedHistories() throws IOException {
+    List<ObjectId> first = chain(null, 5);
+    List<ObjectId> second = chain(null, 7);
+    CommitGraph graph = new CommitGraph(repository);
+    try (ObjectReader reader = repository.newObjectReader()) {
+      CommitGraph.Node a = graph.node(reader, first.get(4)).get();
+      CommitGraph.Node b = graph.node(reader, second.get(6)).get();
+      Assertions.assertFalse(a.isAncestorOf(b));
+      Assertions.assertFalse(b.isAncestorOf(a));
+      Assertions.assertNull(a.mergeBase(b));
+    }
+  }
+
+  @Test
+  void mergeCommitsAreNotIndexed() throws IOException {
+    List<ObjectId> first = chain(null, 3);
+    List<ObjectId> second = chain(first.get(0), 3);
+    ObjectId merge = commit(first.get(2), second.get(2));
+    List<ObjectId> after = chain(merge, 2);
+    CommitGraph graph = new CommitGraph(repository);
+    try (ObjectReader reader = repository.newObjectReader()) {
+      Assertions.assertFalse(graph.node(reader, after.get(1)).isPresent());
+      Assertions.assertFalse(graph.node(reader, merge).isPresent());
+      Assertions.assertEquals(3, graph.node(reader, first.get(2)).get().getGeneration());
+    }
+  }
+
+  private List<ObjectId> chain(ObjectId parent, int length) throws IOException {
+    List<ObjectId> commits = new ArrayList<>();
+    for (int i = 0; i < length; i++) {
+      parent = parent == null ? commit() : commit(parent);
+      commits.add(parent);
+    }
+    return commits;
+  }
+
+  private ObjectId commit(ObjectId... parents) throws IOException {
+    try (ObjectInserter inserter = repository.newObjectInserter()) {
+      CommitBuilder builder = new CommitBuilder();
+      builder.setTreeId(emptyTree);
+      builder.setParentIds(parents);
+      builder.setAuthor(PERSON);
+      builder.setCommitter(PERSON);
+      // distinct messages, so that commits with the same parents are distinct.
+      builder.setMessage("commit " + count++);
+      builder.setEncoding(Constants.CHARSET);
+      ObjectId id = inserter.insert(builder);
+      inserter.flush();
+      return id;
+    }
+  }
+}
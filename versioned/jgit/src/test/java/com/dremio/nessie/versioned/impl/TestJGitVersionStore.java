@@ -32,10 +32,14 @@ import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
 import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ParameterContext;
 import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -252,6 +256,66 @@ class TestJGitVersionStore {
                                                               .map(wh -> wh.getValue().getName()).collect(Collectors.toSet()));
   }
 
+  @Test
+  void refChangedOutsideOfTheStore() throws Exception {
+    JGitVersionStore<String, String> impl = new JGitVersionStore<>(repository(RepoType.FILE), WORKER);
+    BranchName branch = BranchName.of("foo");
+    impl.create(branch, Optional.empty());
+    Hash base = impl.toHash(branch);
+    impl.commit(branch, Optional.empty(), "c1", ImmutableList.of(Put.of(Key.of("hi"), "world")));
+    Hash head = impl.toHash(branch);
+
+    // move the branch back through another repository instance, as another process would.
+    try (Repository other = new FileRepositoryBuilder().setGitDir(new File(jgitDir, Constants.DOT_GIT)).build()) {
+      RefUpdate update = other.updateRef(Constants.R_HEADS + branch.getName());
+      update.setNewObjectId(ObjectId.fromString(base.asString()));
+      update.setForceUpdate(true);
+      assertEquals(RefUpdate.Result.FORCED, update.update());
+    }
+
+    // the change is noticed asynchronously.
+    long deadline = System.currentTimeMillis() + 30_000;
+    while (impl.toHash(branch).equals(head) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(base, impl.toHash(branch));
+    assertEquals(ImmutableList.of(base), impl.getNamedRefs().map(WithHash::getHash).collect(Collectors.toList()));
+    impl.close();
+  }
+
+  @Test
+  void storeUpdatesRecordedOutOfOrder() throws Exception {
+    Repository repository = repository(RepoType.FILE);
+    BranchName branch = BranchName.of("foo");
+    String name = Constants.R_HEADS + branch.getName();
+    try (JGitVersionStore<String, String> impl = new JGitVersionStore<>(repository, WORKER)) {
+      impl.create(branch, Optional.empty());
+      ObjectId o = ObjectId.fromString(impl.toHash(branch).asString());
+      impl.commit(branch, Optional.empty(), "c1", ImmutableList.of(Put.of(Key.of("hi"), "world")));
+      ObjectId x = ObjectId.fromString(impl.toHash(branch).asString());
+      impl.commit(branch, Optional.empty(), "c2", ImmutableList.of(Put.of(Key.of("hi"), "world2")));
+      ObjectId y = ObjectId.fromString(impl.toHash(branch).asString());
+      forceRef(repository, name, o);
+
+      try (RefCache cache = new RefCache(repository)) {
+        assertEquals(o, cache.get(name));
+        // two updates o -> x -> y, whose callers record them in the reverse order.
+        forceRef(repository, name, x);
+        forceRef(repository, name, y);
+        cache.updated(name, x, y);
+        cache.updated(name, o, x);
+        assertEquals(y, cache.get(name));
+      }
+    }
+  }
+
+  private static void forceRef(Repository repository, String name, ObjectId id) throws IOException {
+    RefUpdate update = repository.updateRef(name);
+    update.setNewObjectId(id);
+    update.setForceUpdate(true);
+    assertEquals(RefUpdate.Result.FORCED, update.update());
+  }
+
   @ParameterizedTest
   @EnumSource(RepoType.class)
   void checkCommits(@ConvertWith(RepositoryConverter.class) JGitVersionStore<String, String> impl) throws Exception {
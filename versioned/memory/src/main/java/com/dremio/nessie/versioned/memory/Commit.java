@@ -52,16 +52,36 @@ class Commit<ValueT, MetadataT> {
   private final Hash ancestor;
   private final MetadataT metadata;
   private final List<Operation<ValueT>> operations;
-
-  public Commit(Hash hash, Hash ancestor, MetadataT metadata, List<Operation<ValueT>> operations) {
+  private final Snapshot<ValueT> snapshot;
+
+  /**
+   * Create a commit.
+   * @param hash The hash of the commit.
+   * @param ancestor The hash of the parent commit.
+   * @param metadata The metadata of the commit.
+   * @param operations The operations of the commit.
+   * @param snapshot The values of all keys as of this commit.
+   */
+  public Commit(Hash hash, Hash ancestor, MetadataT metadata, List<Operation<ValueT>> operations, Snapshot<ValueT> snapshot) {
     this.hash = requireNonNull(hash);
     this.ancestor = requireNonNull(ancestor);
     this.metadata = requireNonNull(metadata);
     this.operations = ImmutableList.copyOf(requireNonNull(operations));
+    this.snapshot = requireNonNull(snapshot);
   }
 
+  /**
+   * Create a commit on top of an ancestor.
+   * @param valueSerializer The serializer of the values, used to compute the hash.
+   * @param metadataSerializer The serializer of the metadata, used to compute the hash.
+   * @param ancestor The hash of the parent commit.
+   * @param ancestorSnapshot The values of all keys as of the parent commit.
+   * @param metadata The metadata of the commit.
+   * @param operations The operations of the commit.
+   * @return The new commit.
+   */
   public static <ValueT, MetadataT> Commit<ValueT, MetadataT> of(final Serializer<ValueT> valueSerializer,
-      final Serializer<MetadataT> metadataSerializer, Hash ancestor, MetadataT metadata,
+      final Serializer<MetadataT> metadataSerializer, Hash ancestor, Snapshot<ValueT> ancestorSnapshot, MetadataT metadata,
       List<Operation<ValueT>> operations) {
     // Create a hash for the commit
     Hasher hasher = COMMIT_HASH_FUNCTION.newHasher();
@@ -95,7 +115,7 @@ class Commit<ValueT, MetadataT> {
     }
 
     final Hash commitHash = Hash.of(UnsafeByteOperations.unsafeWrap(hasher.hash().asBytes()));
-    return new Commit<>(commitHash, ancestor, metadata, operations);
+    return new Commit<>(commitHash, ancestor, metadata, operations, ancestorSnapshot.apply(operations));
   }
 
   private static final Hasher hash(Hasher hasher, ByteString bytes) {
@@ -124,6 +144,10 @@ class Commit<ValueT, MetadataT> {
     return operations;
   }
 
+  public Snapshot<ValueT> getSnapshot() {
+    return snapshot;
+  }
+
   @Override public String toString() {
     return "Commit [hash=" + hash + ", ancestor=" + ancestor + ", metadata=" + metadata
         + ", operations=" + operations + "]";
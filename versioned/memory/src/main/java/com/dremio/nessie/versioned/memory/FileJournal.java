@@ -0,0 +1,666 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.memory;
+
+import static com.dremio.nessie.versioned.memory.Commit.NO_ANCESTOR;
+import static java.lang.String.format;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dremio.nessie.versioned.BranchName;
+import com.dremio.nessie.versioned.Delete;
+import com.dremio.nessie.versioned.Hash;
+import com.dremio.nessie.versioned.Key;
+import com.dremio.nessie.versioned.NamedRef;
+import com.dremio.nessie.versioned.Operation;
+import com.dremio.nessie.versioned.Put;
+import com.dremio.nessie.versioned.Serializer;
+import com.dremio.nessie.versioned.TagName;
+import com.dremio.nessie.versioned.Unchanged;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.ByteString;
+
+/**
+ * A journal kept in a local directory.
+ *
+ * <p>Changes are appended to memory-mapped log segments ({@code log-<sequence>.dat}). Appending only copies the record into
+ * the mapping; an update then waits for the segment to be forced to disk, and concurrent updates share a single force.
+ *
+ * <p>Once a segment is full, the next one is started and a snapshot of the whole store is written in the background to
+ * {@code snapshot-<sequence>.dat}, holding the state of the store as of the start of segment {@code <sequence>}. The
+ * segments and snapshots it replaces are then removed. On startup, the latest snapshot is loaded and the segments
+ * following it are replayed, up to the first incomplete record.
+ *
+ * <p>Records are framed by their length and CRC32 checksum. Snapshots use the same records as the segments.
+ *
+ * @param <ValueT> Value type
+ * @param <MetadataT> Commit metadata type
+ */
+final class FileJournal<ValueT, MetadataT> implements Journal<ValueT, MetadataT> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(FileJournal.class);
+
+  static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+  private static final String SEGMENT_PREFIX = "log-";
+  private static final String SNAPSHOT_PREFIX = "snapshot-";
+  private static final String SUFFIX = ".dat";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final Pattern FILE_NAME = Pattern.compile("(" + SEGMENT_PREFIX + "|" + SNAPSHOT_PREFIX + ")(\\d+)\\" + SUFFIX);
+
+  private static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+  private static final byte COMMIT = 1;
+  private static final byte REF = 2;
+  private static final byte REF_DELETE = 3;
+
+  private static final byte PUT = 1;
+  private static final byte DELETE = 2;
+  private static final byte UNCHANGED = 3;
+
+  private static final byte BRANCH = 1;
+  private static final byte TAG = 2;
+
+  private final Path directory;
+  private final long segmentSize;
+  private final Serializer<ValueT> valueSerializer;
+  private final Serializer<MetadataT> metadataSerializer;
+  private final Map<Hash, Commit<ValueT, MetadataT>> commits;
+  private final Map<NamedRef, Hash> refs;
+
+  // updates hold the read lock, so that a snapshot holding the write lock sees the state as of a segment boundary.
+  private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+  private final ExecutorService snapshots = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder().setNameFormat("nessie-journal-snapshot-%d").setDaemon(true).build());
+  private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+
+  private final Object appendLock = new Object();
+  private final Object syncLock = new Object();
+  // the number of bytes appended by the calling thread when it last appended a record.
+  private final ThreadLocal<Long> lastAppended = ThreadLocal.withInitial(() -> 0L);
+
+  // guarded by appendLock
+  private Segment segment;
+  private long appended;
+  private volatile int segmentsSinceSnapshot;
+
+  // guarded by syncLock
+  private long synced;
+
+  private FileJournal(Path directory, long segmentSize, Serializer<ValueT> valueSerializer,
+      Serializer<MetadataT> metadataSerializer, Map<Hash, Commit<ValueT, MetadataT>> commits, Map<NamedRef, Hash> refs) {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.valueSerializer = valueSerializer;
+    this.metadataSerializer = metadataSerializer;
+    this.commits = commits;
+    this.refs = refs;
+  }
+
+  /**
+   * Open the journal kept in a directory, loading its content into the given maps.
+   * @param directory the directory of the journal, created if it doesn't exist
+   * @param segmentSize the size of the log segments
+   * @param valueSerializer the serializer of the values
+   * @param metadataSerializer the serializer of the commit metadata
+   * @param commits the commits of the store, filled with the commits of the journal
+   * @param refs the named references of the store, filled with the references of the journal
+   * @return the opened journal
+   * @throws IOException if the journal cannot be read
+   */
+  static <ValueT, MetadataT> FileJournal<ValueT, MetadataT> open(Path directory, long segmentSize,
+      Serializer<ValueT> valueSerializer, Serializer<MetadataT> metadataSerializer,
+      Map<Hash, Commit<ValueT, MetadataT>> commits, Map<NamedRef, Hash> refs) throws IOException {
+    final FileJournal<ValueT, MetadataT> journal = new FileJournal<>(directory, segmentSize, valueSerializer,
+        metadataSerializer, commits, refs);
+    journal.load();
+    return journal;
+  }
+
+  private void load() throws IOException {
+    Files.createDirectories(directory);
+    final List<Path> temporaryFiles;
+    try (Stream<Path> files = Files.list(directory)) {
+      temporaryFiles = files.filter(p -> p.getFileName().toString().endsWith(TEMP_SUFFIX)).collect(Collectors.toList());
+    }
+    for (Path temporaryFile : temporaryFiles) {
+      // a snapshot which was not completely written
+      Files.delete(temporaryFile);
+    }
+
+    final OptionalLong snapshot = sequences(SNAPSHOT_PREFIX).stream().mapToLong(Long::longValue).max();
+    final long firstSegment = snapshot.orElse(0L);
+    final List<Long> segments = sequences(SEGMENT_PREFIX).stream().filter(s -> s >= firstSegment).collect(Collectors.toList());
+
+    final Map<Hash, PendingCommit> pending = new HashMap<>();
+    if (snapshot.isPresent()) {
+      readSnapshot(file(SNAPSHOT_PREFIX, snapshot.getAsLong()), pending);
+    }
+    long last = firstSegment;
+    for (long sequence : segments) {
+      if (segment != null) {
+        segment.close();
+      }
+      segment = Segment.open(file(SEGMENT_PREFIX, sequence), sequence, segmentSize);
+      segment.read(payload -> decode(payload, pending));
+      last = sequence;
+    }
+    if (segment == null) {
+      segment = Segment.open(file(SEGMENT_PREFIX, last), last, segmentSize);
+    }
+    segment.truncate();
+
+    for (Hash hash : pending.keySet()) {
+      resolve(hash, pending);
+    }
+    LOGGER.debug("Loaded {} commits and {} references from {}", commits.size(), refs.size(), directory);
+  }
+
+  /**
+   * Compute the values of all keys of a loaded commit and of its ancestors, which may have been loaded in any order.
+   */
+  private void resolve(Hash hash, Map<Hash, PendingCommit> pending) {
+    final Deque<PendingCommit> toResolve = new ArrayDeque<>();
+    Hash current = hash;
+    while (!current.equals(NO_ANCESTOR) && !commits.containsKey(current)) {
+      final PendingCommit commit = pending.get(current);
+      if (commit == null) {
+        throw new IllegalStateException(format("Commit %s of the journal in %s is missing.", current, directory));
+      }
+      toResolve.push(commit);
+      current = commit.ancestor;
+    }
+
+    Snapshot<ValueT> snapshot = current.equals(NO_ANCESTOR) ? Snapshot.empty() : commits.get(current).getSnapshot();
+    while (!toResolve.isEmpty()) {
+      final PendingCommit commit = toResolve.pop();
+      snapshot = snapshot.apply(commit.operations);
+      commits.put(commit.hash, new Commit<>(commit.hash, commit.ancestor, commit.metadata, commit.operations, snapshot));
+    }
+  }
+
+  @Override
+  public void beginUpdate() {
+    snapshotLock.readLock().lock();
+  }
+
+  @Override
+  public void addCommit(Commit<ValueT, MetadataT> commit) {
+    append(encodeCommit(commit));
+  }
+
+  @Override
+  public void setRef(NamedRef ref, Optional<Hash> hash) {
+    append(encodeRef(ref, hash));
+  }
+
+  @Override
+  public void endUpdate() {
+    snapshotLock.readLock().unlock();
+    sync();
+    if (segmentsSinceSnapshot > 0 && snapshotScheduled.compareAndSet(false, true)) {
+      snapshots.execute(() -> {
+        try {
+          snapshot();
+        } catch (IOException | RuntimeException e) {
+          // the segments are kept, so nothing is lost until the next attempt.
+          LOGGER.warn("Unable to write a snapshot of the journal in {}", directory, e);
+        } finally {
+          snapshotScheduled.set(false);
+        }
+      });
+    }
+  }
+
+  private void append(byte[] payload) {
+    synchronized (appendLock) {
+      try {
+        if (!segment.fits(payload.length)) {
+          roll(payload.length);
+        }
+        segment.append(payload);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      appended += HEADER_SIZE + payload.length;
+      lastAppended.set(appended);
+    }
+  }
+
+  /**
+   * Start a new segment, making the current one durable first.
+   */
+  private void roll(int length) throws IOException {
+    segment.force();
+    segment.close();
+    final long sequence = segment.sequence + 1;
+    segment = Segment.open(file(SEGMENT_PREFIX, sequence), sequence, Math.max(segmentSize, HEADER_SIZE + length));
+    segmentsSinceSnapshot++;
+  }
+
+  /**
+   * Wait until the records appended by the calling thread are durable.
+   */
+  private void sync() {
+    final long target = lastAppended.get();
+    synchronized (syncLock) {
+      // another thread may have forced the records of this one in the meantime.
+      if (synced >= target) {
+        return;
+      }
+      final Segment toForce;
+      final long upTo;
+      synchronized (appendLock) {
+        toForce = segment;
+        upTo = appended;
+      }
+      // previous segments were forced when rolled.
+      toForce.force();
+      synced = upTo;
+    }
+  }
+
+  /**
+   * Write a snapshot of the store, and remove the files it replaces.
+   * @throws IOException if the snapshot cannot be written
+   */
+  void snapshot() throws IOException {
+    final long sequence;
+    final List<Commit<ValueT, MetadataT>> commitsToWrite;
+    final Map<NamedRef, Hash> refsToWrite;
+    snapshotLock.writeLock().lock();
+    try {
+      synchronized (appendLock) {
+        roll(0);
+        sequence = segment.sequence;
+        segmentsSinceSnapshot = 0;
+      }
+      // commits are immutable, so copying the references is enough.
+      commitsToWrite = new ArrayList<>(commits.values());
+      refsToWrite = new HashMap<>(refs);
+    } finally {
+      snapshotLock.writeLock().unlock();
+    }
+
+    final Path temporaryFile = directory.resolve(SNAPSHOT_PREFIX + sequence + TEMP_SUFFIX);
+    try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      final OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+      for (Commit<ValueT, MetadataT> commit : commitsToWrite) {
+        writeRecord(out, encodeCommit(commit));
+      }
+      for (Map.Entry<NamedRef, Hash> ref : refsToWrite.entrySet()) {
+        writeRecord(out, encodeRef(ref.getKey(), Optional.of(ref.getValue())));
+      }
+      out.flush();
+      channel.force(true);
+    }
+    Files.move(temporaryFile, file(SNAPSHOT_PREFIX, sequence), StandardCopyOption.ATOMIC_MOVE);
+
+    for (String prefix : new String[] {SEGMENT_PREFIX, SNAPSHOT_PREFIX}) {
+      for (long replaced : sequences(prefix)) {
+        if (replaced < sequence) {
+          Files.deleteIfExists(file(prefix, replaced));
+        }
+      }
+    }
+    LOGGER.debug("Wrote snapshot {} of the journal in {}", sequence, directory);
+  }
+
+  @Override
+  public void close() throws IOException {
+    snapshots.shutdown();
+    try {
+      snapshots.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (appendLock) {
+      segment.force();
+      segment.close();
+    }
+  }
+
+  private Path file(String prefix, long sequence) {
+    return directory.resolve(prefix + sequence + SUFFIX);
+  }
+
+  private List<Long> sequences(String prefix) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.map(p -> FILE_NAME.matcher(p.getFileName().toString()))
+          .filter(Matcher::matches)
+          .filter(m -> m.group(1).equals(prefix))
+          .map(m -> Long.parseLong(m.group(2)))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private void readSnapshot(Path file, Map<Hash, PendingCommit> pending) throws IOException {
+    try (InputStream stream = Files.newInputStream(file)) {
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+      while (true) {
+        final int length;
+        try {
+          length = in.readInt();
+        } catch (EOFException e) {
+          return;
+        }
+        final int checksum = in.readInt();
+        final byte[] payload = new byte[length];
+        in.readFully(payload);
+        if (checksum != checksum(payload)) {
+          throw new IOException(format("Snapshot %s is corrupted.", file));
+        }
+        decode(payload, pending);
+      }
+    }
+  }
+
+  private static void writeRecord(OutputStream out, byte[] payload) throws IOException {
+    final DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(payload.length);
+    data.writeInt(checksum(payload));
+    data.write(payload);
+  }
+
+  private static int checksum(byte[] payload) {
+    final CRC32 crc = new CRC32();
+    crc.update(payload, 0, payload.length);
+    return (int) crc.getValue();
+  }
+
+  private byte[] encodeCommit(Commit<ValueT, MetadataT> commit) {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(COMMIT);
+      writeBytes(out, commit.getHash().asBytes());
+      writeBytes(out, commit.getAncestor().asBytes());
+      writeBytes(out, metadataSerializer.toBytes(commit.getMetadata()));
+      out.writeInt(commit.getOperations().size());
+      for (Operation<ValueT> operation : commit.getOperations()) {
+        if (operation instanceof Put) {
+          out.writeByte(PUT);
+          writeKey(out, operation.getKey());
+          writeBytes(out, valueSerializer.toBytes(((Put<ValueT>) operation).getValue()));
+        } else if (operation instanceof Delete) {
+          out.writeByte(DELETE);
+          writeKey(out, operation.getKey());
+        } else if (operation instanceof Unchanged) {
+          out.writeByte(UNCHANGED);
+          writeKey(out, operation.getKey());
+        } else {
+          throw new IllegalArgumentException("Unknown operation type for operation " + operation);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static byte[] encodeRef(NamedRef ref, Optional<Hash> hash) {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(hash.isPresent() ? REF : REF_DELETE);
+      if (ref instanceof BranchName) {
+        out.writeByte(BRANCH);
+      } else if (ref instanceof TagName) {
+        out.writeByte(TAG);
+      } else {
+        throw new IllegalArgumentException(format("Unsupported reference type for ref %s", ref));
+      }
+      out.writeUTF(ref.getName());
+      if (hash.isPresent()) {
+        writeBytes(out, hash.get().asBytes());
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private void decode(byte[] payload, Map<Hash, PendingCommit> pending) throws IOException {
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+    final byte type = in.readByte();
+    switch (type) {
+      case COMMIT:
+        final PendingCommit commit = decodeCommit(in);
+        pending.putIfAbsent(commit.hash, commit);
+        break;
+      case REF:
+        final NamedRef ref = readRef(in);
+        refs.put(ref, Hash.of(readBytes(in)));
+        break;
+      case REF_DELETE:
+        refs.remove(readRef(in));
+        break;
+      default:
+        throw new IOException(format("Unknown record type %d in the journal in %s.", type, directory));
+    }
+  }
+
+  private PendingCommit decodeCommit(DataInputStream in) throws IOException {
+    final Hash hash = Hash.of(readBytes(in));
+    final Hash ancestor = Hash.of(readBytes(in));
+    final MetadataT metadata = metadataSerializer.fromBytes(readBytes(in));
+    final int count = in.readInt();
+    final List<Operation<ValueT>> operations = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      final byte type = in.readByte();
+      final Key key = readKey(in);
+      switch (type) {
+        case PUT:
+          operations.add(Put.of(key, valueSerializer.fromBytes(readBytes(in))));
+          break;
+        case DELETE:
+          operations.add(Delete.of(key));
+          break;
+        case UNCHANGED:
+          operations.add(Unchanged.of(key));
+          break;
+        default:
+          throw new IOException(format("Unknown operation type %d in the journal in %s.", type, directory));
+      }
+    }
+    return new PendingCommit(hash, ancestor, metadata, operations);
+  }
+
+  private static NamedRef readRef(DataInputStream in) throws IOException {
+    final byte type = in.readByte();
+    final String name = in.readUTF();
+    switch (type) {
+      case BRANCH:
+        return BranchName.of(name);
+      case TAG:
+        return TagName.of(name);
+      default:
+        throw new IOException(format("Unknown reference type %d.", type));
+    }
+  }
+
+  private static void writeKey(DataOutputStream out, Key key) throws IOException {
+    out.writeInt(key.getElements().size());
+    for (String element : key.getElements()) {
+      out.writeUTF(element);
+    }
+  }
+
+  private static Key readKey(DataInputStream in) throws IOException {
+    final String[] elements = new String[in.readInt()];
+    for (int i = 0; i < elements.length; i++) {
+      elements[i] = in.readUTF();
+    }
+    return Key.of(elements);
+  }
+
+  private static void writeBytes(DataOutputStream out, ByteString bytes) throws IOException {
+    out.writeInt(bytes.size());
+    bytes.writeTo(out);
+  }
+
+  private static ByteString readBytes(DataInputStream in) throws IOException {
+    final byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return ByteString.copyFrom(bytes);
+  }
+
+  /**
+   * A commit read from the journal, whose values are not computed yet.
+   */
+  private final class PendingCommit {
+    private final Hash hash;
+    private final Hash ancestor;
+    private final MetadataT metadata;
+    private final List<Operation<ValueT>> operations;
+
+    private PendingCommit(Hash hash, Hash ancestor, MetadataT metadata, List<Operation<ValueT>> operations) {
+      this.hash = hash;
+      this.ancestor = ancestor;
+      this.metadata = metadata;
+      this.operations = operations;
+    }
+  }
+
+  @FunctionalInterface
+  private interface RecordConsumer {
+    void accept(byte[] payload) throws IOException;
+  }
+
+  /**
+   * A memory-mapped log segment.
+   */
+  private static final class Segment {
+    private final long sequence;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private Segment(long sequence, FileChannel channel, MappedByteBuffer buffer) {
+      this.sequence = sequence;
+      this.channel = channel;
+      this.buffer = buffer;
+    }
+
+    private static Segment open(Path file, long sequence, long size) throws IOException {
+      final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+      try {
+        // mapping past the end of the file grows it, without writing the new region.
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+        return new Segment(sequence, channel, buffer);
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    /**
+     * Read the records of the segment, leaving the position after the last complete one.
+     */
+    private void read(RecordConsumer consumer) throws IOException {
+      buffer.position(0);
+      while (buffer.remaining() >= HEADER_SIZE) {
+        final int start = buffer.position();
+        final int length = buffer.getInt();
+        final int checksum = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+          buffer.position(start);
+          return;
+        }
+        final byte[] payload = new byte[length];
+        buffer.get(payload);
+        if (checksum != checksum(payload)) {
+          buffer.position(start);
+          return;
+        }
+        consumer.accept(payload);
+      }
+    }
+
+    /**
+     * Clear what follows the last complete record, which may be a record torn by a crash.
+     */
+    private void truncate() {
+      int dirty = buffer.position();
+      while (dirty < buffer.limit() && buffer.get(dirty) == 0) {
+        dirty++;
+      }
+      if (dirty == buffer.limit()) {
+        return;
+      }
+      for (int i = buffer.position(); i < buffer.limit(); i++) {
+        buffer.put(i, (byte) 0);
+      }
+      buffer.force();
+    }
+
+    private boolean fits(int length) {
+      return buffer.remaining() >= HEADER_SIZE + length;
+    }
+
+    private void append(byte[] payload) {
+      buffer.putInt(payload.length);
+      buffer.putInt(checksum(payload));
+      buffer.put(payload);
+    }
+
+    private void force() {
+      buffer.force();
+    }
+
+    private void close() throws IOException {
+      channel.close();
+    }
+  }
+}
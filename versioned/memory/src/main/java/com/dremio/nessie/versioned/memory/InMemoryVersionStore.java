@@ -20,6 +20,10 @@ import static com.google.common.base.Preconditions.checkState;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -51,7 +55,6 @@ import com.dremio.nessie.versioned.ReferenceConflictException;
 import com.dremio.nessie.versioned.ReferenceNotFoundException;
 import com.dremio.nessie.versioned.Serializer;
 import com.dremio.nessie.versioned.TagName;
-import com.dremio.nessie.versioned.Unchanged;
 import com.dremio.nessie.versioned.VersionStore;
 import com.dremio.nessie.versioned.VersionStoreException;
 import com.dremio.nessie.versioned.WithHash;
@@ -64,20 +67,26 @@ import com.google.common.collect.Streams;
 /**
  * In-memory implementation of {@code VersionStore} interface.
  *
+ * <p>When built with a {@link Builder#directory(Path) directory}, the changes are also recorded in a journal kept in that
+ * directory, and the content of the store is loaded back from it when the store is built again.
+ *
  * @param <ValueT> Value type
  * @param <MetadataT> Commit metadata type
  */
-public class InMemoryVersionStore<ValueT, MetadataT> implements VersionStore<ValueT, MetadataT> {
+public class InMemoryVersionStore<ValueT, MetadataT> implements VersionStore<ValueT, MetadataT>, Closeable {
   private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryVersionStore.class);
 
   private final ConcurrentMap<Hash, Commit<ValueT, MetadataT>> commits = new ConcurrentHashMap<>();
   private final ConcurrentMap<NamedRef, Hash> namedReferences = new ConcurrentHashMap<>();
   private final Serializer<ValueT> valueSerializer;
   private final Serializer<MetadataT> metadataSerializer;
+  private final Journal<ValueT, MetadataT> journal;
 
   public static final class Builder<ValueT, MetadataT> {
     private Serializer<ValueT> valueSerializer = null;
     private Serializer<MetadataT> metadataSerializer = null;
+    private Path directory = null;
+    private long segmentSize = FileJournal.DEFAULT_SEGMENT_SIZE;
 
     public Builder<ValueT, MetadataT> valueSerializer(Serializer<ValueT> serializer) {
       this.valueSerializer = requireNonNull(serializer);
@@ -89,9 +98,31 @@ public class InMemoryVersionStore<ValueT, MetadataT> implements VersionStore<Val
       return this;
     }
 
+    /**
+     * Keep the store durable by recording its changes in a directory, from which it is loaded when built.
+     * @param directory the directory of the journal
+     * @return this builder
+     */
+    public Builder<ValueT, MetadataT> directory(Path directory) {
+      this.directory = requireNonNull(directory);
+      return this;
+    }
+
+    /**
+     * Set the size of the log segments of the journal, after each of which a snapshot of the store is written.
+     * @param segmentSize the size of a segment in bytes
+     * @return this builder
+     */
+    public Builder<ValueT, MetadataT> segmentSize(long segmentSize) {
+      Preconditions.checkArgument(segmentSize > 0 && segmentSize <= Integer.MAX_VALUE, "Invalid segment size %s", segmentSize);
+      this.segmentSize = segmentSize;
+      return this;
+    }
+
     /**
      * Build a instance of the memory store.
      * @return a memory store instance
+     * @throws UncheckedIOException if the journal of the store cannot be read
      */
     public InMemoryVersionStore<ValueT, MetadataT> build() {
       checkState(this.valueSerializer != null, "Value serializer hasn't been set");
@@ -104,6 +135,16 @@ public class InMemoryVersionStore<ValueT, MetadataT> implements VersionStore<Val
   private InMemoryVersionStore(Builder<ValueT, MetadataT> builder) {
     this.valueSerializer = builder.valueSerializer;
     this.metadataSerializer = builder.metadataSerializer;
+    if (builder.directory == null) {
+      this.journal = Journal.none();
+    } else {
+      try {
+        this.journal = FileJournal.open(builder.directory, builder.segmentSize, valueSerializer, metadataSerializer,
+            commits, namedReferences);
+      } catch (IOException e) {
+        throw new UncheckedIOException(format("Unable to load the store from %s", builder.directory), e);
+      }
+    }
   }
 
   /**
@@ -142,6 +183,13 @@ public class InMemoryVersionStore<ValueT, MetadataT> implements VersionStore<Val
     throw new IllegalArgumentException(format("Unsupported reference type for ref %s", ref));
   }
 
+  /**
+   * Get the values of all keys as of a commit.
+   */
+  private Snapshot<ValueT> toSnapshot(Hash hash) {
+    return hash.equals(NO_ANCESTOR) ? Snapshot.empty() : commits.get(hash).getSnapshot();
+  }
+
   private void checkValidReferenceHash(BranchName branch, Hash currentBranchHash, Hash referenceHash)
       throws ReferenceNotFoundException {
     if (referenceHash.equals(NO_ANCESTOR)) {
@@ -184,8 +232,9 @@ public class InMemoryVersionStore<ValueT, MetadataT> implements VersionStore<Val
     checkConcurrentModification(branch, currentHash, referenceHash, keys);
 
     // Storing
-    compute(namedReferences, branch, (key, hash) -> {
-      final Commit<ValueT, MetadataT> commit = Commit.of(valueSerializer, metadataSerializer, currentHash, metadata, operations);
+    updateRef(branch, (key, hash) -> {
+      final Commit<ValueT, MetadataT> commit = Commit.of(valueSerializer, metadataSerializer, currentHash, toSnapshot(currentHash),
+          metadata, operations);
       final Hash previousHash = Optional.ofNullable(hash).orElse(NO_ANCESTOR);
       if (!previousHash.equals(currentHash)) {
         // Concurrent modification
@@ -193,9 +242,8 @@ public class InMemoryVersionStore<ValueT, MetadataT> implements VersionStore<Val
       }
 
       // Duplicates are very unlikely and also okay to ignore
-      final Hash commitHash = commit.getHash();
-      commits.putIfAbsent(commitHash, commit);
-      return commitHash;
+      addCommit(commit);
+      return commit.getHash();
     });
   }
 
@@ -217,6 +265,7 @@ public class InMemoryVersionStore<ValueT, MetadataT> implements VersionStore<Val
     // check that all hashes exist in the store
     Hash ancestor = null;
     Hash newAncestor = currentHash;
+    Snapshot<ValueT> newAncestorSnapshot = toSnapshot(currentHash);
 
     for (final Hash hash: sequenceToTransplant) {
       final Commit<ValueT, MetadataT> commit = commits.get(hash);
@@ -231,25 +280,26 @@ public class InMemoryVersionStore<ValueT, MetadataT> implements VersionStore<Val
       commit.getOperations().forEach(op -> keys.add(op.getKey()));
 
       Commit<ValueT, MetadataT> newCommit = Commit.of(valueSerializer, metadataSerializer,
-          newAncestor, commit.getMetadata(), commit.getOperations());
+          newAncestor, newAncestorSnapshot, commit.getMetadata(), commit.getOperations());
       toStore.add(newCommit);
 
       ancestor = commit.getHash();
       newAncestor = newCommit.getHash();
+      newAncestorSnapshot = newCommit.getSnapshot();
     }
 
     // Validate commit
     checkConcurrentModification(targetBranch, currentHash, referenceHash, new ArrayList<>(keys));
 
     // Storing
-    compute(namedReferences, targetBranch, (key, hash) -> {
+    updateRef(targetBranch, (key, hash) -> {
       final Hash previousHash = Optional.ofNullable(hash).orElse(NO_ANCESTOR);
       if (!previousHash.equals(currentHash)) {
         // Concurrent modification
         throw ReferenceConflictException.forReference(targetBranch, referenceHash, Optional.of(previousHash));
       }
 
-      toStore.forEach(commit -> commits.putIfAbsent(commit.getHash(), commit));
+      toStore.forEach(this::addCommit);
 
       final Commit<ValueT, MetadataT> lastCommit = Iterables.getLast(toStore);
       return lastCommit.getHash();
@@ -314,27 +364,99 @@ public class InMemoryVersionStore<ValueT, MetadataT> implements VersionStore<Val
     // Create new commits
     final List<Commit<ValueT, MetadataT>> toStore = new ArrayList<>(toMerge.size());
     Hash newAncestor = currentHash;
+    Snapshot<ValueT> newAncestorSnapshot = toSnapshot(currentHash);
     for (final Commit<ValueT, MetadataT> commit : Lists.reverse(toMerge)) {
       final Commit<ValueT, MetadataT> newCommit = Commit.of(valueSerializer, metadataSerializer,
-          newAncestor, commit.getMetadata(), commit.getOperations());
+          newAncestor, newAncestorSnapshot, commit.getMetadata(), commit.getOperations());
       toStore.add(newCommit);
       newAncestor = newCommit.getHash();
+      newAncestorSnapshot = newCommit.getSnapshot();
     }
 
     // Storing
-    compute(namedReferences, toBranch, (key, hash) -> {
+    updateRef(toBranch, (key, hash) -> {
       final Hash previousHash = Optional.ofNullable(hash).orElse(NO_ANCESTOR);
       if (!previousHash.equals(currentHash)) {
         // Concurrent modification
         throw ReferenceConflictException.forReference(toBranch, expectedBranchHash, Optional.of(previousHash));
       }
 
-      toStore.forEach(commit -> commits.putIfAbsent(commit.getHash(), commit));
+      toStore.forEach(this::addCommit);
       final Commit<ValueT, MetadataT> lastCommit = Iterables.getLast(toStore);
       return lastCommit.getHash();
     });
   }
 
+  @Override
+  public void squash(Hash fromHash, BranchName toBranch, Optional<Hash> expectedBranchHash, MetadataT metadata)
+      throws ReferenceNotFoundException, ReferenceConflictException {
+    requireNonNull(fromHash);
+    requireNonNull(toBranch);
+    requireNonNull(metadata);
+    if (!commits.containsKey(fromHash)) {
+      throw ReferenceNotFoundException.forReference(fromHash);
+    }
+    final Hash currentHash = toHash(toBranch);
+    final Hash referenceHash = expectedBranchHash.orElse(currentHash);
+
+    // Find the common ancestor between toBranch and fromHash
+    final Set<Hash> toBranchHashes = Streams.stream(new CommitsIterator<>(commits::get, referenceHash))
+        .map(WithHash::getHash)
+        .collect(Collectors.toSet());
+    final Hash commonAncestor = Streams.stream(new CommitsIterator<>(commits::get, fromHash))
+        .map(WithHash::getHash)
+        .filter(toBranchHashes::contains)
+        .findFirst()
+        .orElse(NO_ANCESTOR);
+
+    // the changes to merge are the differences between the common ancestor and fromHash, whatever the number of commits.
+    final List<Diff<ValueT>> changes = toSnapshot(commonAncestor).diff(toSnapshot(fromHash));
+    if (changes.isEmpty()) {
+      return;
+    }
+    final Set<Key> keys = changes.stream().map(Diff::getKey).collect(Collectors.toSet());
+
+    // the keys must not have been changed by any commit of the branch since the common ancestor.
+    final Set<Key> conflicts = new HashSet<>();
+    for (final Iterator<WithHash<Commit<ValueT, MetadataT>>> iterator = new CommitsIterator<ValueT, MetadataT>(
+        commits::get, referenceHash); iterator.hasNext();) {
+      final Commit<ValueT, MetadataT> commit = iterator.next().getValue();
+      if (commit.getHash().equals(commonAncestor)) {
+        break;
+      }
+      final Snapshot<ValueT> before = toSnapshot(commit.getAncestor());
+      commit.getOperations().stream()
+          .map(Operation::getKey)
+          .filter(keys::contains)
+          .filter(key -> !before.get(key).equals(commit.getSnapshot().get(key)))
+          .forEach(conflicts::add);
+    }
+    if (!conflicts.isEmpty()) {
+      throw new ReferenceConflictException(format("The following keys have been changed in conflict: %s.", conflicts));
+    }
+
+    checkConcurrentModification(toBranch, currentHash, expectedBranchHash, new ArrayList<>(keys));
+
+    final List<Operation<ValueT>> operations = changes.stream()
+        .map(diff -> diff.getToValue().<Operation<ValueT>>map(value -> Put.of(diff.getKey(), value))
+            .orElseGet(() -> Delete.of(diff.getKey())))
+        .collect(Collectors.toList());
+
+    // Storing
+    updateRef(toBranch, (key, hash) -> {
+      final Hash previousHash = Optional.ofNullable(hash).orElse(NO_ANCESTOR);
+      if (!previousHash.equals(currentHash)) {
+        // Concurrent modification
+        throw ReferenceConflictException.forReference(toBranch, expectedBranchHash, Optional.of(previousHash));
+      }
+
+      final Commit<ValueT, MetadataT> commit = Commit.of(valueSerializer, metadataSerializer, currentHash, toSnapshot(currentHash),
+          metadata, operations);
+      addCommit(commit);
+      return commit.getHash();
+    });
+  }
+
   @Override
   public void assign(NamedRef ref, Optional<Hash> expectedRefHash, Hash targetHash)
       throws ReferenceNotFoundException, ReferenceConflictException {
@@ -359,7 +481,7 @@ public class InMemoryVersionStore<ValueT, MetadataT> implements VersionStore<Val
 
   private void doAssign(NamedRef ref, Hash expectedHash, final Hash newHash)
       throws ReferenceNotFoundException, ReferenceConflictException {
-    compute(namedReferences, ref, (key, hash) -> {
+    updateRef(ref, (key, hash) -> {
       final Hash previousHash = Optional.ofNullable(hash).orElse(expectedHash);
       // Check if the previous and the new value matches
       if (!expectedHash.equals(previousHash)) {
@@ -374,7 +496,7 @@ public class InMemoryVersionStore<ValueT, MetadataT> implements VersionStore<Val
       throws ReferenceNotFoundException, ReferenceAlreadyExistsException {
     Preconditions.checkArgument(ref instanceof BranchName || targetHash.isPresent(), "Cannot create an unassigned tag reference");
 
-    compute(namedReferences, ref, (key, currentHash) -> {
+    updateRef(ref, (key, currentHash) -> {
       if (currentHash != null) {
         throw ReferenceAlreadyExistsException.forReference(ref);
       }
@@ -386,7 +508,7 @@ public class InMemoryVersionStore<ValueT, MetadataT> implements VersionStore<Val
   @Override
   public void delete(NamedRef ref, Optional<Hash> hash) throws ReferenceNotFoundException, ReferenceConflictException {
     try {
-      compute(namedReferences, ref, (key, currentHash) -> {
+      updateRef(ref, (key, currentHash) -> {
         if (currentHash == null) {
           throw ReferenceNotFoundException.forReference(ref);
         }
@@ -424,25 +546,7 @@ public class InMemoryVersionStore<ValueT, MetadataT> implements VersionStore<Val
 
   @Override
   public Stream<Key> getKeys(Ref ref) throws ReferenceNotFoundException {
-    final Hash hash = toHash(ref);
-
-    final Iterator<WithHash<Commit<ValueT, MetadataT>>> iterator = new CommitsIterator<>(commits::get, hash);
-    final Set<Key> deleted = new HashSet<>();
-    return Streams.stream(iterator)
-        // flatten the operations (in reverse order)
-        .flatMap(wh -> Lists.reverse(wh.getValue().getOperations()).stream())
-        // block deleted keys
-        .filter(operation -> {
-          Key key = operation.getKey();
-          if (operation instanceof Delete) {
-            deleted.add(key);
-          }
-          return !deleted.contains(key);
-        })
-        // extract the keys
-        .map(Operation::getKey)
-        // filter keys which have been seen already
-        .distinct();
+    return toSnapshot(toHash(ref)).keys();
   }
 
   @Override
@@ -452,52 +556,13 @@ public class InMemoryVersionStore<ValueT, MetadataT> implements VersionStore<Val
 
   @Override
   public List<Optional<ValueT>> getValues(Ref ref, List<Key> keys) throws ReferenceNotFoundException {
-    final Hash hash = toHash(ref);
-
-    final int size = keys.size();
-    final List<Optional<ValueT>> results = new ArrayList<>(size);
-    results.addAll(Collections.nCopies(size, Optional.empty()));
-
-    final Set<Key> toFind = new HashSet<Key>();
-    toFind.addAll(keys);
-
-    final Iterator<WithHash<Commit<ValueT, MetadataT>>> iterator = new CommitsIterator<>(commits::get, hash);
-    while (iterator.hasNext()) {
-      if (toFind.isEmpty()) {
-        // early exit if all keys have been found
-        break;
-      }
-
-      final Commit<ValueT, MetadataT> commit = iterator.next().getValue();
-      for (Operation<ValueT> operation: Lists.reverse(commit.getOperations())) {
-        final Key operationKey = operation.getKey();
-        // ignore keys of no interest
-        if (!toFind.contains(operationKey)) {
-          continue;
-        }
-
-        if (operation instanceof Put) {
-          final Put<ValueT> put = (Put<ValueT>) operation;
-          int index = keys.indexOf(operationKey);
-          results.set(index, Optional.of(put.getValue()));
-          toFind.remove(operationKey);
-        } else if (operation instanceof Delete) {
-          // No need to fill with Optional.empty() as the results were pre-filled
-          toFind.remove(operationKey);
-        } else if (operation instanceof Unchanged) {
-          continue;
-        } else {
-          throw new AssertionError("Unsupported operation type for " + operation);
-        }
-      }
-    }
-
-    return results;
+    final Snapshot<ValueT> snapshot = toSnapshot(toHash(ref));
+    return keys.stream().map(snapshot::get).collect(Collectors.toList());
   }
 
   @Override
-  public Stream<Diff<ValueT>> getDiffs(Ref from, Ref to) {
-    throw new UnsupportedOperationException("Not yet implemented.");
+  public Stream<Diff<ValueT>> getDiffs(Ref from, Ref to) throws ReferenceNotFoundException {
+    return toSnapshot(toHash(from)).diff(toSnapshot(toHash(to))).stream();
   }
 
   @Override
@@ -505,6 +570,39 @@ public class InMemoryVersionStore<ValueT, MetadataT> implements VersionStore<Val
     return InactiveCollector.of();
   }
 
+  @Override
+  public void close() throws IOException {
+    journal.close();
+  }
+
+  private void addCommit(Commit<ValueT, MetadataT> commit) {
+    // the commit is only visible once journaled, so a reference is never journaled pointing to a commit which isn't. A
+    // commit added twice concurrently may be journaled twice, which the journal ignores when loading.
+    if (!commits.containsKey(commit.getHash())) {
+      journal.addCommit(commit);
+      commits.putIfAbsent(commit.getHash(), commit);
+    }
+  }
+
+  /**
+   * Change the hash of a reference, recording the change in the journal.
+   */
+  private <E extends VersionStoreException> void updateRef(NamedRef ref, ComputeFunction<NamedRef, Hash, E> doCompute)
+      throws E {
+    journal.beginUpdate();
+    try {
+      compute(namedReferences, ref, (key, hash) -> {
+        final Hash newHash = doCompute.apply(key, hash);
+        if (!Objects.equals(hash, newHash)) {
+          journal.setRef(key, Optional.ofNullable(newHash));
+        }
+        return newHash;
+      });
+    } finally {
+      journal.endUpdate();
+    }
+  }
+
   @SuppressWarnings("serial")
   private static class VersionStoreExecutionError extends Error {
     private VersionStoreExecutionError(VersionStoreException cause) {
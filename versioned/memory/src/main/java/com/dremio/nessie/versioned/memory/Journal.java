@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.memory;
+
+import java.io.Closeable;
+import java.util.Optional;
+
+import com.dremio.nessie.versioned.Hash;
+import com.dremio.nessie.versioned.NamedRef;
+
+/**
+ * Records the changes made to an {@code InMemoryVersionStore}.
+ *
+ * <p>Each change of a reference is wrapped in {@link #beginUpdate()} and {@link #endUpdate()}. The commits it adds are
+ * recorded before the new hash of the reference, and everything recorded is durable once {@code endUpdate()} returns.
+ *
+ * @param <ValueT> Value type
+ * @param <MetadataT> Commit metadata type
+ */
+interface Journal<ValueT, MetadataT> extends Closeable {
+
+  /**
+   * Start an update of the store.
+   */
+  void beginUpdate();
+
+  /**
+   * Record a commit added to the store.
+   * @param commit the new commit
+   */
+  void addCommit(Commit<ValueT, MetadataT> commit);
+
+  /**
+   * Record the new hash of a reference.
+   * @param ref the reference
+   * @param hash the new hash of the reference, or empty if the reference was deleted
+   */
+  void setRef(NamedRef ref, Optional<Hash> hash);
+
+  /**
+   * Finish an update of the store, waiting until the changes recorded by the update are durable.
+   */
+  void endUpdate();
+
+  /**
+   * A journal which records nothing, for stores only kept in memory.
+   */
+  static <ValueT, MetadataT> Journal<ValueT, MetadataT> none() {
+    return new Journal<ValueT, MetadataT>() {
+      @Override
+      public void beginUpdate() {
+      }
+
+      @Override
+      public void addCommit(Commit<ValueT, MetadataT> commit) {
+      }
+
+      @Override
+      public void setRef(NamedRef ref, Optional<Hash> hash) {
+      }
+
+      @Override
+      public void endUpdate() {
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+  }
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import com.dremio.nessie.versioned.Delete;
+import com.dremio.nessie.versioned.Diff;
+import com.dremio.nessie.versioned.Key;
+import com.dremio.nessie.versioned.Operation;
+import com.dremio.nessie.versioned.Put;
+import com.dremio.nessie.versioned.Unchanged;
+
+/**
+ * An immutable map of all the keys of a commit to their values.
+ *
+ * <p>The map is a hash array mapped trie: each level consumes 5 bits of the hash of a key, so reads and updates take a
+ * number of steps that is logarithmic in the number of keys and independent of the number of commits. Updates copy only
+ * the path to the changed key and share the rest of the trie with the previous snapshot, which is also what allows
+ * {@link #diff(Snapshot)} to skip every part of two snapshots that is shared.
+ *
+ * @param <ValueT> value type
+ */
+final class Snapshot<ValueT> {
+
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+  // the last shift that still consumes bits of the hash. Nodes below it hold keys whose hashes collide.
+  private static final int MAX_SHIFT = 30;
+
+  private static final Snapshot<?> EMPTY = new Snapshot<>(new Node<>(0, new Object[0]), 0);
+
+  private final Node<ValueT> root;
+  private final int size;
+
+  private Snapshot(Node<ValueT> root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <ValueT> Snapshot<ValueT> empty() {
+    return (Snapshot<ValueT>) EMPTY;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Get the value of a key.
+   * @param key The key to look up.
+   * @return The value, or empty if the key doesn't exist.
+   */
+  Optional<ValueT> get(Key key) {
+    final int hash = key.hashCode();
+    Node<ValueT> node = root;
+    for (int shift = 0; ; shift += BITS) {
+      if (shift > MAX_SHIFT) {
+        final Node<ValueT> collisions = node;
+        return collisions.findCollision(key).map(i -> collisions.leaf(i).value);
+      }
+
+      final int bit = bit(hash, shift);
+      if ((node.bitmap & bit) == 0) {
+        return Optional.empty();
+      }
+      final Object child = node.children[node.index(bit)];
+      if (child instanceof Leaf) {
+        @SuppressWarnings("unchecked")
+        Leaf<ValueT> leaf = (Leaf<ValueT>) child;
+        return leaf.hash == hash && leaf.key.equals(key) ? Optional.of(leaf.value) : Optional.empty();
+      }
+      @SuppressWarnings("unchecked")
+      Node<ValueT> next = (Node<ValueT>) child;
+      node = next;
+    }
+  }
+
+  /**
+   * Get the snapshot after applying the operations of a commit.
+   * @param operations The operations of the commit, in order.
+   * @return The new snapshot.
+   */
+  Snapshot<ValueT> apply(List<Operation<ValueT>> operations) {
+    Snapshot<ValueT> snapshot = this;
+    for (Operation<ValueT> operation : operations) {
+      if (operation instanceof Put) {
+        snapshot = snapshot.put(operation.getKey(), ((Put<ValueT>) operation).getValue());
+      } else if (operation instanceof Delete) {
+        snapshot = snapshot.remove(operation.getKey());
+      } else if (!(operation instanceof Unchanged)) {
+        throw new IllegalArgumentException("Unknown operation type for operation " + operation);
+      }
+    }
+    return snapshot;
+  }
+
+  Snapshot<ValueT> put(Key key, ValueT value) {
+    Objects.requireNonNull(value);
+    final boolean exists = get(key).isPresent();
+    final Node<ValueT> updated = putLeaf(root, 0, new Leaf<>(key, value));
+    return updated == root ? this : new Snapshot<>(updated, exists ? size : size + 1);
+  }
+
+  Snapshot<ValueT> remove(Key key) {
+    final Node<ValueT> updated = removeKey(root, 0, key, key.hashCode());
+    return updated == root ? this : new Snapshot<>(updated, size - 1);
+  }
+
+  /**
+   * Stream the keys of the snapshot, in no particular order.
+   */
+  Stream<Key> keys() {
+    return leaves(root).map(l -> l.key);
+  }
+
+  /**
+   * Get the differences between this snapshot and another. Parts of the trie that both snapshots share are skipped, so the
+   * cost depends on the number of differences rather than on the number of keys.
+   * @param to The snapshot to compare to.
+   * @return The differences, in no particular order.
+   */
+  List<Diff<ValueT>> diff(Snapshot<ValueT> to) {
+    List<Diff<ValueT>> diffs = new ArrayList<>();
+    diff(root, to.root, 0, diffs);
+    return diffs;
+  }
+
+  private static <ValueT> void diff(Node<ValueT> from, Node<ValueT> to, int shift, List<Diff<ValueT>> diffs) {
+    if (from == to) {
+      return;
+    }
+
+    if (shift > MAX_SHIFT) {
+      diff(leaves(from), leaves(to), diffs);
+      return;
+    }
+
+    final int bitmap = from.bitmap | to.bitmap;
+    for (int position = 0; position <= MASK; position++) {
+      final int bit = 1 << position;
+      if ((bitmap & bit) == 0) {
+        continue;
+      }
+
+      final Object fromChild = (from.bitmap & bit) == 0 ? null : from.children[from.index(bit)];
+      final Object toChild = (to.bitmap & bit) == 0 ? null : to.children[to.index(bit)];
+      if (fromChild == toChild) {
+        continue;
+      }
+      if (fromChild instanceof Node && toChild instanceof Node) {
+        @SuppressWarnings("unchecked")
+        Node<ValueT> fromNode = (Node<ValueT>) fromChild;
+        @SuppressWarnings("unchecked")
+        Node<ValueT> toNode = (Node<ValueT>) toChild;
+        diff(fromNode, toNode, shift + BITS, diffs);
+      } else {
+        diff(Snapshot.<ValueT>leavesOf(fromChild), Snapshot.<ValueT>leavesOf(toChild), diffs);
+      }
+    }
+  }
+
+  private static <ValueT> void diff(Stream<Leaf<ValueT>> from, Stream<Leaf<ValueT>> to, List<Diff<ValueT>> diffs) {
+    final Map<Key, ValueT> fromValues = new LinkedHashMap<>();
+    from.forEach(l -> fromValues.put(l.key, l.value));
+    to.forEach(l -> {
+      ValueT fromValue = fromValues.remove(l.key);
+      if (!l.value.equals(fromValue)) {
+        diffs.add(Diff.of(l.key, Optional.ofNullable(fromValue), Optional.of(l.value)));
+      }
+    });
+    fromValues.forEach((k, v) -> diffs.add(Diff.of(k, Optional.of(v), Optional.empty())));
+  }
+
+  private static <ValueT> Node<ValueT> putLeaf(Node<ValueT> node, int shift, Leaf<ValueT> leaf) {
+    if (shift > MAX_SHIFT) {
+      Optional<Integer> existing = node.findCollision(leaf.key);
+      if (existing.isPresent()) {
+        return node.leaf(existing.get()).value.equals(leaf.value) ? node : node.replace(existing.get(), leaf);
+      }
+      return node.insert(node.children.length, 0, leaf);
+    }
+
+    final int bit = bit(leaf.hash, shift);
+    final int index = node.index(bit);
+    if ((node.bitmap & bit) == 0) {
+      return node.insert(index, bit, leaf);
+    }
+
+    final Object child = node.children[index];
+    if (child instanceof Leaf) {
+      @SuppressWarnings("unchecked")
+      Leaf<ValueT> existing = (Leaf<ValueT>) child;
+      if (existing.hash == leaf.hash && existing.key.equals(leaf.key)) {
+        return existing.value.equals(leaf.value) ? node : node.replace(index, leaf);
+      }
+      return node.replace(index, merge(existing, leaf, shift + BITS));
+    }
+
+    @SuppressWarnings("unchecked")
+    Node<ValueT> childNode = (Node<ValueT>) child;
+    Node<ValueT> updated = putLeaf(childNode, shift + BITS, leaf);
+    return updated == childNode ? node : node.replace(index, updated);
+  }
+
+  /**
+   * Build the node holding two leaves whose hashes are the same up to the given shift.
+   */
+  private static <ValueT> Node<ValueT> merge(Leaf<ValueT> a, Leaf<ValueT> b, int shift) {
+    if (shift > MAX_SHIFT) {
+      return new Node<>(0, new Object[] {a, b});
+    }
+
+    final int bitA = bit(a.hash, shift);
+    final int bitB = bit(b.hash, shift);
+    if (bitA == bitB) {
+      return new Node<>(bitA, new Object[] {merge(a, b, shift + BITS)});
+    }
+    return new Node<>(bitA | bitB, Integer.compareUnsigned(bitA, bitB) < 0 ? new Object[] {a, b} : new Object[] {b, a});
+  }
+
+  private static <ValueT> Node<ValueT> removeKey(Node<ValueT> node, int shift, Key key, int hash) {
+    if (shift > MAX_SHIFT) {
+      return node.findCollision(key).map(i -> node.delete(i, 0)).orElse(node);
+    }
+
+    final int bit = bit(hash, shift);
+    if ((node.bitmap & bit) == 0) {
+      return node;
+    }
+
+    final int index = node.index(bit);
+    final Object child = node.children[index];
+    if (child instanceof Leaf) {
+      @SuppressWarnings("unchecked")
+      Leaf<ValueT> leaf = (Leaf<ValueT>) child;
+      return leaf.hash == hash && leaf.key.equals(key) ? node.delete(index, bit) : node;
+    }
+
+    @SuppressWarnings("unchecked")
+    Node<ValueT> childNode = (Node<ValueT>) child;
+    Node<ValueT> updated = removeKey(childNode, shift + BITS, key, hash);
+    if (updated == childNode) {
+      return node;
+    }
+    if (updated.children.length == 0) {
+      return node.delete(index, bit);
+    }
+    // a node left with a single leaf is replaced by the leaf so that the trie doesn't depend on the order of updates.
+    if (updated.children.length == 1 && updated.children[0] instanceof Leaf) {
+      return node.replace(index, updated.children[0]);
+    }
+    return node.replace(index, updated);
+  }
+
+  private static <ValueT> Stream<Leaf<ValueT>> leavesOf(Object child) {
+    if (child == null) {
+      return Stream.empty();
+    }
+    if (child instanceof Leaf) {
+      @SuppressWarnings("unchecked")
+      Leaf<ValueT> leaf = (Leaf<ValueT>) child;
+      return Stream.of(leaf);
+    }
+    @SuppressWarnings("unchecked")
+    Node<ValueT> node = (Node<ValueT>) child;
+    return leaves(node);
+  }
+
+  private static <ValueT> Stream<Leaf<ValueT>> leaves(Node<ValueT> node) {
+    return Arrays.stream(node.children).flatMap(Snapshot::<ValueT>leavesOf);
+  }
+
+  private static int bit(int hash, int shift) {
+    return 1 << ((hash >>> shift) & MASK);
+  }
+
+  private static final class Leaf<ValueT> {
+    private final Key key;
+    private final int hash;
+    private final ValueT value;
+
+    private Leaf(Key key, ValueT value) {
+      this.key = key;
+      this.hash = key.hashCode();
+      this.value = value;
+    }
+  }
+
+  /**
+   * A node of the trie. Its children are leaves or nodes, ordered by the bits of the bitmap. Nodes below the last shift
+   * have an empty bitmap and only hold the leaves of keys whose hashes collide.
+   */
+  private static final class Node<ValueT> {
+    private final int bitmap;
+    private final Object[] children;
+
+    private Node(int bitmap, Object[] children) {
+      this.bitmap = bitmap;
+      this.children = children;
+    }
+
+    private int index(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Leaf<ValueT> leaf(int index) {
+      return (Leaf<ValueT>) children[index];
+    }
+
+    private Optional<Integer> findCollision(Key key) {
+      for (int i = 0; i < children.length; i++) {
+        if (leaf(i).key.equals(key)) {
+          return Optional.of(i);
+        }
+      }
+      return Optional.empty();
+    }
+
+    private Node<ValueT> insert(int index, int bit, Object child) {
+      Object[] updated = new Object[children.length + 1];
+      System.arraycopy(children, 0, updated, 0, index);
+      updated[index] = child;
+      System.arraycopy(children, index, updated, index + 1, children.length - index);
+      return new Node<>(bitmap | bit, updated);
+    }
+
+    private Node<ValueT> replace(int index, Object child) {
+      Object[] updated = children.clone();
+      updated[index] = child;
+      return new Node<>(bitmap, updated);
+    }
+
+    private Node<ValueT> delete(int index, int bit) {
+      Object[] updated = new Object[children.length - 1];
+      System.arraycopy(children, 0, updated, 0, index);
+      System.arraycopy(children, index + 1, updated, index, updated.length - index);
+      return new Node<>(bitmap & ~bit, updated);
+    }
+  }
+}
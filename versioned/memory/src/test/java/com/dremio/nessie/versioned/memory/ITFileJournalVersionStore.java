@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.memory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.dremio.nessie.versioned.StringSerializer;
+import com.dremio.nessie.versioned.VersionStore;
+import com.dremio.nessie.versioned.tests.AbstractITVersionStore;
+
+public class ITFileJournalVersionStore extends AbstractITVersionStore {
+  @TempDir
+  Path directory;
+
+  private InMemoryVersionStore<String, String> store;
+
+  @Override
+  protected VersionStore<String, String> store() {
+    return store;
+  }
+
+  @BeforeEach
+  protected void beforeEach() {
+    // small segments, so that the tests also go through snapshots.
+    this.store = InMemoryVersionStore.<String, String>builder()
+        .valueSerializer(StringSerializer.getInstance())
+        .metadataSerializer(StringSerializer.getInstance())
+        .directory(directory)
+        .segmentSize(4096)
+        .build();
+  }
+
+  @AfterEach
+  protected void afterEach() throws IOException {
+    this.store.close();
+    this.store = null;
+  }
+
+}
@@ -17,11 +17,9 @@ package com.dremio.nessie.versioned.memory;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
-import org.junit.jupiter.api.Disabled;
 
 import com.dremio.nessie.versioned.StringSerializer;
 import com.dremio.nessie.versioned.VersionStore;
-import com.dremio.nessie.versioned.VersionStoreException;
 import com.dremio.nessie.versioned.tests.AbstractITVersionStore;
 
 public class ITInMemoryVersionStore extends AbstractITVersionStore {
@@ -36,11 +34,6 @@ public class ITInMemoryVersionStore extends AbstractITVersionStore {
     return store;
   }
 
-  @Disabled("NYI")
-  protected void checkDiff() throws VersionStoreException {
-    super.checkDiff();
-  }
-
   @BeforeEach
   protected void beforeEach() {
     this.store = BUILDER.build();
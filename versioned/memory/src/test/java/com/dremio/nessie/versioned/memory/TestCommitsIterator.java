@@ -42,13 +42,13 @@ public class TestCommitsIterator {
   private static final Hash HASH_OF_4 = Hash.of("04");
 
   private static final Commit<String, String> FIRST_COMMIT =
-      new Commit<String, String>(HASH_OF_1, Commit.NO_ANCESTOR, "initial commit", Collections.emptyList());
+      new Commit<String, String>(HASH_OF_1, Commit.NO_ANCESTOR, "initial commit", Collections.emptyList(), Snapshot.empty());
   private static final Commit<String, String> SECOND_COMMIT =
-      new Commit<String, String>(HASH_OF_2, HASH_OF_1, "2nd commit", Collections.emptyList());
+      new Commit<String, String>(HASH_OF_2, HASH_OF_1, "2nd commit", Collections.emptyList(), Snapshot.empty());
   private static final Commit<String, String> THIRD_COMMIT =
-      new Commit<String, String>(HASH_OF_3, HASH_OF_2, "3rd commit", Collections.emptyList());
+      new Commit<String, String>(HASH_OF_3, HASH_OF_2, "3rd commit", Collections.emptyList(), Snapshot.empty());
   private static final Commit<String, String> FOURTH_COMMIT =
-      new Commit<String, String>(HASH_OF_4, HASH_OF_3, "4th commit", Collections.emptyList());
+      new Commit<String, String>(HASH_OF_4, HASH_OF_3, "4th commit", Collections.emptyList(), Snapshot.empty());
 
   private static final ImmutableMap<Hash, Commit<String, String>> COMMITS = ImmutableMap.<Hash, Commit<String, String>>builder()
       .put(HASH_OF_1, FIRST_COMMIT)
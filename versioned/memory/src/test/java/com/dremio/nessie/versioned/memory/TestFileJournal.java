@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.memory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.dremio.nessie.versioned.BranchName;
+import com.dremio.nessie.versioned.Delete;
+import com.dremio.nessie.versioned.Hash;
+import com.dremio.nessie.versioned.Key;
+import com.dremio.nessie.versioned.NamedRef;
+import com.dremio.nessie.versioned.Put;
+import com.dremio.nessie.versioned.StringSerializer;
+import com.dremio.nessie.versioned.TagName;
+import com.dremio.nessie.versioned.WithHash;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Test cases for {@code FileJournal}.
+ */
+public class TestFileJournal {
+  private static final BranchName MAIN = BranchName.of("main");
+
+  @TempDir
+  Path directory;
+
+  private InMemoryVersionStore<String, String> open(long segmentSize) {
+    return InMemoryVersionStore.<String, String>builder()
+        .valueSerializer(StringSerializer.getInstance())
+        .metadataSerializer(StringSerializer.getInstance())
+        .directory(directory)
+        .segmentSize(segmentSize)
+        .build();
+  }
+
+  private static Map<NamedRef, Hash> refs(InMemoryVersionStore<String, String> store) {
+    return store.getNamedRefs().collect(Collectors.toMap(WithHash::getValue, WithHash::getHash));
+  }
+
+  private List<String> files() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.map(p -> p.getFileName().toString()).collect(Collectors.toList());
+    }
+  }
+
+  @Test
+  public void testReload() throws Exception {
+    final Map<NamedRef, Hash> refs;
+    final List<WithHash<String>> log;
+    try (InMemoryVersionStore<String, String> store = open(FileJournal.DEFAULT_SEGMENT_SIZE)) {
+      store.create(MAIN, Optional.empty());
+      store.commit(MAIN, Optional.empty(), "first", ImmutableList.of(Put.of(Key.of("a"), "1"), Put.of(Key.of("b"), "2")));
+      store.create(TagName.of("tag"), Optional.of(store.toHash(MAIN)));
+      store.create(BranchName.of("other"), Optional.of(store.toHash(MAIN)));
+      store.create(BranchName.of("deleted"), Optional.empty());
+      store.commit(MAIN, Optional.empty(), "second", ImmutableList.of(Put.of(Key.of("a"), "3"), Delete.of(Key.of("b"))));
+      store.delete(BranchName.of("deleted"), Optional.empty());
+      refs = refs(store);
+      log = store.getCommits(MAIN).collect(Collectors.toList());
+    }
+
+    try (InMemoryVersionStore<String, String> store = open(FileJournal.DEFAULT_SEGMENT_SIZE)) {
+      assertThat(refs(store), is(refs));
+      assertThat(store.getCommits(MAIN).collect(Collectors.toList()), is(log));
+      assertThat(store.getKeys(MAIN).collect(Collectors.toList()), is(Collections.singletonList(Key.of("a"))));
+      assertThat(store.getValue(MAIN, Key.of("a")), is("3"));
+      assertThat(store.getValue(TagName.of("tag"), Key.of("b")), is("2"));
+
+      // the reloaded store keeps working on top of the reloaded commits.
+      store.commit(MAIN, Optional.of(refs.get(MAIN)), "third", ImmutableList.of(Put.of(Key.of("c"), "4")));
+    }
+  }
+
+  @Test
+  public void testSnapshotsReplaceSegments() throws Exception {
+    final Map<NamedRef, Hash> refs;
+    try (InMemoryVersionStore<String, String> store = open(1024)) {
+      store.create(MAIN, Optional.empty());
+      for (int i = 0; i < 200; i++) {
+        store.commit(MAIN, Optional.empty(), "commit " + i, ImmutableList.of(Put.of(Key.of("key" + i % 10), "value" + i)));
+      }
+      refs = refs(store);
+    }
+
+    final List<String> files = files();
+    assertThat(files.stream().anyMatch(f -> f.startsWith("snapshot-")), is(true));
+    assertThat(files.stream().filter(f -> f.startsWith("log-")).count(), lessThanOrEqualTo(10L));
+
+    try (InMemoryVersionStore<String, String> store = open(1024)) {
+      assertThat(refs(store), is(refs));
+      assertThat(store.getCommits(MAIN).count(), is(200L));
+      assertThat(store.getValue(MAIN, Key.of("key9")), is("value199"));
+    }
+  }
+
+  @Test
+  public void testTornRecordIsIgnored() throws Exception {
+    final Hash head;
+    try (InMemoryVersionStore<String, String> store = open(FileJournal.DEFAULT_SEGMENT_SIZE)) {
+      store.create(MAIN, Optional.empty());
+      store.commit(MAIN, Optional.empty(), "first", ImmutableList.of(Put.of(Key.of("a"), "1")));
+      head = store.toHash(MAIN);
+    }
+
+    // a record whose payload was not completely written before a crash.
+    final Path segment = directory.resolve("log-0.dat");
+    final long end = validLength(segment);
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      final ByteBuffer torn = ByteBuffer.allocate(16);
+      torn.putInt(100).putInt(42).putInt(7).putInt(7).flip();
+      channel.write(torn, end);
+    }
+
+    try (InMemoryVersionStore<String, String> store = open(FileJournal.DEFAULT_SEGMENT_SIZE)) {
+      assertThat(store.toHash(MAIN), is(head));
+      store.commit(MAIN, Optional.empty(), "second", ImmutableList.of(Put.of(Key.of("b"), "2")));
+    }
+
+    try (InMemoryVersionStore<String, String> store = open(FileJournal.DEFAULT_SEGMENT_SIZE)) {
+      assertThat(store.getKeys(MAIN).collect(Collectors.toList()), containsInAnyOrder(Key.of("a"), Key.of("b")));
+      assertThat(store.getCommits(MAIN).map(WithHash::getHash).collect(Collectors.toList()), hasItem(head));
+    }
+  }
+
+  /**
+   * The length of the complete records at the start of a segment.
+   */
+  private static long validLength(Path segment) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+    while (buffer.remaining() >= 8) {
+      final int length = buffer.getInt(buffer.position());
+      if (length == 0) {
+        break;
+      }
+      buffer.position(buffer.position() + 8 + length);
+    }
+    return buffer.position();
+  }
+}
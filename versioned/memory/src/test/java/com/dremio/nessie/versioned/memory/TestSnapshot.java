@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.memory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.dremio.nessie.versioned.Delete;
+import com.dremio.nessie.versioned.Diff;
+import com.dremio.nessie.versioned.Key;
+import com.dremio.nessie.versioned.Put;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Test cases for {@code Snapshot}.
+ */
+public class TestSnapshot {
+
+  @Test
+  public void testMatchesMap() {
+    final Random random = new Random(42);
+    final Map<Key, String> expected = new HashMap<>();
+    Snapshot<String> snapshot = Snapshot.empty();
+    for (int i = 0; i < 20_000; i++) {
+      final Key key = Key.of("ns" + random.nextInt(10), "key" + random.nextInt(2_000));
+      if (random.nextInt(3) == 0) {
+        expected.remove(key);
+        snapshot = snapshot.remove(key);
+      } else {
+        final String value = "v" + random.nextInt(5);
+        expected.put(key, value);
+        snapshot = snapshot.put(key, value);
+      }
+    }
+
+    assertThat(snapshot.size(), is(expected.size()));
+    assertThat(snapshot.keys().collect(Collectors.toList()), containsInAnyOrder(expected.keySet().toArray()));
+    for (Map.Entry<Key, String> entry : expected.entrySet()) {
+      assertThat(snapshot.get(entry.getKey()), is(Optional.of(entry.getValue())));
+    }
+    assertThat(snapshot.get(Key.of("missing")), is(Optional.empty()));
+  }
+
+  @Test
+  public void testDiff() {
+    final Random random = new Random(7);
+    Snapshot<String> from = Snapshot.empty();
+    for (int i = 0; i < 5_000; i++) {
+      from = from.put(Key.of("key" + i), "v" + i);
+    }
+
+    Snapshot<String> to = from;
+    final Set<Diff<String>> expected = new HashSet<>();
+    final Set<Key> touched = new HashSet<>();
+    for (int i = 0; i < 200; i++) {
+      final Key key = Key.of("key" + random.nextInt(6_000));
+      if (!touched.add(key)) {
+        continue;
+      }
+      final Optional<String> before = from.get(key);
+      if (before.isPresent() && random.nextBoolean()) {
+        to = to.remove(key);
+        expected.add(Diff.of(key, before, Optional.empty()));
+      } else {
+        to = to.put(key, "changed");
+        expected.add(Diff.of(key, before, Optional.of("changed")));
+      }
+    }
+
+    assertThat(from.diff(to), containsInAnyOrder(expected.toArray()));
+    assertThat(to.diff(from), containsInAnyOrder(expected.stream()
+        .map(d -> Diff.of(d.getKey(), d.getToValue(), d.getFromValue())).toArray()));
+    assertThat(from.diff(from), is(empty()));
+  }
+
+  @Test
+  public void testUnchangedSnapshotIsShared() {
+    final Snapshot<String> snapshot = Snapshot.<String>empty().put(Key.of("a"), "1").put(Key.of("b"), "2");
+    assertThat(snapshot.put(Key.of("a"), "1"), is(sameInstance(snapshot)));
+    assertThat(snapshot.remove(Key.of("c")), is(sameInstance(snapshot)));
+
+    final List<Diff<String>> diffs = snapshot.diff(snapshot.apply(ImmutableList.of(
+        Put.of(Key.of("a"), "3"), Delete.of(Key.of("b")), Put.of(Key.of("b"), "2"))));
+    assertThat(diffs, containsInAnyOrder(Diff.of(Key.of("a"), Optional.of("1"), Optional.of("3"))));
+  }
+}
@@ -15,19 +15,31 @@
  */
 package com.dremio.nessie.versioned.store.mongodb;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
+import org.bson.BsonArray;
 import org.bson.BsonBinary;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
 import org.bson.BsonReader;
 import org.bson.BsonSerializationException;
 import org.bson.BsonType;
+import org.bson.BsonValue;
 import org.bson.BsonWriter;
 import org.bson.codecs.Codec;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
+import org.bson.codecs.RawBsonDocumentCodec;
 import org.bson.codecs.configuration.CodecRegistry;
 
+import com.dremio.nessie.versioned.store.AttributeReader;
+import com.dremio.nessie.versioned.store.AttributeWriter;
 import com.dremio.nessie.versioned.store.Entity;
 import com.dremio.nessie.versioned.store.Id;
 import com.dremio.nessie.versioned.store.SimpleSchema;
@@ -35,6 +47,7 @@ import com.dremio.nessie.versioned.store.ValueType;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.UnsafeByteOperations;
 
 /**
@@ -61,7 +74,7 @@ class CodecProvider implements org.bson.codecs.configuration.CodecProvider {
      * @param field the name of the field as represented in BSON
      * @param value the entity that will be serialized.
      */
-    private void writeField(BsonWriter writer, String field, Entity value) {
+    void writeField(BsonWriter writer, String field, Entity value) {
       writer.writeName(field);
       writeSingleValue(writer, value);
     }
@@ -216,6 +229,127 @@ class CodecProvider implements org.bson.codecs.configuration.CodecProvider {
     }
   }
 
+  /**
+   * Writes the attributes of an item straight to BSON, falling back to {@link EntityToBsonConverter} for entities.
+   */
+  private static class BsonAttributeWriter implements AttributeWriter {
+    private final BsonWriter writer;
+
+    BsonAttributeWriter(BsonWriter writer) {
+      this.writer = writer;
+    }
+
+    @Override
+    public void writeId(String name, Id id) {
+      writer.writeBinaryData(name, new BsonBinary(id.toBytes()));
+    }
+
+    @Override
+    public void writeBinary(String name, ByteString value) {
+      writer.writeBinaryData(name, new BsonBinary(value.toByteArray()));
+    }
+
+    @Override
+    public void writeString(String name, String value) {
+      writer.writeString(name, value);
+    }
+
+    @Override
+    public void writeStringList(String name, List<String> values) {
+      writer.writeStartArray(name);
+      values.forEach(writer::writeString);
+      writer.writeEndArray();
+    }
+
+    @Override
+    public <E> void writeMapList(String name, Collection<E> values, BiConsumer<E, AttributeWriter> valueWriter) {
+      writer.writeStartArray(name);
+      for (E value : values) {
+        writer.writeStartDocument();
+        valueWriter.accept(value, this);
+        writer.writeEndDocument();
+      }
+      writer.writeEndArray();
+    }
+
+    @Override
+    public void writeEntity(String name, Entity value) {
+      ENTITY_TO_BSON_CONVERTER.writeField(writer, name, value);
+    }
+  }
+
+  /**
+   * Reads the attributes of an item from a raw BSON document. Values are only parsed once they are accessed.
+   */
+  private static class BsonAttributeReader implements AttributeReader {
+    private final BsonDocument document;
+
+    BsonAttributeReader(BsonDocument document) {
+      this.document = document;
+    }
+
+    private BsonValue get(String name) {
+      BsonValue value = document.get(name);
+      if (value == null) {
+        throw new NullPointerException(String.format("Unable to find '%s' in: %s.", name, document));
+      }
+      return value;
+    }
+
+    @Override
+    public boolean contains(String name) {
+      return document.containsKey(name);
+    }
+
+    @Override
+    public Id readId(String name) {
+      return Id.of(get(name).asBinary().getData());
+    }
+
+    @Override
+    public ByteString readBinary(String name) {
+      return UnsafeByteOperations.unsafeWrap(get(name).asBinary().getData());
+    }
+
+    @Override
+    public String readString(String name) {
+      return get(name).asString().getValue();
+    }
+
+    @Override
+    public List<String> readStringList(String name) {
+      BsonArray values = get(name).asArray();
+      List<String> strings = new ArrayList<>(values.size());
+      for (BsonValue value : values) {
+        strings.add(value.asString().getValue());
+      }
+      return strings;
+    }
+
+    @Override
+    public Stream<AttributeReader> readMapList(String name) {
+      return get(name).asArray().stream().map(v -> new BsonAttributeReader(v.asDocument()));
+    }
+
+    @Override
+    public Entity readEntity(String name) {
+      BsonDocument single = new BsonDocument(name, get(name));
+      return toEntityMap(single).get(name);
+    }
+
+    @Override
+    public Map<String, Entity> toEntityMap() {
+      return toEntityMap(document);
+    }
+
+    private static Map<String, Entity> toEntityMap(BsonDocument document) {
+      try (BsonReader reader = new BsonDocumentReader(document)) {
+        reader.readBsonType();
+        return BSON_TO_ENTITY_CONVERTER.read(reader);
+      }
+    }
+  }
+
   /**
    * Codec responsible for the encoding and decoding of Entities to a BSON objects.
    */
@@ -241,19 +375,21 @@ class CodecProvider implements org.bson.codecs.configuration.CodecProvider {
      */
     @Override
     public C decode(BsonReader bsonReader, DecoderContext decoderContext) {
-      return schema.mapToItem(BSON_TO_ENTITY_CONVERTER.read(bsonReader));
+      return schema.read(new BsonAttributeReader(RAW_DOCUMENT_CODEC.decode(bsonReader, decoderContext)));
     }
 
     /**
-     * This serializes an object into a BSON stream. The serialization is delegated to
-     * {@link EntityToBsonConverter}
+     * This serializes an object into a BSON stream. The schema writes the attributes of the object directly, with
+     * {@link EntityToBsonConverter} used for attributes that it doesn't write directly.
      * @param bsonWriter that encodes each attribute to BSON
      * @param obj the object to encode
      * @param encoderContext not used
      */
     @Override
     public void encode(BsonWriter bsonWriter, C obj, EncoderContext encoderContext) {
-      ENTITY_TO_BSON_CONVERTER.write(bsonWriter, schema.itemToMap(obj, true));
+      bsonWriter.writeStartDocument();
+      schema.write(obj, new BsonAttributeWriter(bsonWriter));
+      bsonWriter.writeEndDocument();
     }
 
     /**
@@ -288,6 +424,8 @@ class CodecProvider implements org.bson.codecs.configuration.CodecProvider {
   @VisibleForTesting
   static final BsonToEntityConverter BSON_TO_ENTITY_CONVERTER = new BsonToEntityConverter();
 
+  private static final RawBsonDocumentCodec RAW_DOCUMENT_CODEC = new RawBsonDocumentCodec();
+
   private static final Map<Class<?>, Codec<?>> CODECS;
 
   static {
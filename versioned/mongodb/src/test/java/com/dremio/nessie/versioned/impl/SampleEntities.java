@@ -41,9 +41,8 @@ public class SampleEntities {
    * @return sample L1 entity.
    */
   public static L1 createL1(Random random) {
-    final List<KeyMutation> mutations = ImmutableList.of(
-        KeyMutation.KeyAddition.of(new InternalKey(Key.of("a", createString(random, 8), createString(random, 9))))
-    );
+    final InternalKey key = new InternalKey(Key.of("a", createString(random, 8), createString(random, 9)));
+    final List<KeyMutation> mutations = ImmutableList.of(KeyMutation.KeyAddition.of(key));
 
     final List<Entity> deltaIds = new ArrayList<>(L1.SIZE);
     for (int i = 0; i < L1.SIZE; i++) {
@@ -53,7 +52,8 @@ public class SampleEntities {
     return L1.EMPTY.getChildWithTree(
       createId(random),
       IdMap.fromEntity(Entity.ofList(deltaIds), L1.SIZE),
-      KeyMutationList.of(mutations));
+      KeyMutationList.of(mutations),
+      KeyFilter.of(ImmutableList.of(key)));
   }
 
   /**
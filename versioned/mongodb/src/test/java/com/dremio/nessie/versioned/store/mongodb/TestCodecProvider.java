@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2020 Dremio
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.nessie.versioned.store.mongodb;
+
+import java.util.Random;
+
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonReader;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.dremio.nessie.versioned.impl.SampleEntities;
+import com.dremio.nessie.versioned.store.HasId;
+import com.dremio.nessie.versioned.store.SimpleSchema;
+import com.dremio.nessie.versioned.store.ValueType;
+
+class TestCodecProvider {
+  private static final Random RANDOM = new Random(8612341233543L);
+  private static final CodecProvider PROVIDER = new CodecProvider();
+
+  @Test
+  public void l1() {
+    roundTrip(ValueType.L1, SampleEntities.createL1(RANDOM));
+  }
+
+  @Test
+  public void l2() {
+    roundTrip(ValueType.L2, SampleEntities.createL2(RANDOM));
+  }
+
+  @Test
+  public void l3() {
+    roundTrip(ValueType.L3, SampleEntities.createL3(RANDOM));
+  }
+
+  @Test
+  public void value() {
+    roundTrip(ValueType.VALUE, SampleEntities.createValue(RANDOM));
+  }
+
+  @Test
+  public void branch() {
+    roundTrip(ValueType.REF, SampleEntities.createBranch(RANDOM));
+  }
+
+  /**
+   * Ensure that a value encoded by its codec decodes to the same value and that it is encoded like its entities.
+   */
+  @SuppressWarnings("unchecked")
+  private static <V extends HasId> void roundTrip(ValueType type, V value) {
+    final Codec<V> codec = (Codec<V>) PROVIDER.get(value.getClass(), null);
+    final BsonDocumentWriter writer = new BsonDocumentWriter(new BsonDocument());
+    codec.encode(writer, value, EncoderContext.builder().build());
+    final BsonDocument document = writer.getDocument();
+
+    final SimpleSchema<V> schema = type.getSchema();
+    final BsonDocumentWriter entityWriter = new BsonDocumentWriter(new BsonDocument());
+    CodecProvider.ENTITY_TO_BSON_CONVERTER.write(entityWriter, schema.itemToMap(value, true));
+    Assertions.assertEquals(entityWriter.getDocument(), document);
+
+    final BsonReader reader = new BsonDocumentReader(document);
+    reader.readBsonType();
+    final V decoded = codec.decode(reader, DecoderContext.builder().build());
+    Assertions.assertEquals(value.getId(), decoded.getId());
+    Assertions.assertEquals(schema.itemToMap(value, true), schema.itemToMap(decoded, true));
+  }
+}
@@ -15,9 +15,13 @@
  */
 package com.dremio.nessie.versioned;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.annotation.Nonnull;
@@ -116,6 +120,30 @@ public interface VersionStore<VALUE, METADATA> {
   void merge(Hash fromHash, BranchName toBranch, Optional<Hash> expectedHash)
       throws ReferenceNotFoundException, ReferenceConflictException;
 
+  /**
+   * Merge the changes of an existing hash into the requested branch as a single commit. The changes between the common
+   * ancestor and the hash are applied to the branch in one commit with the provided metadata, so unlike
+   * {@link #merge(Hash, BranchName, Optional)} the individual commits are not added to the branch.
+   *
+   * <p>Throws if any of the following are true:
+   *
+   * <ul>
+   * <li>the hash or the branch do not exists
+   * <li>a key changed since the common ancestor was also changed on the branch
+   * <li>the expected branch hash does not match the actual branch hash
+   * </ul>
+   *
+   * @param fromHash The hash we are using to get the changes to merge
+   * @param toBranch The branch that we are merging into
+   * @param expectedHash The current head of the branch to validate. If not present, the merge is applied to the current head.
+   * @param metadata The metadata of the commit holding the merged changes
+   * @throws ReferenceConflictException if {@code expectedBranchHash} doesn't match the stored hash for {@code toBranch} or a
+   *     changed key was also changed on {@code toBranch}
+   * @throws ReferenceNotFoundException if {@code toBranch} or {@code fromHash} is not present in the store.
+   */
+  void squash(Hash fromHash, BranchName toBranch, Optional<Hash> expectedHash, METADATA metadata)
+      throws ReferenceNotFoundException, ReferenceConflictException;
+
   /**
    * Assign the NamedRef to point to a particular hash.
    *
@@ -167,6 +195,33 @@ public interface VersionStore<VALUE, METADATA> {
    */
   Stream<WithHash<METADATA>> getCommits(Ref ref) throws ReferenceNotFoundException;
 
+  /**
+   * Get a stream of the ancestor commits to a provided ref that changed the value of a key.
+   *
+   * <p>A commit changed the value of a key if the value after the commit differs from the value after its parent, which
+   * includes adding and removing the key. The default implementation reads the value of the key at every commit.
+   *
+   * @param ref the ref to get commits for.
+   * @param key the key whose changes are returned.
+   * @return A stream of the commits that changed the key, in the order of {@link #getCommits(Ref)}.
+   * @throws ReferenceNotFoundException if {@code ref} is not present in the store
+   */
+  default Stream<WithHash<METADATA>> getCommits(Ref ref, Key key) throws ReferenceNotFoundException {
+    List<WithHash<METADATA>> commits = getCommits(ref).collect(Collectors.toList());
+    List<WithHash<METADATA>> changes = new ArrayList<>();
+    Optional<VALUE> previous = Optional.empty();
+    // walk from the oldest commit so that each value is compared with the value of the parent.
+    for (int i = commits.size() - 1; i >= 0; i--) {
+      Optional<VALUE> value = getValues(commits.get(i).getHash(), Collections.singletonList(key)).get(0);
+      if (!value.equals(previous)) {
+        changes.add(commits.get(i));
+      }
+      previous = value;
+    }
+    Collections.reverse(changes);
+    return changes.stream();
+  }
+
   /**
    * Get a stream of all available keys for the given ref.
    * @param ref The ref to get keys for.
@@ -175,6 +230,53 @@ public interface VersionStore<VALUE, METADATA> {
    */
   Stream<Key> getKeys(Ref ref) throws ReferenceNotFoundException;
 
+  /**
+   * Get a sorted stream of the keys for the given ref, starting after the provided key.
+   *
+   * <p>The order of keys is defined by the store but stable, so that a listing can be resumed by passing the last key
+   * that was received. The default implementation sorts all keys in their natural order.
+   *
+   * @param ref The ref to get keys for.
+   * @param startAfter If present, only keys that sort after this key are returned.
+   * @return The sorted stream of keys available for this ref.
+   * @throws ReferenceNotFoundException if {@code ref} is not present in the store
+   */
+  default Stream<Key> getKeys(Ref ref, Optional<Key> startAfter) throws ReferenceNotFoundException {
+    Stream<Key> keys = getKeys(ref).sorted();
+    return startAfter.map(after -> keys.filter(k -> k.compareTo(after) > 0)).orElse(keys);
+  }
+
+  /**
+   * Get a sorted stream of the keys for the given ref that lie within a namespace.
+   *
+   * @param ref The ref to get keys for.
+   * @param namespace The namespace to list. Keys whose leading elements equal the namespace's elements are returned, the
+   *        namespace itself is not.
+   * @return The sorted stream of keys within the namespace, in the order of {@link #getKeys(Ref, Optional)}.
+   * @throws ReferenceNotFoundException if {@code ref} is not present in the store
+   */
+  default Stream<Key> getKeys(Ref ref, Key namespace) throws ReferenceNotFoundException {
+    return getKeys(ref, namespace, Optional.empty());
+  }
+
+  /**
+   * Get a sorted stream of the keys for the given ref that lie within a namespace, starting after the provided key.
+   *
+   * <p>The default implementation filters all keys of the ref.
+   *
+   * @param ref The ref to get keys for.
+   * @param namespace The namespace to list. Keys whose leading elements equal the namespace's elements are returned, the
+   *        namespace itself is not.
+   * @param startAfter If present, only keys that sort after this key are returned.
+   * @return The sorted stream of keys within the namespace, in the order of {@link #getKeys(Ref, Optional)}.
+   * @throws ReferenceNotFoundException if {@code ref} is not present in the store
+   */
+  default Stream<Key> getKeys(Ref ref, Key namespace, Optional<Key> startAfter) throws ReferenceNotFoundException {
+    final int length = namespace.getElements().size();
+    return getKeys(ref, startAfter).filter(k -> k.getElements().size() > length
+        && ImmutableKey.builder().addAllElements(k.getElements().subList(0, length)).build().equals(namespace));
+  }
+
   /**
    * Get the value for a provided ref.
    * @param ref Any ref type allowed
@@ -202,6 +304,37 @@ public interface VersionStore<VALUE, METADATA> {
    */
   Stream<Diff<VALUE>> getDiffs(Ref from, Ref to) throws ReferenceNotFoundException;
 
+  /**
+   * Get the diffs between two refs, starting after the diff of the provided key.
+   *
+   * <p>Diffs are returned in an order that is stable for the two refs, so a diff's key can be used to continue the stream
+   * where it was left off. The default implementation sorts all diffs by key.
+   *
+   * @param from The from part of the diff.
+   * @param to The to part of the diff.
+   * @param startAfter If present, the key of a diff previously returned for the same refs. Only the diffs that follow it
+   *        are returned.
+   * @return A stream of values that are different.
+   * @throws ReferenceNotFoundException if {@code from} or {@code to} is not present in the store
+   */
+  default Stream<Diff<VALUE>> getDiffs(Ref from, Ref to, Optional<Key> startAfter) throws ReferenceNotFoundException {
+    Stream<Diff<VALUE>> diffs = getDiffs(from, to).sorted(Comparator.comparing(Diff::getKey));
+    return startAfter.map(after -> diffs.filter(d -> d.getKey().compareTo(after) > 0)).orElse(diffs);
+  }
+
+  /**
+   * Get the keys whose values differ between two refs, without retrieving the values.
+   *
+   * @param from The from part of the diff.
+   * @param to The to part of the diff.
+   * @param startAfter If present, only the keys that follow this key are returned.
+   * @return A stream of the keys that are different, in the order of {@link #getDiffs(Ref, Ref, Optional)}.
+   * @throws ReferenceNotFoundException if {@code from} or {@code to} is not present in the store
+   */
+  default Stream<Key> getDiffKeys(Ref from, Ref to, Optional<Key> startAfter) throws ReferenceNotFoundException {
+    return getDiffs(from, to, startAfter).map(Diff::getKey);
+  }
+
   /**
    * Collect some garbage. Each time this is called, it collects some garbage and reports the progress of what has been collected
    * @return A collector object that must be closed if not depleted.
@@ -25,6 +25,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -287,6 +288,36 @@ public abstract class AbstractITVersionStore {
     assertThat(store().getValue(initialCommit, Key.of("t4")), is(nullValue()));
   }
 
+  /*
+   * Test:
+   * - Create a new branch
+   * - Add keys in and around two namespaces
+   * - Check that listing a namespace returns the keys within it, sorted, and that the listing can be resumed
+   */
+  @Test
+  public void getKeysWithinNamespace() throws Exception {
+    final BranchName branch = BranchName.of("namespaces");
+
+    store().create(branch, Optional.empty());
+
+    commit("Initial Commit")
+        .put(Key.of("a", "t2"), "v")
+        .put(Key.of("a", "t1"), "v")
+        .put(Key.of("a", "b", "t3"), "v")
+        .put(Key.of("ab", "t4"), "v")
+        .put(Key.of("b", "t5"), "v")
+        .toBranch(branch);
+
+    List<Key> keys = store().getKeys(branch, Key.of("a")).collect(Collectors.toList());
+    assertThat(keys, containsInAnyOrder(Key.of("a", "t1"), Key.of("a", "t2"), Key.of("a", "b", "t3")));
+    assertEquals(keys, store().getKeys(branch, Optional.empty()).filter(keys::contains).collect(Collectors.toList()));
+
+    assertThat(store().getKeys(branch, Key.of("a"), Optional.of(keys.get(0))).collect(Collectors.toList()),
+        contains(keys.subList(1, keys.size()).toArray()));
+    assertThat(store().getKeys(branch, Key.of("a", "b")).collect(Collectors.toList()), contains(Key.of("a", "b", "t3")));
+    assertThat(store().getKeys(branch, Key.of("c")).collect(Collectors.toList()), Matchers.empty());
+  }
+
   /*
    * Test:
    * - Create a new branch
@@ -957,6 +988,124 @@ public abstract class AbstractITVersionStore {
     assertTrue(firstToFirst.isEmpty());
   }
 
+  @Test
+  public void getCommitsForKey() throws Exception {
+    final BranchName branch = BranchName.of("main");
+    store().create(branch, Optional.empty());
+
+    final Hash added = commit("Add t1 and t2").put("t1", "v1").put("t2", "v1").toBranch(branch);
+    final Hash changed = commit("Change t2").put("t2", "v2").toBranch(branch);
+    final Hash unrelated = commit("Add t3").put("t3", "v1").toBranch(branch);
+    final Hash same = commit("Put the same value to t1").put("t1", "v1").toBranch(branch);
+    final Hash deleted = commit("Delete t1").delete("t1").toBranch(branch);
+    final Hash readded = commit("Add t1 again").put("t1", "v3").toBranch(branch);
+
+    assertEquals("v1", store().getValue(same, Key.of("t1")));
+    assertThat(store().getCommits(branch, Key.of("t1")).collect(Collectors.toList()), contains(
+        WithHash.of(readded, "Add t1 again"),
+        WithHash.of(deleted, "Delete t1"),
+        WithHash.of(added, "Add t1 and t2")));
+    assertThat(store().getCommits(branch, Key.of("t2")).collect(Collectors.toList()), contains(
+        WithHash.of(changed, "Change t2"),
+        WithHash.of(added, "Add t1 and t2")));
+    assertThat(store().getCommits(unrelated, Key.of("t1")).collect(Collectors.toList()), contains(
+        WithHash.of(added, "Add t1 and t2")));
+    assertTrue(store().getCommits(branch, Key.of("t4")).collect(Collectors.toList()).isEmpty());
+  }
+
+  @Test
+  public void squash() throws Exception {
+    final BranchName main = BranchName.of("main");
+    final BranchName feature = BranchName.of("feature");
+    store().create(main, Optional.empty());
+    final Hash base = commit("Base").put("t1", "v1_1").put("t2", "v2_1").put("t3", "v3_1").toBranch(main);
+    store().create(feature, Optional.of(base));
+
+    commit("Change t1").put("t1", "v1_2").toBranch(feature);
+    for (int i = 0; i < 20; i++) {
+      commit("Change t4 " + i).put("t4", "v4_" + i).toBranch(feature);
+    }
+    commit("Delete t2").delete("t2").toBranch(feature);
+    commit("Add and remove t5").put("t5", "v5_1").toBranch(feature);
+    commit("Remove t5").delete("t5").toBranch(feature);
+    final Hash unrelated = commit("Unrelated").put("t6", "v6_1").put("t3", "v3_2").toBranch(main);
+
+    store().squash(store().toHash(feature), main, Optional.of(unrelated), "Squashed");
+    final List<Key> keys = Arrays.asList(Key.of("t1"), Key.of("t2"), Key.of("t3"), Key.of("t4"), Key.of("t5"), Key.of("t6"));
+    assertThat(store().getValues(main, keys),
+        contains(
+            Optional.of("v1_2"),
+            Optional.empty(),
+            Optional.of("v3_2"),
+            Optional.of("v4_19"),
+            Optional.empty(),
+            Optional.of("v6_1")
+        ));
+    assertThat(store().getKeys(main).collect(Collectors.toList()),
+        containsInAnyOrder(Key.of("t1"), Key.of("t3"), Key.of("t4"), Key.of("t6")));
+
+    final List<WithHash<String>> commits = store().getCommits(main).collect(Collectors.toList());
+    assertThat(commits.size(), is(3));
+    assertThat(commits.get(0).getValue(), is("Squashed"));
+    assertThat(commits.get(1).getHash(), is(unrelated));
+    assertThat(commits.get(2).getHash(), is(base));
+  }
+
+  @Test
+  public void squashIntoConflictingBranch() throws Exception {
+    final BranchName main = BranchName.of("main");
+    final BranchName feature = BranchName.of("feature");
+    store().create(main, Optional.empty());
+    final Hash base = commit("Base").put("t1", "v1_1").put("t2", "v2_1").toBranch(main);
+    store().create(feature, Optional.of(base));
+
+    commit("Change t1").put("t1", "v1_2").toBranch(feature);
+    commit("Change t2").put("t2", "v2_2").toBranch(feature);
+    commit("Change t1 again").put("t1", "v1_3").toBranch(main);
+    final Hash head = commit("Revert t1").put("t1", "v1_1").toBranch(main);
+
+    assertThrows(ReferenceConflictException.class,
+        () -> store().squash(store().toHash(feature), main, Optional.empty(), "Squashed"));
+    assertThat(store().toHash(main), is(head));
+  }
+
+  @Test
+  public void diffsCanBePaged() throws Exception {
+    final BranchName branch = BranchName.of("main");
+    store().create(branch, Optional.empty());
+    final Hash initial = store().toHash(branch);
+
+    CommitBuilder<String, String> first = commit("First Commit");
+    CommitBuilder<String, String> second = commit("Second Commit");
+    for (int i = 0; i < 30; i++) {
+      first.put("k" + i, "v" + i);
+      if (i % 3 == 0) {
+        second.put("k" + i, "w" + i);
+      }
+    }
+    final Hash firstCommit = first.toBranch(branch);
+    final Hash secondCommit = second.put("added", "v").delete("k1").toBranch(branch);
+
+    List<Diff<String>> all = store().getDiffs(firstCommit, secondCommit, Optional.empty()).collect(Collectors.toList());
+    assertEquals(12, all.size());
+    assertThat(all, containsInAnyOrder(store().getDiffs(firstCommit, secondCommit).toArray()));
+
+    List<Diff<String>> paged = new ArrayList<>();
+    Optional<Key> startAfter = Optional.empty();
+    do {
+      List<Diff<String>> page = store().getDiffs(firstCommit, secondCommit, startAfter).limit(5).collect(Collectors.toList());
+      paged.addAll(page);
+      startAfter = page.size() < 5 ? Optional.empty() : Optional.of(page.get(page.size() - 1).getKey());
+    } while (startAfter.isPresent());
+    assertEquals(all, paged);
+
+    assertEquals(all.stream().map(Diff::getKey).collect(Collectors.toList()),
+        store().getDiffKeys(firstCommit, secondCommit, Optional.empty()).collect(Collectors.toList()));
+    assertEquals(all.subList(3, all.size()).stream().map(Diff::getKey).collect(Collectors.toList()),
+        store().getDiffKeys(firstCommit, secondCommit, Optional.of(all.get(2).getKey())).collect(Collectors.toList()));
+    assertEquals(30, store().getDiffKeys(initial, firstCommit, Optional.empty()).count());
+  }
+
   protected CommitBuilder<String, String> forceCommit(String message) {
     return new CommitBuilder<>(store()).withMetadata(message);
   }